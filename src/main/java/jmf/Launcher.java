@@ -1,5 +1,6 @@
 package jmf;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Optional;
@@ -8,6 +9,8 @@ import jmf.config.IConfigurationProvider;
 import jmf.config.implementation.ConfigurationProviderImplementation;
 import jmf.core.Core;
 import jmf.discovery.IPeerDiscoveryService;
+import jmf.discovery.implementation.HostDiscoveryAgent;
+import jmf.discovery.implementation.MappedPeerDiscoveryService;
 import jmf.discovery.implementation.PeerDiscoveryService;
 import jmf.messaging.IMessagingService;
 import jmf.messaging.implementation.ZmqMessagingService;
@@ -76,12 +79,7 @@ public class Launcher {
 	 * 		if fails to create instance
 	 */
 	public static IFrameworkController createInstance(final AbstractModule module, final Optional<String> configPath, final StartingOption... startingOptions) {
-		final EnumSet<StartingOption> asSet = EnumSet.noneOf(StartingOption.class);
-		asSet.addAll(Arrays.asList(startingOptions));
-		
-		if (asSet.size() != startingOptions.length) {
-			throw new IllegalArgumentException("Duplicate starting options");
-		}
+		final EnumSet<StartingOption> asSet = toSet(startingOptions);
 
 		final boolean moduleAutoEnable = !asSet.contains(StartingOption.NO_AUTO_ENABLE);
 		final boolean peerDiscoveryWait = !asSet.contains(StartingOption.NO_PEER_DISCOVERY_WAIT);
@@ -92,6 +90,33 @@ public class Launcher {
 		return createInstance(module, true, moduleAutoEnable, exitWhenEnableFail, peerDiscoveryWait, disableEqualModuleInterconnect, configPath);
 	}
 
+	/**
+	 * Uses the peer table of a host discovery agent if configured by ZMF_DISCOVERY_TABLE and the agent is alive,
+	 * otherwise receives multicasts itself. A table left behind by a crashed agent is not used.
+	 */
+	static IPeerDiscoveryService createPeerDiscovery(final IConfigurationProvider config) {
+		final Optional<String> tablePath = config.getAsString("ZMF_DISCOVERY_TABLE");
+		if (tablePath.isPresent() && !tablePath.get().isEmpty() && new File(tablePath.get()).exists()
+				&& MappedPeerDiscoveryService.isAgentAlive(new File(tablePath.get()), HostDiscoveryAgent.DEFAULT_FREQUENCY)) {
+			return new MappedPeerDiscoveryService(new File(tablePath.get()));
+		}
+		return new PeerDiscoveryService();
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 * 		if an option is given more than once
+	 */
+	static EnumSet<StartingOption> toSet(final StartingOption... startingOptions) {
+		final EnumSet<StartingOption> asSet = EnumSet.noneOf(StartingOption.class);
+		asSet.addAll(Arrays.asList(startingOptions));
+
+		if (asSet.size() != startingOptions.length) {
+			throw new IllegalArgumentException("Duplicate starting options");
+		}
+		return asSet;
+	}
+
 	/**
 	 * Creates and starts  a new ZMF instance and uses default configuration file.
 	 *
@@ -139,7 +164,7 @@ public class Launcher {
 	public static IFrameworkController createInstance(final AbstractModule module, final boolean trackModuleStates, final boolean moduleAutoEnable, final boolean exitWhenEnableFail, final boolean peerDiscoveryWait, final boolean disableEqualModuleInterconnect, final Optional<String> configPath) {
 
 		final IConfigurationProvider cfg = new ConfigurationProviderImplementation(configPath);
-		final IPeerDiscoveryService peerDisc = new PeerDiscoveryService();
+		final IPeerDiscoveryService peerDisc = createPeerDiscovery(cfg);
 		final IMessagingService zmqServ = new ZmqMessagingService();
 		
 		final Core core = new Core(cfg, module, peerDisc, zmqServ);
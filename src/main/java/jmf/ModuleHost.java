@@ -0,0 +1,116 @@
+package jmf;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.zeromq.ZMQ;
+
+import jmf.Launcher.StartingOption;
+import jmf.config.IConfigurationProvider;
+import jmf.config.implementation.ConfigurationProviderImplementation;
+import jmf.core.Core;
+import jmf.discovery.IPeerRegistry;
+import jmf.discovery.implementation.SharedPeerDiscoveryService;
+import jmf.messaging.implementation.ZmqMessagingService;
+import jmf.module.AbstractModule;
+import jmf.module.IFrameworkController;
+
+/**
+ * Runs many modules in one process on a shared runtime: one ZMQ context, one peer discovery with a single multicast
+ * socket and peer registry, one timer thread and one configuration.
+ * Each module still has its own core, messaging poller and delivery thread, so its callbacks are executed by a single
+ * thread as if started by the Launcher.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ModuleHost implements AutoCloseable {
+
+	private final IConfigurationProvider config;
+	private final ZMQ.Context context;
+	private final SharedPeerDiscoveryService peerDiscovery = new SharedPeerDiscoveryService();
+	private final ScheduledThreadPoolExecutor timer;
+	private final List<Core> instances = new ArrayList<>();
+	private boolean closed = false;
+
+	/**
+	 * Creates a host using the default configuration file for all modules
+	 */
+	public ModuleHost() {
+		this(Optional.<String>empty());
+	}
+
+	/**
+	 * @param configPath
+	 * 		Path to the user defined config file used for all modules
+	 */
+	public ModuleHost(final Optional<String> configPath) {
+		this.config = new ConfigurationProviderImplementation(configPath);
+		// All modules share the IO threads, more threads may be configured for many modules
+		this.context = ZMQ.context((int) Math.max(1, config.getAsLong("ZMF_ZMQ_IO_THREADS").orElse(1)));
+		this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			final Thread timerThread = new Thread(runnable, "ModuleHost Timer Thread");
+			timerThread.setDaemon(true);
+			return timerThread;
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Creates and starts a new ZMF instance for the module on the shared runtime
+	 *
+	 * @param module
+	 * 		the module to start
+	 * @param startingOptions
+	 * 		Starting options for ZMF
+	 * @return the framework controller for this framework instance if successful
+	 * @throws RuntimeException
+	 * 		if fails to create instance
+	 */
+	public synchronized IFrameworkController addModule(final AbstractModule module, final StartingOption... startingOptions) {
+		if (closed) {
+			throw new IllegalStateException("module host closed");
+		}
+		final EnumSet<StartingOption> asSet = Launcher.toSet(startingOptions);
+
+		final boolean moduleAutoEnable = !asSet.contains(StartingOption.NO_AUTO_ENABLE);
+		final boolean peerDiscoveryWait = !asSet.contains(StartingOption.NO_PEER_DISCOVERY_WAIT);
+		final boolean exitWhenEnableFail = !asSet.contains(StartingOption.NO_EXIT_WHEN_ENABLE_FAILED);
+		final boolean disableEqualModuleInterconnect = !asSet.contains(StartingOption.NO_EQUAL_MODULE_INTERCONNECT);
+
+		final Core core = new Core(config, module, peerDiscovery.createService(), new ZmqMessagingService(context), timer);
+
+		if (!core.startInstance(moduleAutoEnable, exitWhenEnableFail, peerDiscoveryWait, disableEqualModuleInterconnect)) {
+			core.close();
+			throw new RuntimeException("failed to start instance");
+		}
+		instances.add(core);
+		return core;
+	}
+
+	/**
+	 * @return Registry of all peers, including the modules of this host
+	 */
+	public IPeerRegistry getPeerRegistry() {
+		return peerDiscovery.getPeerRegistry();
+	}
+
+	/**
+	 * Stops all modules and releases the shared runtime
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (final Core core : instances) {
+			core.close();
+		}
+		instances.clear();
+		timer.shutdownNow();
+		context.term();
+	}
+}
@@ -0,0 +1,69 @@
+package jmf.core;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.util.PrefixIndex;
+
+/**
+ * Registry binding MessageType prefixes to payload parsers.
+ * All typed handlers of a prefix share one parser instance, so a message matched by several handlers
+ * is decoded only once and the decoded object is cached on the Message.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class CodecRegistry {
+
+	private final PrefixIndex<Parser<?>> codecs = new PrefixIndex<>();
+
+	/**
+	 * Binds a parser to a topic prefix if the prefix has no parser yet.
+	 *
+	 * @param topic
+	 * 		the topic prefix to bind the parser to
+	 * @param parser
+	 * 		parser for payloads of the topic
+	 * @return the parser bound to the topic, the given parser or an equivalent one registered before
+	 * @throws IllegalArgumentException
+	 * 		if a parser of another type is already bound to the prefix
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Parser<T> register(final MessageType topic, final Parser<T> parser) {
+		final Parser<?> bound = codecs.putIfAbsent(topic, parser);
+		if (bound != parser && bound.getClass() != parser.getClass()) {
+			throw new IllegalArgumentException("different codec already registered for topic " + topic.toString());
+		}
+		return (Parser<T>) bound;
+	}
+
+	/**
+	 * @return the parser bound to the longest prefix of the given topic, null if there is none
+	 */
+	public Parser<?> lookup(final MessageType topic) {
+		return codecs.findLongestPrefix(topic);
+	}
+
+	/**
+	 * Decodes the payload of a message with the parser bound to its topic, decodes only once per message.
+	 *
+	 * @return the decoded payload or null if no parser is bound to the topic of the message
+	 * @throws InvalidProtocolBufferException
+	 * 		if the payload can not be parsed
+	 */
+	public Object decode(final Message message) throws InvalidProtocolBufferException {
+		final Parser<?> parser = codecs.findLongestPrefix(message.getType());
+		if (parser == null) {
+			return null;
+		}
+		return message.getDecoded(parser);
+	}
+
+	/**
+	 * Removes all parser bindings
+	 */
+	public void clear() {
+		codecs.clear();
+	}
+}
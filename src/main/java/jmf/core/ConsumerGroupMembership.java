@@ -0,0 +1,123 @@
+package jmf.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import jmf.data.Message;
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Membership of the consumer groups of a module: this instance and all active peers of the same module type.
+ * Instances of one type run the same module and therefore join the same groups, so every member can decide
+ * locally and without coordination which member owns an event - each event of a group subscription is processed
+ * by exactly one member while all members have the same membership view.
+ * Keyed events are assigned by rendezvous hashing (only keys of joining or leaving members move),
+ * other events round-robin by the sequence number stamped by their publisher for each topic.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ConsumerGroupMembership {
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+	private static final Comparator<ModuleUniqueId> MEMBER_ORDER = (a, b) -> Long.compareUnsigned(a.getInstanceId(), b.getInstanceId());
+
+	private final ModuleUniqueId selfId;
+	/** Active peers of the same type, excluding this instance */
+	private final Set<ModuleUniqueId> peers = new HashSet<>();
+	/** Sorted members including this instance, replaced on every change */
+	private volatile ModuleUniqueId[] members;
+
+
+	public ConsumerGroupMembership(final ModuleUniqueId selfId) {
+		this.selfId = selfId;
+		this.members = new ModuleUniqueId[]{selfId};
+	}
+
+	/**
+	 * Adds or removes a peer, ignores peers of other types. Members rebalance immediately.
+	 *
+	 * @param active
+	 * 		True if the peer is an active member now
+	 * @return True if the membership changed
+	 */
+	public synchronized boolean update(final ModuleUniqueId peer, final boolean active) {
+		if (peer.getTypeId() != selfId.getTypeId() || peer.equals(selfId)) {
+			return false;
+		}
+		final boolean changed = active ? peers.add(peer) : peers.remove(peer);
+		if (changed) {
+			final ModuleUniqueId[] newMembers = peers.toArray(new ModuleUniqueId[peers.size() + 1]);
+			newMembers[peers.size()] = selfId;
+			Arrays.sort(newMembers, MEMBER_ORDER);
+			members = newMembers;
+		}
+		return changed;
+	}
+
+	/**
+	 * @return Copy of the current members, sorted by instance ID
+	 */
+	public ModuleUniqueId[] getMembers() {
+		return members.clone();
+	}
+
+	/**
+	 * Decides if this instance processes an event of the given group
+	 *
+	 * @param keyFunction
+	 * 		Function extracting the routing key of the event, null for round-robin assignment
+	 * @return True if this instance owns the event
+	 */
+	public boolean isOwner(final String group, final Function<Message, byte[]> keyFunction, final Message message, final ModuleUniqueId sender) {
+		final ModuleUniqueId[] current = members;
+		if (current.length == 1) {
+			return true;
+		}
+		if (keyFunction != null) {
+			return selfId.equals(ownerByKey(current, group, keyFunction.apply(message)));
+		}
+		if (message.getSequence() == 0) {
+			// Publisher does not stamp sequence numbers, distribute by payload
+			return selfId.equals(ownerByKey(current, group, message.getData()));
+		}
+		return selfId.equals(ownerRoundRobin(current, group, sender, message.getSequence()));
+	}
+
+	/**
+	 * Rendezvous hashing: the member with the highest hash of (group, key, member) owns the key
+	 */
+	static ModuleUniqueId ownerByKey(final ModuleUniqueId[] members, final String group, final byte[] key) {
+		ModuleUniqueId owner = null;
+		long ownerWeight = 0;
+		for (final ModuleUniqueId member : members) {
+			final long weight = HASH.newHasher()
+					.putString(group, StandardCharsets.UTF_8)
+					.putBytes(key)
+					.putLong(member.getInstanceId())
+					.hash().asLong();
+			if (owner == null || weight > ownerWeight) {
+				owner = member;
+				ownerWeight = weight;
+			}
+		}
+		return owner;
+	}
+
+	/**
+	 * Consecutive events of a publisher go to consecutive members, offset per group and publisher
+	 */
+	static ModuleUniqueId ownerRoundRobin(final ModuleUniqueId[] members, final String group, final ModuleUniqueId sender, final long sequence) {
+		final long offset = HASH.newHasher()
+				.putString(group, StandardCharsets.UTF_8)
+				.putBytes(sender.getSenderProtoBytes())
+				.hash().asLong();
+		return members[(int) Long.remainderUnsigned(offset + sequence, members.length)];
+	}
+}
@@ -1,15 +1,25 @@
 package jmf.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+
 import jmf.config.IConfigurationProvider;
 import jmf.data.*;
 import jmf.discovery.IPeerDiscoveryCore;
@@ -82,6 +92,18 @@ public class Core implements IFrameworkAccess, IPeerDiscoveryCore, IFrameworkCon
      * @param zmqSrv ZMQ messaging service for communicating over the ZMF/ZMQ bus
      */
 	public Core(final IConfigurationProvider configProvider, final AbstractModule module, final IPeerDiscoveryService peerDiscoveryService, final IMessagingService zmqSrv) {
+		this(configProvider, module, peerDiscoveryService, zmqSrv, null);
+	}
+
+    /**
+     * Constructor of the Core class for a module sharing its runtime with other modules of this process
+     * @param configProvider Configuration service providing configuration values
+     * @param module Module to be managed by this core
+     * @param peerDiscoveryService Peer discovery service detecting other peers on the ZMF bus
+     * @param zmqSrv ZMQ messaging service for communicating over the ZMF/ZMQ bus
+     * @param sharedTimer Timer shared with other modules, null to start an own timer
+     */
+	public Core(final IConfigurationProvider configProvider, final AbstractModule module, final IPeerDiscoveryService peerDiscoveryService, final IMessagingService zmqSrv, final ScheduledThreadPoolExecutor sharedTimer) {
 
 		this.configProvider = configProvider;
         this.selfModule = module;
@@ -94,7 +116,7 @@ public class Core implements IFrameworkAccess, IPeerDiscoveryCore, IFrameworkCon
 		enableRequested = new AtomicBoolean(false);
 		zmfInstanceThreadInitialized = new AtomicBoolean(false);
 		selfModuleHandle = new ModuleHandleInternal(selfModule.getUniqueId(), selfModule.getVersion(), module.getModuleName(), true);
-		eventDispatcher = new ModuleEventDispatcher(zmqSrv, configProvider, this);
+		eventDispatcher = new ModuleEventDispatcher(zmqSrv, configProvider, this, sharedTimer);
 	}
 
 	public void close() {
@@ -266,7 +288,9 @@ public class Core implements IFrameworkAccess, IPeerDiscoveryCore, IFrameworkCon
 
 			synchronized (lockPeerChange) {
 				try {
-					lockPeerChange.wait();
+					if (!stopRequested.get()) {
+						lockPeerChange.wait(STATE_CHECK_INTERVAL);
+					}
 				} catch (InterruptedException e) {
 					LOGGER.warn("", e);
 				}
@@ -406,6 +430,126 @@ public class Core implements IFrameworkAccess, IPeerDiscoveryCore, IFrameworkCon
 		return eventDispatcher.sendRequest(target, msg);
 	}
 
+	/**
+	 * Tells the MessageService to send a message to a specific module, with options
+	 *
+	 * @param target
+	 * 		the module to which the request will be send to
+	 * @param msg
+	 * 		The message sent in this request
+	 * @param options
+	 * 		options for sending the request
+	 * @return The InReply which contains a future to access the real reply sometime
+	 */
+	@Override
+	public InReply sendRequest(final ModuleUniqueId target, final Message msg, final RequestOption... options) {
+		return eventDispatcher.sendRequest(target, msg, options);
+	}
+
+	/**
+	 * Tells the MessageService to send a request expecting a streamed reply to a specific module
+	 *
+	 * @param target
+	 * 		the module to which the request will be send to
+	 * @param msg
+	 * 		The message sent in this request
+	 * @return The InStreamReply which iterates over the reply chunks
+	 */
+	@Override
+	public InStreamReply sendStreamRequest(final ModuleUniqueId target, final Message msg) {
+		return eventDispatcher.sendStreamRequest(target, msg);
+	}
+
+	@Override
+	public Map<ModuleUniqueId, CircuitBreakerState> getCircuitBreakerStates() {
+		return eventDispatcher.getCircuitBreakerStates();
+	}
+
+	@Override
+	public Map<ModuleUniqueId, RttStats> getPeerRttStats() {
+		return eventDispatcher.getPeerRttStats();
+	}
+
+	@Override
+	public PollerStats getPollerStats() {
+		return eventDispatcher.getPollerStats();
+	}
+
+	@Override
+	public Map<MessageType, Long> getExpiredMessageCounts() {
+		return eventDispatcher.getExpiredMessageCounts();
+	}
+
+	@Override
+	public long getCanceledRequestCount() {
+		return eventDispatcher.getCanceledRequestCount();
+	}
+
+	@Override
+	public long getCoalescedRequestCount() {
+		return eventDispatcher.getCoalescedRequestCount();
+	}
+
+	/**
+	 * Sends a request to the least loaded active module of the given type
+	 *
+	 * @param type
+	 * 		the type of the module to send the request to
+	 * @param msg
+	 * 		The message sent in this request
+	 * @return The InReply which contains a future to access the real reply sometime
+	 */
+	@Override
+	public InReply sendRequestToType(final short type, final Message msg) {
+		return eventDispatcher.sendRequestToType(type, getActivePeerIdsWithType(type), msg);
+	}
+
+	/**
+	 * Sends a request to all active modules of the given type in parallel
+	 *
+	 * @param type
+	 * 		the type of the modules to send the request to
+	 * @param msg
+	 * 		The message sent in this request
+	 * @param timeout
+	 * 		time to wait for replies
+	 * @return future of all replies received until all modules replied or the timeout passed
+	 */
+	@Override
+	public CompletableFuture<ScatterGatherResult> scatterGather(final short type, final Message msg, final long timeout, final TimeUnit unit) {
+		return eventDispatcher.scatterGather(getActivePeerIdsWithType(type), msg, timeout, unit);
+	}
+
+	private List<ModuleUniqueId> getActivePeerIdsWithType(final short type) {
+		final List<ModuleHandle> peers = peerDiscoveryService.getPeerRegistry().getPeersWithType(type, true);
+		final List<ModuleUniqueId> ids = new ArrayList<>(peers.size());
+		for (final ModuleHandle peer : peers) {
+			ids.add(peer.getUniqueId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Sends a request to the active module of the given type owning the key
+	 *
+	 * @param type
+	 * 		the type of the module to send the request to
+	 * @param key
+	 * 		the key determining the target instance
+	 * @param msg
+	 * 		The message sent in this request
+	 * @return The InReply which contains a future to access the real reply sometime
+	 */
+	@Override
+	public InReply sendRequestByKey(final short type, final byte[] key, final Message msg) {
+		return eventDispatcher.sendRequestByKey(type, key, msg);
+	}
+
+	@Override
+	public ModuleUniqueId getPeerForKey(final short type, final byte[] key) {
+		return eventDispatcher.getPeerForKey(type, key);
+	}
+
 	/**
 	 * Tells the MessageService to send a message to a specific module
 	 *
@@ -419,6 +563,96 @@ public class Core implements IFrameworkAccess, IPeerDiscoveryCore, IFrameworkCon
 		return eventDispatcher.subscribe(topic, handler);
 	}
 
+	/**
+	 * Subscribes to a topic with a typed handler
+	 *
+	 * @param topic
+	 * 		The topic to subscribe to
+	 * @param parser
+	 * 		Parser for the event payload
+	 * @param handler
+	 * 		callback handler for decoded events
+	 */
+	@Override
+	public <T> SubscriptionHandle subscribe(final MessageType topic, final Parser<T> parser, final BiConsumer<T, ModuleUniqueId> handler) {
+		return eventDispatcher.subscribe(topic, parser, handler);
+	}
+
+	/**
+	 * Subscribes to a topic as member of a consumer group, events are distributed round-robin
+	 *
+	 * @param topic
+	 * 		The topic to subscribe to
+	 * @param group
+	 * 		Name of the consumer group
+	 * @param handler
+	 * 		callback handler for received events owned by this instance
+	 */
+	@Override
+	public SubscriptionHandle subscribeGroup(final MessageType topic, final String group, final BiConsumer<Message, ModuleUniqueId> handler) {
+		return eventDispatcher.subscribeGroup(topic, group, null, handler);
+	}
+
+	/**
+	 * Subscribes to a topic as member of a consumer group, events are distributed by key
+	 *
+	 * @param topic
+	 * 		The topic to subscribe to
+	 * @param group
+	 * 		Name of the consumer group
+	 * @param keyFunction
+	 * 		Function extracting the routing key of an event
+	 * @param handler
+	 * 		callback handler for received events owned by this instance
+	 */
+	@Override
+	public SubscriptionHandle subscribeGroup(final MessageType topic, final String group, final Function<Message, byte[]> keyFunction, final BiConsumer<Message, ModuleUniqueId> handler) {
+		return eventDispatcher.subscribeGroup(topic, group, keyFunction, handler);
+	}
+
+	@Override
+	public List<ModuleUniqueId> getConsumerGroupMembers() {
+		return eventDispatcher.getConsumerGroupMembers();
+	}
+
+	/**
+	 * Registers a handler for requests with the given topic prefix
+	 *
+	 * @param topic
+	 * 		The topic prefix to handle requests for
+	 * @param handler
+	 * 		callback handler for received requests
+	 */
+	@Override
+	public RequestHandlerHandle registerRequestHandler(final MessageType topic, final BiFunction<Message, ModuleUniqueId, OutReply> handler) {
+		return eventDispatcher.registerRequestHandler(topic, handler);
+	}
+
+	/**
+	 * Registers a typed handler for requests with the given topic prefix
+	 *
+	 * @param topic
+	 * 		The topic prefix to handle requests for
+	 * @param parser
+	 * 		Parser for the request payload
+	 * @param handler
+	 * 		callback handler for decoded requests
+	 */
+	@Override
+	public <T> RequestHandlerHandle registerRequestHandler(final MessageType topic, final Parser<T> parser, final BiFunction<T, ModuleUniqueId, OutReply> handler) {
+		return eventDispatcher.registerRequestHandler(topic, parser, handler);
+	}
+
+	@Override
+	public <T> Parser<T> registerCodec(final MessageType topic, final Parser<T> parser) {
+		return eventDispatcher.registerCodec(topic, parser);
+	}
+
+	@Override
+	public Object decode(final Message msg) throws InvalidProtocolBufferException {
+		return eventDispatcher.decode(msg);
+	}
+
 	/**
 	 * Tells the MessageService to send a message to a specific module
 	 *
@@ -430,6 +664,46 @@ public class Core implements IFrameworkAccess, IPeerDiscoveryCore, IFrameworkCon
 		eventDispatcher.publish(msg);
 	}
 
+	@Override
+	public void setReplyCacheable(final MessageType topic, final long ttl, final TimeUnit unit, final long maxBytes) {
+		eventDispatcher.setReplyCacheable(topic, ttl, unit, maxBytes);
+	}
+
+	@Override
+	public void invalidateReplyCache(final MessageType topic) {
+		eventDispatcher.invalidateReplyCache(topic);
+	}
+
+	@Override
+	public void invalidateReplyCache(final MessageType topic, final MessageType invalidationTopic) {
+		eventDispatcher.invalidateReplyCache(topic, invalidationTopic);
+	}
+
+	@Override
+	public void enableNearCache(final MessageType topic, final MessageType invalidationTopic, final long ttl, final TimeUnit unit, final long maxBytes) {
+		eventDispatcher.enableNearCache(topic, invalidationTopic, ttl, unit, maxBytes);
+	}
+
+	@Override
+	public long getNearCacheHitCount() {
+		return eventDispatcher.getNearCacheHitCount();
+	}
+
+	@Override
+	public long getNearCacheMissCount() {
+		return eventDispatcher.getNearCacheMissCount();
+	}
+
+	@Override
+	public void enableCompression(final MessageType topic, final byte[] dictionary) {
+		eventDispatcher.enableCompression(topic, dictionary);
+	}
+
+	@Override
+	public void disableCompression(final MessageType topic) {
+		eventDispatcher.disableCompression(topic);
+	}
+
 	/**
 	 * Called when the additional state of a module was changed.
 	 * Will not trigger automatically trigger a state broadcast.
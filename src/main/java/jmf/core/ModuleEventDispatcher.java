@@ -1,26 +1,45 @@
 package jmf.core;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+
 import jmf.config.IConfigurationProvider;
 import jmf.data.*;
 import jmf.messaging.IMessagingCore;
 import jmf.messaging.IMessagingService;
+import jmf.messaging.IRequestHandlerRegistry;
 import jmf.messaging.ISubscriptionHandler;
 import jmf.messaging.implementation.ExternalRequestIdentity;
 import jmf.module.AbstractModule;
 import jmf.module.IFrameworkController;
+import jmf.util.ConsistentHashRing;
+import jmf.util.PrefixIndex;
 
 /**
  * Event dispatching class receiving ZMQ messages (events, requests) and PeerStateChanges.
@@ -31,7 +50,7 @@ import jmf.module.IFrameworkController;
  * @author Tobias Korb
  * created on 7/13/15.
  */
-public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCore {
+public class ModuleEventDispatcher implements ISubscriptionHandler, IRequestHandlerRegistry, IMessagingCore {
 	
 	private static abstract class ModuleEventNotification {
 		public enum Type {EVENT, REQUEST, PeerStateChange}
@@ -50,12 +69,15 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 		private final Message message;
 		private final ModuleUniqueId sender;
 		private final ExternalRequestIdentity id;
+		/** Request handler resolved when receiving a request, null to use the modules handleRequest */
+		private final RequestHandlerHandle handler;
 
-		public MessageEventNotification(final Type type, final Message message, final ModuleUniqueId sender, final ExternalRequestIdentity id) {
+		public MessageEventNotification(final Type type, final Message message, final ModuleUniqueId sender, final ExternalRequestIdentity id, final RequestHandlerHandle handler) {
 			super(type);
 			this.message = message;
 			this.sender = sender;
 			this.id = id;
+			this.handler = handler;
 		}
 	}
 
@@ -82,6 +104,27 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	/** All subscriptions of the module operated by this instance */
 	private final ConcurrentMap<Integer, SubscriptionHandle> moduleSubscriptionHandlers = new ConcurrentHashMap<>();
 
+	/** Request handlers by topic prefix, system request handlers and handlers registered by the module */
+	private final PrefixIndex<RequestHandlerHandle> requestHandlers = new PrefixIndex<>();
+
+	/** Members of the consumer groups, same type instances, created on start */
+	private volatile ConsumerGroupMembership groupMembership;
+
+	/** Consistent hash rings of the active peers by module type, for requests by key */
+	private final ConcurrentMap<Short, ConsistentHashRing<ModuleUniqueId>> hashRings = new ConcurrentHashMap<>();
+
+	/** Cached replies to requests of cacheable topics, answered without queueing */
+	private final ReplyCache replyCache = new ReplyCache();
+
+	/** Replies to requests of near-cached topics, invalidated by invalidation events */
+	private final NearCache nearCache = new NearCache();
+
+	/** Requests in flight sent with RequestOption.SINGLE_FLIGHT */
+	private final SingleFlightGroup singleFlight;
+
+	/** Payload parsers by topic prefix, shared by all typed handlers */
+	private final CodecRegistry codecRegistry = new CodecRegistry();
+
     /** BlockingQueue queueing messages and notifications to be delivered */
 	private final BlockingQueue<ModuleEventNotification> deliveryQueue = new LinkedBlockingQueue<>();
 	
@@ -91,11 +134,29 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	private final AtomicBoolean alive = new AtomicBoolean(false);
 	
 	private Thread thread;
+
+	/** Timer for deadlines of asynchronous operations, running while started */
+	private ScheduledThreadPoolExecutor timer;
+	/** Timer shared with other modules of the process, not shut down by this dispatcher, null if owning a timer */
+	private final ScheduledThreadPoolExecutor sharedTimer;
+	/** Periodic ping task, null if probing is disabled */
+	private ScheduledFuture<?> rttProbeTask;
 	
 	private final AtomicInteger subCounter = new AtomicInteger(0);
+	/** Requests dropped from the delivery queue because canceled by their requester */
+	private final AtomicLong canceledRequestCount = new AtomicLong(0);
+	/**
+	 * Requests in the delivery queue. Removed by either the delivery loop or a cancellation, whichever comes first,
+	 * canceled requests are skipped when dequeued.
+	 */
+	private final Set<ExternalRequestIdentity> queuedRequests = ConcurrentHashMap.newKeySet();
+	/** Requests and events dropped because their time to live elapsed, per topic */
+	private final ConcurrentMap<MessageType, AtomicLong> expiredCounts = new ConcurrentHashMap<>();
 
 	private final IFrameworkController core;
 	private final IConfigurationProvider config;
+	/** Round trip times to peers, pings only sent if probing is enabled */
+	private RttProber rttProber;
 
 	private final static Logger LOGGER = LoggerFactory.getLogger(ModuleEventDispatcher.class);
 
@@ -103,20 +164,39 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	private final static byte SYSTEM_REQUEST_ENABLE = 0x03;
 	private final static byte SYSTEM_REQUEST_DISABLE = 0x01;
 	private final static byte SYSTEM_REQUEST_STOP = 0x02;
+	private final static byte SYSTEM_REQUEST_PING = 0x04;
+	/** Error replied to requests whose time to live elapsed before they were handled */
+	private final static String REQUEST_EXPIRED = "request expired";
 
     private long ZMF_INMSG_BUFFER_SIZE = 100000;
     private long ZMF_INMSG_BUFFER_MODE = ZMF_INMSG_BUFFER_MODE_BLOCK;
     private static final long ZMF_INMSG_BUFFER_MODE_BLOCK = 0;
     private static final long ZMF_INMSG_BUFFER_MODE_DROP = 1;
     private static final long ZMF_INMSG_BUFFER_MODE_BLOCK_WAITMS = 10;
+    private long ZMF_HASH_RING_VNODES = 128;
+    private long ZMF_RTT_PROBE_INTERVAL_MS = 0;
+    private long ZMF_RTT_PROBE_TIMEOUT_MS = 1000;
 
 
 
     public ModuleEventDispatcher(final IMessagingService iMessagingService, final IConfigurationProvider config, IFrameworkController core) {
+		this(iMessagingService, config, core, null);
+	}
+
+	/**
+	 * @param sharedTimer
+	 * 		timer shared with other modules of this process, shut down by its owner, null to start an own timer
+	 */
+	public ModuleEventDispatcher(final IMessagingService iMessagingService, final IConfigurationProvider config, IFrameworkController core, final ScheduledThreadPoolExecutor sharedTimer) {
+		this.sharedTimer = sharedTimer;
 		this.config = config;
 		this.core = core;
 		msgService = iMessagingService;
+		singleFlight = new SingleFlightGroup(iMessagingService);
 		subCounter.set(0);
+
+		// System requests are answered directly on the receiving thread, even if the module is not enabled
+		requestHandlers.put(SYSTEM_REQUEST, new RequestHandlerHandle(this, SYSTEM_REQUEST, this::handleSystemMessage, true));
 	}
 	
 	/**
@@ -131,6 +211,17 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	public boolean start(final AbstractModule selfModule, final ModuleHandleInternal selfModuleHandle, final IConfigurationProvider config) {
 		LOGGER.trace("Start: Starting JmfMessaging");
 		this.selfModule = selfModule;
+		this.groupMembership = new ConsumerGroupMembership(selfModuleHandle.getUniqueId());
+		if (sharedTimer != null) {
+			this.timer = sharedTimer;
+		} else {
+			this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+				final Thread timerThread = new Thread(runnable, "Messaging Timer Thread");
+				timerThread.setDaemon(true);
+				return timerThread;
+			});
+			this.timer.setRemoveOnCancelPolicy(true);
+		}
 		LOGGER.trace("Start: Start MessageService");
 
 
@@ -146,6 +237,26 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
         }
         LOGGER.debug("ZMF_INMSG_BUFFER_MODE configuration: " + ZMF_INMSG_BUFFER_MODE);
 
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_HASH_RING_VNODES")).isPresent()) {
+            ZMF_HASH_RING_VNODES = cfgTmp.getAsLong();
+        }
+        LOGGER.debug("ZMF_HASH_RING_VNODES configuration: " + ZMF_HASH_RING_VNODES);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_RTT_PROBE_INTERVAL_MS")).isPresent()) {
+            ZMF_RTT_PROBE_INTERVAL_MS = cfgTmp.getAsLong();
+        }
+        LOGGER.debug("ZMF_RTT_PROBE_INTERVAL_MS configuration: " + ZMF_RTT_PROBE_INTERVAL_MS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_RTT_PROBE_TIMEOUT_MS")).isPresent()) {
+            ZMF_RTT_PROBE_TIMEOUT_MS = cfgTmp.getAsLong();
+        }
+        LOGGER.debug("ZMF_RTT_PROBE_TIMEOUT_MS configuration: " + ZMF_RTT_PROBE_TIMEOUT_MS);
+
+		rttProber = new RttProber(msgService::sendRequest, msgService::isProbeable, new Message(SYSTEM_REQUEST, new byte[]{SYSTEM_REQUEST_PING}),
+				TimeUnit.MILLISECONDS.toNanos(ZMF_RTT_PROBE_TIMEOUT_MS));
+		if (ZMF_RTT_PROBE_INTERVAL_MS > 0) {
+			rttProbeTask = timer.scheduleWithFixedDelay(rttProber::probe, ZMF_RTT_PROBE_INTERVAL_MS, ZMF_RTT_PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		}
 
 		final boolean start = msgService.start(this, selfModuleHandle, config);
 		if (start) {
@@ -160,6 +271,11 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	public void stop() {
 		LOGGER.trace("Stop: Shut down JmfMessaging");
 		onDisable();
+		if (sharedTimer == null) {
+			timer.shutdownNow();
+		} else if (rttProbeTask != null) {
+			rttProbeTask.cancel(false);
+		}
 		msgService.stop();
 		LOGGER.trace("Stop: JmfMessaging stopped");
 
@@ -189,7 +305,18 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 			msgService.unsubscribe(handler.getTopic());
 		}
 		moduleSubscriptionHandlers.clear();
-		
+
+		for (final RequestHandlerHandle handler : requestHandlers.values()) {
+			if (!handler.isInline()) {
+				requestHandlers.remove(handler.getTopic(), handler);
+			}
+		}
+		codecRegistry.clear();
+		replyCache.clear();
+		for (final MessageType invalidationTopic : nearCache.getInvalidationTopics()) {
+			msgService.unsubscribe(invalidationTopic);
+		}
+		nearCache.clear();
 		
 		LOGGER.trace("onDisable: Unsubscribed");
 		msgService.onDisable();
@@ -233,6 +360,194 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 		return subHandle;
 	}
 	
+	/**
+	 * Subscribes to a topic as member of a consumer group, each event is delivered to only one active instance of
+	 * this module type.
+	 *
+	 * @param topic
+	 * 		the topic on which the module wants to subscribe
+	 * @param group
+	 * 		name of the consumer group
+	 * @param keyFunction
+	 * 		Function extracting the routing key of an event, events with equal keys go to the same instance.
+	 * 		Null to distribute events round-robin.
+	 * @param handler
+	 * 		Function beeing called by incoming events owned by this instance
+	 */
+	public SubscriptionHandle subscribeGroup(final MessageType topic, final String group, final Function<Message, byte[]> keyFunction, final BiConsumer<Message, ModuleUniqueId> handler) {
+		checkAlive();
+		final SubscriptionHandle subHandle = new SubscriptionHandle(this, topic, handler, group, keyFunction);
+		moduleSubscriptionHandlers.put(subHandle.getSubId(), subHandle);
+
+		msgService.subscribe(topic);
+		LOGGER.trace("Subscribe: Subscribed for Topic: " + topic.toString() + " in group " + group);
+		return subHandle;
+	}
+
+	/**
+	 * @return Current members of the consumer groups of this module, sorted by instance ID
+	 */
+	public List<ModuleUniqueId> getConsumerGroupMembers() {
+		return Arrays.asList(groupMembership.getMembers());
+	}
+
+	/**
+	 * Registers a handler for all requests with the given topic prefix.
+	 * Requests are dispatched to the handler with the longest matching prefix,
+	 * requests without matching handler are delivered to the modules handleRequest.
+	 *
+	 * @param topic
+	 * 		the topic prefix to handle requests for
+	 * @param handler
+	 * 		Function called for incoming requests, returns the reply
+	 * @return Handle of the registered handler
+	 */
+	public RequestHandlerHandle registerRequestHandler(final MessageType topic, final BiFunction<Message, ModuleUniqueId, OutReply> handler) {
+		checkAlive();
+		if (SYSTEM_REQUEST.containsTopic(topic)) {
+			throw new IllegalArgumentException("topic reserved for system requests: " + topic.toString());
+		}
+		final RequestHandlerHandle handle = new RequestHandlerHandle(this, topic, handler, false);
+		requestHandlers.put(topic, handle);
+		LOGGER.trace("registerRequestHandler: Registered handler for Topic: " + topic.toString());
+		return handle;
+	}
+
+	/**
+	 * Subscribes to a topic with a typed handler. The payload is decoded with the parser bound to the topic
+	 * in the codec registry, once per message for all typed handlers of the topic.
+	 *
+	 * @param topic
+	 * 		the topic on which the module wants to subscribe
+	 * @param parser
+	 * 		parser for the payload, bound to the topic if no parser bound yet
+	 * @param handler
+	 * 		Function beeing called with decoded payloads of incoming events
+	 */
+	public <T> SubscriptionHandle subscribe(final MessageType topic, final Parser<T> parser, final BiConsumer<T, ModuleUniqueId> handler) {
+		checkAlive();
+		final Parser<T> boundParser = codecRegistry.register(topic, parser);
+		return subscribe(topic, (message, sender) -> {
+			final T decoded;
+			try {
+				decoded = message.getDecoded(boundParser);
+			} catch (final InvalidProtocolBufferException e) {
+				LOGGER.error("Failed to decode event payload of topic " + message.getType().toString(), e);
+				return;
+			}
+			handler.accept(decoded, sender);
+		});
+	}
+
+	/**
+	 * Registers a typed handler for all requests with the given topic prefix.
+	 * The request payload is decoded with the parser bound to the topic in the codec registry, requests failing to
+	 * decode are answered with an error reply.
+	 *
+	 * @param topic
+	 * 		the topic prefix to handle requests for
+	 * @param parser
+	 * 		parser for the request payload, bound to the topic if no parser bound yet
+	 * @param handler
+	 * 		Function called with decoded payloads of incoming requests, returns the reply
+	 * @return Handle of the registered handler
+	 */
+	public <T> RequestHandlerHandle registerRequestHandler(final MessageType topic, final Parser<T> parser, final BiFunction<T, ModuleUniqueId, OutReply> handler) {
+		checkAlive();
+		final Parser<T> boundParser = codecRegistry.register(topic, parser);
+		return registerRequestHandler(topic, (message, sender) -> {
+			final T decoded;
+			try {
+				decoded = message.getDecoded(boundParser);
+			} catch (final InvalidProtocolBufferException e) {
+				LOGGER.error("Failed to decode request payload of topic " + message.getType().toString(), e);
+				return OutReply.createErrorReply("failed to decode request payload: " + e.getMessage());
+			}
+			return handler.apply(decoded, sender);
+		});
+	}
+
+	/**
+	 * Binds a payload parser to a topic prefix
+	 *
+	 * @return the parser bound to the topic
+	 */
+	public <T> Parser<T> registerCodec(final MessageType topic, final Parser<T> parser) {
+		return codecRegistry.register(topic, parser);
+	}
+
+	/**
+	 * Decodes the payload of a message with the parser bound to its topic, decodes only once per message
+	 *
+	 * @return the decoded payload or null if no parser bound to the topic
+	 */
+	public Object decode(final Message message) throws InvalidProtocolBufferException {
+		return codecRegistry.decode(message);
+	}
+
+	/**
+	 * Enables payload compression for the given topic prefix
+	 *
+	 * @param dictionary
+	 * 		optional preset dictionary, null for none
+	 */
+	public void enableCompression(final MessageType topic, final byte[] dictionary) {
+		msgService.enableCompression(topic, dictionary);
+	}
+
+	/**
+	 * Disables payload compression for the given topic prefix
+	 */
+	public void disableCompression(final MessageType topic) {
+		msgService.disableCompression(topic);
+	}
+
+	/**
+	 * Declares requests with the given topic prefix as cacheable. Immediate replies to these requests are cached,
+	 * identical requests (same topic and payload) are answered from the cache on the receiving thread.
+	 *
+	 * @param ttl
+	 * 		time a cached reply stays valid
+	 * @param maxBytes
+	 * 		maximum size of all cached requests and replies of the prefix, least recently used are evicted
+	 */
+	public void setReplyCacheable(final MessageType topic, final long ttl, final TimeUnit unit, final long maxBytes) {
+		checkAlive();
+		replyCache.setCacheable(topic, ttl, unit, maxBytes);
+		LOGGER.trace("setReplyCacheable: Caching replies for Topic: " + topic.toString());
+	}
+
+	/**
+	 * Removes all cached replies to requests with the given topic prefix
+	 */
+	public void invalidateReplyCache(final MessageType topic) {
+		replyCache.invalidate(topic);
+	}
+
+	/**
+	 * Removes all cached replies to requests with the given topic prefix and publishes an invalidation event for the
+	 * near-caches of other modules
+	 */
+	public void invalidateReplyCache(final MessageType topic, final MessageType invalidationTopic) {
+		replyCache.invalidate(topic);
+		msgService.publish(new Message(invalidationTopic, topic.getMatch()));
+	}
+
+	/**
+	 * Unregisters a request handler
+	 *
+	 * @param handle
+	 * 		the handle of the handler to remove
+	 */
+	@Override
+	public void unregisterRequestHandler(final RequestHandlerHandle handle) {
+		if (handle.isInline()) {
+			throw new IllegalArgumentException("system request handlers can not be unregistered");
+		}
+		requestHandlers.remove(handle.getTopic(), handle);
+		LOGGER.trace("unregisterRequestHandler: Unregistered handler for Topic: " + handle.getTopic().toString());
+	}
+
 	/**
 	 * Publishes a message
 	 *
@@ -251,8 +566,156 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	 * @return A reply containing a future to receive a response
 	 */
 	public InReply sendRequest(final ModuleUniqueId target, final Message msg) {
+		return sendRequest(target, msg, new RequestOption[0]);
+	}
+
+	/**
+	 * @param target
+	 * 		the module the request will be send to
+	 * @param msg
+	 * 		the message that will be send
+	 * @param options
+	 * 		options for sending the request
+	 * @return A reply containing a future to receive a response
+	 */
+	public InReply sendRequest(final ModuleUniqueId target, final Message msg, final RequestOption... options) {
+		checkAlive();
+		final Supplier<InReply> sender;
+		if (Arrays.asList(options).contains(RequestOption.SINGLE_FLIGHT)) {
+			sender = () -> singleFlight.sendRequest(target, msg);
+		} else {
+			sender = () -> msgService.sendRequest(target, msg);
+		}
+		if (nearCache.isEnabled(msg.getType())) {
+			return nearCache.request(target, msg, sender);
+		}
+		return sender.get();
+	}
+
+	/**
+	 * @param target
+	 * 		the module the request will be send to
+	 * @param msg
+	 * 		the message that will be send
+	 * @return A reply iterating over the reply chunks
+	 */
+	public InStreamReply sendStreamRequest(final ModuleUniqueId target, final Message msg) {
+		checkAlive();
+		return msgService.sendStreamRequest(target, msg);
+	}
+
+	/**
+	 * @return Number of requests sent with RequestOption.SINGLE_FLIGHT that shared the reply of an identical request in flight
+	 */
+	public long getCoalescedRequestCount() {
+		return singleFlight.getCoalescedCount();
+	}
+
+	/**
+	 * @param targets
+	 * 		the modules the request may be sent to
+	 * @param msg
+	 * 		the message that will be send
+	 * @return A reply containing a future to receive a response from the chosen target
+	 * @deprecated use sendRequestToType, which scopes cached replies by the module type
+	 */
+	@Deprecated
+	public InReply sendRequestToAny(final List<ModuleUniqueId> targets, final Message msg) {
+		if (targets.isEmpty()) {
+			checkAlive();
+			return msgService.sendRequestToAny(targets, msg);
+		}
+		return sendRequestToType(targets.get(0).getTypeId(), targets, msg);
+	}
+
+	/**
+	 * @param type
+	 * 		the module type the request is sent to
+	 * @param targets
+	 * 		the active modules of the type, the request may be sent to any of them
+	 * @param msg
+	 * 		the message that will be send
+	 * @return A reply containing a future to receive a response from the chosen target
+	 */
+	public InReply sendRequestToType(final short type, final List<ModuleUniqueId> targets, final Message msg) {
+		checkAlive();
+		if (nearCache.isEnabled(msg.getType())) {
+			return nearCache.request(type, msg, () -> msgService.sendRequestToAny(targets, msg));
+		}
+		return msgService.sendRequestToAny(targets, msg);
+	}
+
+	/**
+	 * Caches replies to requests with the given topic prefix on this side, until invalidated by an event published
+	 * on the invalidation topic. The payload of an invalidation event is the request topic prefix to invalidate,
+	 * empty to invalidate all request topics using the invalidation topic.
+	 *
+	 * @param ttl
+	 * 		maximum time a reply stays cached
+	 * @param maxBytes
+	 * 		maximum size of cached requests and replies of the prefix
+	 */
+	public void enableNearCache(final MessageType topic, final MessageType invalidationTopic, final long ttl, final TimeUnit unit, final long maxBytes) {
+		checkAlive();
+		nearCache.enable(topic, invalidationTopic, ttl, unit, maxBytes);
+		msgService.subscribe(invalidationTopic);
+		LOGGER.trace("enableNearCache: Caching replies for Topic: " + topic.toString() + ", invalidated by " + invalidationTopic.toString());
+	}
+
+	/**
+	 * @return Number of requests answered from the near-cache
+	 */
+	public long getNearCacheHitCount() {
+		return nearCache.getHitCount();
+	}
+
+	/**
+	 * @return Number of requests of near-cached topics sent because not cached
+	 */
+	public long getNearCacheMissCount() {
+		return nearCache.getMissCount();
+	}
+
+	/**
+	 * Sends a request to all targets in parallel and collects the replies
+	 *
+	 * @param targets
+	 * 		the modules the request will be send to
+	 * @param msg
+	 * 		the message that will be send
+	 * @param timeout
+	 * 		time to wait for replies
+	 * @return future completed with all replies when all targets replied, with the replies received so far at the deadline
+	 */
+	public CompletableFuture<ScatterGatherResult> scatterGather(final List<ModuleUniqueId> targets, final Message msg, final long timeout, final TimeUnit unit) {
+		checkAlive();
+		return ScatterGatherRequest.start(msgService, timer, targets, msg, timeout, unit);
+	}
+
+	/**
+	 * @param type
+	 * 		the module type to send the request to
+	 * @param key
+	 * 		the key determining the target instance
+	 * @param msg
+	 * 		the message that will be send
+	 * @return A reply containing a future to receive a response, failing if there is no active peer of the type
+	 */
+	public InReply sendRequestByKey(final short type, final byte[] key, final Message msg) {
 		checkAlive();
-		return msgService.sendRequest(target, msg);
+		final ModuleUniqueId target = getPeerForKey(type, key);
+		if (target == null) {
+			return msgService.sendRequestToAny(Collections.emptyList(), msg);
+		}
+		return sendRequest(target, msg);
+	}
+
+	/**
+	 * @return the active peer of the given type owning the key on the consistent hash ring of the type, null if there is none
+	 */
+	public ModuleUniqueId getPeerForKey(final short type, final byte[] key) {
+		final ConsistentHashRing<ModuleUniqueId> ring = hashRings.get(type);
+		return ring == null ? null : ring.get(key);
 	}
 
 	/**
@@ -270,6 +733,31 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 			msgService.peerLeave(module);
 		}
 
+		// Probe round trip times to all reachable peers, also if not active
+		final RttProber prober = rttProber;
+		if (prober != null) {
+			if (newState == ModuleLifecycleState.Dead) {
+				prober.removePeer(module.getUniqueId());
+			} else {
+				prober.addPeer(module.getUniqueId());
+			}
+		}
+
+		// Rebalance consumer groups, only active instances process events
+		final ConsumerGroupMembership membership = groupMembership;
+		if (membership != null && membership.update(module.getUniqueId(), newState == ModuleLifecycleState.Active)) {
+			LOGGER.info("Consumer groups rebalanced, members: " + Arrays.toString(membership.getMembers()));
+		}
+
+		// Update hash ring of the peers type, only active peers own keys
+		final ConsistentHashRing<ModuleUniqueId> ring = hashRings.computeIfAbsent(module.getUniqueId().getTypeId(),
+				type -> new ConsistentHashRing<>((int) ZMF_HASH_RING_VNODES, ModuleUniqueId::getSenderProtoBytes));
+		if (newState == ModuleLifecycleState.Active) {
+			ring.add(module.getUniqueId());
+		} else {
+			ring.remove(module.getUniqueId());
+		}
+
         // Dont block or drop peer state changes (like incoming messages)
 
 		deliveryQueue.add(new PeerStatechangeEventNotification(module, newState, lastState));
@@ -290,6 +778,18 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
             return;
         }
 
+        // Apply near-cache invalidations immediately, still deliver the event to subscriptions of the module
+        try {
+            nearCache.onEvent(message);
+        } catch (final RuntimeException e) {
+            // Called by the messaging threads, must not throw
+            LOGGER.warn("failed to apply near-cache invalidation", e);
+        }
+
+        if (dropIfExpired(message)) {
+            return;
+        }
+
         // Prevent buffer overflow, block or drop
         if (!checkWaitMessageQueueBufferInsert()) {
             // Return if dropping message necessary
@@ -297,7 +797,7 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
         }
 
         // Queue message to event queue
-        deliveryQueue.add(new MessageEventNotification(ModuleEventNotification.Type.EVENT, message, sender, null));
+        deliveryQueue.add(new MessageEventNotification(ModuleEventNotification.Type.EVENT, message, sender, null, null));
 	}
 	
 	/**
@@ -312,42 +812,80 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	 */
 	@Override
 	public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
-		if (SYSTEM_REQUEST.containsTopic(message.getType())) {
-			handleSystemMessage(id, message);
-			LOGGER.info("handled request as system message");
+		final RequestHandlerHandle handler = requestHandlers.findLongestPrefix(message.getType());
+		if (handler != null && handler.isInline()) {
+			msgService.onRequestConsumed(id);
+			sendOutReply(invokeRequestHandler(handler, message, sender), id);
+			LOGGER.trace("handled request as system message");
 			return;
 		}
 
 		if (!alive.get()) {
+			msgService.onRequestConsumed(id);
+			return;
+		}
+
+		if (dropIfExpired(message)) {
+			msgService.onRequestConsumed(id);
+			msgService.sendErrorReply(id, REQUEST_EXPIRED);
+			return;
+		}
+
+		// Answer from cache without queueing
+		final Message cachedReply = replyCache.lookup(message);
+		if (cachedReply != null) {
+			msgService.onRequestConsumed(id);
+			msgService.sendReply(id, cachedReply);
 			return;
 		}
 
         // Prevent buffer overflow, block or drop
         if (!checkWaitMessageQueueBufferInsert()) {
             // Return if dropping message necessary
+            msgService.onRequestConsumed(id);
             return;
         }
 
         // Queue message to event queue
-        deliveryQueue.add(new MessageEventNotification(ModuleEventNotification.Type.REQUEST, message, sender, id));
+        queuedRequests.add(id);
+        deliveryQueue.add(new MessageEventNotification(ModuleEventNotification.Type.REQUEST, message, sender, id, handler));
 	}
 
-	private void handleSystemMessage(final ExternalRequestIdentity id, final Message message) {
+	private OutReply handleSystemMessage(final Message message, final ModuleUniqueId sender) {
 		if (SYSTEM_REQUEST_ENABLE == message.getData()[0]) {
-			msgService.sendReply(id, new Message(new byte[]{0x04, -1}, new byte[]{0x03}));
 			core.requestEnableModule();
+			return OutReply.createImmediateReply(new Message(new byte[]{0x04, -1}, new byte[]{0x03}));
 
 		} else if (SYSTEM_REQUEST_DISABLE == message.getData()[0]) {
-			msgService.sendReply(id, new Message(new byte[]{0x04, -1}, new byte[]{0x01}));
 			core.requestDisableModule();
+			return OutReply.createImmediateReply(new Message(new byte[]{0x04, -1}, new byte[]{0x01}));
 
 		} else if (SYSTEM_REQUEST_STOP == message.getData()[0]) {
-			msgService.sendReply(id, new Message(new byte[]{0x04, -1}, new byte[]{0x02}));
 			core.requestStopInstance();
+			return OutReply.createImmediateReply(new Message(new byte[]{0x04, -1}, new byte[]{0x02}));
+
+		} else if (SYSTEM_REQUEST_PING == message.getData()[0]) {
+			// Echo the payload, answered on the receiving thread to measure the round trip only
+			return OutReply.createImmediateReply(new Message(new byte[]{0x04, -1}, message.getData()));
 
 		} else {
-			msgService.sendReply(id, new Message(new byte[]{0x04, -1}, "unknown system message".getBytes()));
 			LOGGER.error("received unknown system message: " + Arrays.toString(message.getData()));
+			return OutReply.createImmediateReply(new Message(new byte[]{0x04, -1}, "unknown system message".getBytes()));
+		}
+	}
+
+	/**
+	 * Calls the given request handler or the modules handleRequest if no handler given, records handler statistics
+	 */
+	private OutReply invokeRequestHandler(final RequestHandlerHandle handler, final Message message, final ModuleUniqueId sender) {
+		if (handler == null) {
+			return selfModule.handleRequest(message, sender);
+		}
+		final long start = System.nanoTime();
+		try {
+			return handler.getHandler().apply(message, sender);
+		} finally {
+			handler.recordInvocation(System.nanoTime() - start);
 		}
 	}
 
@@ -417,11 +955,24 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 						break;
 
 					case EVENT:
-						handleEvent((MessageEventNotification) messageNotification);
+						if (!dropIfExpired(((MessageEventNotification) messageNotification).message)) {
+							handleEvent((MessageEventNotification) messageNotification);
+						}
 						break;
 
 					case REQUEST:
-						handleRequest((MessageEventNotification) messageNotification);
+						final MessageEventNotification request = (MessageEventNotification) messageNotification;
+						if (!queuedRequests.remove(request.id)) {
+							// Canceled while queued, credit returned already
+							break;
+						}
+						// Request left the queue, return its credit to the sender
+						msgService.onRequestConsumed(request.id);
+						if (dropIfExpired(request.message)) {
+							msgService.sendErrorReply(request.id, REQUEST_EXPIRED);
+						} else {
+							handleRequest(request);
+						}
 						break;
 				}
 			} catch (final InterruptedException e) {
@@ -435,13 +986,91 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 		LOGGER.trace("deliveryLoop: Leaving Loop");
 	}
 
+	/**
+	 * Called from ZMQ when the requester canceled a request, marks the request in the queue to be skipped if not
+	 * handled yet
+	 *
+	 * @param id
+	 * 		request id
+	 */
+	@Override
+	public void onRequestCanceled(final ExternalRequestIdentity id) {
+		if (queuedRequests.remove(id)) {
+			msgService.onRequestConsumed(id);
+			canceledRequestCount.incrementAndGet();
+			LOGGER.trace("onRequestCanceled: canceled queued request");
+		}
+	}
+
+	/**
+	 * Counts a message if its time to live elapsed
+	 *
+	 * @return True if the message expired and must be dropped
+	 */
+	private boolean dropIfExpired(final Message message) {
+		if (!message.isExpired()) {
+			return false;
+		}
+		expiredCounts.computeIfAbsent(message.getType(), topic -> new AtomicLong(0)).incrementAndGet();
+		LOGGER.trace("dropped expired message on topic " + message.getType());
+		return true;
+	}
+
+	/**
+	 * @return Number of requests and events dropped because their time to live elapsed, per topic
+	 */
+	public Map<MessageType, Long> getExpiredMessageCounts() {
+		final Map<MessageType, Long> counts = new HashMap<>();
+		for (final Map.Entry<MessageType, AtomicLong> entry : expiredCounts.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return counts;
+	}
+
+	/**
+	 * @return State of the circuit breakers of peers requests were sent to
+	 */
+	public Map<ModuleUniqueId, CircuitBreakerState> getCircuitBreakerStates() {
+		checkAlive();
+		return msgService.getCircuitBreakerStates();
+	}
+
+	/**
+	 * @return Notify latency and poll strategy counters of the messaging poller thread
+	 */
+	public PollerStats getPollerStats() {
+		checkAlive();
+		return msgService.getPollerStats();
+	}
+
+	/**
+	 * @return Round trip time percentiles of the peers pinged at least once successfully, empty if probing is disabled
+	 */
+	public Map<ModuleUniqueId, RttStats> getPeerRttStats() {
+		checkAlive();
+		return rttProber.getStats();
+	}
+
+	/**
+	 * @return Number of received requests not handled because canceled by their requester
+	 */
+	public long getCanceledRequestCount() {
+		return canceledRequestCount.get();
+	}
+
 	private void handleRequest(final MessageEventNotification messageNotification) {
 		final OutReply reply;
 
+		// Canceled after leaving the queue
+		if (!msgService.isReplyPending(messageNotification.id)) {
+			canceledRequestCount.incrementAndGet();
+			return;
+		}
+
 		synchronized (selfModule.INTERNAL_getInternalMutex()) {
 			if (selfModule.isEnabled()) {
                 try {
-                    reply = selfModule.handleRequest(messageNotification.message, messageNotification.sender);
+                    reply = invokeRequestHandler(messageNotification.handler, messageNotification.message, messageNotification.sender);
                 }
                 catch (Exception exc) {
                     LOGGER.error("Exception when calling handleRequest while DELIVERY_REQUEST", exc);
@@ -453,17 +1082,32 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 			}
 		}
 
+		if (reply != null && reply.getType() == OutReply.ReplyType.IMMEDIATE_REPLY) {
+			replyCache.store(messageNotification.message, reply.getReplyImmediate());
+		}
+		sendOutReply(reply, messageNotification.id);
+	}
+
+	/**
+	 * Sends or prepares sending of the reply returned by a request handler
+	 */
+	private void sendOutReply(final OutReply reply, final ExternalRequestIdentity id) {
 		if (reply == null) {
 			return;
 		}
 
 		switch (reply.getType()) {
 			case IMMEDIATE_REPLY:
-				msgService.sendReply(messageNotification.id, reply.getReplyImmediate());
+				msgService.sendReply(id, reply.getReplyImmediate());
 				break;
 
 			case FUTURE_REPLY:
-				reply.injectFutureInfo(msgService, messageNotification.id);
+			case STREAM_REPLY:
+				reply.injectFutureInfo(msgService, id);
+				break;
+
+			case ERROR_REPLY:
+				msgService.sendErrorReply(id, reply.getError());
 				break;
 
 			case NO_REPLY:
@@ -474,6 +1118,9 @@ public class ModuleEventDispatcher implements ISubscriptionHandler, IMessagingCo
 	private void handleEvent(final MessageEventNotification messageNotification) {
 		for (final SubscriptionHandle handle : moduleSubscriptionHandlers.values()) {
 			if (handle.getTopic().containsTopic(messageNotification.message.getType())) {
+				if (handle.getGroup() != null && !groupMembership.isOwner(handle.getGroup(), handle.getKeyFunction(), messageNotification.message, messageNotification.sender)) {
+					continue;
+				}
 				synchronized (selfModule.INTERNAL_getInternalMutex()) {
 					if (selfModule.isEnabled()) {
                         try {
@@ -0,0 +1,135 @@
+package jmf.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import jmf.data.InReply;
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.util.PrefixIndex;
+
+/**
+ * Client side cache of replies to requests of cacheable topics. Replies are cached per scope (the target or the target
+ * type of the request), requests hitting the cache are answered without sending them.
+ * Entries are invalidated by events on an invalidation topic published by the serving module when the data changes:
+ * the event payload is the prefix of the request topics to invalidate, an empty payload or one longer than a topic
+ * (e.g. the changed data itself) invalidates all request topics using the invalidation topic.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class NearCache {
+
+	private final ReplyCache cache = new ReplyCache();
+	/** Request topic prefixes by their invalidation topic */
+	private final PrefixIndex<List<MessageType>> invalidationTopics = new PrefixIndex<>();
+	/** Incremented on every invalidation, replies of requests sent before an invalidation are not cached */
+	private final AtomicLong invalidationCount = new AtomicLong(0);
+
+	private final AtomicLong hitCount = new AtomicLong(0);
+	private final AtomicLong missCount = new AtomicLong(0);
+
+
+	/**
+	 * Caches replies to requests with the given topic prefix until invalidated by an event on the invalidation topic
+	 *
+	 * @param ttl
+	 * 		maximum time a reply stays cached
+	 * @param maxBytes
+	 * 		maximum size of cached requests and replies of the prefix
+	 */
+	synchronized void enable(final MessageType topic, final MessageType invalidationTopic, final long ttl, final TimeUnit unit, final long maxBytes) {
+		cache.setCacheable(topic, ttl, unit, maxBytes);
+		List<MessageType> topics = invalidationTopics.get(invalidationTopic);
+		topics = topics == null ? new ArrayList<>() : new ArrayList<>(topics);
+		topics.add(topic);
+		invalidationTopics.put(invalidationTopic, topics);
+	}
+
+	/**
+	 * @return True if requests with the given topic are cached
+	 */
+	boolean isEnabled(final MessageType topic) {
+		return cache.isCacheable(topic);
+	}
+
+	/**
+	 * Answers the request from the cache or sends it and caches its reply
+	 *
+	 * @param scope
+	 * 		scope of the request, target or target type
+	 * @param sender
+	 * 		sends the request on a cache miss
+	 */
+	InReply request(final Object scope, final Message msg, final Supplier<InReply> sender) {
+		final Message cached = cache.lookup(scope, msg);
+		if (cached != null) {
+			hitCount.incrementAndGet();
+			return new InReply(CompletableFuture.completedFuture(cached), manual -> {
+			});
+		}
+		missCount.incrementAndGet();
+
+		final long invalidationsBefore = invalidationCount.get();
+		final InReply reply = sender.get();
+		reply.toCompletableFuture().thenAccept(message -> {
+			synchronized (this) {
+				if (invalidationCount.get() == invalidationsBefore) {
+					cache.store(scope, msg, message);
+				}
+			}
+		});
+		return reply;
+	}
+
+	/**
+	 * Handles an event if it is an invalidation
+	 *
+	 * @return True if the event was an invalidation event
+	 */
+	boolean onEvent(final Message event) {
+		final List<MessageType> topics = invalidationTopics.findLongestPrefix(event.getType());
+		if (topics == null) {
+			return false;
+		}
+		synchronized (this) {
+			invalidationCount.incrementAndGet();
+			final byte[] prefix = event.getData();
+			if (prefix.length > 0 && prefix.length <= MessageType.MESSAGE_ID_BYTES) {
+				cache.invalidate(new MessageType(prefix));
+			} else {
+				for (final MessageType topic : topics) {
+					cache.invalidate(topic);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Invalidation topics to subscribe to
+	 */
+	List<MessageType> getInvalidationTopics() {
+		return new ArrayList<>(invalidationTopics.toMap().keySet());
+	}
+
+	long getHitCount() {
+		return hitCount.get();
+	}
+
+	long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Removes all cached replies and cacheable declarations
+	 */
+	synchronized void clear() {
+		cache.clear();
+		invalidationTopics.clear();
+		invalidationCount.incrementAndGet();
+	}
+}
@@ -0,0 +1,229 @@
+package jmf.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.util.PrefixIndex;
+
+/**
+ * Cache of replies to requests of idempotent topics. Modules declare topic prefixes as cacheable with a time to live
+ * and a maximum size, identical requests (same topic and payload, from any sender) are then answered with the cached
+ * reply without running the module again. Each cacheable prefix has its own LRU cache bounded by the sum of
+ * request and reply bytes. Entries can be scoped, e.g. by the peer that sent the reply.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ReplyCache {
+
+	/**
+	 * Request identity: scope, topic and payload
+	 */
+	private static final class Key {
+		private final Object scope;
+		private final MessageType type;
+		private final byte[] data;
+		private final int hash;
+
+		private Key(final Object scope, final Message request) {
+			this.scope = scope;
+			this.type = request.getType();
+			this.data = request.getData();
+			this.hash = (Objects.hashCode(scope) * 31 + type.hashCode()) * 31 + Arrays.hashCode(data);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			final Key key = (Key) o;
+			return hash == key.hash && Objects.equals(scope, key.scope) && type.equals(key.type) && Arrays.equals(data, key.data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static final class Entry {
+		private final Message reply;
+		private final long expiresNanos;
+		private final long size;
+
+		private Entry(final Message reply, final long expiresNanos, final long size) {
+			this.reply = reply;
+			this.expiresNanos = expiresNanos;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Cache of one cacheable topic prefix
+	 */
+	private static final class Region {
+		private final long ttlNanos;
+		private final long maxBytes;
+		/** Entries in access order, least recently used first */
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+		private long bytes = 0;
+
+		private Region(final long ttlNanos, final long maxBytes) {
+			this.ttlNanos = ttlNanos;
+			this.maxBytes = maxBytes;
+		}
+
+		private synchronized Message get(final Key key) {
+			final Entry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (System.nanoTime() - entry.expiresNanos >= 0) {
+				remove(key);
+				return null;
+			}
+			return entry.reply;
+		}
+
+		private synchronized void put(final Key key, final Message reply) {
+			final long size = key.type.getMatch().length + key.data.length + reply.getType().getMatch().length + reply.getData().length;
+			if (size > maxBytes) {
+				return;
+			}
+			remove(key);
+			entries.put(key, new Entry(reply, System.nanoTime() + ttlNanos, size));
+			bytes += size;
+			// Evict least recently used
+			final Iterator<Entry> it = entries.values().iterator();
+			while (bytes > maxBytes && it.hasNext()) {
+				bytes -= it.next().size;
+				it.remove();
+			}
+		}
+
+		private void remove(final Key key) {
+			final Entry removed = entries.remove(key);
+			if (removed != null) {
+				bytes -= removed.size;
+			}
+		}
+
+		private synchronized void invalidate(final MessageType prefix) {
+			final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+			while (it.hasNext()) {
+				final Map.Entry<Key, Entry> entry = it.next();
+				if (prefix.containsTopic(entry.getKey().type)) {
+					bytes -= entry.getValue().size;
+					it.remove();
+				}
+			}
+		}
+
+		private synchronized long getBytes() {
+			return bytes;
+		}
+	}
+
+	private final PrefixIndex<Region> regions = new PrefixIndex<>();
+
+
+	/**
+	 * Declares requests with the given topic prefix as cacheable, replaces a previous declaration and its entries
+	 *
+	 * @param ttl
+	 * 		time a reply stays valid
+	 * @param maxBytes
+	 * 		maximum size of all cached requests and replies of the prefix
+	 */
+	public void setCacheable(final MessageType topic, final long ttl, final TimeUnit unit, final long maxBytes) {
+		regions.put(topic, new Region(unit.toNanos(ttl), maxBytes));
+	}
+
+	/**
+	 * Removes the cacheable declaration of a topic prefix and its cached replies
+	 */
+	public void removeCacheable(final MessageType topic) {
+		regions.remove(topic);
+	}
+
+	/**
+	 * Contract: Thread safe
+	 *
+	 * @return the cached valid reply to an identical request, null if there is none
+	 */
+	public Message lookup(final Message request) {
+		return lookup(null, request);
+	}
+
+	/**
+	 * Contract: Thread safe
+	 *
+	 * @param scope
+	 * 		scope of the request, null for none
+	 * @return the cached valid reply to an identical request in the same scope, null if there is none
+	 */
+	public Message lookup(final Object scope, final Message request) {
+		final Region region = regions.findLongestPrefix(request.getType());
+		if (region == null) {
+			return null;
+		}
+		return region.get(new Key(scope, request));
+	}
+
+	/**
+	 * Caches the reply to a request if its topic is cacheable
+	 */
+	public void store(final Message request, final Message reply) {
+		store(null, request, reply);
+	}
+
+	/**
+	 * Caches the reply to a request in the given scope if its topic is cacheable
+	 */
+	public void store(final Object scope, final Message request, final Message reply) {
+		final Region region = regions.findLongestPrefix(request.getType());
+		if (region != null) {
+			region.put(new Key(scope, request), reply);
+		}
+	}
+
+	/**
+	 * @return True if requests with the given topic are cacheable
+	 */
+	public boolean isCacheable(final MessageType topic) {
+		return regions.findLongestPrefix(topic) != null;
+	}
+
+	/**
+	 * Removes all cached replies to requests with the given topic prefix
+	 */
+	public void invalidate(final MessageType topic) {
+		for (final Region region : regions.values()) {
+			region.invalidate(topic);
+		}
+	}
+
+	/**
+	 * @return Size of cached requests and replies of the cacheable prefix, 0 if the prefix is not cacheable
+	 */
+	public long getBytes(final MessageType topic) {
+		final Region region = regions.get(topic);
+		return region == null ? 0 : region.getBytes();
+	}
+
+	/**
+	 * Removes all cacheable declarations and cached replies
+	 */
+	public void clear() {
+		regions.clear();
+	}
+}
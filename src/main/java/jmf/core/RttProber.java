@@ -0,0 +1,174 @@
+package jmf.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jmf.data.InReply;
+import jmf.data.Message;
+import jmf.data.ModuleUniqueId;
+import jmf.data.RttStats;
+
+/**
+ * Pings the known peers with system ping requests and keeps the round trip times of the last pings to each peer.
+ * A peer is pinged again only after its last ping was replied or timed out, a timed out ping is canceled and not
+ * recorded. Peers requests are not sent to right now, e.g. because of an open circuit breaker, are skipped.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class RttProber {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RttProber.class);
+
+	/** Number of round trip times kept per peer */
+	static final int WINDOW = 128;
+
+	/**
+	 * Last round trip times to one peer, ring buffer
+	 */
+	private static final class Samples {
+		private final long[] rtts = new long[WINDOW];
+		private int count = 0;
+		private int next = 0;
+
+		synchronized void add(final long rttNanos) {
+			rtts[next] = rttNanos;
+			next = (next + 1) % rtts.length;
+			if (count < rtts.length) {
+				count++;
+			}
+		}
+
+		synchronized RttStats toStats() {
+			if (count == 0) {
+				return null;
+			}
+			final long[] sorted = Arrays.copyOf(rtts, count);
+			Arrays.sort(sorted);
+			return new RttStats(count, sorted[0], percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted[count - 1]);
+		}
+
+		private static long percentile(final long[] sorted, final int percent) {
+			// Nearest rank
+			final int rank = (sorted.length * percent + 99) / 100;
+			return sorted[Math.max(rank, 1) - 1];
+		}
+	}
+
+	/**
+	 * Ping waiting for its reply, keeps the reply referenced to not cancel it
+	 */
+	private static final class Ping {
+		private final InReply reply;
+		private final long sentNanos;
+
+		private Ping(final InReply reply, final long sentNanos) {
+			this.reply = reply;
+			this.sentNanos = sentNanos;
+		}
+	}
+
+	private final BiFunction<ModuleUniqueId, Message, InReply> sender;
+	private final Predicate<ModuleUniqueId> probeable;
+	private final Message ping;
+	private final long timeoutNanos;
+
+	private final ConcurrentMap<ModuleUniqueId, Samples> samples = new ConcurrentHashMap<>();
+	private final ConcurrentMap<ModuleUniqueId, Ping> pending = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @param sender
+	 * 		sends a request to a peer
+	 * @param probeable
+	 * 		tells if a peer is pinged now, false e.g. if a ping would open a socket
+	 * @param ping
+	 * 		the ping request
+	 * @param timeoutNanos
+	 * 		time after that a ping without reply is canceled
+	 */
+	RttProber(final BiFunction<ModuleUniqueId, Message, InReply> sender, final Predicate<ModuleUniqueId> probeable, final Message ping, final long timeoutNanos) {
+		this.sender = sender;
+		this.probeable = probeable;
+		this.ping = ping;
+		this.timeoutNanos = timeoutNanos;
+	}
+
+	void addPeer(final ModuleUniqueId peer) {
+		samples.putIfAbsent(peer, new Samples());
+	}
+
+	void removePeer(final ModuleUniqueId peer) {
+		samples.remove(peer);
+		final Ping ping = pending.remove(peer);
+		if (ping != null) {
+			ping.reply.cancelRequest();
+		}
+	}
+
+	/**
+	 * Pings all peers without ping waiting for its reply, called periodically. Does not throw, failed pings are logged.
+	 */
+	void probe() {
+		final long now = System.nanoTime();
+		for (final ModuleUniqueId peer : samples.keySet()) {
+			try {
+				probe(peer, now);
+			} catch (final RuntimeException e) {
+				LOGGER.warn("failed to ping " + peer, e);
+			}
+		}
+	}
+
+	private void probe(final ModuleUniqueId peer, final long now) {
+		final Ping last = pending.get(peer);
+		if (last != null) {
+			if (now - last.sentNanos < timeoutNanos) {
+				return;
+			}
+			pending.remove(peer, last);
+			last.reply.cancelRequest();
+		}
+		if (!probeable.test(peer)) {
+			return;
+		}
+
+		final long sentNanos = System.nanoTime();
+		final Ping sent = new Ping(sender.apply(peer, ping), sentNanos);
+		pending.put(peer, sent);
+		sent.reply.toCompletableFuture().whenComplete((reply, throwable) -> {
+			final long rttNanos = System.nanoTime() - sentNanos;
+			if (pending.remove(peer, sent) && throwable == null) {
+				record(peer, rttNanos);
+			}
+		});
+	}
+
+	void record(final ModuleUniqueId peer, final long rttNanos) {
+		final Samples peerSamples = samples.get(peer);
+		if (peerSamples != null) {
+			peerSamples.add(rttNanos);
+		}
+	}
+
+	/**
+	 * @return Round trip time percentiles of the peers with at least one replied ping
+	 */
+	Map<ModuleUniqueId, RttStats> getStats() {
+		final Map<ModuleUniqueId, RttStats> stats = new HashMap<>();
+		for (final Map.Entry<ModuleUniqueId, Samples> entry : samples.entrySet()) {
+			final RttStats peerStats = entry.getValue().toStats();
+			if (peerStats != null) {
+				stats.put(entry.getKey(), peerStats);
+			}
+		}
+		return stats;
+	}
+}
@@ -0,0 +1,120 @@
+package jmf.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import jmf.data.InReply;
+import jmf.data.Message;
+import jmf.data.ModuleUniqueId;
+import jmf.data.ScatterGatherResult;
+import jmf.messaging.IMessagingService;
+
+/**
+ * One request sent to multiple targets in parallel. Collects the replies until all targets replied or the deadline
+ * passed and completes the result future with the replies received so far. Requests still outstanding at the
+ * deadline are canceled. Replies are collected on the receiving thread, no thread waits for them.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class ScatterGatherRequest {
+
+	private final CompletableFuture<ScatterGatherResult> result = new CompletableFuture<>();
+	/** Requests by target, referenced until completion to keep the requests outstanding */
+	private final Map<ModuleUniqueId, InReply> requests = new HashMap<>();
+	private final Map<ModuleUniqueId, Message> replies = new HashMap<>();
+	/** Targets whose request failed */
+	private final Set<ModuleUniqueId> failed = new HashSet<>();
+	private ScheduledFuture<?> deadlineTask;
+	private boolean done = false;
+
+
+	/**
+	 * Sends the request to all targets
+	 *
+	 * @return future completed with the replies when all targets replied or the deadline passed
+	 */
+	static CompletableFuture<ScatterGatherResult> start(final IMessagingService msgService, final ScheduledExecutorService timer,
+														final List<ModuleUniqueId> targets, final Message msg, final long timeout, final TimeUnit unit) {
+		final ScatterGatherRequest request = new ScatterGatherRequest();
+		if (targets.isEmpty()) {
+			request.complete();
+			return request.result;
+		}
+		synchronized (request) {
+			for (final ModuleUniqueId target : targets) {
+				request.requests.put(target, msgService.sendRequest(target, msg));
+			}
+			request.deadlineTask = timer.schedule(request::complete, timeout, unit);
+		}
+		// Register callbacks outside the lock, replies received already complete immediately
+		for (final Map.Entry<ModuleUniqueId, InReply> entry : request.copyRequests().entrySet()) {
+			entry.getValue().toCompletableFuture().whenComplete((reply, error) -> request.onReply(entry.getKey(), reply));
+		}
+		return request.result;
+	}
+
+	private synchronized Map<ModuleUniqueId, InReply> copyRequests() {
+		return new HashMap<>(requests);
+	}
+
+	/**
+	 * Called when the request to a target completed
+	 *
+	 * @param reply
+	 * 		the reply or null if the request failed
+	 */
+	private void onReply(final ModuleUniqueId target, final Message reply) {
+		synchronized (this) {
+			if (done) {
+				return;
+			}
+			requests.remove(target);
+			if (reply != null) {
+				replies.put(target, reply);
+			} else {
+				failed.add(target);
+			}
+			if (!requests.isEmpty()) {
+				return;
+			}
+		}
+		complete();
+	}
+
+	/**
+	 * Completes the result with the replies received so far, cancels the remaining requests.
+	 * The result is completed outside the lock, its callbacks run on this thread.
+	 */
+	private void complete() {
+		final ScatterGatherResult gathered;
+		final List<InReply> outstanding;
+		synchronized (this) {
+			if (done) {
+				return;
+			}
+			done = true;
+			if (deadlineTask != null) {
+				deadlineTask.cancel(false);
+			}
+
+			final Set<ModuleUniqueId> missing = new HashSet<>(failed);
+			missing.addAll(requests.keySet());
+			outstanding = new ArrayList<>(requests.values());
+			requests.clear();
+			gathered = new ScatterGatherResult(replies, missing);
+		}
+
+		result.complete(gathered);
+		for (final InReply request : outstanding) {
+			request.cancelRequest();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package jmf.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jmf.data.InReply;
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.data.ModuleUniqueId;
+import jmf.messaging.IMessagingService;
+
+/**
+ * Coalesces identical requests in flight: a request to the same target with the same topic and payload as a request
+ * still waiting for its reply is not sent again but shares the reply of the request in flight.
+ * Every caller gets its own InReply, the request in flight is only canceled when all its callers canceled.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class SingleFlightGroup {
+
+	/**
+	 * Identity of a request: target, topic and payload
+	 */
+	private static final class Key {
+		private final ModuleUniqueId target;
+		private final MessageType type;
+		private final byte[] data;
+		private final int hash;
+
+		private Key(final ModuleUniqueId target, final Message msg) {
+			this.target = target;
+			this.type = msg.getType();
+			this.data = msg.getData();
+			this.hash = Objects.hash(target, type) * 31 + Arrays.hashCode(data);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			final Key key = (Key) o;
+			return hash == key.hash && target.equals(key.target) && type.equals(key.type) && Arrays.equals(data, key.data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * Request sent and its callers
+	 */
+	private static final class Flight {
+		private final Key key;
+		private final InReply request;
+		private int callers = 1;
+
+		private Flight(final Key key, final InReply request) {
+			this.key = key;
+			this.request = request;
+		}
+	}
+
+	private final IMessagingService msgService;
+	/** Requests in flight, referenced until their reply is received to keep them outstanding */
+	private final Map<Key, Flight> flights = new HashMap<>();
+
+	private final AtomicLong sentCount = new AtomicLong(0);
+	private final AtomicLong coalescedCount = new AtomicLong(0);
+
+
+	SingleFlightGroup(final IMessagingService msgService) {
+		this.msgService = msgService;
+	}
+
+	/**
+	 * Sends a request or joins an identical request in flight
+	 *
+	 * @return Reply of this caller, completed with the reply of the shared request
+	 */
+	InReply sendRequest(final ModuleUniqueId target, final Message msg) {
+		final Key key = new Key(target, msg);
+		final Flight flight;
+		synchronized (this) {
+			final Flight inFlight = flights.get(key);
+			if (inFlight != null) {
+				inFlight.callers++;
+				coalescedCount.incrementAndGet();
+				flight = inFlight;
+			} else {
+				flight = new Flight(key, msgService.sendRequest(target, msg));
+				flights.put(key, flight);
+				sentCount.incrementAndGet();
+			}
+		}
+		flight.request.toCompletableFuture().whenComplete((reply, error) -> finish(flight));
+
+		final CompletableFuture<Message> future = new CompletableFuture<>();
+		flight.request.toCompletableFuture().whenComplete((reply, error) -> {
+			if (error != null) {
+				future.completeExceptionally(error);
+			} else {
+				future.complete(reply);
+			}
+		});
+
+		final AtomicBoolean released = new AtomicBoolean(false);
+		return new InReply(future, manual -> {
+			if (released.compareAndSet(false, true)) {
+				release(flight);
+			}
+		});
+	}
+
+	/**
+	 * @return Number of requests sent
+	 */
+	long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * @return Number of requests not sent but sharing the reply of an identical request in flight
+	 */
+	long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * Forgets a completed request, later identical requests are sent again
+	 */
+	private synchronized void finish(final Flight flight) {
+		flights.remove(flight.key, flight);
+	}
+
+	/**
+	 * Called when a caller canceled, cancels the request if it was the last caller
+	 */
+	private void release(final Flight flight) {
+		synchronized (this) {
+			flight.callers--;
+			if (flight.callers > 0 || flight.request.isDone()) {
+				return;
+			}
+			flights.remove(flight.key, flight);
+		}
+		flight.request.cancelRequest();
+	}
+}
@@ -0,0 +1,15 @@
+package jmf.data;
+
+/**
+ * State of the circuit breaker of requests to a peer
+ * Created on 10/19/26.
+ * @author agent
+ */
+public enum CircuitBreakerState {
+	/** Requests are sent */
+	CLOSED,
+	/** Too many requests failed, requests fail immediately */
+	OPEN,
+	/** Open time elapsed, a single probe request is sent to detect recovery */
+	HALF_OPEN
+}
@@ -1,9 +1,15 @@
 package jmf.data;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
 
 import jmf.messaging.IMessagingService;
 
@@ -15,20 +21,30 @@ import jmf.messaging.IMessagingService;
  */
 public class InReply {
 
-	private final long requestId;
 	private final Future<Message> future;
-	private final IMessagingService zmqService;
+	/** Completion stage of the future, adapted on first use if the future is no CompletableFuture */
+	private CompletableFuture<Message> completableFuture;
+	/** Cancels the request, called with true if canceled manually, false if canceled because garbage collected */
+	private final Consumer<Boolean> canceler;
 
 	public InReply(final long requestId, final Future<Message> future, final IMessagingService zmqService) {
-		this.requestId = requestId;
+		this(future, manual -> zmqService.cancelRequest(requestId, manual));
+	}
+
+	/**
+	 * Creates a reply for a request not directly tracked by the messaging service
+	 * @param future Future completed with the reply
+	 * @param canceler Called when the request is canceled, with true if canceled manually
+	 */
+	public InReply(final Future<Message> future, final Consumer<Boolean> canceler) {
 		this.future = future;
-		this.zmqService = zmqService;
+		this.canceler = canceler;
 	}
 
 	@Override
 	protected void finalize() throws Throwable {
 		super.finalize();
-		zmqService.cancelRequest(requestId, false);
+		canceler.accept(false);
 		future.cancel(false);
 	}
 
@@ -55,6 +71,58 @@ public class InReply {
 		return future.get(timeout, unit);
 	}
 
+    /**
+     * Waits until receiving reply and decodes its payload
+     * @param parser Parser for the reply payload
+     * @return Decoded reply payload
+     * @throws ExecutionException
+     * @throws InterruptedException
+     * @throws InvalidProtocolBufferException if the reply payload can not be parsed
+     */
+	public <T> T get(final Parser<T> parser) throws ExecutionException, InterruptedException, InvalidProtocolBufferException {
+		return future.get().getDecoded(parser);
+	}
+
+    /**
+     * Waits until receiving reply with timeout and decodes its payload
+     * @param parser Parser for the reply payload
+     * @param timeout Specifies timeout
+     * @param unit Unit if timeout time
+     * @return Decoded reply payload
+     * @throws InterruptedException
+     * @throws TimeoutException
+     * @throws ExecutionException
+     * @throws InvalidProtocolBufferException if the reply payload can not be parsed
+     */
+	public <T> T get(final Parser<T> parser, final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException, ExecutionException, InvalidProtocolBufferException {
+		return future.get(timeout, unit).getDecoded(parser);
+	}
+
+    /**
+     * Returns the future completed with the reply, allows to continue asynchronously instead of waiting.
+     * The request is canceled when this InReply is garbage collected, keep it referenced until the reply is received.
+     * If created with a future that is no CompletableFuture, a thread of the common pool waits for it.
+     */
+	public synchronized CompletableFuture<Message> toCompletableFuture() {
+		if (completableFuture == null) {
+			if (future instanceof CompletableFuture) {
+				completableFuture = (CompletableFuture<Message>) future;
+			} else {
+				completableFuture = CompletableFuture.supplyAsync(() -> {
+					try {
+						return future.get();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new CompletionException(e);
+					} catch (final ExecutionException e) {
+						throw new CompletionException(e.getCause());
+					}
+				});
+			}
+		}
+		return completableFuture;
+	}
+
     /**
      * Returns future.isDone value
      */
@@ -66,7 +134,7 @@ public class InReply {
      * Cancels ZMQ request and request future
      */
 	public void cancelRequest() {
-		zmqService.cancelRequest(requestId, true);
+		canceler.accept(true);
 		future.cancel(false);
 	}
 
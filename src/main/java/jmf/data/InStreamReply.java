@@ -0,0 +1,153 @@
+package jmf.data;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jmf.messaging.IMessagingService;
+
+/**
+ * Represents an incoming streamed reply.
+ * Iterates over the reply chunks in the order sent, blocking until the next chunk is received.
+ * The replying peer only sends as many chunks as granted by this reply: chunks consumed by the iterator are granted
+ * again, so at most window chunks are buffered at any time.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class InStreamReply implements Iterator<Message> {
+
+	/** Marks the end of the stream in the chunk queue */
+	private static final Message END = new Message(new byte[0], new byte[0]);
+
+	private final long requestId;
+	private final IMessagingService service;
+	private final int window;
+
+	private final LinkedBlockingQueue<Message> chunks = new LinkedBlockingQueue<>();
+	/** Next chunk taken from the queue by hasNext, null if none taken */
+	private Message next;
+	/** Chunks consumed and not yet granted again */
+	private int consumed = 0;
+	private volatile Throwable error;
+	private volatile boolean canceled = false;
+
+
+	/**
+	 * @param window
+	 * 		maximum number of chunks in flight, granted to the replying peer with the request
+	 */
+	public InStreamReply(final long requestId, final IMessagingService service, final int window) {
+		this.requestId = requestId;
+		this.service = service;
+		this.window = window;
+	}
+
+	@Override
+	protected void finalize() throws Throwable {
+		super.finalize();
+		if (!canceled) {
+			service.cancelRequest(requestId, false);
+		}
+	}
+
+	/**
+	 * Waits until the next chunk or the end of the stream is received
+	 *
+	 * @return True if there is a next chunk
+	 * @throws IllegalStateException
+	 * 		if the stream failed
+	 */
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = chunks.take();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for stream chunk", e);
+			}
+		}
+		return checkNext();
+	}
+
+	/**
+	 * Waits until the next chunk or the end of the stream is received or the timeout elapsed
+	 *
+	 * @return True if there is a next chunk, false if the stream ended or the timeout elapsed
+	 * @throws IllegalStateException
+	 * 		if the stream failed
+	 */
+	public boolean hasNext(final long timeout, final TimeUnit unit) throws InterruptedException {
+		if (next == null) {
+			next = chunks.poll(timeout, unit);
+			if (next == null) {
+				return false;
+			}
+		}
+		return checkNext();
+	}
+
+	private boolean checkNext() {
+		if (next != END) {
+			return true;
+		}
+		// Keep end marker for further calls
+		if (error != null) {
+			throw new IllegalStateException("stream failed", error);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next chunk, waits until it is received
+	 */
+	@Override
+	public Message next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		final Message chunk = next;
+		next = null;
+
+		// Grant consumed chunks again when half of the window is consumed
+		consumed++;
+		if (consumed >= Math.max(1, window / 2)) {
+			service.grantStreamCredit(requestId, consumed);
+			consumed = 0;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Returns true if the end of the stream was received
+	 */
+	public boolean isDone() {
+		return next == END || chunks.peek() == END;
+	}
+
+	/**
+	 * Cancels the stream, the replying peer stops sending chunks. Chunks not yet consumed are dropped.
+	 */
+	public void cancelRequest() {
+		canceled = true;
+		service.cancelRequest(requestId, true);
+		chunks.clear();
+		next = END;
+	}
+
+	/**
+	 * Called by the messaging service when a chunk is received
+	 */
+	public void onChunk(final Message chunk) {
+		chunks.add(chunk);
+	}
+
+	/**
+	 * Called by the messaging service when the stream ended, with the error if it failed
+	 */
+	public void onEnd(final Throwable error) {
+		this.error = error;
+		chunks.add(END);
+	}
+}
@@ -2,9 +2,16 @@ package jmf.data;
 
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+
+import jmf.util.Pair;
 
 /**
- * A message to send or received, a pair of message type and data
+ * A message to send or received, a pair of message type and data.
+ * Caches the payload decoded by the last used parser so that multiple handlers of one message decode it only once.
  * Created on 7/25/15.
  * @author Jan Strauße
  */
@@ -12,15 +19,48 @@ public class Message {
 
 	private final MessageType type;
 	private final byte[] data;
+	/** Sequence number stamped by the publisher of a received event, 0 if unknown */
+	private final long sequence;
+	/** True if the message has a deadline, expired messages are dropped by receivers */
+	private final boolean hasDeadline;
+	/** Deadline in System.nanoTime of the local JVM, only valid if hasDeadline */
+	private final long deadlineNanos;
+	/** Last used parser and the object it decoded from data, null if never decoded */
+	private volatile Pair<Parser<?>, Object> decoded;
 
 	public Message(final MessageType type, final byte[] data) {
-		this.type = type;
-		this.data = data;
+		this(type, data, 0);
 	}
 
 	public Message(final byte[] type, final byte[] data) {
-		this.type = new MessageType(type);
+		this(new MessageType(type), data, 0);
+	}
+
+	public Message(final MessageType type, final byte[] data, final long sequence) {
+		this(type, data, sequence, false, 0);
+	}
+
+	private Message(final MessageType type, final byte[] data, final long sequence, final boolean hasDeadline, final long deadlineNanos) {
+		this.type = type;
 		this.data = data;
+		this.sequence = sequence;
+		this.hasDeadline = hasDeadline;
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	/**
+	 * Returns a copy of this message expiring after the given time to live. Receivers drop requests and events
+	 * expired before they are handled. The remaining time to live is sent, clocks of peers need not be synchronized.
+	 */
+	public Message withTtl(final long ttl, final TimeUnit unit) {
+		return new Message(type, data, sequence, true, System.nanoTime() + unit.toNanos(ttl));
+	}
+
+	/**
+	 * Returns a copy of this message with the given sequence number, sharing the payload and keeping the time to live
+	 */
+	public Message withSequence(final long sequence) {
+		return new Message(type, data, sequence, hasDeadline, deadlineNanos);
 	}
 
 	public MessageType getType() {
@@ -31,6 +71,58 @@ public class Message {
 		return data;
 	}
 
+	/**
+	 * @return Sequence number of a received event, counted per publisher and topic, 0 if the publisher does not stamp sequence numbers
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return True if the message has a time to live
+	 */
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+
+	/**
+	 * @return Remaining time to live, 0 if expired, Long.MAX_VALUE if the message has no time to live
+	 */
+	public long getRemainingTtl(final TimeUnit unit) {
+		if (!hasDeadline) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * @return True if the time to live of the message elapsed
+	 */
+	public boolean isExpired() {
+		return hasDeadline && System.nanoTime() - deadlineNanos >= 0;
+	}
+
+	/**
+	 * Returns the payload decoded with the given parser.
+	 * The payload is parsed only the first time, later calls with the same parser return the cached object.
+	 *
+	 * @param parser
+	 * 		the parser to decode the payload with
+	 * @return the decoded payload
+	 * @throws InvalidProtocolBufferException
+	 * 		if the payload can not be parsed
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getDecoded(final Parser<T> parser) throws InvalidProtocolBufferException {
+		final Pair<Parser<?>, Object> cached = decoded;
+		if (cached != null && cached.first == parser) {
+			return (T) cached.second;
+		}
+		final T value = parser.parseFrom(data);
+		decoded = Pair.of(parser, value);
+		return value;
+	}
+
 	@Override
 	public boolean equals(final Object o) {
 		if (this == o) {
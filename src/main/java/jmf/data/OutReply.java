@@ -1,5 +1,8 @@
 package jmf.data;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import jmf.messaging.IMessagingService;
 import jmf.messaging.implementation.ExternalRequestIdentity;
 
@@ -7,7 +10,9 @@ import jmf.messaging.implementation.ExternalRequestIdentity;
  * Represents an outgoing reply message.
  * Can be NO_REPLY (no reply will be sent),
  * IMMEDIATE_REPLY (reply now) or
- * FUTURE_REPLY (allows replying in the future)
+ * FUTURE_REPLY (allows replying in the future) or
+ * STREAM_REPLY (reply in chunks in the future) or
+ * ERROR_REPLY (fail the request at the requester)
  * Improvment idea: Factory + different classes
  * Created on 7/25/15.
  * @author Tobias Korb
@@ -29,7 +34,11 @@ public class OutReply {
         /** Send reply in the future */
 		FUTURE_REPLY,
         /** Send no reply */
-		NO_REPLY
+		NO_REPLY,
+        /** Send reply in chunks in the future, flow controlled by the requester */
+		STREAM_REPLY,
+        /** Fail the request now, the reply future of the requester completes exceptionally */
+		ERROR_REPLY
 	}
 
     /**
@@ -42,10 +51,17 @@ public class OutReply {
     /// Type of how to reply
 	private final ReplyType type;
 	private Message replyImmediate;
+	private String error;
     /// State indicating if reply is finished or open
-	private State state;
-	private ExternalRequestIdentity requestId;
-	private IMessagingService service;
+	private volatile State state;
+	private volatile ExternalRequestIdentity requestId;
+	private volatile IMessagingService service;
+	/** Future reply sent by the handler before the service was injected */
+	private Message queuedReply;
+	/** Stream chunks sent by the handler before the service was injected */
+	private final List<Message> queuedChunks = new ArrayList<>();
+	/** True if the handler finished the stream before the service was injected */
+	private boolean queuedFinish = false;
 
     /**
      * Private constructor, use create methods to construct instance
@@ -78,6 +94,16 @@ public class OutReply {
 		return new OutReply(immediate);
 	}
 
+    /**
+     * Creates and returns an Error reply
+     * @param error Error text the reply future of the requester fails with
+     */
+	public static OutReply createErrorReply(final String error) {
+		final OutReply reply = new OutReply(ReplyType.ERROR_REPLY, State.FINISHED);
+		reply.error = error;
+		return reply;
+	}
+
     /**
      * Creates and returns a Future reply
      */
@@ -85,13 +111,38 @@ public class OutReply {
 		return new OutReply(ReplyType.FUTURE_REPLY, State.OPEN);
 	}
 
+    /**
+     * Creates and returns a Stream reply
+     */
+	public static OutReply createStreamReply() {
+		return new OutReply(ReplyType.STREAM_REPLY, State.OPEN);
+	}
 
+
+    /**
+     * Binds the reply to its request, called after the handler returned the reply.
+     * Replies and chunks the handler sent before are sent now.
+     */
 	public void injectFutureInfo(final IMessagingService service, final ExternalRequestIdentity requestId) {
 		synchronized (serviceLock) {
-			this.service = service;
 			this.requestId = requestId;
+			this.service = service;
 
-			serviceLock.notify();
+			if (queuedReply != null) {
+				service.sendReply(requestId, queuedReply);
+				queuedReply = null;
+			}
+			for (final Message chunk : queuedChunks) {
+				if (!service.sendStreamChunk(requestId, chunk)) {
+					state = State.FINISHED;
+					break;
+				}
+			}
+			queuedChunks.clear();
+			if (queuedFinish && state == State.OPEN) {
+				service.finishStream(requestId);
+				state = State.FINISHED;
+			}
 		}
 	}
 
@@ -99,27 +150,76 @@ public class OutReply {
 		return type;
 	}
 
+	public String getError() {
+		return error;
+	}
+
+    /**
+     * Allows handlers of long running future and stream replies to stop working on requests no one waits for
+     * @return True if the requester canceled the request before the reply was sent
+     */
+	public boolean isCancelled() {
+		// Not synchronized, a sender blocked waiting for stream credit holds the lock
+		final IMessagingService boundService = service;
+		return state == State.OPEN && boundService != null && !boundService.isReplyPending(requestId);
+	}
+
     /**
-     * Used to send a future reply
+     * Used to send a future reply. Queued if called by the handler before returning the reply.
      * @param message Reply message
      */
 	public void sendFutureReply(final Message message) {
-		if (state == State.FINISHED) {
-			return;
+		synchronized (serviceLock) {
+			if (state == State.FINISHED) {
+				return;
+			}
+			state = State.FINISHED;
+			if (service == null) {
+				queuedReply = message;
+				return;
+			}
+			service.sendReply(requestId, message);
 		}
+	}
 
+    /**
+     * Used to send a chunk of a stream reply, blocks until the requester accepts further chunks.
+     * Queued without blocking if called by the handler before returning the reply.
+     * @param chunk Reply chunk
+     * @return False if the stream is finished or was canceled by the requester
+     */
+	public boolean sendStreamChunk(final Message chunk) {
 		synchronized (serviceLock) {
-			try {
-				while (service == null) {
-					serviceLock.wait();
-				}
-			} catch (final InterruptedException e) {
-				e.printStackTrace();
+			if (state == State.FINISHED || queuedFinish) {
+				return false;
 			}
+			if (service == null) {
+				queuedChunks.add(chunk);
+				return true;
+			}
+			if (!service.sendStreamChunk(requestId, chunk)) {
+				state = State.FINISHED;
+				return false;
+			}
+			return true;
 		}
+	}
 
-		service.sendReply(requestId, message);
-		state = State.FINISHED;
+    /**
+     * Used to end a stream reply after its last chunk
+     */
+	public void finishStream() {
+		synchronized (serviceLock) {
+			if (state == State.FINISHED) {
+				return;
+			}
+			if (service == null) {
+				queuedFinish = true;
+				return;
+			}
+			service.finishStream(requestId);
+			state = State.FINISHED;
+		}
 	}
 
 }
@@ -0,0 +1,78 @@
+package jmf.data;
+
+/**
+ * Counters of the messaging poller thread showing the cost of waking it up.
+ * The notify latency counters only time the notifications queued for the poller within this process (subscription
+ * changes, membership changes, deliveries from services in this process), from queuing until the poller reads them.
+ * Messages of peers arriving on the sockets or shared memory rings are not timed.
+ * Created on 10/19/26.
+ *
+ * @author agent
+ */
+public class PollerStats {
+
+	private final long notifyCount;
+	private final long meanNotifyLatencyNanos;
+	private final long maxNotifyLatencyNanos;
+	private final long blockingPollCount;
+	private final long spinHitCount;
+	private final long yieldHitCount;
+
+	public PollerStats(final long notifyCount, final long meanNotifyLatencyNanos, final long maxNotifyLatencyNanos, final long blockingPollCount, final long spinHitCount, final long yieldHitCount) {
+		this.notifyCount = notifyCount;
+		this.meanNotifyLatencyNanos = meanNotifyLatencyNanos;
+		this.maxNotifyLatencyNanos = maxNotifyLatencyNanos;
+		this.blockingPollCount = blockingPollCount;
+		this.spinHitCount = spinHitCount;
+		this.yieldHitCount = yieldHitCount;
+	}
+
+    /**
+     * @return Number of notifications read by the poller
+     */
+	public long getNotifyCount() {
+		return notifyCount;
+	}
+
+    /**
+     * @return Mean time from queuing a notification until the poller read it (in nanoseconds)
+     */
+	public long getMeanNotifyLatencyNanos() {
+		return meanNotifyLatencyNanos;
+	}
+
+    /**
+     * @return Longest time from queuing a notification until the poller read it (in nanoseconds)
+     */
+	public long getMaxNotifyLatencyNanos() {
+		return maxNotifyLatencyNanos;
+	}
+
+    /**
+     * @return Number of times the poller blocked waiting for input
+     */
+	public long getBlockingPollCount() {
+		return blockingPollCount;
+	}
+
+    /**
+     * @return Number of times the poller found input while spinning, without blocking
+     */
+	public long getSpinHitCount() {
+		return spinHitCount;
+	}
+
+    /**
+     * @return Number of times the poller found input after yielding its core, without blocking
+     */
+	public long getYieldHitCount() {
+		return yieldHitCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PollerStats{notifies=" + notifyCount + ", meanNotifyLatency=" + meanNotifyLatencyNanos + "ns, maxNotifyLatency="
+				+ maxNotifyLatencyNanos + "ns, blockingPolls=" + blockingPollCount + ", spinHits=" + spinHitCount
+				+ ", yieldHits=" + yieldHitCount + "}";
+	}
+}
@@ -0,0 +1,104 @@
+package jmf.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import jmf.messaging.IRequestHandlerRegistry;
+
+/**
+ * Handle representing a request handler registered for a topic prefix.
+ * Can be used to unregister the handler and to read its invocation statistics.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class RequestHandlerHandle {
+
+	private final IRequestHandlerRegistry registry;
+	private final MessageType topic;
+	private final BiFunction<Message, ModuleUniqueId, OutReply> handler;
+	/** True if the handler is invoked directly on the receiving thread instead of the delivery thread */
+	private final boolean inline;
+
+	private final AtomicLong invocationCount = new AtomicLong(0);
+	private final AtomicLong totalLatencyNanos = new AtomicLong(0);
+	private final AtomicLong maxLatencyNanos = new AtomicLong(0);
+
+	public RequestHandlerHandle(final IRequestHandlerRegistry registry, final MessageType topic, final BiFunction<Message, ModuleUniqueId, OutReply> handler, final boolean inline) {
+		this.registry = registry;
+		this.topic = topic;
+		this.handler = handler;
+		this.inline = inline;
+	}
+
+    /**
+     * Unregisters this request handler
+     */
+	public void unregister() {
+		registry.unregisterRequestHandler(this);
+	}
+
+    /**
+     * @return Topic prefix this handler is registered for
+     */
+	public MessageType getTopic() {
+		return topic;
+	}
+
+    /**
+     * @return Request handler callback
+     */
+	public BiFunction<Message, ModuleUniqueId, OutReply> getHandler() {
+		return handler;
+	}
+
+    /**
+     * @return True if the handler is invoked directly on the receiving thread
+     */
+	public boolean isInline() {
+		return inline;
+	}
+
+    /**
+     * Records one handler invocation
+     * @param latencyNanos Time spent in the handler (in nanoseconds)
+     */
+	public void recordInvocation(final long latencyNanos) {
+		invocationCount.incrementAndGet();
+		totalLatencyNanos.addAndGet(latencyNanos);
+		long max;
+		while (latencyNanos > (max = maxLatencyNanos.get())) {
+			if (maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+				break;
+			}
+		}
+	}
+
+    /**
+     * @return Number of requests handled by this handler
+     */
+	public long getInvocationCount() {
+		return invocationCount.get();
+	}
+
+    /**
+     * @return Total time spent in this handler (in nanoseconds)
+     */
+	public long getTotalLatencyNanos() {
+		return totalLatencyNanos.get();
+	}
+
+    /**
+     * @return Longest time spent in one invocation of this handler (in nanoseconds)
+     */
+	public long getMaxLatencyNanos() {
+		return maxLatencyNanos.get();
+	}
+
+    /**
+     * @return Average time spent in one invocation of this handler (in nanoseconds), 0 if never invoked
+     */
+	public long getAverageLatencyNanos() {
+		final long count = invocationCount.get();
+		return count == 0 ? 0 : totalLatencyNanos.get() / count;
+	}
+}
@@ -0,0 +1,14 @@
+package jmf.data;
+
+/**
+ * Options for sending a request
+ * Created on 10/19/26.
+ * @author agent
+ */
+public enum RequestOption {
+	/**
+	 * Single-flight: if an identical request (same target, topic and payload) is already waiting for its reply,
+	 * share its reply instead of sending the request again
+	 */
+	SINGLE_FLIGHT
+}
@@ -0,0 +1,74 @@
+package jmf.data;
+
+/**
+ * Round trip time percentiles of the last pings to one peer, measured from sending the ping request until its reply
+ * is received.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class RttStats {
+
+	private final int sampleCount;
+	private final long minNanos;
+	private final long p50Nanos;
+	private final long p90Nanos;
+	private final long p99Nanos;
+	private final long maxNanos;
+
+	public RttStats(final int sampleCount, final long minNanos, final long p50Nanos, final long p90Nanos, final long p99Nanos, final long maxNanos) {
+		this.sampleCount = sampleCount;
+		this.minNanos = minNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+    /**
+     * @return Number of round trips the percentiles are computed of
+     */
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+    /**
+     * @return Shortest round trip time (in nanoseconds)
+     */
+	public long getMinNanos() {
+		return minNanos;
+	}
+
+    /**
+     * @return Median round trip time (in nanoseconds)
+     */
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+    /**
+     * @return 90th percentile of the round trip times (in nanoseconds)
+     */
+	public long getP90Nanos() {
+		return p90Nanos;
+	}
+
+    /**
+     * @return 99th percentile of the round trip times (in nanoseconds)
+     */
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+    /**
+     * @return Longest round trip time (in nanoseconds)
+     */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "RttStats{samples=" + sampleCount + ", min=" + minNanos + "ns, p50=" + p50Nanos + "ns, p90=" + p90Nanos
+				+ "ns, p99=" + p99Nanos + "ns, max=" + maxNanos + "ns}";
+	}
+}
@@ -0,0 +1,43 @@
+package jmf.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of a scatter-gather request: replies received from the targets until the deadline
+ * and the targets that did not reply in time or failed.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ScatterGatherResult {
+
+	private final Map<ModuleUniqueId, Message> replies;
+	private final Set<ModuleUniqueId> missing;
+
+	public ScatterGatherResult(final Map<ModuleUniqueId, Message> replies, final Set<ModuleUniqueId> missing) {
+		this.replies = Collections.unmodifiableMap(replies);
+		this.missing = Collections.unmodifiableSet(missing);
+	}
+
+    /**
+     * @return Replies by the module that sent them
+     */
+	public Map<ModuleUniqueId, Message> getReplies() {
+		return replies;
+	}
+
+    /**
+     * @return Modules that did not reply before the deadline or whose request failed
+     */
+	public Set<ModuleUniqueId> getMissing() {
+		return missing;
+	}
+
+    /**
+     * @return True if all targets replied
+     */
+	public boolean isComplete() {
+		return missing.isEmpty();
+	}
+}
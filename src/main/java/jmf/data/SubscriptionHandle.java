@@ -1,6 +1,7 @@
 package jmf.data;
 
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import jmf.messaging.ISubscriptionHandler;
 
@@ -18,12 +19,23 @@ public class SubscriptionHandle {
 	private final ISubscriptionHandler unsubscribeHandler;
 	private final MessageType subTopic;
 	private final BiConsumer<Message, ModuleUniqueId> callback;
+	/** Consumer group of the subscription, null if every event is delivered */
+	private final String group;
+	/** Extracts the routing key of events for the consumer group, null for round-robin */
+	private final Function<Message, byte[]> keyFunction;
 
 	public SubscriptionHandle(final ISubscriptionHandler unsubscribeHandler, final MessageType topic, final BiConsumer<Message, ModuleUniqueId> callback) {
+		this(unsubscribeHandler, topic, callback, null, null);
+	}
+
+	public SubscriptionHandle(final ISubscriptionHandler unsubscribeHandler, final MessageType topic, final BiConsumer<Message, ModuleUniqueId> callback,
+							  final String group, final Function<Message, byte[]> keyFunction) {
 		this.subId = unsubscribeHandler.getSubId();
 		this.unsubscribeHandler = unsubscribeHandler;
 		this.subTopic = topic;
 		this.callback = callback;
+		this.group = group;
+		this.keyFunction = keyFunction;
 	}
 
     /**
@@ -48,6 +60,20 @@ public class SubscriptionHandle {
 		return callback;
 	}
 
+    /**
+     * @return Consumer group of this subscription, null if not a group subscription
+     */
+	public String getGroup() {
+		return group;
+	}
+
+    /**
+     * @return Function extracting the routing key of events, null if events are assigned round-robin
+     */
+	public Function<Message, byte[]> getKeyFunction() {
+		return keyFunction;
+	}
+
     /**
      * @return ID of this subscription
      */
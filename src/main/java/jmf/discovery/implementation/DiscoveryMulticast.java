@@ -0,0 +1,190 @@
+package jmf.discovery.implementation;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.ByteString;
+
+import jmf.data.ModuleHandle;
+import jmf.data.ModuleHandleInternal;
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.proto.FrameworkProto;
+
+/**
+ * Socket of the multicast group the peer discovery services send their states to, with the sending and receiving
+ * loops and the handling of state multicasts common to the discovery services.
+ * Created on 10/19/26.
+ *
+ * @author agent
+ */
+final class DiscoveryMulticast {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DiscoveryMulticast.class);
+
+	/** Multicast group to which all peer discovery services subscribe */
+	private static final String MULTICAST_ADDRESS = "239.255.255.250";
+
+	/** Factor to determine peerTimeout which is (multicastFrequency * timeoutFactor) */
+	static final int PEER_TIMEOUT_FACTOR = 4;
+
+	/**
+	 * Receives the multicasts of the group
+	 */
+	interface Receiver {
+		void onMulticast(byte[] multicast, String senderIp) throws IOException;
+	}
+
+	private final InetAddress multicastAddress;
+	private final MulticastSocket socket;
+	private final short udpPort;
+	private final boolean joined;
+
+	private DiscoveryMulticast(final InetAddress multicastAddress, final MulticastSocket socket, final short udpPort, final boolean joined) {
+		this.multicastAddress = multicastAddress;
+		this.socket = socket;
+		this.udpPort = udpPort;
+		this.joined = joined;
+	}
+
+	/**
+	 * Opens a socket on the UDP port receiving the multicasts of the group
+	 */
+	static DiscoveryMulticast join(final short udpPort) throws IOException {
+		final InetAddress multicastAddress = InetAddress.getByName(MULTICAST_ADDRESS);
+		final MulticastSocket socket = new MulticastSocket(new InetSocketAddress(udpPort));
+		try {
+			socket.setReuseAddress(true);
+			socket.joinGroup(multicastAddress);
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+		return new DiscoveryMulticast(multicastAddress, socket, udpPort, true);
+	}
+
+	/**
+	 * Opens a socket only sending to the group
+	 */
+	static DiscoveryMulticast sender(final short udpPort) throws IOException {
+		return new DiscoveryMulticast(InetAddress.getByName(MULTICAST_ADDRESS), new MulticastSocket(), udpPort, false);
+	}
+
+	/**
+	 * Leaves the group and closes the socket, a running receive loop ends if its running flag was cleared before
+	 */
+	void close() {
+		if (joined) {
+			try {
+				socket.leaveGroup(multicastAddress);
+			} catch (final IOException e) {
+				LOGGER.warn("stop: IOException while leaving multicast-group: ", e);
+			}
+		}
+		socket.close();
+	}
+
+	/**
+	 * Multicasts the state of a module
+	 */
+	void sendState(final ModuleHandleInternal selfHandle, final ModuleLifecycleState state, final byte[] additionalState, final int multicastIdentifier) throws IOException {
+		final FrameworkProto.StateBroadcast.Builder multicastBuilder = FrameworkProto.StateBroadcast.newBuilder();
+		multicastBuilder.setZmqPubPort(selfHandle.getSelfPubPort());
+		multicastBuilder.setZmqRepPort(selfHandle.getSelfRepPort());
+		multicastBuilder.setVersion(Short.toUnsignedInt(selfHandle.getVersion()));
+		multicastBuilder.setLifecycleState(state.ordinal());
+		multicastBuilder.setAdditionalStateInfos(ByteString.copyFrom(additionalState));
+		multicastBuilder.setMulticastIdentifier(multicastIdentifier);
+		multicastBuilder.setSenderName(selfHandle.getName());
+		multicastBuilder.setSenderId(selfHandle.getUniqueId().getSenderProto());
+
+		final byte[] msg = multicastBuilder.build().toByteArray();
+		socket.send(new DatagramPacket(msg, msg.length, multicastAddress, udpPort));
+	}
+
+	/**
+	 * Runs the task every multicast period until not running anymore
+	 */
+	static void sendLoop(final BooleanSupplier running, final int multicastFrequency, final Runnable task) {
+		LOGGER.info("sendMulticastLoop started");
+		while (running.getAsBoolean()) {
+			task.run();
+
+			try {
+				Thread.sleep(multicastFrequency);
+			} catch (final InterruptedException e) {
+				if (running.getAsBoolean()) {
+					LOGGER.error("sendMulticastLoop interrupted: ", e);
+				}
+			}
+		}
+		LOGGER.info("sendMulticastLoop finished");
+	}
+
+	/**
+	 * Receives multicasts until not running anymore and the socket is closed
+	 *
+	 * @param maxLength
+	 * 		longest multicast received, longer ones are truncated
+	 */
+	void receiveLoop(final BooleanSupplier running, final int maxLength, final Receiver receiver) {
+		LOGGER.info("receiveMulticastLoop started");
+		final byte[] buffer = new byte[maxLength];
+		while (running.getAsBoolean()) {
+			try {
+				final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+				socket.receive(packet);
+				receiver.onMulticast(Arrays.copyOf(buffer, packet.getLength()), packet.getAddress().getHostAddress());
+			} catch (final Exception e) {
+				if (running.getAsBoolean()) {
+					LOGGER.warn("receiveMulticastLoop Exception: ", e);
+				}
+			}
+		}
+		LOGGER.info("receiveMulticastsLoop finished");
+	}
+
+	/**
+	 * Creates the handle of a peer discovered by its state multicast
+	 */
+	static ModuleHandleInternal createPeerHandle(final FrameworkProto.StateBroadcast stateMulticast, final String senderIp) {
+		final String pubAddr = "tcp://" + senderIp + ":" + stateMulticast.getZmqPubPort();
+		final String repAddr = "tcp://" + senderIp + ":" + stateMulticast.getZmqRepPort();
+		return new ModuleHandleInternal(new ModuleUniqueId(stateMulticast.getSenderId()), (short) stateMulticast.getVersion(), stateMulticast.getSenderName(), pubAddr, repAddr, false);
+	}
+
+	/**
+	 * @return Additional state of a state multicast, empty if it has none
+	 */
+	static byte[] getAdditionalState(final FrameworkProto.StateBroadcast stateMulticast) {
+		return stateMulticast.hasAdditionalStateInfos() ? stateMulticast.getAdditionalStateInfos().toByteArray() : new byte[0];
+	}
+
+	/**
+	 * Adds a multicast period to the timeouts of peers
+	 *
+	 * @return Peers without state multicast for longer than the peer timeout
+	 */
+	static List<ModuleHandleInternal> updatePeerTimeouts(final Collection<ModuleHandle> peers, final int multicastFrequency) {
+		final List<ModuleHandleInternal> timedOutModules = new ArrayList<>();
+		for (final ModuleHandle peer : peers) {
+			final ModuleHandleInternal peerHandle = (ModuleHandleInternal) peer;
+			peerHandle.incrementPeerTimeout(multicastFrequency);
+			if (peerHandle.getPeerTimeout() > multicastFrequency * PEER_TIMEOUT_FACTOR) {
+				timedOutModules.add(peerHandle);
+			}
+		}
+		return timedOutModules;
+	}
+}
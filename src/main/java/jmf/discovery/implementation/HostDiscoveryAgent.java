@@ -0,0 +1,252 @@
+package jmf.discovery.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.proto.FrameworkProto;
+
+/**
+ * Receives the state multicasts of all peers once per host and publishes them in a memory mapped peer table.
+ * Module processes of the host read the table with a MappedPeerDiscoveryService instead of receiving multicasts.
+ * The agent does not send multicasts itself, it only tracks peers and times them out like a PeerDiscoveryService.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class HostDiscoveryAgent {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HostDiscoveryAgent.class);
+
+	/** Default number of peers the table can hold */
+	public static final int DEFAULT_SLOTS = 256;
+
+	/** Default frequency peers send state multicasts with, the one of the ZMF core (in ms) */
+	public static final int DEFAULT_FREQUENCY = 1000;
+
+	/**
+	 * Table entry of a peer
+	 */
+	private static final class Peer {
+		final int slot;
+		String senderIp;
+		byte[] multicast;
+		long lastSeen;
+
+		Peer(final int slot) {
+			this.slot = slot;
+		}
+	}
+
+	private final File tableFile;
+	private final short udpPort;
+	private final int multicastFrequency;
+	private final int slots;
+
+	/** Known peers, only accessed while holding lockTable */
+	private final Map<ModuleUniqueId, Peer> peers = new HashMap<>();
+	private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+	private final Object lockTable = new Object();
+
+	private MappedPeerTable table;
+	private DiscoveryMulticast multicast;
+	private volatile boolean running = false;
+	private Thread receiveMulticastsThread;
+	private Thread timeoutThread;
+
+	/**
+	 * @param tableFile
+	 * 		file of the peer table, should be on a memory backed file system like /dev/shm
+	 * @param udpPort
+	 * 		UDP port for state multicast communication
+	 * @param multicastFrequency
+	 * 		Frequency peers send state multicasts with (in milliseconds between multicasts)
+	 * @param slots
+	 * 		maximum number of peers in the table
+	 */
+	public HostDiscoveryAgent(final File tableFile, final short udpPort, final int multicastFrequency, final int slots) {
+		this.tableFile = tableFile;
+		this.udpPort = udpPort;
+		this.multicastFrequency = multicastFrequency;
+		this.slots = slots;
+	}
+
+	/**
+	 * Creates the table and starts receiving multicasts
+	 *
+	 * @return Returns true if start successful, false otherwise
+	 */
+	public synchronized boolean start() {
+		if (running) {
+			LOGGER.warn("start: Already started - cancel start");
+			return false;
+		}
+		try {
+			table = MappedPeerTable.create(tableFile, slots);
+			multicast = DiscoveryMulticast.join(udpPort);
+		} catch (final IOException e) {
+			LOGGER.error("start: ERROR due to Exception: ", e);
+			if (table != null) {
+				table.close();
+			}
+			return false;
+		}
+
+		synchronized (lockTable) {
+			peers.clear();
+			freeSlots.clear();
+			for (int slot = 0; slot < slots; slot++) {
+				freeSlots.add(slot);
+			}
+		}
+		running = true;
+		receiveMulticastsThread = new Thread(this::receiveMulticastsLoop, "discoveryAgent Receiver");
+		receiveMulticastsThread.start();
+		timeoutThread = new Thread(this::timeoutLoop, "discoveryAgent Timeout");
+		timeoutThread.start();
+		LOGGER.info("HostDiscoveryAgent started, table: " + tableFile);
+		return true;
+	}
+
+	/**
+	 * Stops receiving and deletes the table, readers see an empty table
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			LOGGER.warn("stop: Not started - cancel stop");
+			return;
+		}
+		running = false;
+		multicast.close();
+		timeoutThread.interrupt();
+		try {
+			receiveMulticastsThread.join();
+			timeoutThread.join();
+		} catch (final InterruptedException e) {
+			LOGGER.error("Failed to join agent threads", e);
+		}
+		table.close();
+		LOGGER.info("HostDiscoveryAgent stopped");
+	}
+
+	private void receiveMulticastsLoop() {
+		multicast.receiveLoop(() -> running, MappedPeerTable.MAX_MULTICAST_LENGTH, this::processIncomingMulticast);
+	}
+
+	private void processIncomingMulticast(final byte[] multicast, final String senderIp) throws InvalidProtocolBufferException {
+		final FrameworkProto.StateBroadcast stateMulticast = FrameworkProto.StateBroadcast.parseFrom(multicast);
+		final ModuleUniqueId peerId = new ModuleUniqueId(stateMulticast.getSenderId());
+		final boolean dead = stateMulticast.getLifecycleState() == ModuleLifecycleState.Dead.ordinal();
+
+		synchronized (lockTable) {
+			Peer peer = peers.get(peerId);
+			if (dead) {
+				if (peer != null) {
+					removePeer(peerId, peer);
+				}
+				return;
+			}
+			if (peer == null) {
+				if (freeSlots.isEmpty()) {
+					LOGGER.warn("peer table full, ignoring peer " + peerId);
+					return;
+				}
+				peer = new Peer(freeSlots.poll());
+				peers.put(peerId, peer);
+				LOGGER.debug("New Peer registered: " + peerId);
+			}
+			peer.lastSeen = System.currentTimeMillis();
+
+			// Most multicasts are unchanged heartbeats
+			if (senderIp.equals(peer.senderIp) && Arrays.equals(multicast, peer.multicast)) {
+				return;
+			}
+			peer.senderIp = senderIp;
+			peer.multicast = multicast;
+			table.beginWrite();
+			final boolean written = table.writeSlot(peer.slot, senderIp, multicast);
+			table.endWrite();
+			if (!written) {
+				LOGGER.warn("multicast too large for peer table, ignoring peer " + peerId);
+				removePeer(peerId, peer);
+			}
+		}
+	}
+
+	/**
+	 * Must hold lockTable
+	 */
+	private void removePeer(final ModuleUniqueId peerId, final Peer peer) {
+		LOGGER.debug("Peer dead: " + peerId);
+		peers.remove(peerId);
+		table.beginWrite();
+		table.clearSlot(peer.slot);
+		table.endWrite();
+		freeSlots.add(peer.slot);
+	}
+
+	/**
+	 * Removes peers without multicast for the peer timeout and signals readers that the agent is alive
+	 */
+	private void timeoutLoop() {
+		final long peerTimeout = (long) multicastFrequency * DiscoveryMulticast.PEER_TIMEOUT_FACTOR;
+		while (running) {
+			final long now = System.currentTimeMillis();
+			synchronized (lockTable) {
+				final Iterator<Map.Entry<ModuleUniqueId, Peer>> it = peers.entrySet().iterator();
+				while (it.hasNext()) {
+					final Map.Entry<ModuleUniqueId, Peer> entry = it.next();
+					if (now - entry.getValue().lastSeen > peerTimeout) {
+						LOGGER.debug("Peer timed out: " + entry.getKey());
+						it.remove();
+						table.beginWrite();
+						table.clearSlot(entry.getValue().slot);
+						table.endWrite();
+						freeSlots.add(entry.getValue().slot);
+					}
+				}
+				table.touch(now);
+			}
+
+			try {
+				Thread.sleep(multicastFrequency);
+			} catch (final InterruptedException e) {
+				if (running) {
+					LOGGER.error("timeoutLoop interrupted: ", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs an agent until the process is terminated
+	 *
+	 * @param args
+	 * 		table file, optional UDP port (default 4213), optional number of slots (default 256)
+	 */
+	public static void main(final String[] args) throws InterruptedException {
+		if (args.length < 1) {
+			System.err.println("usage: HostDiscoveryAgent <table file> [udp port] [slots]");
+			System.exit(1);
+		}
+		final short udpPort = args.length > 1 ? Short.parseShort(args[1]) : 4213;
+		final int slots = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SLOTS;
+
+		final HostDiscoveryAgent agent = new HostDiscoveryAgent(new File(args[0]), udpPort, DEFAULT_FREQUENCY, slots);
+		if (!agent.start()) {
+			System.exit(1);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(agent::stop));
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,204 @@
+package jmf.discovery.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jmf.data.ModuleHandle;
+import jmf.data.ModuleHandleInternal;
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.discovery.IPeerDiscoveryCore;
+import jmf.discovery.IPeerDiscoveryService;
+import jmf.discovery.IPeerRegistry;
+
+/**
+ * Peer discovery reading the peer table of the host discovery agent instead of receiving multicasts.
+ * The state of the own module is still multicast. The table is checked for changes periodically by reading its
+ * sequence number, only changed tables are copied and compared to notify the core.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class MappedPeerDiscoveryService implements IPeerDiscoveryService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedPeerDiscoveryService.class);
+
+	/** Interval to check the table for changes (in ms) */
+	private static final int TABLE_CHECK_INTERVAL = 20;
+
+	private final File tableFile;
+	/** Identifies the multicasts of this instance in the table */
+	private final int multicastIdentifier = new Random().nextInt();
+
+	private IPeerDiscoveryCore core;
+	private ModuleHandleInternal selfHandle;
+	private ModuleLifecycleState selfState;
+	private byte[] selfAdditionalState;
+
+	private MappedPeerTable table;
+	private MappedPeerRegistry peerRegistry;
+	private DiscoveryMulticast multicast;
+	private int multicastFrequency;
+
+	/** States and handles of the peers the core was notified about, only accessed by the table thread */
+	private final Map<ModuleUniqueId, ModuleLifecycleState> knownStates = new HashMap<>();
+	private final Map<ModuleUniqueId, ModuleHandle> knownHandles = new HashMap<>();
+
+	private volatile boolean running = false;
+	private Thread tableThread;
+
+	/**
+	 * @param tableFile
+	 * 		peer table file of the host discovery agent
+	 */
+	public MappedPeerDiscoveryService(final File tableFile) {
+		this.tableFile = tableFile;
+	}
+
+	/**
+	 * Checks if the agent writing a peer table is alive, a table left behind by a crashed agent stays empty
+	 *
+	 * @param multicastFrequency
+	 * 		Frequency the agent writes its heartbeat with (in milliseconds)
+	 * @return True if the agent wrote its heartbeat within the agent timeout
+	 */
+	public static boolean isAgentAlive(final File tableFile, final int multicastFrequency) {
+		try {
+			final MappedPeerTable table = MappedPeerTable.open(tableFile);
+			return System.currentTimeMillis() - table.getHeartbeat() <= (long) multicastFrequency * DiscoveryMulticast.PEER_TIMEOUT_FACTOR;
+		} catch (final IOException e) {
+			LOGGER.warn("can not read peer table " + tableFile, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Opens the peer table and starts multicasting the module state.
+	 * Does not wait for peer discovery even if requested, the agent already discovered the peers.
+	 */
+	@Override
+	public boolean start(final IPeerDiscoveryCore core, final ModuleHandleInternal selfHandle, final int broadcastFrequency, final short udpPort, final boolean peerDiscoveryWait, final boolean disableEqualModuleInterconnect) {
+		if (running) {
+			LOGGER.warn("start: Already stared - cancel start");
+			return false;
+		}
+		try {
+			this.core = core;
+			this.selfHandle = selfHandle;
+			this.selfState = ModuleLifecycleState.Dead;
+			this.selfAdditionalState = new byte[0];
+			this.multicastFrequency = broadcastFrequency;
+
+			this.table = MappedPeerTable.open(tableFile);
+			this.peerRegistry = new MappedPeerRegistry(table, selfHandle.getUniqueId(), multicastIdentifier, disableEqualModuleInterconnect,
+					(long) broadcastFrequency * DiscoveryMulticast.PEER_TIMEOUT_FACTOR);
+			this.multicast = DiscoveryMulticast.sender(udpPort);
+		} catch (final IOException e) {
+			LOGGER.error("start: ERROR due to Exception: ", e);
+			return false;
+		}
+
+		knownStates.clear();
+		knownHandles.clear();
+		running = true;
+		checkTable();
+		tableThread = new Thread(this::tableLoop, "peerDiscovery Table");
+		tableThread.start();
+		LOGGER.info("MappedPeerDiscoveryService started, table: " + tableFile);
+		return true;
+	}
+
+	@Override
+	public void stop() {
+		if (!running) {
+			LOGGER.warn("stop: Not started - cancel stop");
+			return;
+		}
+		running = false;
+		try {
+			tableThread.join();
+		} catch (final InterruptedException e) {
+			LOGGER.error("Failed to join table thread", e);
+		}
+		multicast.close();
+		LOGGER.info("MappedPeerDiscoveryService stopped");
+	}
+
+	@Override
+	public synchronized void updateSelfState(final ModuleLifecycleState state) {
+		this.selfState = state;
+	}
+
+	@Override
+	public synchronized void updateSelfAdditionalState(final byte[] additionalState) {
+		this.selfAdditionalState = additionalState;
+	}
+
+	@Override
+	public synchronized void sendStateMulticast() {
+		if (!running) {
+			return;
+		}
+		try {
+			multicast.sendState(selfHandle, selfState, selfAdditionalState, multicastIdentifier);
+		} catch (final Exception e) {
+			LOGGER.error("sendMulticast failed due to Exception: ", e);
+		}
+	}
+
+	@Override
+	public IPeerRegistry getPeerRegistry() {
+		return peerRegistry;
+	}
+
+	private void tableLoop() {
+		long nextMulticast = 0;
+		while (running) {
+			final long now = System.currentTimeMillis();
+			if (now >= nextMulticast) {
+				sendStateMulticast();
+				nextMulticast = now + multicastFrequency;
+			}
+			checkTable();
+
+			try {
+				Thread.sleep(TABLE_CHECK_INTERVAL);
+			} catch (final InterruptedException e) {
+				LOGGER.error("tableLoop interrupted: ", e);
+			}
+		}
+	}
+
+	/**
+	 * Compares the table with the peers the core knows and notifies the core about changes
+	 */
+	private void checkTable() {
+		final MappedPeerRegistry.Snapshot snapshot = peerRegistry.current();
+
+		final Map<ModuleUniqueId, ModuleHandle> peers = snapshot.view.getAllPeersCopy(false);
+		for (final ModuleUniqueId peerId : knownHandles.keySet().toArray(new ModuleUniqueId[0])) {
+			final ModuleHandle peer = peers.get(peerId);
+			// A peer with a new handle restarted with other addresses
+			if (peer != knownHandles.get(peerId)) {
+				LOGGER.debug("Peer dead: " + peerId);
+				final ModuleLifecycleState lastState = knownStates.remove(peerId);
+				core.peerStateChange((ModuleHandleInternal) knownHandles.remove(peerId), ModuleLifecycleState.Dead, lastState);
+			}
+		}
+		for (final ModuleHandle peer : peers.values()) {
+			final ModuleLifecycleState state = snapshot.registry.getPeerState(peer);
+			final ModuleLifecycleState lastState = knownStates.getOrDefault(peer.getUniqueId(), ModuleLifecycleState.Dead);
+			if (state != lastState) {
+				LOGGER.debug("Peer state changed: " + peer.getUniqueId() + " to " + state);
+				knownStates.put(peer.getUniqueId(), state);
+				knownHandles.put(peer.getUniqueId(), peer);
+				core.peerStateChange((ModuleHandleInternal) peer, state, lastState);
+			}
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package jmf.discovery.implementation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import jmf.data.ModuleHandle;
+import jmf.data.ModuleHandleInternal;
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.discovery.IPeerRegistry;
+import jmf.proto.FrameworkProto;
+
+/**
+ * Peer registry of one module read from the peer table of the host discovery agent.
+ * Queries use a snapshot of the table that is only rebuilt after the table changed, checking for changes reads the
+ * sequence number of the table without locking. The module itself, identified by its multicast identifier, is not
+ * part of the snapshot. If the agent stopped signaling the registry is empty, as if all peers timed out.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class MappedPeerRegistry implements IPeerRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedPeerRegistry.class);
+
+	/**
+	 * Registry built from the table at one sequence number
+	 */
+	static final class Snapshot {
+		final long sequence;
+		final boolean agentAlive;
+		final PeerRegistry registry;
+		final PeerRegistryView view;
+
+		Snapshot(final long sequence, final boolean agentAlive, final PeerRegistry registry, final PeerRegistryView view) {
+			this.sequence = sequence;
+			this.agentAlive = agentAlive;
+			this.registry = registry;
+			this.view = view;
+		}
+	}
+
+	private final MappedPeerTable table;
+	private final ModuleUniqueId selfId;
+	private final int multicastIdentifier;
+	private final boolean hideSameType;
+	/** Time without heartbeat of the agent after which the table is considered empty */
+	private final long agentTimeout;
+
+	private volatile Snapshot snapshot;
+	private final Object lockRefresh = new Object();
+
+	MappedPeerRegistry(final MappedPeerTable table, final ModuleUniqueId selfId, final int multicastIdentifier, final boolean hideSameType, final long agentTimeout) {
+		this.table = table;
+		this.selfId = selfId;
+		this.multicastIdentifier = multicastIdentifier;
+		this.hideSameType = hideSameType;
+		this.agentTimeout = agentTimeout;
+		this.snapshot = createSnapshot(-1, false, new PeerRegistry());
+	}
+
+	/**
+	 * @return Snapshot of the current table content, rebuilt if the table changed
+	 */
+	Snapshot current() {
+		final Snapshot cached = snapshot;
+		final long sequence = table.getSequence();
+		final boolean agentAlive = System.currentTimeMillis() - table.getHeartbeat() <= agentTimeout;
+		if (cached.sequence == sequence && cached.agentAlive == agentAlive) {
+			return cached;
+		}
+		synchronized (lockRefresh) {
+			if (snapshot == cached) {
+				snapshot = agentAlive ? readSnapshot(cached) : createSnapshot(sequence, false, new PeerRegistry());
+			}
+			return snapshot;
+		}
+	}
+
+	private Snapshot readSnapshot(final Snapshot previous) {
+		final long[] sequence = new long[1];
+		final List<MappedPeerTable.Entry> entries = table.read(sequence);
+		if (entries == null) {
+			// Writer stuck in a write, keep the last consistent state
+			return previous;
+		}
+
+		final PeerRegistry registry = new PeerRegistry();
+		for (final MappedPeerTable.Entry entry : entries) {
+			final FrameworkProto.StateBroadcast stateMulticast;
+			try {
+				stateMulticast = FrameworkProto.StateBroadcast.parseFrom(entry.multicast);
+			} catch (final InvalidProtocolBufferException e) {
+				LOGGER.warn("invalid multicast in peer table", e);
+				continue;
+			}
+			final ModuleUniqueId peerId = new ModuleUniqueId(stateMulticast.getSenderId());
+			if (peerId.equals(selfId) && stateMulticast.getMulticastIdentifier() == multicastIdentifier) {
+				continue;
+			}
+
+			final String pubAddr = "tcp://" + entry.senderIp + ":" + stateMulticast.getZmqPubPort();
+			final String repAddr = "tcp://" + entry.senderIp + ":" + stateMulticast.getZmqRepPort();
+			// Keep handles of unchanged peers so that handles of one peer stay equal between snapshots
+			ModuleHandleInternal handle = (ModuleHandleInternal) previous.registry.getPeerWithId(peerId, false);
+			if (handle == null || !pubAddr.equals(handle.getZmqPubAddr()) || !repAddr.equals(handle.getZmqRepAddr())) {
+				handle = new ModuleHandleInternal(peerId, (short) stateMulticast.getVersion(), stateMulticast.getSenderName(), pubAddr, repAddr, false);
+			}
+			final byte[] additionalState = stateMulticast.hasAdditionalStateInfos() ? stateMulticast.getAdditionalStateInfos().toByteArray() : new byte[0];
+			registry.addModule(handle, ModuleLifecycleState.values()[stateMulticast.getLifecycleState()], additionalState);
+		}
+		return createSnapshot(sequence[0], true, registry);
+	}
+
+	private Snapshot createSnapshot(final long sequence, final boolean agentAlive, final PeerRegistry registry) {
+		// Any entry with the id of this module is another process with the same id
+		final boolean duplicated = registry.containsPeerWithId(selfId, false);
+		return new Snapshot(sequence, agentAlive, registry, new PeerRegistryView(registry, selfId, hideSameType, () -> duplicated));
+	}
+
+	@Override
+	public boolean containsPeerWithId(final ModuleUniqueId id, final boolean onlyActivePeers) {
+		return current().view.containsPeerWithId(id, onlyActivePeers);
+	}
+
+	@Override
+	public ModuleHandle getPeerWithId(final ModuleUniqueId id, final boolean onlyActivePeers) {
+		return current().view.getPeerWithId(id, onlyActivePeers);
+	}
+
+	@Override
+	public List<ModuleHandle> getPeersWithType(final short type, final boolean onlyActivePeers) {
+		return current().view.getPeersWithType(type, onlyActivePeers);
+	}
+
+	@Override
+	public boolean containsPeerWithType(final short type, final boolean onlyActivePeers) {
+		return current().view.containsPeerWithType(type, onlyActivePeers);
+	}
+
+	@Override
+	public ModuleHandle getAnyPeerWithType(final short type, final boolean onlyActivePeers) {
+		return current().view.getAnyPeerWithType(type, onlyActivePeers);
+	}
+
+	@Override
+	public List<ModuleHandle> getPeersWithTypeVersion(final short type, final short version, final boolean onlyActivePeers) {
+		return current().view.getPeersWithTypeVersion(type, version, onlyActivePeers);
+	}
+
+	@Override
+	public boolean containsPeerWithTypeVersion(final short type, final short version, final boolean onlyActivePeers) {
+		return current().view.containsPeerWithTypeVersion(type, version, onlyActivePeers);
+	}
+
+	@Override
+	public ModuleHandle getAnyPeerWithTypeVersion(final short type, final short version, final boolean onlyActivePeers) {
+		return current().view.getAnyPeerWithTypeVersion(type, version, onlyActivePeers);
+	}
+
+	@Override
+	public ModuleLifecycleState getPeerState(final ModuleHandle peerHandle) {
+		return current().view.getPeerState(peerHandle);
+	}
+
+	@Override
+	public byte[] getPeerAdditionalState(final ModuleHandle peerHandle) {
+		return current().view.getPeerAdditionalState(peerHandle);
+	}
+
+	@Override
+	public ConcurrentMap<Short, List<ModuleHandle>> INTERNAL_getAllPeersByType(final boolean onlyActivePeers) {
+		return current().view.INTERNAL_getAllPeersByType(onlyActivePeers);
+	}
+
+	@Override
+	public ConcurrentMap<ModuleUniqueId, ModuleHandle> getAllPeersCopy(final boolean onlyActivePeers) {
+		return current().view.getAllPeersCopy(onlyActivePeers);
+	}
+}
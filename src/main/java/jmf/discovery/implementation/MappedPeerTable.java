@@ -0,0 +1,247 @@
+package jmf.discovery.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import jmf.util.MemoryFences;
+
+/**
+ * Table of peer state multicasts in a memory mapped file, written by the host discovery agent and read by the module
+ * processes of the host without locking.
+ * <p>
+ * Layout: header with magic, slot count, a sequence number and the heartbeat of the agent on separate cache lines,
+ * followed by fixed size slots. A slot holds the sender address and the last state multicast of one peer as received.
+ * <p>
+ * The sequence number is a seqlock: the single writer makes it odd while changing slots and even again afterwards.
+ * Readers copy the slots and retry if the sequence number was odd or changed meanwhile.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class MappedPeerTable {
+
+	/**
+	 * Slot content: sender address and raw state multicast
+	 */
+	static final class Entry {
+		final String senderIp;
+		final byte[] multicast;
+
+		Entry(final String senderIp, final byte[] multicast) {
+			this.senderIp = senderIp;
+			this.multicast = multicast;
+		}
+	}
+
+	private static final int MAGIC = 0x4A4D4650;
+	private static final int OFFSET_MAGIC = 0;
+	private static final int OFFSET_SLOTS = 4;
+	private static final int OFFSET_SEQUENCE = 64;
+	private static final int OFFSET_HEARTBEAT = 128;
+	private static final int HEADER_SIZE = 192;
+
+	/** Maximum length of the sender address */
+	private static final int MAX_IP_LENGTH = 62;
+	/** Maximum length of a state multicast, the receive buffer size of the discovery */
+	static final int MAX_MULTICAST_LENGTH = 1024;
+	/** Slot: used flag, address length, address, multicast length, multicast */
+	private static final int SLOT_SIZE = 1 + 1 + MAX_IP_LENGTH + 4 + MAX_MULTICAST_LENGTH;
+
+	/** Time a reader waits for a write in progress */
+	private static final long MAX_WRITE_WAIT_NANOS = 100_000_000;
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final int slots;
+	private final boolean writer;
+
+	private MappedPeerTable(final File file, final MappedByteBuffer buffer, final int slots, final boolean writer) {
+		this.file = file;
+		this.buffer = buffer;
+		this.slots = slots;
+		this.writer = writer;
+	}
+
+	/**
+	 * Creates the table file of the writer, replacing an existing file
+	 */
+	static MappedPeerTable create(final File file, final int slots) throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("can not replace peer table file " + file);
+		}
+		final MappedByteBuffer buffer = map(file, HEADER_SIZE + slots * SLOT_SIZE);
+		buffer.putInt(OFFSET_SLOTS, slots);
+		buffer.putLong(OFFSET_SEQUENCE, 0);
+		buffer.putLong(OFFSET_HEARTBEAT, System.currentTimeMillis());
+		MemoryFences.storeFence();
+		buffer.putInt(OFFSET_MAGIC, MAGIC);
+		return new MappedPeerTable(file, buffer, slots, true);
+	}
+
+	/**
+	 * Opens the table file created by the writer for reading
+	 */
+	static MappedPeerTable open(final File file) throws IOException {
+		if (!file.exists()) {
+			throw new IOException("peer table file does not exist: " + file);
+		}
+		final MappedByteBuffer buffer = map(file, (int) file.length());
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+			throw new IOException("not an initialized peer table file: " + file);
+		}
+		MemoryFences.loadFence();
+		final int slots = buffer.getInt(OFFSET_SLOTS);
+		if (slots <= 0 || buffer.capacity() < HEADER_SIZE + slots * SLOT_SIZE) {
+			throw new IOException("peer table file with invalid size: " + file);
+		}
+		return new MappedPeerTable(file, buffer, slots, false);
+	}
+
+	private static MappedByteBuffer map(final File file, final int size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (raf.length() < size) {
+				raf.setLength(size);
+			}
+			// The mapping stays valid after closing the channel
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	int getSlotCount() {
+		return slots;
+	}
+
+	/**
+	 * Writer: starts changing slots, readers retry until endWrite
+	 */
+	void beginWrite() {
+		buffer.putLong(OFFSET_SEQUENCE, buffer.getLong(OFFSET_SEQUENCE) + 1);
+		// Odd sequence visible before the slots change
+		MemoryFences.fullFence();
+	}
+
+	/**
+	 * Writer: publishes the changed slots
+	 */
+	void endWrite() {
+		// Slots visible before the even sequence
+		MemoryFences.storeFence();
+		buffer.putLong(OFFSET_SEQUENCE, buffer.getLong(OFFSET_SEQUENCE) + 1);
+	}
+
+	/**
+	 * Writer: sets a slot, only between beginWrite and endWrite
+	 *
+	 * @return False if the address or multicast is too long for a slot
+	 */
+	boolean writeSlot(final int slot, final String senderIp, final byte[] multicast) {
+		final byte[] ip = senderIp.getBytes();
+		if (ip.length > MAX_IP_LENGTH || multicast.length > MAX_MULTICAST_LENGTH) {
+			return false;
+		}
+		((Buffer) buffer).position(HEADER_SIZE + slot * SLOT_SIZE);
+		buffer.put((byte) 1);
+		buffer.put((byte) ip.length);
+		buffer.put(ip);
+		((Buffer) buffer).position(HEADER_SIZE + slot * SLOT_SIZE + 2 + MAX_IP_LENGTH);
+		buffer.putInt(multicast.length);
+		buffer.put(multicast);
+		return true;
+	}
+
+	/**
+	 * Writer: clears a slot, only between beginWrite and endWrite
+	 */
+	void clearSlot(final int slot) {
+		buffer.put(HEADER_SIZE + slot * SLOT_SIZE, (byte) 0);
+	}
+
+	/**
+	 * Writer: signals that the writer is alive
+	 */
+	void touch(final long timeMillis) {
+		buffer.putLong(OFFSET_HEARTBEAT, timeMillis);
+	}
+
+	/**
+	 * @return Time of the last heartbeat of the writer in System.currentTimeMillis
+	 */
+	long getHeartbeat() {
+		return buffer.getLong(OFFSET_HEARTBEAT);
+	}
+
+	/**
+	 * @return Current sequence number, changed by every write
+	 */
+	long getSequence() {
+		final long sequence = buffer.getLong(OFFSET_SEQUENCE);
+		MemoryFences.loadFence();
+		return sequence;
+	}
+
+	/**
+	 * Reader: copies all used slots
+	 *
+	 * @param sequenceOut
+	 * 		receives the sequence number the entries were read at
+	 * @return the entries, null if the writer did not finish a write in time, e.g. because it died while writing
+	 */
+	List<Entry> read(final long[] sequenceOut) {
+		final byte[] copy = new byte[slots * SLOT_SIZE];
+		final long deadline = System.nanoTime() + MAX_WRITE_WAIT_NANOS;
+		while (true) {
+			final long before = getSequence();
+			if ((before & 1) != 0) {
+				if (System.nanoTime() - deadline > 0) {
+					return null;
+				}
+				Thread.yield();
+				continue;
+			}
+			// Copy through a duplicate, the position of the shared buffer is used by the writer
+			final ByteBuffer view = buffer.duplicate();
+			((Buffer) view).position(HEADER_SIZE);
+			view.get(copy);
+			MemoryFences.loadFence();
+			if (buffer.getLong(OFFSET_SEQUENCE) == before) {
+				sequenceOut[0] = before;
+				return parse(copy);
+			}
+		}
+	}
+
+	private List<Entry> parse(final byte[] copy) {
+		final List<Entry> entries = new ArrayList<>();
+		final ByteBuffer view = ByteBuffer.wrap(copy);
+		for (int slot = 0; slot < slots; slot++) {
+			final int offset = slot * SLOT_SIZE;
+			if (copy[offset] == 0) {
+				continue;
+			}
+			final String ip = new String(copy, offset + 2, copy[offset + 1] & 0xFF);
+			final int length = view.getInt(offset + 2 + MAX_IP_LENGTH);
+			final byte[] multicast = new byte[length];
+			System.arraycopy(copy, offset + 2 + MAX_IP_LENGTH + 4, multicast, 0, length);
+			entries.add(new Entry(ip, multicast));
+		}
+		return entries;
+	}
+
+	/**
+	 * The writer deletes the file. The mapping is released when garbage collected.
+	 */
+	void close() {
+		if (writer) {
+			touch(0);
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+}
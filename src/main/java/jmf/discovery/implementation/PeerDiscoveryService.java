@@ -1,24 +1,12 @@
 package jmf.discovery.implementation;
 
-import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.primitives.UnsignedInteger;
-import com.google.protobuf.ByteString;
-
-import jmf.data.ModuleHandle;
 import jmf.data.ModuleHandleInternal;
 import jmf.data.ModuleLifecycleState;
 import jmf.data.ModuleUniqueId;
@@ -68,35 +56,14 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 	 */
 	private final PeerRegistry peerRegistry = new PeerRegistry();
 
-	/**
-	 * MULTICAST_ADDRESS contains the ip address that is uses for the multicast group to which all peer discovery services subscribe
-	 */
-	private static final String MULTICAST_ADDRESS = "239.255.255.250";
-
-	/**
-	 * Multicast-Address used for sending out heartbeats to the multicast group
-	 */
-	private InetAddress multicastAddress;
-
 	/**
 	 * Socket for sending and receiving UDP-multicasts
 	 */
-	private MulticastSocket udpMulticastSocket;
-
-	/**
-	 * Portnumber used for multicasts
-	 */
-	private short udpPort;
-
-	/** Factor to determine peerTimeout which is (multicastFrequency * timeoutFactor) */
-	private static final int PEER_TIMEOUT_FACTOR = 4;
+	private DiscoveryMulticast multicast;
 
 	/** Frequency to send state multicasts (in ms.) */
 	private int multicast_Frequency;
 
-	/** Time without a received state multicast to mark a peer as dead (in ms.) */
-	private int peerTimeout;
-
 	/** Indicates whether the PeerDiscoveryService is currently running */
 	private final AtomicBoolean isStarted = new AtomicBoolean(false);
 
@@ -160,20 +127,12 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 		try {
 			this.core = core;
 			this.multicast_Frequency = broadcastFrequency;
-			this.peerTimeout = broadcastFrequency * PEER_TIMEOUT_FACTOR;
-			this.udpPort = udpPort;
 			this.selfHandle = selfHandle;
 			this.selfState = ModuleLifecycleState.Dead;
 			this.selfAdditionalState = new byte[0];
 			this.disableEqualModuleInterconnect = disableEqualModuleInterconnect;
 			
-			final InetSocketAddress ownAddress = new InetSocketAddress(this.udpPort);
-			
-			this.multicastAddress = InetAddress.getByName(MULTICAST_ADDRESS);
-			
-			this.udpMulticastSocket = new MulticastSocket(ownAddress);
-			this.udpMulticastSocket.setReuseAddress(true);
-			this.udpMulticastSocket.joinGroup(this.multicastAddress);
+			this.multicast = DiscoveryMulticast.join(udpPort);
 			
 			this.stopRequested.set(false);
 			
@@ -215,12 +174,7 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 		
 		stopRequested.set(true);
 
-		try {
-			this.udpMulticastSocket.leaveGroup(this.multicastAddress);
-		} catch (final IOException e) {
-			LOGGER.warn("stop: IOException while leaving multicast-group: ", e);
-		}
-		this.udpMulticastSocket.close();
+		this.multicast.close();
 		disposeThreads();
 		
 		this.isStarted.set(false);
@@ -261,23 +215,7 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 		}
 		synchronized (lockMulticast) {
 			try {
-				final FrameworkProto.StateBroadcast.Builder multicastBuilder = FrameworkProto.StateBroadcast.newBuilder();
-				multicastBuilder.setZmqPubPort(this.selfHandle.getSelfPubPort());
-				multicastBuilder.setZmqRepPort(this.selfHandle.getSelfRepPort());
-				multicastBuilder.setVersion(Short.toUnsignedInt(this.selfHandle.getVersion()));
-				multicastBuilder.setLifecycleState(this.selfState.ordinal());
-				multicastBuilder.setAdditionalStateInfos(ByteString.copyFrom(selfAdditionalState));
-				multicastBuilder.setMulticastIdentifier(multicastIdentifier);
-				multicastBuilder.setSenderName(selfHandle.getName());
-
-				final FrameworkProto.SenderId senderId = selfHandle.getUniqueId().getSenderProto();
-				multicastBuilder.setSenderId(senderId);
-
-				final byte[] msg = multicastBuilder.build().toByteArray();
-
-				final DatagramPacket packet = new DatagramPacket(msg, msg.length, this.multicastAddress, this.udpPort);
-				this.udpMulticastSocket.send(packet);
-
+				this.multicast.sendState(this.selfHandle, this.selfState, this.selfAdditionalState, this.multicastIdentifier);
 			} catch (final Exception e) {
 				LOGGER.error("sendMulticast failed due to Exception: ", e);
 			}
@@ -298,51 +236,18 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 	 * Performed by the receiveMulticastThread this loop frequently sends out multicasts as long as the service is running
 	 */
 	private void sendMulticastLoop() {
-		LOGGER.info("sendMulticastLoop started");
-		while (!this.stopRequested.get()) {
-
+		DiscoveryMulticast.sendLoop(() -> !this.stopRequested.get(), multicast_Frequency, () -> {
 			sendStateMulticast();
 			updatePeerTimeouts();
-
-			try {
-				Thread.sleep(multicast_Frequency);
-			} catch (final InterruptedException e) {
-				if (!this.stopRequested.get()) {
-					LOGGER.error("sendMulticastLoop interrupted: ", e);
-				}
-			}
-
-		}
-		LOGGER.info("sendMulticastLoop finished");
+		});
 	}
 
 	/**
 	 * Performed by the sendMulticastThread this loop continuously receives multicasts from the network as long as the service is running
 	 */
 	private void receiveMulticastsLoop() {
-		LOGGER.info("receiveMulticastLoop started");
-		while (!this.stopRequested.get()) {
-			try {
-				final byte[] buffer = new byte[1024];
-
-				final InetAddress senderAddress;
-				final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-				this.udpMulticastSocket.receive(packet);
-				senderAddress = packet.getAddress();
-
-				final byte[] cut = new byte[packet.getLength()];
-				System.arraycopy(buffer, 0, cut, 0, packet.getLength());
-				final FrameworkProto.StateBroadcast stateMulticast = FrameworkProto.StateBroadcast.parseFrom(cut);
-
-				processIncomingMulticast(stateMulticast, senderAddress.getHostAddress());
-
-			} catch (final Exception e) {
-				if (!stopRequested.get()) {
-					LOGGER.warn("receiveMulticastLoop Exception: ", e);
-				}
-			}
-		}
-		LOGGER.info("receiveMulticastsLoop finished");
+		this.multicast.receiveLoop(() -> !this.stopRequested.get(), 1024,
+				(msg, senderIp) -> processIncomingMulticast(FrameworkProto.StateBroadcast.parseFrom(msg), senderIp));
 	}
 
 	/**
@@ -383,18 +288,10 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 				onPeerDead(peerHandle);
 			}
 		} else {
-			final byte[] additionalStateInfo;
-			if (stateMulticast.hasAdditionalStateInfos()) {
-				additionalStateInfo = stateMulticast.getAdditionalStateInfos().toByteArray();
-			} else {
-				additionalStateInfo = "".getBytes();
-			}
+			final byte[] additionalStateInfo = DiscoveryMulticast.getAdditionalState(stateMulticast);
 			ModuleHandleInternal peerHandle = (ModuleHandleInternal) this.peerRegistry.getPeerWithId(peerId, false);
 			if (peerHandle == null) {
-				final String pubAddr = "tcp://" + senderIp + ":" + String.valueOf(stateMulticast.getZmqPubPort());
-				final String repAddr = "tcp://" + senderIp + ":" + String.valueOf(stateMulticast.getZmqRepPort());
-				
-				peerHandle = new ModuleHandleInternal(peerId, (short)stateMulticast.getVersion(), stateMulticast.getSenderName(), pubAddr, repAddr, false);
+				peerHandle = DiscoveryMulticast.createPeerHandle(stateMulticast, senderIp);
 				onPeerNew(peerHandle, peerState, additionalStateInfo);
 			} else {
 				peerHandle.resetPeerTimeout();
@@ -415,17 +312,9 @@ public class PeerDiscoveryService implements IPeerDiscoveryService {
 	 * updates the timeout-values of the registered modules in peerRegistry_
 	 */
 	private void updatePeerTimeouts() {
-		final List<ModuleHandleInternal> timedOutModules = new ArrayList<>();
+		final List<ModuleHandleInternal> timedOutModules;
 		synchronized (peerRegistry.peerDatastructuresLock) {
-			final Map<ModuleUniqueId, ModuleHandle> allPeers = this.peerRegistry.INTERNAL_getAllPeers(false);
-
-			for (final Entry<ModuleUniqueId, ModuleHandle> peer : allPeers.entrySet()) {
-				final ModuleHandleInternal peerHandle = ((ModuleHandleInternal) peer.getValue());
-				peerHandle.incrementPeerTimeout(this.multicast_Frequency);
-				if (peerHandle.getPeerTimeout() > this.peerTimeout) {
-					timedOutModules.add(peerHandle);
-				}
-			}
+			timedOutModules = DiscoveryMulticast.updatePeerTimeouts(this.peerRegistry.INTERNAL_getAllPeers(false).values(), this.multicast_Frequency);
 		}
 		
 		for (final ModuleHandleInternal timedOutPeer : timedOutModules) {
@@ -0,0 +1,132 @@
+package jmf.discovery.implementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BooleanSupplier;
+
+import jmf.data.ModuleHandle;
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.discovery.IPeerRegistry;
+
+/**
+ * View on a peer registry shared by the modules of one process, as seen by one of them.
+ * Hides the module itself and, if equal module interconnect is disabled, the modules of its type.
+ * The module itself is only reported by containsPeerWithId if another process announced a module with the same id.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class PeerRegistryView implements IPeerRegistry {
+
+	private final PeerRegistry registry;
+	private final ModuleUniqueId selfId;
+	private final boolean hideSameType;
+	private final BooleanSupplier selfDuplicated;
+
+	PeerRegistryView(final PeerRegistry registry, final ModuleUniqueId selfId, final boolean hideSameType, final BooleanSupplier selfDuplicated) {
+		this.registry = registry;
+		this.selfId = selfId;
+		this.hideSameType = hideSameType;
+		this.selfDuplicated = selfDuplicated;
+	}
+
+	/**
+	 * @return True if the peer is visible for the module of this view
+	 */
+	boolean isVisible(final ModuleUniqueId id) {
+		return !id.equals(selfId) && !(hideSameType && id.getTypeId() == selfId.getTypeId());
+	}
+
+	private List<ModuleHandle> filter(final List<ModuleHandle> peers) {
+		final List<ModuleHandle> visible = new ArrayList<>(peers.size());
+		for (final ModuleHandle peer : peers) {
+			if (isVisible(peer.getUniqueId())) {
+				visible.add(peer);
+			}
+		}
+		return visible;
+	}
+
+	@Override
+	public boolean containsPeerWithId(final ModuleUniqueId id, final boolean onlyActivePeers) {
+		if (id.equals(selfId)) {
+			return selfDuplicated.getAsBoolean();
+		}
+		return isVisible(id) && registry.containsPeerWithId(id, onlyActivePeers);
+	}
+
+	@Override
+	public ModuleHandle getPeerWithId(final ModuleUniqueId id, final boolean onlyActivePeers) {
+		return isVisible(id) ? registry.getPeerWithId(id, onlyActivePeers) : null;
+	}
+
+	@Override
+	public List<ModuleHandle> getPeersWithType(final short type, final boolean onlyActivePeers) {
+		return filter(registry.getPeersWithType(type, onlyActivePeers));
+	}
+
+	@Override
+	public boolean containsPeerWithType(final short type, final boolean onlyActivePeers) {
+		return !getPeersWithType(type, onlyActivePeers).isEmpty();
+	}
+
+	@Override
+	public ModuleHandle getAnyPeerWithType(final short type, final boolean onlyActivePeers) {
+		final List<ModuleHandle> peers = getPeersWithType(type, onlyActivePeers);
+		return peers.isEmpty() ? null : peers.get(0);
+	}
+
+	@Override
+	public List<ModuleHandle> getPeersWithTypeVersion(final short type, final short version, final boolean onlyActivePeers) {
+		return filter(registry.getPeersWithTypeVersion(type, version, onlyActivePeers));
+	}
+
+	@Override
+	public boolean containsPeerWithTypeVersion(final short type, final short version, final boolean onlyActivePeers) {
+		return !getPeersWithTypeVersion(type, version, onlyActivePeers).isEmpty();
+	}
+
+	@Override
+	public ModuleHandle getAnyPeerWithTypeVersion(final short type, final short version, final boolean onlyActivePeers) {
+		final List<ModuleHandle> peers = getPeersWithTypeVersion(type, version, onlyActivePeers);
+		return peers.isEmpty() ? null : peers.get(0);
+	}
+
+	@Override
+	public ModuleLifecycleState getPeerState(final ModuleHandle peerHandle) {
+		return isVisible(peerHandle.getUniqueId()) ? registry.getPeerState(peerHandle) : ModuleLifecycleState.Dead;
+	}
+
+	@Override
+	public byte[] getPeerAdditionalState(final ModuleHandle peerHandle) {
+		return isVisible(peerHandle.getUniqueId()) ? registry.getPeerAdditionalState(peerHandle) : null;
+	}
+
+	/**
+	 * Returns a filtered copy, unlike the shared registry itself
+	 */
+	@Override
+	public ConcurrentMap<Short, List<ModuleHandle>> INTERNAL_getAllPeersByType(final boolean onlyActivePeers) {
+		final ConcurrentMap<Short, List<ModuleHandle>> peersByType = new ConcurrentHashMap<>();
+		// Type lists are modified by the registry while holding its monitor
+		synchronized (registry) {
+			for (final Map.Entry<Short, List<ModuleHandle>> entry : registry.INTERNAL_getAllPeersByType(onlyActivePeers).entrySet()) {
+				final List<ModuleHandle> peers = filter(entry.getValue());
+				if (!peers.isEmpty()) {
+					peersByType.put(entry.getKey(), peers);
+				}
+			}
+		}
+		return peersByType;
+	}
+
+	@Override
+	public ConcurrentMap<ModuleUniqueId, ModuleHandle> getAllPeersCopy(final boolean onlyActivePeers) {
+		final ConcurrentMap<ModuleUniqueId, ModuleHandle> peers = registry.getAllPeersCopy(onlyActivePeers);
+		peers.keySet().removeIf(id -> !isVisible(id));
+		return peers;
+	}
+}
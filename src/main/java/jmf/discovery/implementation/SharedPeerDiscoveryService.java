@@ -0,0 +1,344 @@
+package jmf.discovery.implementation;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jmf.data.ModuleHandle;
+import jmf.data.ModuleHandleInternal;
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.discovery.IPeerDiscoveryCore;
+import jmf.discovery.IPeerDiscoveryService;
+import jmf.discovery.IPeerRegistry;
+import jmf.proto.FrameworkProto;
+
+/**
+ * Peer discovery shared by the modules of one process.
+ * One multicast socket, one sending and one receiving thread and one peer registry serve all modules started with a
+ * service created by createService. Multicasts of other processes are parsed once and forwarded to every module.
+ * The modules of this process are entered into the registry directly when their state changes, their own multicasts
+ * are ignored. The socket and threads are started with the first module and stopped with the last one.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class SharedPeerDiscoveryService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SharedPeerDiscoveryService.class);
+
+	/** Registry of all peers, including the modules of this process */
+	private final PeerRegistry peerRegistry = new PeerRegistry();
+
+	/** Identifies multicasts sent by this process */
+	private final int multicastIdentifier = new Random().nextInt();
+
+	/** Modules of this process by their id */
+	private final ConcurrentMap<ModuleUniqueId, Member> members = new ConcurrentHashMap<>();
+
+	/** Ids of modules of this process also announced by another process */
+	private final Set<ModuleUniqueId> duplicateIds = ConcurrentHashMap.newKeySet();
+
+	/** Serializes registry updates and the notifications of the modules */
+	private final Object lockPeers = new Object();
+
+	private DiscoveryMulticast multicast;
+	private int multicastFrequency;
+	/** Time the socket was opened in System.currentTimeMillis */
+	private long startTime;
+
+	private volatile boolean running = false;
+	private Thread sendMulticastThread;
+	private Thread receiveMulticastsThread;
+
+
+	/**
+	 * Creates the peer discovery service for one module, to be used instead of a PeerDiscoveryService
+	 */
+	public IPeerDiscoveryService createService() {
+		return new Member();
+	}
+
+	/**
+	 * @return Registry of all peers including the modules of this process
+	 */
+	public IPeerRegistry getPeerRegistry() {
+		return peerRegistry;
+	}
+
+	private synchronized boolean join(final Member member, final int broadcastFrequency, final short udpPort) {
+		if (!running) {
+			try {
+				this.multicastFrequency = broadcastFrequency;
+				this.multicast = DiscoveryMulticast.join(udpPort);
+			} catch (final IOException e) {
+				LOGGER.error("start: ERROR due to Exception: ", e);
+				return false;
+			}
+			startTime = System.currentTimeMillis();
+			running = true;
+
+			sendMulticastThread = new Thread(this::sendMulticastLoop, "shared peerDiscovery Sender");
+			sendMulticastThread.start();
+			receiveMulticastsThread = new Thread(this::receiveMulticastsLoop, "shared peerDiscovery Receiver");
+			receiveMulticastsThread.start();
+			LOGGER.info("SharedPeerDiscoveryService started");
+		}
+
+		final ModuleUniqueId selfId = member.selfHandle.getUniqueId();
+		synchronized (lockPeers) {
+			if (members.putIfAbsent(selfId, member) != null) {
+				LOGGER.error("start: module " + selfId + " already running in this process");
+				return false;
+			}
+			if (peerRegistry.containsPeerWithId(selfId, false)) {
+				duplicateIds.add(selfId);
+			}
+			// Announce the peers already known as discovered now
+			for (final ModuleHandle peer : peerRegistry.getAllPeersCopy(false).values()) {
+				if (member.view.isVisible(peer.getUniqueId())) {
+					member.core.peerStateChange((ModuleHandleInternal) peer, peerRegistry.getPeerState(peer), ModuleLifecycleState.Dead);
+				}
+			}
+		}
+		return true;
+	}
+
+	private synchronized void leave(final Member member) {
+		final ModuleUniqueId selfId = member.selfHandle.getUniqueId();
+		synchronized (lockPeers) {
+			if (!members.remove(selfId, member)) {
+				return;
+			}
+			if (!duplicateIds.remove(selfId)) {
+				final ModuleHandleInternal entry = (ModuleHandleInternal) peerRegistry.getPeerWithId(selfId, false);
+				if (entry != null) {
+					onPeerDead(entry);
+				}
+			}
+		}
+
+		if (members.isEmpty() && running) {
+			running = false;
+			multicast.close();
+			joinThread(sendMulticastThread);
+			joinThread(receiveMulticastsThread);
+			synchronized (lockPeers) {
+				peerRegistry.clearRegistry();
+			}
+			LOGGER.info("SharedPeerDiscoveryService stopped");
+		}
+	}
+
+	private void joinThread(final Thread thread) {
+		try {
+			thread.join();
+		} catch (final InterruptedException e) {
+			LOGGER.error("Failed to join " + thread.getName(), e);
+		}
+	}
+
+	/**
+	 * Periodically multicasts the states of all modules and times out peers
+	 */
+	private void sendMulticastLoop() {
+		DiscoveryMulticast.sendLoop(() -> running, multicastFrequency, () -> {
+			for (final Member member : members.values()) {
+				member.sendStateMulticast();
+			}
+			updatePeerTimeouts();
+		});
+	}
+
+	private void receiveMulticastsLoop() {
+		multicast.receiveLoop(() -> running, 1024,
+				(msg, senderIp) -> processIncomingMulticast(FrameworkProto.StateBroadcast.parseFrom(msg), senderIp));
+	}
+
+	private void processIncomingMulticast(final FrameworkProto.StateBroadcast stateMulticast, final String senderIp) {
+		if (stateMulticast.getMulticastIdentifier() == multicastIdentifier) {
+			return;
+		}
+
+		final ModuleUniqueId peerId = new ModuleUniqueId(stateMulticast.getSenderId());
+		if (members.containsKey(peerId)) {
+			if (duplicateIds.add(peerId)) {
+				LOGGER.warn("Module of this process also announced by " + senderIp + ": " + peerId);
+			}
+			return;
+		}
+
+		updatePeer(peerId, ModuleLifecycleState.values()[stateMulticast.getLifecycleState()], DiscoveryMulticast.getAdditionalState(stateMulticast),
+				() -> DiscoveryMulticast.createPeerHandle(stateMulticast, senderIp));
+	}
+
+	/**
+	 * Updates the registry with a received or local peer state and notifies the modules
+	 *
+	 * @param handleFactory
+	 * 		creates the handle of a peer not in the registry yet
+	 */
+	private void updatePeer(final ModuleUniqueId peerId, final ModuleLifecycleState peerState, final byte[] additionalState, final Supplier<ModuleHandleInternal> handleFactory) {
+		synchronized (lockPeers) {
+			ModuleHandleInternal peerHandle = (ModuleHandleInternal) peerRegistry.getPeerWithId(peerId, false);
+			if (peerState == ModuleLifecycleState.Dead) {
+				if (peerHandle != null) {
+					onPeerDead(peerHandle);
+				}
+			} else if (peerHandle == null) {
+				peerHandle = handleFactory.get();
+				LOGGER.debug("New Peer registered: " + peerId);
+				peerRegistry.addModule(peerHandle, peerState, additionalState);
+				notifyMembers(peerHandle, peerState, ModuleLifecycleState.Dead);
+			} else {
+				peerHandle.resetPeerTimeout();
+				peerRegistry.INTERNAL_updatePeerAdditionalState(peerHandle, additionalState);
+				final ModuleLifecycleState oldState = peerRegistry.getPeerState(peerHandle);
+				if (oldState != peerState) {
+					LOGGER.debug("Peer state changed: " + peerId + " to " + peerState);
+					peerRegistry.INTERNAL_updatePeerState(peerHandle, peerState);
+					notifyMembers(peerHandle, peerState, oldState);
+				}
+			}
+		}
+	}
+
+	private void updatePeerTimeouts() {
+		synchronized (lockPeers) {
+			final Map<ModuleUniqueId, ModuleHandle> peers = peerRegistry.getAllPeersCopy(false);
+			// Modules of this process are removed when leaving
+			peers.keySet().removeAll(members.keySet());
+			for (final ModuleHandleInternal timedOutPeer : DiscoveryMulticast.updatePeerTimeouts(peers.values(), multicastFrequency)) {
+				onPeerDead(timedOutPeer);
+			}
+		}
+	}
+
+	/**
+	 * Must hold lockPeers
+	 */
+	private void onPeerDead(final ModuleHandleInternal deadPeer) {
+		LOGGER.debug("Peer dead: " + deadPeer.getUniqueId());
+		final ModuleLifecycleState lastState = peerRegistry.getPeerState(deadPeer);
+		peerRegistry.removeModule(deadPeer.getUniqueId());
+		notifyMembers(deadPeer, ModuleLifecycleState.Dead, lastState);
+	}
+
+	/**
+	 * Must hold lockPeers
+	 */
+	private void notifyMembers(final ModuleHandleInternal peer, final ModuleLifecycleState newState, final ModuleLifecycleState lastState) {
+		for (final Member member : members.values()) {
+			if (member.view.isVisible(peer.getUniqueId())) {
+				member.core.peerStateChange(peer, newState, lastState);
+			}
+		}
+	}
+
+	/**
+	 * Peer discovery service of one module
+	 */
+	private class Member implements IPeerDiscoveryService {
+
+		private IPeerDiscoveryCore core;
+		private ModuleHandleInternal selfHandle;
+		/** Entry of this module in the shared registry, addressed as seen from this host */
+		private ModuleHandleInternal peerHandle;
+		private PeerRegistryView view;
+		private ModuleLifecycleState selfState;
+		private byte[] selfAdditionalState;
+		private volatile boolean started = false;
+
+		@Override
+		public boolean start(final IPeerDiscoveryCore core, final ModuleHandleInternal selfHandle, final int broadcastFrequency, final short udpPort, final boolean peerDiscoveryWait, final boolean disableEqualModuleInterconnect) {
+			if (started) {
+				LOGGER.warn("start: Already stared - cancel start");
+				return false;
+			}
+			this.core = core;
+			this.selfHandle = selfHandle;
+			this.peerHandle = new ModuleHandleInternal(selfHandle.getUniqueId(), selfHandle.getVersion(), selfHandle.getName(),
+					selfHandle.getZmqPubAddr(), selfHandle.getZmqRepAddr(), false);
+			this.view = new PeerRegistryView(peerRegistry, selfHandle.getUniqueId(), disableEqualModuleInterconnect,
+					() -> duplicateIds.contains(selfHandle.getUniqueId()));
+			this.selfState = ModuleLifecycleState.Dead;
+			this.selfAdditionalState = new byte[0];
+
+			if (!join(this, broadcastFrequency, udpPort)) {
+				return false;
+			}
+			started = true;
+
+			// Peers already discovered by the shared service are known, only wait for the rest of the discovery time
+			final long wait = startTime + 2L * multicastFrequency - System.currentTimeMillis();
+			if (peerDiscoveryWait && wait > 0) {
+				LOGGER.info("will wait to discover peers");
+				try {
+					Thread.sleep(wait);
+				} catch (final InterruptedException e) {
+					LOGGER.warn("peer discovery wait interrupted", e);
+				}
+				LOGGER.info("wait complete");
+			}
+			return true;
+		}
+
+		@Override
+		public void stop() {
+			if (!started) {
+				LOGGER.warn("stop: Not started - cancel stop");
+				return;
+			}
+			started = false;
+			leave(this);
+		}
+
+		@Override
+		public synchronized void updateSelfState(final ModuleLifecycleState state) {
+			this.selfState = state;
+		}
+
+		@Override
+		public synchronized void updateSelfAdditionalState(final byte[] additionalState) {
+			this.selfAdditionalState = additionalState;
+		}
+
+		/**
+		 * Multicasts the state of the module and enters it into the shared registry
+		 */
+		@Override
+		public void sendStateMulticast() {
+			if (!started || !running) {
+				return;
+			}
+			final ModuleLifecycleState state;
+			final byte[] additionalState;
+			synchronized (this) {
+				state = selfState;
+				additionalState = selfAdditionalState;
+			}
+
+			try {
+				multicast.sendState(selfHandle, state, additionalState, multicastIdentifier);
+			} catch (final Exception e) {
+				LOGGER.error("sendMulticast failed due to Exception: ", e);
+			}
+
+			// The entry of another process with the same id is not replaced
+			if (!duplicateIds.contains(selfHandle.getUniqueId())) {
+				updatePeer(selfHandle.getUniqueId(), state, additionalState, () -> peerHandle);
+			}
+		}
+
+		@Override
+		public IPeerRegistry getPeerRegistry() {
+			return view;
+		}
+	}
+}
@@ -17,4 +17,10 @@ public interface IMessagingCore {
 	void onSubMsgReceived(Message message, ModuleUniqueId sender);
 
 	void onRequestMsgReceived(ExternalRequestIdentity id, Message message, ModuleUniqueId sender);
+
+	/**
+	 * Called when the requester canceled a received request not replied yet, the request should not be handled anymore
+	 */
+	default void onRequestCanceled(final ExternalRequestIdentity id) {
+	}
 }
@@ -1,5 +1,8 @@
 package jmf.messaging;
 
+import java.util.List;
+import java.util.Map;
+
 import jmf.config.IConfigurationProvider;
 import jmf.data.*;
 import jmf.messaging.implementation.ExternalRequestIdentity;
@@ -29,10 +32,82 @@ public interface IMessagingService {
 
 	InReply sendRequest(ModuleUniqueId target, Message msg);
 
+	/**
+	 * Sends a request to one of the given targets, choosing a less loaded target by outstanding requests and reply latency.
+	 * The reply future fails if none of the targets is connected.
+	 */
+	InReply sendRequestToAny(List<ModuleUniqueId> targets, Message msg);
+
 	void sendReply(ExternalRequestIdentity id, Message msg);
 
+	/**
+	 * Replies that the request could not be handled, the reply future of the requester fails with the error
+	 */
+	void sendErrorReply(ExternalRequestIdentity id, String error);
+
+	/**
+	 * Sends a request expecting a streamed reply. Targets not supporting streams reply with a single message,
+	 * which is the only chunk of the stream.
+	 */
+	InStreamReply sendStreamRequest(ModuleUniqueId target, Message msg);
+
+	/**
+	 * Allows the replying peer of a stream request to send the given number of further chunks
+	 */
+	void grantStreamCredit(long requestID, int credit);
+
+	/**
+	 * Sends a chunk of a streamed reply, blocks until the requester granted credit for the chunk.
+	 * For requests not expecting a stream the first chunk is sent as the reply.
+	 * @return False if the stream was canceled or the chunk can not be sent
+	 */
+	boolean sendStreamChunk(ExternalRequestIdentity id, Message chunk);
+
+	/**
+	 * Ends a streamed reply after its last chunk
+	 */
+	void finishStream(ExternalRequestIdentity id);
+
+	/**
+	 * Cancels a request sent, the target is notified to drop the request if it did not reply yet
+	 */
 	void cancelRequest(long requestID, boolean manual);
 
+	/**
+	 * @return State of the circuit breakers of peers requests were sent to, empty if circuit breakers are disabled
+	 */
+	Map<ModuleUniqueId, CircuitBreakerState> getCircuitBreakerStates();
+
+	/**
+	 * @return False if a ping request to the peer should not be sent now, because its circuit breaker is open or the
+	 * request would open a closed lazy request socket
+	 */
+	boolean isProbeable(ModuleUniqueId peer);
+
+	/**
+	 * @return Notify latency and poll strategy counters of the poller thread
+	 */
+	PollerStats getPollerStats();
+
+	/**
+	 * @return True if the received request is waiting for its reply, false if replied or canceled by the requester
+	 */
+	boolean isReplyPending(ExternalRequestIdentity id);
+
+	/**
+	 * Called when a received request left the incoming queue (delivered or dropped), returns its credit to the sender
+	 */
+	void onRequestConsumed(ExternalRequestIdentity id);
+
+	/**
+	 * Enables payload compression for all topics with the given prefix, towards peers supporting it.
+	 * Peers receiving payloads compressed with a dictionary must enable the same dictionary.
+	 * @param dictionary Optional preset dictionary for small repetitive payloads, null for none
+	 */
+	void enableCompression(MessageType topic, byte[] dictionary);
+
+	void disableCompression(MessageType topic);
+
 	void onDisable();
 
 }
@@ -0,0 +1,16 @@
+package jmf.messaging;
+
+import jmf.data.RequestHandlerHandle;
+
+/**
+ * Interface offering possibility to unregister a request handler
+ * Created on 10/19/26.
+ * @author agent
+ */
+public interface IRequestHandlerRegistry {
+    /**
+     * Unregisters the request handler of the given handle
+     * @param handle Handle to unregister
+     */
+	void unregisterRequestHandler(RequestHandlerHandle handle);
+}
@@ -0,0 +1,163 @@
+package jmf.messaging.implementation;
+
+import jmf.data.CircuitBreakerState;
+
+/**
+ * Circuit breaker of requests to one peer. Records the outcome of the last requests: when enough outcomes are
+ * recorded and the share of failures (requests without reply in time) reaches the threshold, the breaker opens and
+ * requests fail immediately. After the open time a single probe request is let through: its success closes the
+ * breaker, its failure opens it again.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class CircuitBreaker {
+
+	/**
+	 * Result of asking the breaker for sending a request
+	 */
+	enum Permit {
+		/** Request must fail */
+		DENIED,
+		/** Request may be sent */
+		GRANTED,
+		/** Request may be sent as the probe of a half open breaker */
+		PROBE
+	}
+
+	private final int minRequests;
+	private final int failurePercent;
+	private final long openNanos;
+
+	/** Outcomes of the last requests, true for failures, ring buffer of minRequests entries */
+	private final boolean[] outcomes;
+	private int outcomeCount = 0;
+	private int nextOutcome = 0;
+	private int failureCount = 0;
+
+	private CircuitBreakerState state = CircuitBreakerState.CLOSED;
+	private long openedNanos;
+	private boolean probeInFlight = false;
+
+
+	/**
+	 * @param minRequests
+	 * 		number of last request outcomes the failure share is computed of
+	 * @param failurePercent
+	 * 		share of failures in percent opening the breaker
+	 * @param openNanos
+	 * 		time the breaker stays open before probing
+	 * @throws IllegalArgumentException
+	 * 		if minRequests is less than 1 or failurePercent not in 1..100
+	 */
+	CircuitBreaker(final int minRequests, final int failurePercent, final long openNanos) {
+		if (minRequests < 1) {
+			throw new IllegalArgumentException("minRequests must be at least 1");
+		}
+		if (failurePercent < 1 || failurePercent > 100) {
+			throw new IllegalArgumentException("failurePercent must be in 1..100");
+		}
+		this.minRequests = minRequests;
+		this.failurePercent = failurePercent;
+		this.openNanos = openNanos;
+		this.outcomes = new boolean[minRequests];
+	}
+
+	/**
+	 * Called before sending a request
+	 *
+	 * @return if and how the request may be sent
+	 */
+	synchronized Permit tryAcquire() {
+		switch (state) {
+			case CLOSED:
+				return Permit.GRANTED;
+
+			case OPEN:
+				if (System.nanoTime() - openedNanos < openNanos) {
+					return Permit.DENIED;
+				}
+				state = CircuitBreakerState.HALF_OPEN;
+				probeInFlight = true;
+				return Permit.PROBE;
+
+			case HALF_OPEN:
+			default:
+				if (probeInFlight) {
+					return Permit.DENIED;
+				}
+				probeInFlight = true;
+				return Permit.PROBE;
+		}
+	}
+
+	/**
+	 * Called when a request was replied in time. Outcomes of requests sent before the breaker opened are ignored.
+	 */
+	synchronized void onSuccess(final boolean probe) {
+		if (probe) {
+			close();
+		} else if (state == CircuitBreakerState.CLOSED) {
+			record(false);
+		}
+	}
+
+	/**
+	 * Called when a request was not replied in time
+	 */
+	synchronized void onFailure(final boolean probe) {
+		if (probe) {
+			open();
+		} else if (state == CircuitBreakerState.CLOSED) {
+			record(true);
+			if (outcomeCount >= minRequests && failureCount * 100 >= failurePercent * outcomeCount) {
+				open();
+			}
+		}
+	}
+
+	/**
+	 * Called when a request was canceled before its outcome was known
+	 */
+	synchronized void onAbandoned(final boolean probe) {
+		if (probe) {
+			probeInFlight = false;
+		}
+	}
+
+	synchronized CircuitBreakerState getState() {
+		// Report open breakers ready for probing as half open
+		if (state == CircuitBreakerState.OPEN && System.nanoTime() - openedNanos >= openNanos) {
+			return CircuitBreakerState.HALF_OPEN;
+		}
+		return state;
+	}
+
+	private void record(final boolean failure) {
+		if (outcomeCount == outcomes.length) {
+			if (outcomes[nextOutcome]) {
+				failureCount--;
+			}
+		} else {
+			outcomeCount++;
+		}
+		outcomes[nextOutcome] = failure;
+		if (failure) {
+			failureCount++;
+		}
+		nextOutcome = (nextOutcome + 1) % outcomes.length;
+	}
+
+	private void open() {
+		state = CircuitBreakerState.OPEN;
+		openedNanos = System.nanoTime();
+		probeInFlight = false;
+	}
+
+	private void close() {
+		state = CircuitBreakerState.CLOSED;
+		probeInFlight = false;
+		outcomeCount = 0;
+		nextOutcome = 0;
+		failureCount = 0;
+	}
+}
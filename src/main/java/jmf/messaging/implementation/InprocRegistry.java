@@ -0,0 +1,35 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Messaging services running in this process, by the unique id of their module.
+ * Peers found here are reached without serialization by handing messages to their service directly.
+ * Created on 10/19/26.
+ * @author agent
+ */
+final class InprocRegistry {
+
+	private static final ConcurrentMap<ModuleUniqueId, ZmqMessagingService> services = new ConcurrentHashMap<>();
+
+	private InprocRegistry() {
+	}
+
+	static void register(final ModuleUniqueId id, final ZmqMessagingService service) {
+		services.put(id, service);
+	}
+
+	static void unregister(final ModuleUniqueId id, final ZmqMessagingService service) {
+		services.remove(id, service);
+	}
+
+	/**
+	 * @return the service of the module if running in this process, null otherwise
+	 */
+	static ZmqMessagingService lookup(final ModuleUniqueId id) {
+		return services.get(id);
+	}
+}
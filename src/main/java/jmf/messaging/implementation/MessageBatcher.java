@@ -0,0 +1,188 @@
+package jmf.messaging.implementation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.zeromq.ZFrame;
+import org.zeromq.ZMsg;
+
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Packs request and reply wire messages to the same peer, sent within a linger window, into one batch wire message.
+ * A batch is sent when the linger time of its first message expired or when it reached the maximum number of messages.
+ * Batch wire message: [BATCH, n1, frames of message 1 (n1 frames), n2, frames of message 2, ...], the frame counts are
+ * single byte frames.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class MessageBatcher {
+
+	/**
+	 * Messages waiting to be sent to a peer and the linger timer sending them
+	 */
+	private static final class Batch {
+		private final List<ZMsg> messages;
+		private ScheduledFuture<?> linger;
+
+		private Batch(final int capacity) {
+			this.messages = new ArrayList<>(capacity);
+		}
+	}
+
+	private final ScheduledExecutorService timer;
+	private final long lingerMicros;
+	private final int maxMessages;
+	private final byte batchType;
+	/** Sends a wire message to a peer */
+	private final BiConsumer<ModuleUniqueId, ZMsg> sender;
+
+	/** Messages waiting for their batch to be sent per peer */
+	private final Map<ModuleUniqueId, Batch> pending = new HashMap<>();
+
+	private long batchCount = 0;
+	private long batchedMessageCount = 0;
+
+
+	MessageBatcher(final ScheduledExecutorService timer, final long lingerMicros, final int maxMessages, final byte batchType, final BiConsumer<ModuleUniqueId, ZMsg> sender) {
+		this.timer = timer;
+		this.lingerMicros = lingerMicros;
+		this.maxMessages = maxMessages;
+		this.batchType = batchType;
+		this.sender = sender;
+	}
+
+	/**
+	 * Adds a message to the batch of the target, sends the batch if full
+	 */
+	synchronized void add(final ModuleUniqueId target, final ZMsg msg) {
+		Batch batch = pending.get(target);
+		if (batch == null) {
+			final Batch created = new Batch(maxMessages);
+			created.linger = timer.schedule(() -> flushLinger(target, created), lingerMicros, TimeUnit.MICROSECONDS);
+			pending.put(target, created);
+			batch = created;
+		}
+		batch.messages.add(msg);
+		if (batch.messages.size() >= maxMessages) {
+			flush(target);
+		}
+	}
+
+	/**
+	 * Timer method: sends the batch when its linger time expired, unless it was sent already
+	 */
+	private synchronized void flushLinger(final ModuleUniqueId target, final Batch batch) {
+		if (pending.get(target) == batch) {
+			flush(target);
+		}
+	}
+
+	/**
+	 * Sends the pending batch of the target, if any, and cancels its linger timer. Sending while holding the lock
+	 * keeps the order of messages.
+	 */
+	synchronized void flush(final ModuleUniqueId target) {
+		final Batch pendingBatch = takeBatch(target);
+		if (pendingBatch == null) {
+			return;
+		}
+		final List<ZMsg> batch = pendingBatch.messages;
+		if (batch.size() == 1) {
+			sender.accept(target, batch.get(0));
+			return;
+		}
+		batchCount++;
+		batchedMessageCount += batch.size();
+		sender.accept(target, encode(batchType, batch));
+	}
+
+	/**
+	 * Drops the pending messages to a peer
+	 */
+	synchronized void remove(final ModuleUniqueId target) {
+		takeBatch(target);
+	}
+
+	/**
+	 * Removes the pending batch of the target and cancels its linger timer
+	 *
+	 * @return the batch, null if none pending
+	 */
+	private Batch takeBatch(final ModuleUniqueId target) {
+		final Batch batch = pending.remove(target);
+		if (batch != null) {
+			batch.linger.cancel(false);
+		}
+		return batch;
+	}
+
+	synchronized void clear() {
+		for (final Batch batch : pending.values()) {
+			batch.linger.cancel(false);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * @return Number of batch wire messages sent
+	 */
+	synchronized long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * @return Number of messages sent in batch wire messages
+	 */
+	synchronized long getBatchedMessageCount() {
+		return batchedMessageCount;
+	}
+
+	/**
+	 * @return Batch wire message containing the given messages, their frames are moved to the batch
+	 */
+	static ZMsg encode(final byte batchType, final List<ZMsg> messages) {
+		final ZMsg batch = new ZMsg();
+		batch.add(new byte[]{batchType});
+		for (final ZMsg msg : messages) {
+			batch.add(new byte[]{(byte) msg.size()});
+			ZFrame frame;
+			while ((frame = msg.pop()) != null) {
+				batch.add(frame);
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Splits a received batch wire message into its messages. Each message gets the identity frame of the batch
+	 * prepended, so that it has the layout of a message received on the ROUTER socket.
+	 *
+	 * @param frames
+	 * 		received frames: identity, batch type, batched messages
+	 * @return the frames of the batched messages, null if the batch is malformed
+	 */
+	static List<ZFrame[]> decode(final ZFrame[] frames) {
+		final List<ZFrame[]> messages = new ArrayList<>();
+		int index = 2;
+		while (index < frames.length) {
+			final int count = frames[index].getData()[0] & 0xFF;
+			index++;
+			if (count == 0 || index + count > frames.length) {
+				return null;
+			}
+			final ZFrame[] message = new ZFrame[count + 1];
+			message[0] = frames[0];
+			System.arraycopy(frames, index, message, 1, count);
+			messages.add(message);
+			index += count;
+		}
+		return messages;
+	}
+}
@@ -0,0 +1,113 @@
+package jmf.messaging.implementation;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.zeromq.ZFrame;
+
+import jmf.data.Message;
+
+/**
+ * Optional trailing frame of publish, request and reply wire messages, carrying flags about the message encoding and optional fields announced by the flags.
+ * The frame is only added if at least one flag is set. Peers not knowing the frame ignore it,
+ * flags changing the payload encoding are only used towards peers advertising the matching capability.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class MessageOptions {
+
+	/** Payload is compressed by the PayloadCompressor */
+	static final int FLAG_COMPRESSED = 0x01;
+	/** Options carry the publisher sequence number of an event */
+	static final int FLAG_SEQUENCE = 0x02;
+	/** Request expects a streamed reply, options carry the initial number of chunks the requester accepts */
+	static final int FLAG_STREAM = 0x04;
+	/** Request took a credit of the request window granted by the receiver, which returns the credit when consuming it */
+	static final int FLAG_CREDIT = 0x08;
+	/** Options carry the remaining time to live of the message in milliseconds */
+	static final int FLAG_TTL = 0x10;
+	/** Reply reports a failure to handle the request, the payload is the error text */
+	static final int FLAG_ERROR = 0x20;
+
+	/** Flags set for the message */
+	int flags = 0;
+	/** Publisher sequence number, only valid if FLAG_SEQUENCE set */
+	long sequence = 0;
+	/** Initial stream credit, only valid if FLAG_STREAM set */
+	int credit = 0;
+	/** Remaining time to live in milliseconds, only valid if FLAG_TTL set */
+	long ttl = 0;
+
+
+	/**
+	 * @return True if no flags set, the options frame can be omitted
+	 */
+	boolean isEmpty() {
+		return flags == 0;
+	}
+
+	boolean hasFlag(final int flag) {
+		return (flags & flag) != 0;
+	}
+
+	/**
+	 * @return Frame containing the encoded options
+	 */
+	ZFrame toFrame() {
+		final ByteBuffer buffer = ByteBuffer.allocate(1 + (hasFlag(FLAG_SEQUENCE) ? 8 : 0) + (hasFlag(FLAG_STREAM) ? 4 : 0) + (hasFlag(FLAG_TTL) ? 8 : 0));
+		buffer.put((byte) flags);
+		if (hasFlag(FLAG_SEQUENCE)) {
+			buffer.putLong(sequence);
+		}
+		if (hasFlag(FLAG_STREAM)) {
+			buffer.putInt(credit);
+		}
+		if (hasFlag(FLAG_TTL)) {
+			buffer.putLong(ttl);
+		}
+		return new ZFrame(buffer.array());
+	}
+
+	/**
+	 * Sets the remaining time to live of a message with deadline
+	 */
+	void setTtl(final Message msg) {
+		if (msg.hasDeadline()) {
+			flags |= FLAG_TTL;
+			ttl = msg.getRemainingTtl(TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @return The received message with the deadline of its time to live, if any
+	 */
+	Message applyTtl(final Message msg) {
+		return hasFlag(FLAG_TTL) ? msg.withTtl(ttl, TimeUnit.MILLISECONDS) : msg;
+	}
+
+	/**
+	 * Parses options from the frame at the given index of a received message
+	 *
+	 * @return the parsed options, empty options if the message has no or an empty options frame
+	 */
+	static MessageOptions parse(final ZFrame[] frames, final int index) {
+		final MessageOptions options = new MessageOptions();
+		if (frames.length > index) {
+			final ByteBuffer buffer = ByteBuffer.wrap(frames[index].getData());
+			if (!buffer.hasRemaining()) {
+				return options;
+			}
+			options.flags = buffer.get() & 0xFF;
+			if (options.hasFlag(FLAG_SEQUENCE) && buffer.remaining() >= 8) {
+				options.sequence = buffer.getLong();
+			}
+			if (options.hasFlag(FLAG_STREAM) && buffer.remaining() >= 4) {
+				options.credit = buffer.getInt();
+			}
+			if (options.hasFlag(FLAG_TTL) && buffer.remaining() >= 8) {
+				options.ttl = buffer.getLong();
+			}
+		}
+		return options;
+	}
+}
@@ -0,0 +1,191 @@
+package jmf.messaging.implementation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import jmf.data.MessageType;
+import jmf.util.PrefixIndex;
+
+/**
+ * Compresses message payloads of selected topics with Deflate.
+ * Payloads smaller than the minimum size are not compressed. Topics can use a preset dictionary,
+ * which improves compression of small repetitive messages. The receiver has to know the same dictionary,
+ * dictionaries are identified by their Adler32 checksum contained in the Deflate stream.
+ * Compressed payloads start with the uncompressed length (4 bytes) followed by the Deflate stream.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class PayloadCompressor {
+
+	/** Deflate uses at most the last 32KB of a dictionary */
+	static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	/** Largest payload accepted for decompression */
+	static final int MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+	/** Deflate can not compress by more than about 1032:1, larger claimed lengths are corrupt */
+	private static final int MAX_COMPRESSION_RATIO = 1032;
+
+	private static final byte[] NO_DICTIONARY = new byte[0];
+
+	/** Dictionary (empty array for none) by topic prefix */
+	private final PrefixIndex<byte[]> compressedTopics = new PrefixIndex<>();
+	/** All known dictionaries by Adler32 checksum */
+	private final ConcurrentMap<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+	private final int minSize;
+	private final int level;
+
+	private final ThreadLocal<Deflater> deflaters;
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+	PayloadCompressor(final int minSize, final int level) {
+		this.minSize = minSize;
+		this.level = level;
+		deflaters = ThreadLocal.withInitial(() -> new Deflater(this.level));
+	}
+
+	/**
+	 * Enables compression for all topics with the given prefix
+	 *
+	 * @param dictionary
+	 * 		preset dictionary, null for none
+	 */
+	void enable(final MessageType topic, final byte[] dictionary) {
+		if (dictionary != null && dictionary.length > 0) {
+			final byte[] dict = dictionary.length > MAX_DICTIONARY_SIZE
+					? Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length)
+					: dictionary.clone();
+			final Adler32 adler = new Adler32();
+			adler.update(dict);
+			dictionaries.put((int) adler.getValue(), dict);
+			compressedTopics.put(topic, dict);
+		} else {
+			compressedTopics.put(topic, NO_DICTIONARY);
+		}
+	}
+
+	/**
+	 * Disables compression for the given topic prefix, known dictionaries are kept to decompress messages of other peers
+	 */
+	void disable(final MessageType topic) {
+		compressedTopics.remove(topic);
+	}
+
+	/**
+	 * @return True if compression enabled for any topic
+	 */
+	boolean isEnabled() {
+		return !compressedTopics.isEmpty();
+	}
+
+	/**
+	 * Compresses a payload if compression is enabled for the topic, the payload is large enough and gets smaller
+	 *
+	 * @return the compressed payload or null if it should be sent uncompressed
+	 */
+	byte[] compress(final MessageType topic, final byte[] data) {
+		if (data.length < minSize) {
+			return null;
+		}
+		final byte[] dictionary = compressedTopics.findLongestPrefix(topic);
+		if (dictionary == null) {
+			return null;
+		}
+
+		final Deflater deflater = deflaters.get();
+		deflater.reset();
+		if (dictionary.length > 0) {
+			deflater.setDictionary(dictionary);
+		}
+		deflater.setInput(data);
+		deflater.finish();
+
+		// Only worth it if smaller than the uncompressed payload
+		final byte[] out = new byte[data.length];
+		ByteBuffer.wrap(out).putInt(data.length);
+		int length = 4;
+		while (!deflater.finished() && length < out.length) {
+			length += deflater.deflate(out, length, out.length - length);
+		}
+		if (!deflater.finished()) {
+			return null;
+		}
+		return Arrays.copyOf(out, length);
+	}
+
+	/**
+	 * Decompresses a payload compressed by compress
+	 *
+	 * @throws DataFormatException
+	 * 		if the payload is corrupt, claims an impossible length or is compressed with an unknown dictionary
+	 */
+	byte[] decompress(final byte[] data) throws DataFormatException {
+		if (data.length < 4) {
+			throw new DataFormatException("compressed payload too short");
+		}
+		// The length is read from the network, check it before allocating
+		final int length = ByteBuffer.wrap(data).getInt();
+		if (length < 0 || length > MAX_DECOMPRESSED_SIZE || length > (long) (data.length - 4) * MAX_COMPRESSION_RATIO) {
+			throw new DataFormatException("invalid uncompressed length " + length + " of " + data.length + " bytes payload");
+		}
+		final byte[] out = new byte[length];
+
+		final Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(data, 4, data.length - 4);
+		int read = 0;
+		while (!inflater.finished()) {
+			final int n = inflater.inflate(out, read, out.length - read);
+			read += n;
+			if (n == 0) {
+				if (inflater.needsDictionary()) {
+					final byte[] dictionary = dictionaries.get(inflater.getAdler());
+					if (dictionary == null) {
+						throw new DataFormatException("payload compressed with unknown dictionary " + inflater.getAdler());
+					}
+					inflater.setDictionary(dictionary);
+				} else if (inflater.needsInput() || read == out.length) {
+					break;
+				}
+			}
+		}
+		if (!inflater.finished() || read != length) {
+			throw new DataFormatException("compressed payload truncated");
+		}
+		return out;
+	}
+
+	/**
+	 * Builds a preset dictionary from sample payloads. Later samples are placed at the end of the dictionary,
+	 * where Deflate finds them with the shortest distances, so the most typical samples should be given last.
+	 *
+	 * @param samples
+	 * 		typical payloads of a topic
+	 * @return dictionary of at most 32KB
+	 */
+	public static byte[] buildDictionary(final List<byte[]> samples) {
+		final List<byte[]> used = new ArrayList<>();
+		int size = 0;
+		for (int i = samples.size() - 1; i >= 0 && size < MAX_DICTIONARY_SIZE; i--) {
+			used.add(0, samples.get(i));
+			size += samples.get(i).length;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (final byte[] sample : used) {
+			buffer.put(sample);
+		}
+		final byte[] dictionary = buffer.array();
+		if (dictionary.length > MAX_DICTIONARY_SIZE) {
+			return Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+		}
+		return dictionary;
+	}
+}
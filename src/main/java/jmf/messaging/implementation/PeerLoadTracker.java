@@ -0,0 +1,118 @@
+package jmf.messaging.implementation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Tracks the load of request targets: requests outstanding per peer and an exponentially weighted moving average
+ * of the observed reply latency. Chooses the target of a request among candidates by power of two choices:
+ * two random candidates are compared and the less loaded one is taken, avoiding that all callers pile onto the same
+ * peer which looked best a moment ago.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class PeerLoadTracker {
+
+	/** Weight of a new latency sample in the moving average */
+	static final double EWMA_ALPHA = 0.2;
+
+	private static final class PeerLoad {
+		private final AtomicInteger outstanding = new AtomicInteger(0);
+		/** Moving average of reply latency in nanoseconds, 0 if no reply received yet */
+		private volatile double latencyEwma = 0;
+
+		private synchronized void addLatencySample(final long latencyNanos) {
+			latencyEwma = latencyEwma == 0 ? latencyNanos : latencyEwma + EWMA_ALPHA * (latencyNanos - latencyEwma);
+		}
+	}
+
+	private final ConcurrentMap<ModuleUniqueId, PeerLoad> loads = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Called when a request to the peer was sent
+	 */
+	void onRequestSent(final ModuleUniqueId peer) {
+		loads.computeIfAbsent(peer, p -> new PeerLoad()).outstanding.incrementAndGet();
+	}
+
+	/**
+	 * Called when a request to the peer is not outstanding any more
+	 *
+	 * @param latencyNanos
+	 * 		time until the reply was received, negative if the request was canceled without reply
+	 */
+	void onRequestDone(final ModuleUniqueId peer, final long latencyNanos) {
+		final PeerLoad load = loads.get(peer);
+		if (load == null) {
+			return;
+		}
+		load.outstanding.decrementAndGet();
+		if (latencyNanos >= 0) {
+			load.addLatencySample(latencyNanos);
+		}
+	}
+
+	/**
+	 * Forgets a peer that left
+	 */
+	void remove(final ModuleUniqueId peer) {
+		loads.remove(peer);
+	}
+
+	void clear() {
+		loads.clear();
+	}
+
+	/**
+	 * @return Number of requests to the peer waiting for a reply
+	 */
+	int getOutstanding(final ModuleUniqueId peer) {
+		final PeerLoad load = loads.get(peer);
+		return load == null ? 0 : load.outstanding.get();
+	}
+
+	/**
+	 * @return Moving average of reply latency of the peer in nanoseconds, 0 if unknown
+	 */
+	double getLatencyEwma(final ModuleUniqueId peer) {
+		final PeerLoad load = loads.get(peer);
+		return load == null ? 0 : load.latencyEwma;
+	}
+
+	/**
+	 * Expected time for a new request to complete: latency times the requests queued before it
+	 */
+	double cost(final ModuleUniqueId peer) {
+		return getLatencyEwma(peer) * (getOutstanding(peer) + 1);
+	}
+
+	/**
+	 * Chooses a target by power of two choices
+	 *
+	 * @param candidates
+	 * 		possible targets, not empty
+	 * @return the less loaded of two random candidates
+	 */
+	ModuleUniqueId choose(final List<ModuleUniqueId> candidates) {
+		final int size = candidates.size();
+		if (size == 1) {
+			return candidates.get(0);
+		}
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int first = random.nextInt(size);
+		final int second = (first + 1 + random.nextInt(size - 1)) % size;
+		final ModuleUniqueId a = candidates.get(first);
+		final ModuleUniqueId b = candidates.get(second);
+		if (getLatencyEwma(a) == 0 || getLatencyEwma(b) == 0) {
+			// No latency known yet, compare outstanding requests only
+			return getOutstanding(b) < getOutstanding(a) ? b : a;
+		}
+		return cost(b) < cost(a) ? b : a;
+	}
+}
@@ -0,0 +1,297 @@
+package jmf.messaging.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import org.zeromq.ZFrame;
+import org.zeromq.ZMsg;
+
+import jmf.util.MemoryFences;
+
+/**
+ * Single producer single consumer ring of messages in a memory mapped file, shared by two processes on the same host.
+ * The consumer creates the file, the producer opens it. Producer threads of one process are serialized by this object.
+ * <p>
+ * Layout: header with magic, capacity, tail (written by producer), head (written by consumer) and a waiting flag on
+ * separate cache lines, followed by the data area. Records are the message kind and the frames of a ZMQ message,
+ * 4 byte aligned, a record not fitting before the end of the data area is preceded by a padding marker.
+ * <p>
+ * A consumer about to block sets the waiting flag, a producer finding it set after writing clears it and wakes the
+ * consumer by other means.
+ * <p>
+ * The consumer may refuse a record that must wait for an event outside the ring, it is read again by the next read.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class ShmRing {
+
+	/**
+	 * Receives records read from the ring
+	 */
+	interface RecordHandler {
+		/**
+		 * @return False to refuse the record, reading stops before it
+		 */
+		boolean onRecord(byte kind, ZFrame[] frames);
+	}
+
+	private static final int MAGIC = 0x4A4D4652;
+	private static final int OFFSET_MAGIC = 0;
+	private static final int OFFSET_CAPACITY = 4;
+	private static final int OFFSET_TAIL = 64;
+	private static final int OFFSET_HEAD = 128;
+	private static final int OFFSET_WAITING = 192;
+	private static final int HEADER_SIZE = 256;
+	private static final int PADDING = -1;
+	/** Time a producer waits before checking for space again */
+	private static final long FULL_WAIT_NANOS = 20_000;
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	private final boolean consumer;
+
+	/** Next write position of the producer, next read position of the consumer */
+	private long position;
+	private volatile boolean closed = false;
+	/** Consumer: the last read stopped at a refused record */
+	private boolean blocked = false;
+	/**
+	 * Messages sent around the ring: counted by the producer since its last resume record, guarded by this,
+	 * by the consumer since the last resume record read
+	 */
+	int bypassed = 0;
+
+
+	private ShmRing(final File file, final MappedByteBuffer buffer, final int capacity, final boolean consumer) {
+		this.file = file;
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.consumer = consumer;
+		this.position = buffer.getLong(consumer ? OFFSET_HEAD : OFFSET_TAIL);
+	}
+
+	/**
+	 * Creates the ring file of a consumer, replacing an existing file
+	 *
+	 * @param capacity
+	 * 		size of the data area, rounded up to a power of two
+	 */
+	static ShmRing create(final File file, final int capacity) throws IOException {
+		final int size = Integer.highestOneBit(Math.max(capacity, 4096) - 1) << 1;
+		if (file.exists() && !file.delete()) {
+			throw new IOException("can not replace ring file " + file);
+		}
+		final MappedByteBuffer buffer = map(file, HEADER_SIZE + size);
+		buffer.putInt(OFFSET_CAPACITY, size);
+		buffer.putLong(OFFSET_TAIL, 0);
+		buffer.putLong(OFFSET_HEAD, 0);
+		buffer.putInt(OFFSET_WAITING, 0);
+		MemoryFences.storeFence();
+		buffer.putInt(OFFSET_MAGIC, MAGIC);
+		return new ShmRing(file, buffer, size, true);
+	}
+
+	/**
+	 * Opens the ring file created by a consumer for producing
+	 */
+	static ShmRing open(final File file) throws IOException {
+		if (!file.exists()) {
+			throw new IOException("ring file does not exist: " + file);
+		}
+		final MappedByteBuffer buffer = map(file, (int) file.length());
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+			throw new IOException("not an initialized ring file: " + file);
+		}
+		MemoryFences.loadFence();
+		final int size = buffer.getInt(OFFSET_CAPACITY);
+		if (Integer.bitCount(size) != 1 || buffer.capacity() < HEADER_SIZE + size) {
+			throw new IOException("ring file with invalid capacity: " + file);
+		}
+		return new ShmRing(file, buffer, size, false);
+	}
+
+	private static MappedByteBuffer map(final File file, final int size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (raf.length() < size) {
+				raf.setLength(size);
+			}
+			// The mapping stays valid after closing the channel
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	/**
+	 * Producer: writes a message
+	 *
+	 * @param wait
+	 * 		wait while the ring is full, fail immediately otherwise
+	 * @return False if the message is too large for the ring, the ring is full and not waiting or the ring was closed
+	 */
+	synchronized boolean write(final byte kind, final ZMsg msg, final boolean wait) {
+		int size = 4 + 1 + 4;
+		for (final ZFrame frame : msg) {
+			size += 4 + frame.size();
+		}
+		final int aligned = (size + 3) & ~3;
+		if (aligned > capacity / 4) {
+			return false;
+		}
+
+		int index = (int) (position & mask);
+		final int contiguous = capacity - index;
+		final int needed = contiguous < aligned ? contiguous + aligned : aligned;
+		if (!awaitSpace(needed, wait)) {
+			return false;
+		}
+		if (contiguous < aligned) {
+			buffer.putInt(HEADER_SIZE + index, PADDING);
+			position += contiguous;
+			index = 0;
+		}
+
+		((Buffer) buffer).position(HEADER_SIZE + index + 4);
+		buffer.put(kind);
+		buffer.putInt(msg.size());
+		for (final ZFrame frame : msg) {
+			buffer.putInt(frame.size());
+			buffer.put(frame.getData());
+		}
+		buffer.putInt(HEADER_SIZE + index, size - 4);
+
+		// Record visible before the tail
+		MemoryFences.storeFence();
+		position += aligned;
+		buffer.putLong(OFFSET_TAIL, position);
+		return true;
+	}
+
+	private boolean awaitSpace(final int needed, final boolean wait) {
+		while (!closed) {
+			final long head = buffer.getLong(OFFSET_HEAD);
+			MemoryFences.loadFence();
+			if (capacity - (position - head) >= needed) {
+				return true;
+			}
+			if (!wait) {
+				return false;
+			}
+			LockSupport.parkNanos(FULL_WAIT_NANOS);
+		}
+		return false;
+	}
+
+	/**
+	 * Producer: called after writing, checks if the consumer waits for messages and clears its waiting flag
+	 *
+	 * @return True if the consumer must be woken up
+	 */
+	boolean checkWakeup() {
+		// Tail visible before reading the flag, pairs with the fence in prepareWait
+		MemoryFences.fullFence();
+		if (buffer.getInt(OFFSET_WAITING) == 0) {
+			return false;
+		}
+		buffer.putInt(OFFSET_WAITING, 0);
+		return true;
+	}
+
+	/**
+	 * Producer: position the next record is written to
+	 */
+	synchronized long getWritePosition() {
+		return position;
+	}
+
+	/**
+	 * Consumer: reads up to max records
+	 *
+	 * @return number of records read
+	 */
+	int read(final int max, final RecordHandler handler) {
+		return read(max, Long.MAX_VALUE, handler);
+	}
+
+	/**
+	 * Consumer: reads the records written before the given producer position
+	 *
+	 * @return number of records read
+	 */
+	int readTo(final long limit, final RecordHandler handler) {
+		return read(Integer.MAX_VALUE, limit, handler);
+	}
+
+	private int read(final int max, final long limit, final RecordHandler handler) {
+		final long tail = Math.min(buffer.getLong(OFFSET_TAIL), limit);
+		MemoryFences.loadFence();
+		int count = 0;
+		while (count < max && position < tail) {
+			final int index = (int) (position & mask);
+			final int length = buffer.getInt(HEADER_SIZE + index);
+			if (length == PADDING) {
+				position += capacity - index;
+				buffer.putLong(OFFSET_HEAD, position);
+				continue;
+			}
+
+			((Buffer) buffer).position(HEADER_SIZE + index + 4);
+			final byte kind = buffer.get();
+			final ZFrame[] frames = new ZFrame[buffer.getInt()];
+			for (int i = 0; i < frames.length; i++) {
+				final byte[] data = new byte[buffer.getInt()];
+				buffer.get(data);
+				frames[i] = new ZFrame(data);
+			}
+
+			if (!handler.onRecord(kind, frames)) {
+				blocked = true;
+				break;
+			}
+			blocked = false;
+
+			// Record copied before releasing its space
+			MemoryFences.storeFence();
+			position += (4 + length + 3) & ~3;
+			buffer.putLong(OFFSET_HEAD, position);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Consumer: sets the waiting flag before blocking
+	 *
+	 * @return True if the ring is empty or blocked by a refused record, false if records arrived and the consumer
+	 * must not block
+	 */
+	boolean prepareWait() {
+		buffer.putInt(OFFSET_WAITING, 1);
+		// Flag visible before reading the tail, pairs with the fence in checkWakeup
+		MemoryFences.fullFence();
+		return blocked || buffer.getLong(OFFSET_TAIL) == position;
+	}
+
+	/**
+	 * Consumer: clears the waiting flag after waking up
+	 */
+	void endWait() {
+		buffer.putInt(OFFSET_WAITING, 0);
+	}
+
+	/**
+	 * Stops waiting producers, the consumer deletes the file. The mapping is released when garbage collected.
+	 */
+	void close() {
+		closed = true;
+		if (consumer && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+}
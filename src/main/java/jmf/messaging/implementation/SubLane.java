@@ -0,0 +1,152 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+import org.zeromq.ZMsg;
+
+import jmf.util.Pair;
+
+/**
+ * Additional sub socket with its own poller thread, receiving events of the topics assigned to this lane.
+ * The sub socket is connected to the pub sockets of all peers like the sub socket of the messaging service.
+ * Connections and subscriptions are changed by other threads through queues, drained by the lane thread on notify.
+ * Events are delivered in order per lane only, events on topics of different lanes may overtake each other.
+ * Created on 10/19/26.
+ * @author agent
+ */
+class SubLane {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SubLane.class);
+
+	private final int index;
+	private final ZMQ.Socket socketSub;
+	private final ZMQ.Socket socketPush;
+	private final ZMQ.Socket socketPull;
+	/** Handles the frames of a received event on the lane thread */
+	private final Consumer<ZFrame[]> handler;
+
+	private final ConcurrentLinkedQueue<Pair<String, Boolean>> queueMembershipChanges = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Pair<byte[], Boolean>> queueSubscriptionChanges = new ConcurrentLinkedQueue<>();
+
+	private volatile boolean running = false;
+	private Thread thread;
+
+
+	SubLane(final ZMQ.Context context, final String notifyAddress, final int index, final long rcvHwm, final long rcvBuf, final Consumer<ZFrame[]> handler) {
+		this.index = index;
+		this.handler = handler;
+
+		socketSub = context.socket(ZMQ.SUB);
+		socketPush = context.socket(ZMQ.PUSH);
+		socketPull = context.socket(ZMQ.PULL);
+		socketSub.setRcvHWM(rcvHwm);
+		socketSub.setReceiveBufferSize(rcvBuf);
+		socketSub.setLinger(0);
+		socketPush.setLinger(0);
+		socketPull.setLinger(0);
+		socketPush.bind(notifyAddress);
+		socketPull.connect(notifyAddress);
+	}
+
+	void start() {
+		running = true;
+		thread = new Thread(this::laneLoop, "ZMQMsgSrvc Sub Lane " + index);
+		thread.start();
+	}
+
+	/**
+	 * Stops the lane thread and closes the sockets
+	 */
+	void stop() {
+		running = false;
+		notifyLane();
+		try {
+			thread.join();
+		} catch (final InterruptedException e) {
+			LOGGER.error("failed to join lane thread", e);
+		}
+		socketSub.close();
+		socketPush.close();
+		socketPull.close();
+	}
+
+	/**
+	 * Connects to or disconnects from the pub socket of a peer
+	 */
+	void changeMembership(final String pubAddr, final boolean connect) {
+		queueMembershipChanges.add(Pair.of(pubAddr, connect));
+		notifyLane();
+	}
+
+	/**
+	 * Subscribes or unsubscribes a topic
+	 */
+	void changeSubscription(final byte[] topic, final boolean subscribe) {
+		queueSubscriptionChanges.add(Pair.of(topic, subscribe));
+		notifyLane();
+	}
+
+	private void notifyLane() {
+		synchronized (socketPush) {
+			socketPush.send(new byte[1]);
+		}
+	}
+
+	private void laneLoop() {
+		final ZMQ.Poller poller = new ZMQ.Poller(2);
+		poller.register(socketPull, ZMQ.Poller.POLLIN);
+		poller.register(socketSub, ZMQ.Poller.POLLIN);
+
+		while (running) {
+			poller.poll();
+
+			if (poller.pollin(0)) {
+				while (socketPull.recv(ZMQ.DONTWAIT) != null) {
+					// Changes of all notifications are applied at once
+				}
+				applyChanges();
+			}
+			if (poller.pollin(1)) {
+				ZMsg msg;
+				while ((msg = ZMsg.recvMsg(socketSub, ZMQ.DONTWAIT)) != null) {
+					try {
+						handler.accept(msg.toArray(new ZFrame[msg.size()]));
+					} catch (final RuntimeException e) {
+						LOGGER.error("failed to handle event on sub lane " + index, e);
+					}
+				}
+			}
+		}
+		LOGGER.info("leaving sub lane loop " + index);
+	}
+
+	private void applyChanges() {
+		Pair<String, Boolean> membership;
+		while ((membership = queueMembershipChanges.poll()) != null) {
+			try {
+				if (membership.second) {
+					socketSub.connect(membership.first);
+				} else {
+					socketSub.disconnect(membership.first);
+				}
+			} catch (final ZMQException e) {
+				LOGGER.error("failed to apply membership change: ", e);
+			}
+		}
+
+		Pair<byte[], Boolean> subscription;
+		while ((subscription = queueSubscriptionChanges.poll()) != null) {
+			if (subscription.second) {
+				socketSub.subscribe(subscription.first);
+			} else {
+				socketSub.unsubscribe(subscription.first);
+			}
+		}
+	}
+}
@@ -1,15 +1,37 @@
 package jmf.messaging.implementation;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +47,7 @@ import jmf.messaging.IMessagingService;
 import jmf.util.ByteUtils;
 import jmf.util.NetworkUtil;
 import jmf.util.Pair;
+import jmf.util.PrefixIndex;
 
 /**
  * Implementation of the IMessagingService using ZMQ.
@@ -34,6 +57,8 @@ import jmf.util.Pair;
 public class ZmqMessagingService implements IMessagingService {
 
 	private static final String NOTIFY_ADDRESS = "inproc://jmf_zmq_notify";
+	/** Makes the notify address unique between services sharing a ZMQ context */
+	private static final AtomicInteger notifyAddressCounter = new AtomicInteger();
 	/**
 	 * address to bind the pub and rep sockets on
 	 */
@@ -42,6 +67,36 @@ public class ZmqMessagingService implements IMessagingService {
 	private static final byte MESSAGE_TYPE_REQUEST = 0;
 	private static final byte MESSAGE_TYPE_REPLY = 1;
 	private static final byte MESSAGE_TYPE_HELLO = 2;
+	private static final byte MESSAGE_TYPE_BATCH = 3;
+	private static final byte MESSAGE_TYPE_STREAM_CHUNK = 4;
+	private static final byte MESSAGE_TYPE_STREAM_END = 5;
+	private static final byte MESSAGE_TYPE_STREAM_CREDIT = 6;
+	private static final byte MESSAGE_TYPE_REQUEST_CREDIT = 7;
+	private static final byte MESSAGE_TYPE_CANCEL = 8;
+	private static final byte MESSAGE_TYPE_SHM_WAKEUP = 9;
+	private static final byte MESSAGE_TYPE_SHM_BYPASS = 10;
+	private static final byte MESSAGE_TYPE_SHM_SUBSCRIPTIONS = 11;
+
+	/** Kinds of records in shared memory rings */
+	private static final byte SHM_KIND_REP = 0;
+	private static final byte SHM_KIND_EVENT = 1;
+	/** Number of messages sent around the ring that are handled before the following records */
+	private static final byte SHM_KIND_RESUME = 2;
+	/** Records read from one ring per poller loop iteration */
+	private static final int SHM_READ_BATCH = 256;
+	/** Number of topics whose publish sequence numbers are kept */
+	private static final int PUBLISH_SEQUENCE_TOPICS = 4096;
+	/** Time to send pending messages of a request socket closed because idle or evicted (in ms) */
+	private static final int REQ_SOCKET_CLOSE_LINGER = 1000;
+
+	/** Capability flags advertised in the HELLO message, peers not sending capabilities support none */
+	private static final long CAPABILITY_COMPRESSION = 0x01;
+	private static final long CAPABILITY_BATCHING = 0x02;
+	private static final long CAPABILITY_STREAMING = 0x04;
+	private static final long CAPABILITY_CANCEL = 0x08;
+	private static final long CAPABILITY_SHM = 0x10;
+	/** Capabilities supported by this implementation, shared memory only if enabled */
+	private static final long CAPABILITIES = CAPABILITY_COMPRESSION | CAPABILITY_BATCHING | CAPABILITY_STREAMING | CAPABILITY_CANCEL;
 
 	private static final Logger LOGGER_MAIN = LoggerFactory.getLogger(ZmqMessagingService.class.getName() + " MAIN");
 	private static final Logger LOGGER_POLLER = LoggerFactory.getLogger(ZmqMessagingService.class.getName() + " LOOP");
@@ -52,6 +107,7 @@ public class ZmqMessagingService implements IMessagingService {
 		SUBSCRIPTION_CHANGE,
 		MEMBERSHIP_CHANCE,
 		SHUTDOWN,
+		INPROC_DELIVERY,
 	}
 
 	private IMessagingCore core;
@@ -61,6 +117,9 @@ public class ZmqMessagingService implements IMessagingService {
 	private final AtomicBoolean alive = new AtomicBoolean(false);
 
 	private ZMQ.Context context;
+	/** Context shared with other services of the process, not terminated by this service, null if owning a context */
+	private final ZMQ.Context sharedContext;
+	private String notifyAddress;
 
 	private ZMQ.Socket socketPub;
 	private ZMQ.Socket socketSub;
@@ -76,11 +135,212 @@ public class ZmqMessagingService implements IMessagingService {
 	private final ConcurrentLinkedQueue<Pair<MessageType, Boolean>> queueSubscriptionChanges = new ConcurrentLinkedQueue<>();
 	private final ConcurrentLinkedQueue<Pair<String, Boolean>> queueMembershipChanges = new ConcurrentLinkedQueue<>();
 
-	private final ConcurrentMap<Long, WeakReference<CompletableFuture<Message>>> outstandingRequests = new ConcurrentHashMap<>();
+	/**
+	 * Request sent and waiting for its reply
+	 */
+	private static final class PendingRequest {
+		private final WeakReference<CompletableFuture<Message>> future;
+		private final ModuleUniqueId target;
+		private final long sentNanos;
+		/** True if sent as probe of a half open circuit breaker */
+		private final boolean probe;
+		/** Set when the outcome was reported to the circuit breaker */
+		private final AtomicBoolean outcomeRecorded = new AtomicBoolean(false);
+		/** Fails the request when its time to live elapsed, null if it has none */
+		private volatile ScheduledFuture<?> ttlTask;
+
+		private PendingRequest(final CompletableFuture<Message> future, final ModuleUniqueId target, final boolean probe) {
+			this.future = new WeakReference<>(future);
+			this.target = target;
+			this.sentNanos = System.nanoTime();
+			this.probe = probe;
+		}
+	}
+
+	/**
+	 * Stream request sent and receiving its chunks
+	 */
+	private static final class PendingStream {
+		private final WeakReference<InStreamReply> reply;
+		private final ModuleUniqueId target;
+
+		private PendingStream(final InStreamReply reply, final ModuleUniqueId target) {
+			this.reply = new WeakReference<>(reply);
+			this.target = target;
+		}
+	}
+
+	/**
+	 * Streamed reply being sent, with the number of chunks the requester accepts
+	 */
+	private static final class OutgoingStream {
+		private int credit;
+		private boolean canceled = false;
+
+		private OutgoingStream(final int credit) {
+			this.credit = credit;
+		}
+
+		private synchronized void grant(final int granted) {
+			if (granted <= 0) {
+				canceled = true;
+			} else {
+				credit += granted;
+			}
+			notifyAll();
+		}
+
+		/**
+		 * Waits until a chunk may be sent and takes its credit
+		 *
+		 * @return False if canceled
+		 */
+		private synchronized boolean acquire() {
+			try {
+				while (credit == 0 && !canceled) {
+					wait();
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			if (canceled) {
+				return false;
+			}
+			credit--;
+			return true;
+		}
+	}
+
+	/**
+	 * Request credit granted by a peer: requests beyond the credit are queued locally or fail
+	 */
+	private static final class RequestCredit {
+		private long credit;
+		/** Requests waiting for credit by request id, with the action sending them */
+		private final ArrayDeque<Pair<Long, BooleanSupplier>> queued = new ArrayDeque<>();
+
+		private RequestCredit(final long credit) {
+			this.credit = credit;
+		}
+	}
+
+	/**
+	 * Dealer socket sending requests and replies to a peer
+	 */
+	private static final class ReqSocket {
+		private final ZMQ.Socket socket;
+		private long lastUsedNanos;
+
+		private ReqSocket(final ZMQ.Socket socket) {
+			this.socket = socket;
+			this.lastUsedNanos = System.nanoTime();
+		}
+	}
+
+	private final ConcurrentMap<Long, PendingRequest> outstandingRequests = new ConcurrentHashMap<>();
+	/**
+	 * Ids of requests in sending order, so by deadline, checked against the circuit breaker and request timeout.
+	 * Ids of requests not outstanding any more are dropped when they reach the head.
+	 */
+	private final ConcurrentLinkedQueue<Long> breakerDeadlines = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Long> requestDeadlines = new ConcurrentLinkedQueue<>();
+	private final ConcurrentMap<Long, PendingStream> outstandingStreams = new ConcurrentHashMap<>();
+	private final ConcurrentMap<ExternalRequestIdentity, OutgoingStream> outgoingStreams = new ConcurrentHashMap<>();
 	private final ConcurrentMap<ExternalRequestIdentity, ModuleUniqueId> outstandingReplies = new ConcurrentHashMap<>();
-	private final ConcurrentMap<ModuleUniqueId, ZMQ.Socket> socketsReq = new ConcurrentHashMap<>();
+	/** Rep socket addresses of the known peers, request sockets to them are opened on demand */
+	private final ConcurrentMap<ModuleUniqueId, String> peerRepAddrs = new ConcurrentHashMap<>();
+	/** Open request sockets, least recently used first. Guarded by lockReqSockets */
+	private final LinkedHashMap<ModuleUniqueId, ReqSocket> socketsReq = new LinkedHashMap<>(16, 0.75f, true);
+	/** Capabilities of peers received with their HELLO */
+	private final ConcurrentMap<ModuleUniqueId, Long> peerCapabilities = new ConcurrentHashMap<>();
+	/** Request credit granted by peers having a request window */
+	private final ConcurrentMap<ModuleUniqueId, RequestCredit> requestCredits = new ConcurrentHashMap<>();
+	/** Received requests that took a credit of the sender, until consumed */
+	private final Set<ExternalRequestIdentity> creditedRequests = ConcurrentHashMap.newKeySet();
+	/** Credits of consumed requests not yet returned, per sender */
+	private final ConcurrentMap<ModuleUniqueId, AtomicInteger> consumedCredits = new ConcurrentHashMap<>();
+	/**
+	 * Connected peers not supporting compression or whose capabilities are unknown, publishing uncompressed while
+	 * there is any. With lazy request sockets the capabilities of a peer are known only after a request between the
+	 * two opened a socket and exchanged the HELLOs.
+	 */
+	private final Set<ModuleUniqueId> peersWithoutCompression = ConcurrentHashMap.newKeySet();
+
+	private PayloadCompressor compressor;
+
+	/** Batches requests and replies to peers supporting batching, null if batching is disabled */
+	private MessageBatcher batcher;
+	/** Runs batch flushes and circuit breaker timeout checks, null if neither is enabled */
+	private ScheduledThreadPoolExecutor timer;
+
+	/** Circuit breakers of requests per peer, empty if circuit breakers are disabled */
+	private final ConcurrentMap<ModuleUniqueId, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	/** Peers running in this process, reached through their inproc queue instead of sockets */
+	private final ConcurrentMap<ModuleUniqueId, ZmqMessagingService> inprocPeers = new ConcurrentHashMap<>();
+	/** Requests, replies and events handed over by services in this process, run on the poller thread */
+	private final ConcurrentLinkedQueue<Runnable> inprocQueue = new ConcurrentLinkedQueue<>();
+	/** Set while the poller is notified of inproc deliveries not yet drained */
+	private final AtomicBoolean inprocWakeup = new AtomicBoolean(false);
+	/** Inproc deliveries left in the queue after the quota of a poller iteration, only accessed by the poller thread */
+	private boolean inprocPending = false;
+	/** Input left after the quota of a poller iteration, only accessed by the poller thread */
+	private boolean inputsPending = false;
+	/** Records read from the shared memory rings, only accessed by the poller thread */
+	private long shmRecordsRead = 0;
+
+	/** Poller statistics, only written by the poller thread. Latencies are timed for notifications only. */
+	private volatile long statNotifyCount = 0;
+	private volatile long statNotifyLatencyNanos = 0;
+	private volatile long statMaxNotifyLatencyNanos = 0;
+	private volatile long statBlockingPollCount = 0;
+	private volatile long statSpinHitCount = 0;
+	private volatile long statYieldHitCount = 0;
+	/** Subscribed topics with their subscription count, matched against events not received on the sub socket */
+	private final PrefixIndex<Integer> localSubscriptions = new PrefixIndex<>();
+
+	/** Shared memory rings receiving from peers on this host, created before sending the HELLO */
+	private final ConcurrentMap<ModuleUniqueId, ShmRing> shmInbound = new ConcurrentHashMap<>();
+	/** Shared memory rings sending to peers on this host */
+	private final ConcurrentMap<ModuleUniqueId, ShmRing> shmOutbound = new ConcurrentHashMap<>();
+	/** Topics subscribed by peers on this host as last sent by them, events written to their ring are filtered by */
+	private final ConcurrentMap<ModuleUniqueId, PrefixIndex<Boolean>> shmPeerSubscriptions = new ConcurrentHashMap<>();
+	/** Pub addresses of peers on this host, subscribed to only if their HELLO does not advertise shared memory */
+	private final Map<ModuleUniqueId, String> shmPendingPubAddrs = new HashMap<>();
+	/** Peers whose pub socket the sub socket is connected to */
+	private final Set<ModuleUniqueId> subConnectedPeers = ConcurrentHashMap.newKeySet();
+	/**
+	 * Sub sockets with own threads besides the sub socket of the poller, which is lane 0. Every lane is connected to all
+	 * peers, topics are assigned to lanes by the hash of their first ZMF_SUB_LANE_PREFIX_LENGTH bytes. Subscriptions
+	 * shorter than that are only made on lane 0, events of other lanes matching them are received and handled there
+	 * and dropped by their own lane. Events on topics of different lanes are not delivered in order.
+	 */
+	private SubLane[] subLanes = new SubLane[0];
+	/** Subscriptions shorter than the lane prefix, one entry per subscribe, changed by the poller thread only */
+	private final List<byte[]> shortSubscriptions = new CopyOnWriteArrayList<>();
+	private File shmDir;
+
+	/** Outstanding requests and reply latency per peer, used to choose targets of requests to any peer */
+	private final PeerLoadTracker loadTracker = new PeerLoadTracker();
 
 	private final AtomicLong nextRequestID = new AtomicLong(0);
+	/**
+	 * Sequence number of the last published event per topic, stamped on events for round-robin consumer groups.
+	 * Counted per topic, so interleaved topics are each distributed evenly over the group members. Holds the most
+	 * recently published topics only, the sequence of an evicted topic starts over, which still distributes evenly.
+	 */
+	private final LinkedHashMap<MessageType, AtomicLong> publishSequences = new LinkedHashMap<MessageType, AtomicLong>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<MessageType, AtomicLong> eldest) {
+			return size() > PUBLISH_SEQUENCE_TOPICS;
+		}
+	};
+	/**
+	 * True if a module type has more than one instance among the peers. Only then a consumer group has more than one
+	 * member and events need a sequence number.
+	 */
+	private volatile boolean publishSequencesNeeded = false;
 
 	private IConfigurationProvider config;
 
@@ -88,7 +348,48 @@ public class ZmqMessagingService implements IMessagingService {
     private long ZMF_ZMQ_ZMQ_RCVHWM = 100000;
     private long ZMF_ZMQ_ZMQ_SNDBUF = 0;
     private long ZMF_ZMQ_ZMQ_SNDHWM = 100000;
+    private long ZMF_COMPRESSION_MIN_SIZE = 512;
+    private long ZMF_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+    private long ZMF_BATCH_LINGER_US = 0;
+    private long ZMF_BATCH_MAX_MESSAGES = 64;
+    private long ZMF_STREAM_WINDOW = 16;
+    private long ZMF_REQUEST_CREDIT_WINDOW = 0;
+    private static final long ZMF_REQUEST_CREDIT_MODE_QUEUE = 0;
+    private static final long ZMF_REQUEST_CREDIT_MODE_FAIL = 1;
+    private long ZMF_REQUEST_CREDIT_MODE = ZMF_REQUEST_CREDIT_MODE_QUEUE;
+    private long ZMF_BREAKER_TIMEOUT_MS = 0;
+    private long ZMF_BREAKER_MIN_REQUESTS = 20;
+    private long ZMF_BREAKER_FAILURE_PERCENT = 50;
+    private long ZMF_BREAKER_OPEN_MS = 5000;
+    private long ZMF_REQUEST_TIMEOUT_MS = 0;
+    private long ZMF_INPROC_TRANSPORT = 1;
+    private long ZMF_SHM_RING_SIZE = 0;
+    private long ZMF_ZMQ_IO_THREADS = 1;
+    private long ZMF_SUB_LANES = 1;
+    private long ZMF_SUB_LANE_PREFIX_LENGTH = 2;
+    private long ZMF_POLLER_QUOTA = 256;
+    private static final long ZMF_POLL_STRATEGY_BLOCK = 0;
+    private static final long ZMF_POLL_STRATEGY_SPIN = 1;
+    private static final long ZMF_POLL_STRATEGY_BUSY = 2;
+    private long ZMF_POLL_STRATEGY = ZMF_POLL_STRATEGY_BLOCK;
+    private long ZMF_POLL_SPIN_ITERATIONS = 10000;
+    private long ZMF_POLL_YIELD_ITERATIONS = 100;
+    private long ZMF_LAZY_REQ_SOCKETS = 0;
+    private long ZMF_REQ_SOCKET_IDLE_MS = 0;
+    private long ZMF_MAX_REQ_SOCKETS = 0;
+
+
+	public ZmqMessagingService() {
+		this(null);
+	}
 
+	/**
+	 * @param sharedContext
+	 * 		ZMQ context shared with other services of this process, terminated by its owner after stopping all services
+	 */
+	public ZmqMessagingService(final ZMQ.Context sharedContext) {
+		this.sharedContext = sharedContext;
+	}
 
 	@Override
 	public boolean start(final IMessagingCore core, final ModuleHandleInternal selfHandle, final IConfigurationProvider config) {
@@ -124,8 +425,168 @@ public class ZmqMessagingService implements IMessagingService {
         }
         LOGGER_MAIN.debug("ZMF_ZMQ_ZMQ_SNDHWM configuration: " + ZMF_ZMQ_ZMQ_SNDHWM);
 
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_COMPRESSION_MIN_SIZE")).isPresent()) {
+            ZMF_COMPRESSION_MIN_SIZE = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_COMPRESSION_MIN_SIZE configuration: " + ZMF_COMPRESSION_MIN_SIZE);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_COMPRESSION_LEVEL")).isPresent()) {
+            ZMF_COMPRESSION_LEVEL = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_COMPRESSION_LEVEL configuration: " + ZMF_COMPRESSION_LEVEL);
+
+        compressor = new PayloadCompressor((int) ZMF_COMPRESSION_MIN_SIZE, (int) ZMF_COMPRESSION_LEVEL);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_BATCH_LINGER_US")).isPresent()) {
+            ZMF_BATCH_LINGER_US = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_BATCH_LINGER_US configuration: " + ZMF_BATCH_LINGER_US);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_BATCH_MAX_MESSAGES")).isPresent()) {
+            ZMF_BATCH_MAX_MESSAGES = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_BATCH_MAX_MESSAGES configuration: " + ZMF_BATCH_MAX_MESSAGES);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_STREAM_WINDOW")).isPresent()) {
+            ZMF_STREAM_WINDOW = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_STREAM_WINDOW configuration: " + ZMF_STREAM_WINDOW);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_REQUEST_CREDIT_WINDOW")).isPresent()) {
+            ZMF_REQUEST_CREDIT_WINDOW = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_REQUEST_CREDIT_WINDOW configuration: " + ZMF_REQUEST_CREDIT_WINDOW);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_REQUEST_CREDIT_MODE")).isPresent()) {
+            ZMF_REQUEST_CREDIT_MODE = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_REQUEST_CREDIT_MODE configuration: " + ZMF_REQUEST_CREDIT_MODE);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_BREAKER_TIMEOUT_MS")).isPresent()) {
+            ZMF_BREAKER_TIMEOUT_MS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_BREAKER_TIMEOUT_MS configuration: " + ZMF_BREAKER_TIMEOUT_MS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_BREAKER_MIN_REQUESTS")).isPresent()) {
+            if (cfgTmp.getAsLong() >= 1 && cfgTmp.getAsLong() <= Integer.MAX_VALUE) {
+                ZMF_BREAKER_MIN_REQUESTS = cfgTmp.getAsLong();
+            } else {
+                LOGGER_MAIN.warn("ZMF_BREAKER_MIN_REQUESTS must be at least 1, ignoring " + cfgTmp.getAsLong());
+            }
+        }
+        LOGGER_MAIN.debug("ZMF_BREAKER_MIN_REQUESTS configuration: " + ZMF_BREAKER_MIN_REQUESTS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_BREAKER_FAILURE_PERCENT")).isPresent()) {
+            if (cfgTmp.getAsLong() >= 1 && cfgTmp.getAsLong() <= 100) {
+                ZMF_BREAKER_FAILURE_PERCENT = cfgTmp.getAsLong();
+            } else {
+                LOGGER_MAIN.warn("ZMF_BREAKER_FAILURE_PERCENT must be in 1..100, ignoring " + cfgTmp.getAsLong());
+            }
+        }
+        LOGGER_MAIN.debug("ZMF_BREAKER_FAILURE_PERCENT configuration: " + ZMF_BREAKER_FAILURE_PERCENT);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_BREAKER_OPEN_MS")).isPresent()) {
+            ZMF_BREAKER_OPEN_MS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_BREAKER_OPEN_MS configuration: " + ZMF_BREAKER_OPEN_MS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_REQUEST_TIMEOUT_MS")).isPresent()) {
+            ZMF_REQUEST_TIMEOUT_MS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_REQUEST_TIMEOUT_MS configuration: " + ZMF_REQUEST_TIMEOUT_MS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_INPROC_TRANSPORT")).isPresent()) {
+            ZMF_INPROC_TRANSPORT = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_INPROC_TRANSPORT configuration: " + ZMF_INPROC_TRANSPORT);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_SHM_RING_SIZE")).isPresent()) {
+            ZMF_SHM_RING_SIZE = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_SHM_RING_SIZE configuration: " + ZMF_SHM_RING_SIZE);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_ZMQ_IO_THREADS")).isPresent()) {
+            ZMF_ZMQ_IO_THREADS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_ZMQ_IO_THREADS configuration: " + ZMF_ZMQ_IO_THREADS);
+
+        // Events on topics of different lanes are not delivered in the order they were published
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_SUB_LANES")).isPresent()) {
+            ZMF_SUB_LANES = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_SUB_LANES configuration: " + ZMF_SUB_LANES);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_SUB_LANE_PREFIX_LENGTH")).isPresent()) {
+            ZMF_SUB_LANE_PREFIX_LENGTH = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_SUB_LANE_PREFIX_LENGTH configuration: " + ZMF_SUB_LANE_PREFIX_LENGTH);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_POLLER_QUOTA")).isPresent()) {
+            ZMF_POLLER_QUOTA = Math.max(1, cfgTmp.getAsLong());
+        }
+        LOGGER_MAIN.debug("ZMF_POLLER_QUOTA configuration: " + ZMF_POLLER_QUOTA);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_POLL_STRATEGY")).isPresent()) {
+            ZMF_POLL_STRATEGY = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_POLL_STRATEGY configuration: " + ZMF_POLL_STRATEGY);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_POLL_SPIN_ITERATIONS")).isPresent()) {
+            ZMF_POLL_SPIN_ITERATIONS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_POLL_SPIN_ITERATIONS configuration: " + ZMF_POLL_SPIN_ITERATIONS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_POLL_YIELD_ITERATIONS")).isPresent()) {
+            ZMF_POLL_YIELD_ITERATIONS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_POLL_YIELD_ITERATIONS configuration: " + ZMF_POLL_YIELD_ITERATIONS);
+
+        // Peers without request socket exchange no HELLO, events are published uncompressed until all did
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_LAZY_REQ_SOCKETS")).isPresent()) {
+            ZMF_LAZY_REQ_SOCKETS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_LAZY_REQ_SOCKETS configuration: " + ZMF_LAZY_REQ_SOCKETS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_REQ_SOCKET_IDLE_MS")).isPresent()) {
+            ZMF_REQ_SOCKET_IDLE_MS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_REQ_SOCKET_IDLE_MS configuration: " + ZMF_REQ_SOCKET_IDLE_MS);
+
+        if(config != null && (cfgTmp = config.getAsLong("ZMF_MAX_REQ_SOCKETS")).isPresent()) {
+            ZMF_MAX_REQ_SOCKETS = cfgTmp.getAsLong();
+        }
+        LOGGER_MAIN.debug("ZMF_MAX_REQ_SOCKETS configuration: " + ZMF_MAX_REQ_SOCKETS);
+
+		shmDir = new File(config != null ? config.getAsString("ZMF_SHM_DIR").orElse("/dev/shm") : "/dev/shm");
+		if (ZMF_SHM_RING_SIZE > 0 && !shmDir.isDirectory()) {
+			LOGGER_MAIN.warn("shared memory directory not found, disabling shared memory transport: " + shmDir);
+			ZMF_SHM_RING_SIZE = 0;
+		}
+
+		// Always needed, requests with time to live fail when it elapsed
+		timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			final Thread timerThread = new Thread(runnable, "ZMQMsgSrvc Timer");
+			timerThread.setDaemon(true);
+			return timerThread;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		if (ZMF_BATCH_LINGER_US > 0) {
+			batcher = new MessageBatcher(timer, ZMF_BATCH_LINGER_US, (int) ZMF_BATCH_MAX_MESSAGES, MESSAGE_TYPE_BATCH, this::sendDirect);
+		} else {
+			batcher = null;
+		}
+		if (ZMF_BREAKER_TIMEOUT_MS > 0 || ZMF_REQUEST_TIMEOUT_MS > 0) {
+			final long timeout = ZMF_BREAKER_TIMEOUT_MS > 0 && ZMF_REQUEST_TIMEOUT_MS > 0 ? Math.min(ZMF_BREAKER_TIMEOUT_MS, ZMF_REQUEST_TIMEOUT_MS) : Math.max(ZMF_BREAKER_TIMEOUT_MS, ZMF_REQUEST_TIMEOUT_MS);
+			final long checkInterval = Math.max(10, timeout / 4);
+			timer.scheduleAtFixedRate(this::checkRequestTimeouts, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+		}
+		if (ZMF_REQ_SOCKET_IDLE_MS > 0) {
+			final long checkInterval = Math.max(10, ZMF_REQ_SOCKET_IDLE_MS / 4);
+			timer.scheduleAtFixedRate(this::closeIdleReqSockets, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+		}
 
-		context = ZMQ.context(1);
+		context = sharedContext != null ? sharedContext : ZMQ.context((int) Math.max(1, ZMF_ZMQ_IO_THREADS));
+		notifyAddress = NOTIFY_ADDRESS + "_" + notifyAddressCounter.incrementAndGet();
 
 		socketPub = context.socket(ZMQ.PUB);
 		socketSub = context.socket(ZMQ.SUB);
@@ -148,8 +609,8 @@ public class ZmqMessagingService implements IMessagingService {
 		socketPush.setLinger(0);
 
 
-		socketPush.bind(NOTIFY_ADDRESS);
-		socketPull.connect(NOTIFY_ADDRESS);
+		socketPush.bind(notifyAddress);
+		socketPull.connect(notifyAddress);
 
 		try {
 			final int portPub = socketPub.bindToRandomPort(ENDPOINT_STRING);
@@ -161,11 +622,26 @@ public class ZmqMessagingService implements IMessagingService {
 		} catch (final ZMQException e) {
 			LOGGER_MAIN.error("failed to start ZMQ Messaging Service", e);
 			closeSockets();
-			context.term();
+			termContext();
 			return false;
 		}
 
 		alive.set(true);
+		if (ZMF_INPROC_TRANSPORT != 0) {
+			InprocRegistry.register(selfHandle.getUniqueId(), this);
+		}
+
+		subLanes = new SubLane[(int) Math.max(0, ZMF_SUB_LANES - 1)];
+		for (int i = 0; i < subLanes.length; i++) {
+			final int lane = i + 1;
+			subLanes[i] = new SubLane(context, notifyAddress + "_lane" + lane, lane, ZMF_ZMQ_ZMQ_RCVHWM, ZMF_ZMQ_ZMQ_RCVBUF, frames -> {
+				// Events matching a short subscription are handled by lane 0
+				if (!matchesShortSubscription(frames[0].getData())) {
+					handleEvent(frames);
+				}
+			});
+			subLanes[i].start();
+		}
 
 		poller = new ZMQ.Poller(3);
 		poller.register(socketPull, ZMQ.Poller.POLLIN);
@@ -189,6 +665,7 @@ public class ZmqMessagingService implements IMessagingService {
 			LOGGER_MAIN.warn("stop called but alive flag not set, aborting stop");
 			return;
 		}
+		InprocRegistry.unregister(selfHandle.getUniqueId(), this);
 
 		notifyPoller(NotifyType.SHUTDOWN);
 		try {
@@ -196,13 +673,61 @@ public class ZmqMessagingService implements IMessagingService {
 		} catch (final InterruptedException e) {
 			e.printStackTrace();
 		}
+		for (final SubLane lane : subLanes) {
+			lane.stop();
+		}
+
+		if (timer != null) {
+			timer.shutdownNow();
+			try {
+				timer.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				LOGGER_MAIN.warn("interrupted waiting for the timer thread to terminate", e);
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (batcher != null) {
+			batcher.clear();
+		}
+		breakers.clear();
 
 		closeSockets();
-		context.term();
+		termContext();
+
+		for (final ShmRing ring : shmInbound.values()) {
+			ring.close();
+		}
+		for (final ShmRing ring : shmOutbound.values()) {
+			ring.close();
+		}
+		shmInbound.clear();
+		shmOutbound.clear();
+		shmPeerSubscriptions.clear();
+		synchronized (lockReqSockets) {
+			shmPendingPubAddrs.clear();
+		}
+		subConnectedPeers.clear();
 
+		endStreams(null);
 		outstandingRequests.clear();
+		breakerDeadlines.clear();
+		requestDeadlines.clear();
 		outstandingReplies.clear();
-		socketsReq.clear();
+		loadTracker.clear();
+		requestCredits.clear();
+		creditedRequests.clear();
+		consumedCredits.clear();
+		synchronized (lockReqSockets) {
+			socketsReq.clear();
+		}
+		peerRepAddrs.clear();
+		publishSequencesNeeded = false;
+		peerCapabilities.clear();
+		peersWithoutCompression.clear();
+		inprocPeers.clear();
+		inprocQueue.clear();
+		localSubscriptions.clear();
+		shortSubscriptions.clear();
 
 		queueMembershipChanges.clear();
 		queueSubscriptionChanges.clear();
@@ -223,36 +748,256 @@ public class ZmqMessagingService implements IMessagingService {
 	private void internalConnect(final ModuleUniqueId identity, final String repAddr, final String pubAddr) {
 
 		synchronized (lockReqSockets) {
-			if (!socketsReq.containsKey(identity)) {
-				final ZMQ.Socket socket = context.socket(ZMQ.DEALER);
-				socket.setSndHWM(ZMF_ZMQ_ZMQ_SNDHWM);
-                socket.setSendBufferSize(ZMF_ZMQ_ZMQ_SNDBUF);
-				socket.setLinger(0);
-				socket.connect(repAddr);
+			if (!peerRepAddrs.containsKey(identity)) {
+				peerRepAddrs.put(identity, repAddr);
+				updatePublishSequencesNeeded();
+
+				// Peers in this process are handed messages directly, peers on this host through shared memory
+				final ZmqMessagingService inproc = ZMF_INPROC_TRANSPORT != 0 ? InprocRegistry.lookup(identity) : null;
+				final boolean shm = inproc == null && ZMF_SHM_RING_SIZE > 0 && isLocalAddress(repAddr) && createInboundRing(identity);
+
+				// Shared memory needs the HELLO exchange to know if the peer supports it
+				if (ZMF_LAZY_REQ_SOCKETS == 0 || shm) {
+					getReqSocket(identity);
+				}
+
+				// Events of peers in this process are handed over directly, do not subscribe to their pub socket
+				if (inproc != null) {
+					inprocPeers.put(identity, inproc);
+					LOGGER_MAIN.debug("peer in this process, using inproc transport: " + identity);
+				} else if (shm) {
+					// Wait for the HELLO of the peer to know if it supports shared memory
+					if (peerCapabilities.containsKey(identity)) {
+						connectShmPeer(identity, pubAddr);
+					} else {
+						shmPendingPubAddrs.put(identity, pubAddr);
+					}
+				} else {
+					connectSub(identity, pubAddr);
+				}
+				updateCompressionSupport(identity);
+
+			} else {
+				LOGGER_MAIN.debug("tried to add peer already known: " + identity);
+			}
+		}
+	}
+
+	/**
+	 * Returns the request socket to a known peer, opening it and sending the HELLO if not open.
+	 * Opening a socket beyond ZMF_MAX_REQ_SOCKETS closes the least recently used one. Called with lockReqSockets held.
+	 *
+	 * @return null if the peer is unknown
+	 */
+	private ZMQ.Socket getReqSocket(final ModuleUniqueId identity) {
+		ReqSocket reqSocket = socketsReq.get(identity);
+		if (reqSocket == null) {
+			final String repAddr = peerRepAddrs.get(identity);
+			if (repAddr == null) {
+				return null;
+			}
+			final ZMQ.Socket socket = context.socket(ZMQ.DEALER);
+			socket.setSndHWM(ZMF_ZMQ_ZMQ_SNDHWM);
+            socket.setSendBufferSize(ZMF_ZMQ_ZMQ_SNDBUF);
+			socket.setLinger(0);
+			socket.connect(repAddr);
+
+			String ip = getLocalIp();
+
+			final String selfRepAddr = "tcp://" + ip + ":" + selfHandle.getSelfRepPort();
+			final String selfPubAddr = "tcp://" + ip + ":" + selfHandle.getSelfPubPort();
+
+			final ZMsg hello = new ZMsg();
+			hello.add(new byte[]{MESSAGE_TYPE_HELLO});
+			hello.add(selfHandle.getUniqueId().getSenderProtoBytes());
+			hello.add(selfRepAddr);
+			hello.add(selfPubAddr);
+			hello.add(ByteUtils.convertLongToFrame(ZMF_SHM_RING_SIZE > 0 ? CAPABILITIES | CAPABILITY_SHM : CAPABILITIES));
+			hello.add(ByteUtils.convertLongToFrame(ZMF_REQUEST_CREDIT_WINDOW));
+			hello.send(socket);
+
+			reqSocket = new ReqSocket(socket);
+			socketsReq.put(identity, reqSocket);
+			LOGGER_MAIN.trace("opened request socket to " + identity);
+
+			if (ZMF_MAX_REQ_SOCKETS > 0 && socketsReq.size() > ZMF_MAX_REQ_SOCKETS) {
+				final Iterator<Map.Entry<ModuleUniqueId, ReqSocket>> eldest = socketsReq.entrySet().iterator();
+				final Map.Entry<ModuleUniqueId, ReqSocket> evicted = eldest.next();
+				eldest.remove();
+				closeReqSocket(evicted.getValue());
+				LOGGER_MAIN.trace("evicted request socket to " + evicted.getKey());
+			}
+		}
+		reqSocket.lastUsedNanos = System.nanoTime();
+		return reqSocket.socket;
+	}
+
+	/**
+	 * Closes a request socket no longer used, giving pending messages time to be sent
+	 */
+	private static void closeReqSocket(final ReqSocket reqSocket) {
+		reqSocket.socket.setLinger(REQ_SOCKET_CLOSE_LINGER);
+		reqSocket.socket.close();
+	}
+
+	/**
+	 * Timer thread method: closes request sockets not used for ZMF_REQ_SOCKET_IDLE_MS
+	 */
+	private void closeIdleReqSockets() {
+		final long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ZMF_REQ_SOCKET_IDLE_MS);
+		synchronized (lockReqSockets) {
+			final Iterator<Map.Entry<ModuleUniqueId, ReqSocket>> it = socketsReq.entrySet().iterator();
+			while (it.hasNext()) {
+				final Map.Entry<ModuleUniqueId, ReqSocket> entry = it.next();
+				// Least recently used first, all following sockets were used later
+				if (entry.getValue().lastUsedNanos - idleSince > 0) {
+					break;
+				}
+				it.remove();
+				closeReqSocket(entry.getValue());
+				LOGGER_MAIN.trace("closed idle request socket to " + entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * @return True if the HELLO of the peer was received
+	 */
+	boolean isHelloReceived(final ModuleUniqueId peer) {
+		return peerCapabilities.containsKey(peer);
+	}
+
+	/**
+	 * @return True if published events are compressed, all connected peers are known to support compression
+	 */
+	boolean isPublishCompressed() {
+		return peersWithoutCompression.isEmpty();
+	}
+
+	/**
+	 * @return Number of open request sockets
+	 */
+	int getReqSocketCount() {
+		synchronized (lockReqSockets) {
+			return socketsReq.size();
+		}
+	}
 
-				String ip = getLocalIp();
+	/**
+	 * @return Number of requests to the peer waiting for a reply, as counted for load balancing
+	 */
+	int getOutstandingRequestCount(final ModuleUniqueId peer) {
+		return loadTracker.getOutstanding(peer);
+	}
 
-				final String selfRepAddr = "tcp://" + ip + ":" + selfHandle.getSelfRepPort();
-				final String selfPubAddr = "tcp://" + ip + ":" + selfHandle.getSelfPubPort();
+	/**
+	 * Tracks if a peer supports compression by the capabilities known. Called with lockReqSockets held, so the
+	 * capabilities of a HELLO received concurrently are never overwritten by an outdated check.
+	 */
+	private void updateCompressionSupport(final ModuleUniqueId identity) {
+		// This service decodes its own events, peers in this process receive events without encoding
+		if (identity.equals(selfHandle.getUniqueId()) || inprocPeers.containsKey(identity) || peerHasCapability(identity, CAPABILITY_COMPRESSION)) {
+			peersWithoutCompression.remove(identity);
+		} else {
+			peersWithoutCompression.add(identity);
+		}
+	}
 
-				final ZMsg hello = new ZMsg();
-				hello.add(new byte[]{MESSAGE_TYPE_HELLO});
-				hello.add(selfHandle.getUniqueId().getSenderProtoBytes());
-				hello.add(selfRepAddr);
-				hello.add(selfPubAddr);
-				hello.send(socket);
+	/**
+	 * Connects the sub socket to the pub socket of a peer
+	 */
+	private void connectSub(final ModuleUniqueId identity, final String pubAddr) {
+		subConnectedPeers.add(identity);
+		queueMembershipChanges.add(Pair.of(pubAddr, true));
+		notifyPoller(NotifyType.MEMBERSHIP_CHANCE);
+	}
 
-				socketsReq.put(identity, socket);
+	/**
+	 * Uses shared memory with a peer on this host once its capabilities are known: opens the ring to the peer if it
+	 * supports shared memory, subscribes to its pub socket otherwise. Called with lockReqSockets held.
+	 */
+	private void connectShmPeer(final ModuleUniqueId identity, final String pubAddr) {
+		if (!peerHasCapability(identity, CAPABILITY_SHM)) {
+			final ShmRing inbound = shmInbound.remove(identity);
+			if (inbound != null) {
+				inbound.close();
+			}
+			connectSub(identity, pubAddr);
+			return;
+		}
+		// The peer filters the events written to its ring by the own subscriptions
+		sendShmSubscriptions(identity);
+		try {
+			shmOutbound.put(identity, ShmRing.open(getRingFile(selfHandle.getUniqueId(), identity)));
+			LOGGER_MAIN.debug("peer on this host, using shared memory transport: " + identity);
+		} catch (final IOException e) {
+			// Requests and replies use the sockets, events of the peer still arrive through its ring
+			LOGGER_MAIN.warn("failed to open shared memory ring to peer " + identity, e);
+		}
+	}
 
-				queueMembershipChanges.add(Pair.of(pubAddr, true));
-				notifyPoller(NotifyType.MEMBERSHIP_CHANCE);
+	/**
+	 * Sends the subscribed topics to a peer writing events to the own ring. Called with lockReqSockets held, so the
+	 * last snapshot sent is the current one.
+	 */
+	private void sendShmSubscriptions(final ModuleUniqueId identity) {
+		final ZMQ.Socket socket = getReqSocket(identity);
+		if (socket == null) {
+			return;
+		}
+		final ZMsg msg = new ZMsg();
+		msg.add(new byte[]{MESSAGE_TYPE_SHM_SUBSCRIPTIONS});
+		msg.add(selfHandle.getUniqueId().getSenderProtoBytes());
+		for (final MessageType topic : localSubscriptions.toMap().keySet()) {
+			msg.add(topic.getMatch());
+		}
+		msg.send(socket);
+	}
 
-			} else {
-				LOGGER_MAIN.debug("tried to add peer already known: " + identity);
+	/**
+	 * Sends the subscribed topics to all peers writing events to the own rings
+	 */
+	private void updateShmSubscriptions() {
+		if (ZMF_SHM_RING_SIZE == 0) {
+			return;
+		}
+		synchronized (lockReqSockets) {
+			for (final ModuleUniqueId identity : shmInbound.keySet()) {
+				if (peerHasCapability(identity, CAPABILITY_SHM)) {
+					sendShmSubscriptions(identity);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Creates the ring receiving from a peer
+	 *
+	 * @return False if it can not be created
+	 */
+	private boolean createInboundRing(final ModuleUniqueId identity) {
+		try {
+			shmInbound.put(identity, ShmRing.create(getRingFile(identity, selfHandle.getUniqueId()), (int) ZMF_SHM_RING_SIZE));
+			return true;
+		} catch (final IOException e) {
+			LOGGER_MAIN.warn("failed to create shared memory ring from peer " + identity, e);
+			return false;
+		}
+	}
+
+	private File getRingFile(final ModuleUniqueId producer, final ModuleUniqueId consumer) {
+		return new File(shmDir, "jmf-" + producer.toString().replace(':', '_') + "-" + consumer.toString().replace(':', '_') + ".ring");
+	}
+
+	/**
+	 * @return True if the host of a tcp address is this host
+	 */
+	private static boolean isLocalAddress(final String addr) {
+		final int start = addr.indexOf("://");
+		final int end = addr.lastIndexOf(':');
+		return start >= 0 && end > start + 3 && NetworkUtil.isLocalAddress(addr.substring(start + 3, end));
+	}
+
 	private String getLocalIp() {
 		String ip = null;
 		if (config != null) {
@@ -274,18 +1019,50 @@ public class ZmqMessagingService implements IMessagingService {
 
 		final ModuleUniqueId key = module.getUniqueId();
 		synchronized (lockReqSockets) {
-			if (socketsReq.containsKey(key)) {
-				socketsReq.remove(key).close();
+			final ReqSocket reqSocket = socketsReq.remove(key);
+			if (reqSocket != null) {
+				reqSocket.socket.close();
 			}
+			peerRepAddrs.remove(key);
+			updatePublishSequencesNeeded();
+			peerCapabilities.remove(key);
+			peersWithoutCompression.remove(key);
+			inprocPeers.remove(key);
+			shmPendingPubAddrs.remove(key);
+		}
+		final ShmRing inbound = shmInbound.remove(key);
+		if (inbound != null) {
+			inbound.close();
 		}
+		final ShmRing outbound = shmOutbound.remove(key);
+		if (outbound != null) {
+			outbound.close();
+		}
+		shmPeerSubscriptions.remove(key);
+		requestCredits.remove(key);
+		consumedCredits.remove(key);
+		creditedRequests.removeIf(id -> key.equals(id.senderId));
+		if (batcher != null) {
+			batcher.remove(key);
+		}
+		endStreams(key);
+		loadTracker.remove(key);
+		breakers.remove(key);
 
-		queueMembershipChanges.add(Pair.of(module.getZmqPubAddr(), false));
-		notifyPoller(NotifyType.MEMBERSHIP_CHANCE);
+		if (subConnectedPeers.remove(key)) {
+			queueMembershipChanges.add(Pair.of(module.getZmqPubAddr(), false));
+			notifyPoller(NotifyType.MEMBERSHIP_CHANCE);
+		}
 	}
 
 	@Override
 	public void subscribe(final MessageType topic) {
 		checkAlive();
+		synchronized (localSubscriptions) {
+			final Integer count = localSubscriptions.get(topic);
+			localSubscriptions.put(topic, count == null ? 1 : count + 1);
+		}
+		updateShmSubscriptions();
 		queueSubscriptionChanges.add(Pair.of(topic, true));
 		notifyPoller(NotifyType.SUBSCRIPTION_CHANGE);
 	}
@@ -293,6 +1070,15 @@ public class ZmqMessagingService implements IMessagingService {
 	@Override
 	public void unsubscribe(final MessageType topic) {
 		checkAlive();
+		synchronized (localSubscriptions) {
+			final Integer count = localSubscriptions.get(topic);
+			if (count != null && count > 1) {
+				localSubscriptions.put(topic, count - 1);
+			} else {
+				localSubscriptions.remove(topic);
+			}
+		}
+		updateShmSubscriptions();
 		queueSubscriptionChanges.add(Pair.of(topic, false));
 		notifyPoller(NotifyType.SUBSCRIPTION_CHANGE);
 	}
@@ -301,10 +1087,38 @@ public class ZmqMessagingService implements IMessagingService {
 	public void publish(final Message msg) {
 		checkAlive();
 
+		final MessageOptions options = new MessageOptions();
+		if (publishSequencesNeeded) {
+			options.flags |= MessageOptions.FLAG_SEQUENCE;
+			options.sequence = nextPublishSequence(msg.getType());
+		}
+		options.setTtl(msg);
+
+		// Peers in this process receive the message itself
+		if (!inprocPeers.isEmpty()) {
+			final Message event = options.hasFlag(MessageOptions.FLAG_SEQUENCE) ? msg.withSequence(options.sequence) : msg;
+			final ModuleUniqueId sender = selfHandle.getUniqueId();
+			for (final ZmqMessagingService peer : inprocPeers.values()) {
+				peer.deliverInproc(() -> peer.handleInprocEvent(event, sender));
+			}
+		}
+
 		final ZMsg zMsg = new ZMsg();
 		zMsg.add(msg.getType().getMatch());
 		zMsg.add(selfHandle.getUniqueId().getSenderProtoBytes());
-		zMsg.add(msg.getData());
+		zMsg.add(encodePayload(msg, options, peersWithoutCompression.isEmpty()));
+		if (!options.isEmpty()) {
+			zMsg.add(options.toFrame());
+		}
+
+		// Peers on this host are not subscribed to the pub socket, write the events they subscribed to their ring
+		final MessageType topic = msg.getType();
+		for (final Map.Entry<ModuleUniqueId, ShmRing> entry : shmOutbound.entrySet()) {
+			final PrefixIndex<Boolean> subscriptions = shmPeerSubscriptions.get(entry.getKey());
+			if (subscriptions == null || subscriptions.findLongestPrefix(topic) != null) {
+				sendShm(entry.getKey(), entry.getValue(), SHM_KIND_EVENT, zMsg);
+			}
+		}
 
 		synchronized (lockPubSocket) {
 			zMsg.send(socketPub);
@@ -312,6 +1126,34 @@ public class ZmqMessagingService implements IMessagingService {
 		LOGGER_MAIN.trace("send event");
 	}
 
+	private long nextPublishSequence(final MessageType topic) {
+		synchronized (publishSequences) {
+			AtomicLong sequence = publishSequences.get(topic);
+			if (sequence == null) {
+				// The topic of the message may be changed by the caller afterwards
+				sequence = new AtomicLong(0);
+				publishSequences.put(new MessageType(topic.getMatch().clone()), sequence);
+			}
+			return sequence.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Checks if a module type has more than one instance among the peers, called with lockReqSockets held whenever
+	 * the peers change
+	 */
+	private void updatePublishSequencesNeeded() {
+		final Set<Short> types = new HashSet<>();
+		boolean needed = false;
+		for (final ModuleUniqueId peer : peerRepAddrs.keySet()) {
+			if (!types.add(peer.getTypeId())) {
+				needed = true;
+				break;
+			}
+		}
+		publishSequencesNeeded = needed;
+	}
+
 	@Override
 	public InReply sendRequest(final ModuleUniqueId target, final Message msg) {
 		checkAlive();
@@ -319,206 +1161,1113 @@ public class ZmqMessagingService implements IMessagingService {
 		final long id = nextRequestID.incrementAndGet();
 
 		final CompletableFuture<Message> future = new CompletableFuture<>();
-		final WeakReference<CompletableFuture<Message>> ref = new WeakReference<>(future);
-		outstandingRequests.put(id, ref);
-
-		final ZMsg request = new ZMsg();
-
-		request.add(new byte[]{MESSAGE_TYPE_REQUEST});
-		request.add(ByteUtils.convertLongToFrame(id));
-		request.add(selfHandle.getUniqueId().getSenderProtoBytes());
-		request.add(msg.getType().getMatch());
-		request.add(msg.getData());
 
-		synchronized (lockReqSockets) {
-			if (socketsReq.containsKey(target)) {
-				request.send(socketsReq.get(target));
+		CircuitBreaker.Permit permit = CircuitBreaker.Permit.GRANTED;
+		if (ZMF_BREAKER_TIMEOUT_MS > 0) {
+			permit = breakers.computeIfAbsent(target, peer -> new CircuitBreaker((int) ZMF_BREAKER_MIN_REQUESTS, (int) ZMF_BREAKER_FAILURE_PERCENT, TimeUnit.MILLISECONDS.toNanos(ZMF_BREAKER_OPEN_MS))).tryAcquire();
+			if (permit == CircuitBreaker.Permit.DENIED) {
+				future.completeExceptionally(new RuntimeException("circuit breaker open for target: " + target));
+				return new InReply(future, manual -> {
+				});
+			}
+		}
+		final PendingRequest pending = new PendingRequest(future, target, permit == CircuitBreaker.Permit.PROBE);
+		outstandingRequests.put(id, pending);
+		if (ZMF_BREAKER_TIMEOUT_MS > 0) {
+			breakerDeadlines.add(id);
+		}
+		if (ZMF_REQUEST_TIMEOUT_MS > 0) {
+			requestDeadlines.add(id);
+		}
 
-			} else {
-				future.completeExceptionally(new RuntimeException("target unknown: " + target));
-				outstandingRequests.remove(id);
+		final RequestCredit credit = requestCredits.get(target);
+		final BooleanSupplier send;
+		final ZmqMessagingService inproc = inprocPeers.get(target);
+		if (inproc != null) {
+			final ModuleUniqueId sender = selfHandle.getUniqueId();
+			final boolean credited = credit != null;
+			send = () -> inproc.deliverInproc(() -> inproc.handleInprocRequest(sender, id, msg, credited, 0));
+		} else {
+			final MessageOptions options = new MessageOptions();
+			if (credit != null) {
+				options.flags |= MessageOptions.FLAG_CREDIT;
 			}
+			final ZMsg request = createRequest(id, target, msg, options);
+			send = () -> sendToPeer(target, request);
+		}
+
+		loadTracker.onRequestSent(target);
+		final String error = sendRequestToPeer(target, id, send, credit);
+		if (error != null) {
+			loadTracker.onRequestDone(target, -1);
+			abandonOutcome(pending);
+			future.completeExceptionally(new RuntimeException(error));
+			outstandingRequests.remove(id);
+		} else if (msg.hasDeadline()) {
+			final long ttl = msg.getRemainingTtl(TimeUnit.MILLISECONDS);
+			pending.ttlTask = timer.schedule(() -> timeoutRequest(id, ttl), ttl, TimeUnit.MILLISECONDS);
 		}
 
 		return new InReply(id, future, this);
 	}
 
 	@Override
-	public void sendReply(final ExternalRequestIdentity id, final Message msg) {
+	public InStreamReply sendStreamRequest(final ModuleUniqueId target, final Message msg) {
 		checkAlive();
 
-		final ModuleUniqueId addr;
+		final long id = nextRequestID.incrementAndGet();
 
-		if (outstandingReplies.containsKey(id)) {
-			addr = outstandingReplies.remove(id);
+		final InStreamReply reply = new InStreamReply(id, this, (int) ZMF_STREAM_WINDOW);
+		outstandingStreams.put(id, new PendingStream(reply, target));
+
+		final RequestCredit credit = requestCredits.get(target);
+		final BooleanSupplier send;
+		// Chunks, credit, cancel and replies take the path of the request, so none overtakes it
+		final ZmqMessagingService inproc = inprocPeers.get(target);
+		if (inproc != null) {
+			final ModuleUniqueId sender = selfHandle.getUniqueId();
+			final boolean credited = credit != null;
+			send = () -> inproc.deliverInproc(() -> inproc.handleInprocRequest(sender, id, msg, credited, (int) ZMF_STREAM_WINDOW));
 		} else {
+			final MessageOptions options = new MessageOptions();
+			// Peers not supporting streams send a single reply
+			if (peerHasCapability(target, CAPABILITY_STREAMING)) {
+				options.flags |= MessageOptions.FLAG_STREAM;
+				options.credit = (int) ZMF_STREAM_WINDOW;
+			}
+			if (credit != null) {
+				options.flags |= MessageOptions.FLAG_CREDIT;
+			}
+			final ZMsg request = createRequest(id, target, msg, options);
+			send = () -> sendToPeer(target, request);
+		}
+
+		loadTracker.onRequestSent(target);
+		final String error = sendRequestToPeer(target, id, send, credit);
+		if (error != null) {
+			loadTracker.onRequestDone(target, -1);
+			outstandingStreams.remove(id);
+			reply.onEnd(new RuntimeException(error));
+		}
+
+		return reply;
+	}
+
+	/**
+	 * @return Request wire message, the options are completed with the payload encoding
+	 */
+	private ZMsg createRequest(final long id, final ModuleUniqueId target, final Message msg, final MessageOptions options) {
+		options.setTtl(msg);
+
+		final ZMsg request = new ZMsg();
+
+		request.add(new byte[]{MESSAGE_TYPE_REQUEST});
+		request.add(ByteUtils.convertLongToFrame(id));
+		request.add(selfHandle.getUniqueId().getSenderProtoBytes());
+		request.add(msg.getType().getMatch());
+		request.add(encodePayload(msg, options, peerHasCapability(target, CAPABILITY_COMPRESSION)));
+		if (!options.isEmpty()) {
+			request.add(options.toFrame());
+		}
+		return request;
+	}
+
+	/**
+	 * Sends a request taking a credit of the target, queues it or fails if there is no credit left
+	 *
+	 * @param send
+	 * 		sends the request, returns false if the target is unknown
+	 * @param credit
+	 * 		credit granted by the target, null if the target has no request window
+	 * @return null if sent or queued, the error otherwise
+	 */
+	private String sendRequestToPeer(final ModuleUniqueId target, final long id, final BooleanSupplier send, final RequestCredit credit) {
+		if (credit == null) {
+			return send.getAsBoolean() ? null : "target unknown: " + target;
+		}
+		synchronized (credit) {
+			if (credit.credit > 0 && credit.queued.isEmpty()) {
+				credit.credit--;
+				return send.getAsBoolean() ? null : "target unknown: " + target;
+			}
+			if (ZMF_REQUEST_CREDIT_MODE == ZMF_REQUEST_CREDIT_MODE_FAIL) {
+				return "no request credit left for target: " + target;
+			}
+			credit.queued.add(Pair.of(id, send));
+			return null;
+		}
+	}
+
+	@Override
+	public void onRequestConsumed(final ExternalRequestIdentity id) {
+		if (!creditedRequests.remove(id) || !alive.get()) {
+			return;
+		}
+		// Return credits in batches of a quarter window
+		final AtomicInteger consumed = consumedCredits.computeIfAbsent(id.senderId, sender -> new AtomicInteger(0));
+		if (consumed.incrementAndGet() >= Math.max(1, ZMF_REQUEST_CREDIT_WINDOW / 4)) {
+			final int granted = consumed.getAndSet(0);
+			if (granted > 0) {
+				final ZMsg msg = new ZMsg();
+				msg.add(new byte[]{MESSAGE_TYPE_REQUEST_CREDIT});
+				msg.add(selfHandle.getUniqueId().getSenderProtoBytes());
+				msg.add(ByteUtils.convertLongToFrame(granted));
+				sendToPeer(id.senderId, msg);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of requests to the peer waiting for credit
+	 */
+	int getQueuedRequestCount(final ModuleUniqueId target) {
+		final RequestCredit credit = requestCredits.get(target);
+		if (credit == null) {
+			return 0;
+		}
+		synchronized (credit) {
+			return credit.queued.size();
+		}
+	}
+
+	@Override
+	public void grantStreamCredit(final long requestID, final int credit) {
+		final PendingStream stream = outstandingStreams.get(requestID);
+		if (stream != null) {
+			sendStreamCredit(stream.target, requestID, credit);
+		}
+	}
+
+	/**
+	 * Sends stream credit to the replying peer, credit 0 cancels the stream
+	 */
+	private void sendStreamCredit(final ModuleUniqueId target, final long requestID, final int credit) {
+		final ZmqMessagingService inproc = inprocPeers.get(target);
+		if (inproc != null) {
+			final ExternalRequestIdentity identity = new ExternalRequestIdentity(selfHandle.getUniqueId(), requestID);
+			inproc.deliverInproc(() -> inproc.onStreamCreditReceived(identity, credit));
+			return;
+		}
+		final ZMsg msg = new ZMsg();
+		msg.add(new byte[]{MESSAGE_TYPE_STREAM_CREDIT});
+		msg.add(ByteUtils.convertLongToFrame(requestID));
+		msg.add(selfHandle.getUniqueId().getSenderProtoBytes());
+		msg.add(ByteUtils.convertLongToFrame(credit));
+		sendToPeer(target, msg);
+	}
+
+	@Override
+	public InReply sendRequestToAny(final List<ModuleUniqueId> targets, final Message msg) {
+		checkAlive();
+
+		final List<ModuleUniqueId> connected = new ArrayList<>(targets.size());
+		for (final ModuleUniqueId target : targets) {
+			if (peerRepAddrs.containsKey(target)) {
+				connected.add(target);
+			}
+		}
+		// Avoid targets with open circuit breaker, unless all are open
+		final List<ModuleUniqueId> available = new ArrayList<>(connected.size());
+		for (final ModuleUniqueId target : connected) {
+			final CircuitBreaker breaker = breakers.get(target);
+			if (breaker == null || breaker.getState() != CircuitBreakerState.OPEN) {
+				available.add(target);
+			}
+		}
+		if (!available.isEmpty()) {
+			return sendRequest(loadTracker.choose(available), msg);
+		}
+
+		if (connected.isEmpty()) {
+			final CompletableFuture<Message> future = new CompletableFuture<>();
+			future.completeExceptionally(new RuntimeException("no connected target in: " + targets));
+			// Nothing was sent, there is no request to cancel
+			return new InReply(future, manual -> {
+			});
+		}
+
+		return sendRequest(loadTracker.choose(connected), msg);
+	}
+
+	@Override
+	public void sendReply(final ExternalRequestIdentity id, final Message msg) {
+		sendReply(id, msg, null);
+	}
+
+	@Override
+	public void sendErrorReply(final ExternalRequestIdentity id, final String error) {
+		sendReply(id, new Message(new MessageType(new byte[0]), error.getBytes(StandardCharsets.UTF_8)), error);
+	}
+
+	/**
+	 * @param error
+	 * 		error to fail the request with, null for a regular reply
+	 */
+	private void sendReply(final ExternalRequestIdentity id, final Message msg, final String error) {
+		checkAlive();
+
+		final ModuleUniqueId addr;
+
+		if (outstandingReplies.containsKey(id)) {
+			addr = outstandingReplies.remove(id);
+		} else {
+			return;
+		}
+		// A single reply to a stream request ends the stream
+		outgoingStreams.remove(id);
+
+		final ZmqMessagingService inproc = getInprocService(addr);
+		if (inproc != null) {
+			if (!inproc.deliverInproc(() -> inproc.onReplyReceived(id.messageId, msg, error))) {
+				LOGGER_MAIN.error("unknown target: " + addr);
+			}
+			return;
+		}
+
+		final MessageOptions options = new MessageOptions();
+		if (error != null) {
+			options.flags |= MessageOptions.FLAG_ERROR;
+		}
+
+		final ZMsg reply = new ZMsg();
+
+		reply.add(new byte[]{MESSAGE_TYPE_REPLY});
+		reply.add(ByteUtils.convertLongToFrame(id.messageId));
+		reply.add(msg.getType().getMatch());
+		reply.add(encodePayload(msg, options, peerHasCapability(addr, CAPABILITY_COMPRESSION)));
+		if (!options.isEmpty()) {
+			reply.add(options.toFrame());
+		}
+
+		if (!sendToPeer(addr, reply)) {
+			LOGGER_MAIN.error("unknown target: " + addr);
+		}
+	}
+
+	@Override
+	public boolean sendStreamChunk(final ExternalRequestIdentity id, final Message chunk) {
+		checkAlive();
+
+		final OutgoingStream stream = outgoingStreams.get(id);
+		if (stream == null) {
+			// Requester does not expect a stream, the first chunk is the reply
+			if (!outstandingReplies.containsKey(id)) {
+				return false;
+			}
+			sendReply(id, chunk);
+			return true;
+		}
+
+		if (!stream.acquire()) {
+			return false;
+		}
+
+		final ModuleUniqueId addr = outstandingReplies.get(id);
+		if (addr == null) {
+			return false;
+		}
+
+		// Same queue as the reply, the end of the stream can not overtake a chunk
+		final ZmqMessagingService inproc = getInprocService(addr);
+		if (inproc != null) {
+			return inproc.deliverInproc(() -> inproc.onStreamChunkReceived(id.messageId, chunk));
+		}
+
+		final MessageOptions options = new MessageOptions();
+
+		final ZMsg msg = new ZMsg();
+		msg.add(new byte[]{MESSAGE_TYPE_STREAM_CHUNK});
+		msg.add(ByteUtils.convertLongToFrame(id.messageId));
+		msg.add(chunk.getType().getMatch());
+		msg.add(encodePayload(chunk, options, peerHasCapability(addr, CAPABILITY_COMPRESSION)));
+		if (!options.isEmpty()) {
+			msg.add(options.toFrame());
+		}
+
+		return sendToPeer(addr, msg);
+	}
+
+	@Override
+	public void finishStream(final ExternalRequestIdentity id) {
+		checkAlive();
+
+		final OutgoingStream stream = outgoingStreams.remove(id);
+		final ModuleUniqueId addr = outstandingReplies.remove(id);
+		if (stream == null || addr == null) {
+			return;
+		}
+
+		final ZmqMessagingService inproc = getInprocService(addr);
+		if (inproc != null) {
+			inproc.deliverInproc(() -> inproc.onStreamEndReceived(id.messageId));
+			return;
+		}
+
+		final ZMsg msg = new ZMsg();
+		msg.add(new byte[]{MESSAGE_TYPE_STREAM_END});
+		msg.add(ByteUtils.convertLongToFrame(id.messageId));
+		sendToPeer(addr, msg);
+	}
+
+	/**
+	 * Ends streams from and to a peer, or all streams if peer is null: received streams fail, senders of outgoing
+	 * streams stop waiting for credit
+	 */
+	private void endStreams(final ModuleUniqueId peer) {
+		outgoingStreams.entrySet().removeIf(entry -> {
+			if (peer != null && !peer.equals(entry.getKey().senderId)) {
+				return false;
+			}
+			entry.getValue().grant(0);
+			return true;
+		});
+		outstandingStreams.values().removeIf(stream -> {
+			if (peer != null && !peer.equals(stream.target)) {
+				return false;
+			}
+			final InStreamReply reply = stream.reply.get();
+			if (reply != null) {
+				reply.onEnd(new RuntimeException("stream ended, peer left or messaging stopped: " + stream.target));
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Sends a request or reply to a peer, batched if batching is enabled and supported by the peer
+	 *
+	 * @return False if the peer is unknown
+	 */
+	private boolean sendToPeer(final ModuleUniqueId target, final ZMsg msg) {
+		final ShmRing ring = shmOutbound.get(target);
+		if (ring != null && sendShm(target, ring, SHM_KIND_REP, msg)) {
+			return true;
+		}
+		if (batcher != null && peerHasCapability(target, CAPABILITY_BATCHING)) {
+			if (!peerRepAddrs.containsKey(target)) {
+				return false;
+			}
+			batcher.add(target, msg);
+			return true;
+		}
+		synchronized (lockReqSockets) {
+			final ZMQ.Socket socket = getReqSocket(target);
+			if (socket == null) {
+				return false;
+			}
+			msg.send(socket);
+			return true;
+		}
+	}
+
+	/**
+	 * Writes a message to the shared memory ring of a peer and wakes the peer up if it waits.
+	 * Requests and replies wait for space, except on the poller thread that may be the one to free it. Messages not
+	 * written, because too large or the ring is full, are sent around the ring through the request socket with the
+	 * ring position they belong to. The peer reads the ring up to that position before handling them, and a resume
+	 * record written with the next message holds back the following records until all were handled.
+	 *
+	 * @return False if the message could be sent neither way
+	 */
+	private boolean sendShm(final ModuleUniqueId target, final ShmRing ring, final byte kind, final ZMsg msg) {
+		final boolean wait = kind == SHM_KIND_REP && Thread.currentThread() != pollerThread;
+		synchronized (ring) {
+			if ((ring.bypassed > 0 && !writeShmResume(ring, wait)) || !ring.write(kind, msg, wait)) {
+				// Sent while holding the ring, the peer receives them in the order counted
+				ring.bypassed++;
+				return sendShmBypass(target, ring.getWritePosition(), kind, msg);
+			}
+		}
+		if (ring.checkWakeup()) {
+			synchronized (lockReqSockets) {
+				final ZMQ.Socket socket = getReqSocket(target);
+				if (socket != null) {
+					socket.send(new byte[]{MESSAGE_TYPE_SHM_WAKEUP});
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the number of messages sent around the ring since the last resume record, called holding the ring
+	 *
+	 * @return False if the record was not written
+	 */
+	private boolean writeShmResume(final ShmRing ring, final boolean wait) {
+		final ZMsg resume = new ZMsg();
+		resume.add(ByteUtils.convertLongToFrame(ring.bypassed));
+		if (!ring.write(SHM_KIND_RESUME, resume, wait)) {
+			return false;
+		}
+		ring.bypassed = 0;
+		return true;
+	}
+
+	/**
+	 * Sends a message not written to the ring of a peer through the request socket
+	 *
+	 * @return False if the peer is unknown
+	 */
+	private boolean sendShmBypass(final ModuleUniqueId target, final long position, final byte kind, final ZMsg msg) {
+		final ZMsg bypass = new ZMsg();
+		bypass.add(new byte[]{MESSAGE_TYPE_SHM_BYPASS});
+		bypass.add(selfHandle.getUniqueId().getSenderProtoBytes());
+		bypass.add(ByteUtils.convertLongToFrame(position));
+		bypass.add(new byte[]{kind});
+		for (final ZFrame frame : msg) {
+			bypass.add(frame.duplicate());
+		}
+		synchronized (lockReqSockets) {
+			final ZMQ.Socket socket = getReqSocket(target);
+			if (socket == null) {
+				return false;
+			}
+			bypass.send(socket);
+			return true;
+		}
+	}
+
+	/**
+	 * Sends a message or batch to a peer without batching, used by the batcher
+	 */
+	private void sendDirect(final ModuleUniqueId target, final ZMsg msg) {
+		synchronized (lockReqSockets) {
+			final ZMQ.Socket socket = getReqSocket(target);
+			if (socket != null) {
+				msg.send(socket);
+			} else {
+				LOGGER_MAIN.error("dropping batch to unknown target: " + target);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of batch wire messages sent
+	 */
+	long getBatchCount() {
+		return batcher == null ? 0 : batcher.getBatchCount();
+	}
+
+	/**
+	 * @return Number of requests and replies sent in batch wire messages
+	 */
+	long getBatchedMessageCount() {
+		return batcher == null ? 0 : batcher.getBatchedMessageCount();
+	}
+
+	@Override
+	public void enableCompression(final MessageType topic, final byte[] dictionary) {
+		compressor.enable(topic, dictionary);
+		LOGGER_MAIN.debug("enabled compression for topic " + topic.toString());
+	}
+
+	@Override
+	public void disableCompression(final MessageType topic) {
+		compressor.disable(topic);
+		LOGGER_MAIN.debug("disabled compression for topic " + topic.toString());
+	}
+
+	/**
+	 * Returns the payload to send for a message, compressed if the receiver supports it and compression pays off.
+	 * Sets the matching flags in the message options.
+	 */
+	private byte[] encodePayload(final Message msg, final MessageOptions options, final boolean receiverSupportsCompression) {
+		if (receiverSupportsCompression && compressor.isEnabled()) {
+			final byte[] compressed = compressor.compress(msg.getType(), msg.getData());
+			if (compressed != null) {
+				options.flags |= MessageOptions.FLAG_COMPRESSED;
+				return compressed;
+			}
+		}
+		return msg.getData();
+	}
+
+	/**
+	 * Poller thread method: returns the payload of a received message, decompressed if flagged as compressed
+	 *
+	 * @return the payload or null if it can not be decoded
+	 */
+	private byte[] decodePayload(final ZFrame frame, final MessageOptions options) {
+		if (!options.hasFlag(MessageOptions.FLAG_COMPRESSED)) {
+			return frame.getData();
+		}
+		try {
+			return compressor.decompress(frame.getData());
+		} catch (final DataFormatException e) {
+			LOGGER_POLLER.error("failed to decompress payload, dropping message", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return True if the peer advertised the given capability in its HELLO
+	 */
+	private boolean peerHasCapability(final ModuleUniqueId peer, final long capability) {
+		final Long capabilities = peerCapabilities.get(peer);
+		return capabilities != null && (capabilities & capability) != 0;
+	}
+
+	@Override
+	public void cancelRequest(final long requestID, final boolean manual) {
+		final PendingRequest pending = outstandingRequests.remove(requestID);
+		if (pending != null) {
+			loadTracker.onRequestDone(pending.target, -1);
+			abandonOutcome(pending);
+			sendCancel(pending.target, requestID);
+		}
+		final PendingStream stream = outstandingStreams.remove(requestID);
+		if (stream != null) {
+			loadTracker.onRequestDone(stream.target, -1);
+			if (!sendCancel(stream.target, requestID) && alive.get()) {
+				sendStreamCredit(stream.target, requestID, 0);
+			}
+		}
+
+		if (manual) {
+			LOGGER_MAIN.trace("canceled request with id=" + requestID);
+		}
+	}
+
+	/**
+	 * Notifies the target of a canceled request if it supports cancellation
+	 *
+	 * @return True if sent
+	 */
+	private boolean sendCancel(final ModuleUniqueId target, final long requestID) {
+		if (!alive.get()) {
+			return false;
+		}
+		// Same queue as the request, the cancel can not overtake it
+		final ZmqMessagingService inproc = inprocPeers.get(target);
+		if (inproc != null) {
+			final ExternalRequestIdentity identity = new ExternalRequestIdentity(selfHandle.getUniqueId(), requestID);
+			return inproc.deliverInproc(() -> inproc.onCancelReceived(identity));
+		}
+		if (!peerHasCapability(target, CAPABILITY_CANCEL)) {
+			return false;
+		}
+		final ZMsg msg = new ZMsg();
+		msg.add(new byte[]{MESSAGE_TYPE_CANCEL});
+		msg.add(ByteUtils.convertLongToFrame(requestID));
+		msg.add(selfHandle.getUniqueId().getSenderProtoBytes());
+		return sendToPeer(target, msg);
+	}
+
+	/**
+	 * Timer thread method: reports requests without reply within the circuit breaker timeout as failed and
+	 * fails requests without reply within the request timeout
+	 */
+	private void checkRequestTimeouts() {
+		final long now = System.nanoTime();
+		Long id;
+		while ((id = pollExpired(breakerDeadlines, ZMF_BREAKER_TIMEOUT_MS, now)) != null) {
+			final PendingRequest pending = outstandingRequests.get(id);
+			if (pending != null) {
+				recordOutcome(pending, false);
+			}
+		}
+		while ((id = pollExpired(requestDeadlines, ZMF_REQUEST_TIMEOUT_MS, now)) != null) {
+			timeoutRequest(id, ZMF_REQUEST_TIMEOUT_MS);
+		}
+	}
+
+	/**
+	 * Takes the head of a deadline queue if its request is not outstanding any more or its timeout expired.
+	 * Only the expired head of the queue is visited, not all outstanding requests.
+	 *
+	 * @return the id taken, null if the head request is outstanding and not expired or the queue is empty
+	 */
+	private Long pollExpired(final ConcurrentLinkedQueue<Long> deadlines, final long timeoutMs, final long now) {
+		final Long id = deadlines.peek();
+		if (id == null) {
+			return null;
+		}
+		final PendingRequest pending = outstandingRequests.get(id);
+		if (pending != null && now - pending.sentNanos <= TimeUnit.MILLISECONDS.toNanos(timeoutMs)) {
+			return null;
+		}
+		return deadlines.poll();
+	}
+
+	/**
+	 * Fails a request without reply within the request timeout or its time to live, a late reply is dropped
+	 */
+	private void timeoutRequest(final long requestID, final long timeoutMs) {
+		final PendingRequest pending = outstandingRequests.remove(requestID);
+		if (pending == null) {
+			return;
+		}
+		loadTracker.onRequestDone(pending.target, -1);
+		recordOutcome(pending, false);
+		sendCancel(pending.target, requestID);
+		final CompletableFuture<Message> future = pending.future.get();
+		if (future != null) {
+			future.completeExceptionally(new TimeoutException("no reply within " + timeoutMs + "ms from " + pending.target));
+		}
+		LOGGER_MAIN.trace("request with id=" + requestID + " timed out");
+	}
+
+	/**
+	 * Reports the outcome of a request to the circuit breaker of its target, only the first outcome counts
+	 */
+	private void recordOutcome(final PendingRequest pending, final boolean success) {
+		final CircuitBreaker breaker = breakers.get(pending.target);
+		if (breaker == null || !pending.outcomeRecorded.compareAndSet(false, true)) {
+			return;
+		}
+		if (success) {
+			breaker.onSuccess(pending.probe);
+		} else {
+			breaker.onFailure(pending.probe);
+			LOGGER_MAIN.trace("request to " + pending.target + " failed, circuit breaker " + breaker.getState());
+		}
+	}
+
+	/**
+	 * Reports a request without outcome to the circuit breaker of its target
+	 */
+	private void abandonOutcome(final PendingRequest pending) {
+		final CircuitBreaker breaker = breakers.get(pending.target);
+		if (breaker != null && pending.outcomeRecorded.compareAndSet(false, true)) {
+			breaker.onAbandoned(pending.probe);
+		}
+	}
+
+	@Override
+	public Map<ModuleUniqueId, CircuitBreakerState> getCircuitBreakerStates() {
+		final Map<ModuleUniqueId, CircuitBreakerState> states = new HashMap<>();
+		for (final Map.Entry<ModuleUniqueId, CircuitBreaker> entry : breakers.entrySet()) {
+			states.put(entry.getKey(), entry.getValue().getState());
+		}
+		return states;
+	}
+
+	@Override
+	public boolean isProbeable(final ModuleUniqueId peer) {
+		final CircuitBreaker breaker = breakers.get(peer);
+		if (breaker != null && breaker.getState() == CircuitBreakerState.OPEN) {
+			return false;
+		}
+		if (ZMF_LAZY_REQ_SOCKETS == 0 || getInprocService(peer) != null) {
+			return true;
+		}
+		synchronized (lockReqSockets) {
+			return socketsReq.containsKey(peer);
+		}
+	}
+
+	@Override
+	public PollerStats getPollerStats() {
+		final long count = statNotifyCount;
+		return new PollerStats(count, count == 0 ? 0 : statNotifyLatencyNanos / count, statMaxNotifyLatencyNanos,
+				statBlockingPollCount, statSpinHitCount, statYieldHitCount);
+	}
+
+	@Override
+	public boolean isReplyPending(final ExternalRequestIdentity id) {
+		return outstandingReplies.containsKey(id);
+	}
+
+	@Override
+	public void onDisable() {
+		checkAlive();
+		endStreams(null);
+		outstandingRequests.clear();
+		breakerDeadlines.clear();
+		requestDeadlines.clear();
+		outstandingReplies.clear();
+		loadTracker.clear();
+	}
+
+	/**
+	 * Poller thread method: apply all membership changes from queue
+	 */
+	private void applyMembershipChanges() {
+		Pair<String, Boolean> change;
+		while ((change = queueMembershipChanges.poll()) != null) {
+			applyMembershipChange(change);
+		}
+	}
+
+	private void applyMembershipChange(final Pair<String, Boolean> change) {
+		try {
+			if (change.second) {
+				socketSub.connect(change.first);
+			} else {
+				socketSub.disconnect(change.first);
+			}
+		} catch (final ZMQException e) {
+			LOGGER_POLLER.error("failed to apply membership change: ", e);
+		}
+		for (final SubLane lane : subLanes) {
+			lane.changeMembership(change.first, change.second);
+		}
+		LOGGER_POLLER.trace("applied membership change");
+	}
+
+	/**
+	 * Poller thread method: apply all subscription changes from queue
+	 */
+	private void applySubscriptionChanges() {
+		Pair<MessageType, Boolean> change;
+		while ((change = queueSubscriptionChanges.poll()) != null) {
+			applySubscriptionChange(change);
+		}
+	}
+
+	private void applySubscriptionChange(final Pair<MessageType, Boolean> change) {
+		final byte[] topic = change.first.getMatch();
+		// Topics shorter than the lane prefix may match events of any lane, they are subscribed on lane 0 only
+		final boolean shortTopic = subLanes.length > 0 && topic.length < ZMF_SUB_LANE_PREFIX_LENGTH;
+		final int lane = shortTopic ? 0 : getSubLane(topic);
+		if (lane != 0) {
+			subLanes[lane - 1].changeSubscription(topic, change.second);
+			LOGGER_POLLER.trace("applied sub change");
+			return;
+		}
+		if (shortTopic) {
+			if (change.second) {
+				shortSubscriptions.add(topic);
+			} else {
+				shortSubscriptions.stream().filter(s -> Arrays.equals(s, topic)).findFirst().ifPresent(shortSubscriptions::remove);
+			}
+		}
+
+		try {
+			if (change.second) {
+				socketSub.subscribe(topic);
+			} else {
+				socketSub.unsubscribe(topic);
+			}
+		} catch (final ZMQException e) {
+			LOGGER_POLLER.error("failed to apply subscription change: ", e);
+			return;
+		}
+		LOGGER_POLLER.trace("applied sub change");
+	}
+
+	/**
+	 * Poller thread method: handle input on sub socket, at most the poller quota of messages
+	 *
+	 * @return Number of messages received, the quota if more messages may be waiting
+	 */
+	private long handleSubIn() {
+		long handled = 0;
+		for (; handled < ZMF_POLLER_QUOTA; handled++) {
+			final ZMsg msg = ZMsg.recvMsg(socketSub, ZMQ.DONTWAIT);
+
+			if (msg == null) {
+				break;
+			}
+
+			handleEvent(msg.toArray(new ZFrame[msg.size()]));
+		}
+		return handled;
+	}
+
+	/**
+	 * Sub lane thread method
+	 *
+	 * @return True if the topic of an event matches a subscription shorter than the lane prefix
+	 */
+	private boolean matchesShortSubscription(final byte[] topic) {
+		for (final byte[] subscription : shortSubscriptions) {
+			if (topic.length < subscription.length) {
+				continue;
+			}
+			int i = 0;
+			while (i < subscription.length && topic[i] == subscription[i]) {
+				i++;
+			}
+			if (i == subscription.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Index of the sub lane receiving events of the topic, 0 if there are no additional lanes
+	 */
+	private int getSubLane(final byte[] topic) {
+		if (subLanes.length == 0) {
+			return 0;
+		}
+		final int length = (int) Math.min(topic.length, ZMF_SUB_LANE_PREFIX_LENGTH);
+		int hash = 1;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + topic[i];
+		}
+		return Math.floorMod(hash, subLanes.length + 1);
+	}
+
+	/**
+	 * Poller or sub lane thread method: handle an event received on a sub socket or a shared memory ring
+	 */
+	private void handleEvent(final ZFrame[] frames) {
+		final MessageOptions options = MessageOptions.parse(frames, 3);
+		final byte[] data = decodePayload(frames[2], options);
+		if (data == null) {
 			return;
 		}
 
-		final ZMsg reply = new ZMsg();
-
-		reply.add(new byte[]{MESSAGE_TYPE_REPLY});
-		reply.add(ByteUtils.convertLongToFrame(id.messageId));
-		reply.add(msg.getType().getMatch());
-		reply.add(msg.getData());
+		final ModuleUniqueId moduleUniqueId = new ModuleUniqueId(frames[1].getData());
+		final Message message = options.applyTtl(new Message(new MessageType(frames[0].getData()), data, options.sequence));
 
-		synchronized (lockReqSockets) {
-			if (socketsReq.containsKey(addr)) {
-				reply.send(socketsReq.get(addr));
+		core.onSubMsgReceived(message, moduleUniqueId);
+	}
 
-			} else {
-				LOGGER_MAIN.error("unknown target: " + addr);
+	/**
+	 * Poller thread method: reads the shared memory rings
+	 *
+	 * @return True if a ring has more records to read
+	 */
+	private boolean readShm() {
+		boolean more = false;
+		for (final ShmRing ring : shmInbound.values()) {
+			if (ring.read(SHM_READ_BATCH, (kind, frames) -> handleShmRecord(ring, kind, frames)) == SHM_READ_BATCH) {
+				more = true;
 			}
 		}
+		return more;
 	}
 
-	@Override
-	public void cancelRequest(final long requestID, final boolean manual) {
-		outstandingRequests.remove(requestID);
-
-		if (manual) {
-			LOGGER_MAIN.trace("canceled request with id=" + requestID);
+	/**
+	 * Poller thread method: handle a record of a shared memory ring
+	 *
+	 * @return False if the record waits for messages sent around the ring
+	 */
+	private boolean handleShmRecord(final ShmRing ring, final byte kind, final ZFrame[] frames) {
+		if (kind == SHM_KIND_RESUME) {
+			final long bypassed = ByteUtils.convertFrameToLong(frames[0]);
+			if (ring.bypassed < bypassed) {
+				return false;
+			}
+			ring.bypassed -= bypassed;
+			return true;
 		}
+		shmRecordsRead++;
+		handleShmMessage(kind, frames);
+		return true;
 	}
 
-	@Override
-	public void onDisable() {
-		checkAlive();
-		outstandingRequests.clear();
-		outstandingReplies.clear();
+	/**
+	 * Poller thread method: handle a message of a peer on this host, read from the ring or sent around it
+	 */
+	private void handleShmMessage(final byte kind, final ZFrame[] frames) {
+		if (kind == SHM_KIND_EVENT) {
+			// All events of the peer are written, deliver subscribed ones only
+			if (localSubscriptions.findLongestPrefix(new MessageType(frames[0].getData())) != null) {
+				handleEvent(frames);
+			}
+			return;
+		}
+		// Same frames as received on the rep socket, without identity frame
+		final ZFrame[] repFrames = new ZFrame[frames.length + 1];
+		repFrames[0] = new ZFrame(new byte[0]);
+		System.arraycopy(frames, 0, repFrames, 1, frames.length);
+		handleRepMessage(repFrames);
 	}
 
 	/**
-	 * Poller thread method: apply membership changes from queue
+	 * Poller thread method: sets the waiting flags of the shared memory rings before blocking
+	 *
+	 * @return True if all rings are empty
 	 */
+	private boolean prepareShmWait() {
+		for (final ShmRing ring : shmInbound.values()) {
+			if (!ring.prepareWait()) {
+				endShmWait();
+				return false;
+			}
+		}
+		return true;
+	}
 
-	private void applyMembershipChange() {
-
-		final Pair<String, Boolean> change = queueMembershipChanges.poll();
-		if (change == null) {
-			return;
+	private void endShmWait() {
+		for (final ShmRing ring : shmInbound.values()) {
+			ring.endWait();
 		}
+	}
 
-		try {
-			if (change.second) {
-				socketSub.connect(change.first);
-			} else {
-				socketSub.disconnect(change.first);
+	/**
+	 * Poller thread method: handle input on notify socket.
+	 * All pending notifications are read at once, and all queued changes are applied regardless of how many
+	 * notifications were read. Membership changes are applied first, so a subscription never waits for a connect.
+	 *
+	 * @return Number of notifications read
+	 */
+	private long handleNotify() {
+		boolean subscriptionChange = false;
+		boolean membershipChange = false;
+		long count = 0;
+		byte[] note;
+		while ((note = socketPull.recv(ZMQ.DONTWAIT)) != null) {
+			count++;
+			recordNotifyLatency(note);
+			switch (NotifyType.values()[note[0]]) {
+				case SUBSCRIPTION_CHANGE:
+					subscriptionChange = true;
+					break;
+				case MEMBERSHIP_CHANCE:
+					membershipChange = true;
+					break;
+				case SHUTDOWN:
+					LOGGER_POLLER.info("received shutdown");
+					break;
+				case INPROC_DELIVERY:
+					inprocPending = true;
+					break;
 			}
-		} catch (final ZMQException e) {
-			LOGGER_POLLER.error("failed to apply membership change: ", e);
 		}
-		LOGGER_POLLER.trace("applied membership change");
+
+		if (membershipChange) {
+			applyMembershipChanges();
+		}
+		if (subscriptionChange) {
+			applySubscriptionChanges();
+		}
+		return count;
 	}
 
 	/**
-	 * Poller thread method: apply subscription changes from queue
+	 * Poller thread method: adds the time since the notification was queued to the statistics
 	 */
-	private void applySubscriptionChange() {
-		final Pair<MessageType, Boolean> change = queueSubscriptionChanges.poll();
-		if (change == null) {
-			return;
+	private void recordNotifyLatency(final byte[] note) {
+		long sent = 0;
+		for (int i = 1; i < note.length; i++) {
+			sent = (sent << 8) | (note[i] & 0xFF);
 		}
-
-		try {
-			if (change.second) {
-				socketSub.subscribe(change.first.getMatch());
-			} else {
-				socketSub.unsubscribe(change.first.getMatch());
-			}
-		} catch (final ZMQException e) {
-			LOGGER_POLLER.error("failed to apply subscription change: ", e);
-			return;
+		final long latency = System.nanoTime() - sent;
+		statNotifyCount++;
+		statNotifyLatencyNanos += latency;
+		if (latency > statMaxNotifyLatencyNanos) {
+			statMaxNotifyLatencyNanos = latency;
 		}
-		LOGGER_POLLER.trace("applied sub change");
 	}
 
 	/**
-	 * Poller thread method: handle input on sub socket
+	 * Poller thread method: handle input on rep socket, at most the poller quota of messages
+	 *
+	 * @return Number of messages received, the quota if more messages may be waiting
 	 */
-	private void handleSubIn() {
-		while (true) {
-			final ZMsg msg = ZMsg.recvMsg(socketSub, ZMQ.DONTWAIT);
+	private long handleRepIn() {
+		long handled = 0;
+		for (; handled < ZMF_POLLER_QUOTA; handled++) {
+			final ZMsg message = ZMsg.recvMsg(socketRep, ZMQ.DONTWAIT);
 
-			if (msg == null) {
+			if (message == null) {
 				break;
 			}
 
-			final ZFrame[] frames = msg.toArray(new ZFrame[msg.size()]);
-
-
-			final ModuleUniqueId moduleUniqueId = new ModuleUniqueId(frames[1].getData());
-			final Message message = new Message(new MessageType(frames[0].getData()), frames[2].getData());
-
-			core.onSubMsgReceived(message, moduleUniqueId);
+			final ZFrame[] frames = message.toArray(new ZFrame[message.size()]);
 
+			handleRepMessage(frames);
 		}
+		return handled;
 	}
 
 	/**
-	 * Poller thread method: handle input on notify socket
+	 * Poller thread method: handle a message received on the rep socket
 	 */
-	private void handleNotify() {
-		final byte[] note = socketPull.recv();
-		final NotifyType notifyType = NotifyType.values()[note[0]];
+	private void handleRepMessage(final ZFrame[] frames) {
+		final byte type = frames[1].getData()[0];
 
-		switch (notifyType) {
-			case SUBSCRIPTION_CHANGE:
-				applySubscriptionChange();
+		switch (type) {
+			case MESSAGE_TYPE_REQUEST:
+				handleRequestReceived(frames);
 				break;
-			case MEMBERSHIP_CHANCE:
-				applyMembershipChange();
+
+			case MESSAGE_TYPE_REPLY:
+				handleReplyReceived(frames);
 				break;
-			case SHUTDOWN:
-				LOGGER_POLLER.info("received shutdown");
+
+			case MESSAGE_TYPE_HELLO:
+				handleHelloReceived(frames);
 				break;
-		}
-	}
 
-	/**
-	 * Poller thread method: handle input on rep socket
-	 */
-	private void handleRepIn() {
-		while (true) {
-			final ZMsg message = ZMsg.recvMsg(socketRep, ZMQ.DONTWAIT);
+			case MESSAGE_TYPE_BATCH:
+				handleBatchReceived(frames);
+				break;
 
-			if (message == null) {
+			case MESSAGE_TYPE_STREAM_CHUNK:
+				handleStreamChunkReceived(frames);
 				break;
-			}
 
-			final ZFrame[] frames = message.toArray(new ZFrame[message.size()]);
+			case MESSAGE_TYPE_STREAM_END:
+				handleStreamEndReceived(frames);
+				break;
 
-			final byte type = frames[1].getData()[0];
+			case MESSAGE_TYPE_STREAM_CREDIT:
+				handleStreamCreditReceived(frames);
+				break;
 
-			switch (type) {
-				case MESSAGE_TYPE_REQUEST:
-					handleRequestReceived(frames);
-					break;
+			case MESSAGE_TYPE_REQUEST_CREDIT:
+				handleRequestCreditReceived(frames);
+				break;
 
-				case MESSAGE_TYPE_REPLY:
-					handleReplyReceived(frames);
-					break;
+			case MESSAGE_TYPE_CANCEL:
+				handleCancelReceived(frames);
+				break;
 
-				case MESSAGE_TYPE_HELLO:
-					handleHelloReceived(frames);
-					break;
+			case MESSAGE_TYPE_SHM_WAKEUP:
+				// Shared memory rings are read in every poller loop iteration
+				break;
 
-				default:
-					LOGGER_POLLER.warn("received unknown message type: " + type);
-					break;
+			case MESSAGE_TYPE_SHM_BYPASS:
+				handleShmBypassReceived(frames);
+				break;
+
+			case MESSAGE_TYPE_SHM_SUBSCRIPTIONS:
+				handleShmSubscriptionsReceived(frames);
+				break;
+
+			default:
+				LOGGER_POLLER.warn("received unknown message type: " + type);
+				break;
+		}
+	}
+
+	void handleBatchReceived(final ZFrame[] frames) {
+		final List<ZFrame[]> messages = MessageBatcher.decode(frames);
+		if (messages == null) {
+			LOGGER_POLLER.warn("received malformed batch, dropping it");
+			return;
+		}
+		for (final ZFrame[] message : messages) {
+			if (message[1].getData()[0] == MESSAGE_TYPE_BATCH) {
+				LOGGER_POLLER.warn("received nested batch, dropping it");
+				continue;
 			}
+			handleRepMessage(message);
 		}
 	}
 
 	void handleRequestReceived(final ZFrame[] frames) {
 
+		final MessageOptions options = MessageOptions.parse(frames, 6);
 		final ModuleUniqueId moduleUniqueId = new ModuleUniqueId(frames[3].getData());
 		final long messageId = ByteUtils.convertFrameToLong(frames[2]);
-		final Message message = new Message(new MessageType(frames[4].getData()), frames[5].getData());
-
 		final ExternalRequestIdentity identity = new ExternalRequestIdentity(moduleUniqueId, messageId);
 
 		outstandingReplies.put(identity, moduleUniqueId);
+		if (options.hasFlag(MessageOptions.FLAG_CREDIT)) {
+			creditedRequests.add(identity);
+		}
+
+		final byte[] data = decodePayload(frames[5], options);
+		if (data == null) {
+			// Return the credit and fail the request, the requester would wait for it forever
+			onRequestConsumed(identity);
+			sendErrorReply(identity, "failed to decode request payload");
+			return;
+		}
+
+		final Message message = options.applyTtl(new Message(new MessageType(frames[4].getData()), data));
+		if (options.hasFlag(MessageOptions.FLAG_STREAM)) {
+			outgoingStreams.put(identity, new OutgoingStream(options.credit));
+		}
 
 		core.onRequestMsgReceived(identity, message, moduleUniqueId);
 
@@ -527,21 +2276,238 @@ public class ZmqMessagingService implements IMessagingService {
 	void handleReplyReceived(final ZFrame[] frames) {
 		final long id = ByteUtils.convertFrameToLong(frames[2]);
 
-		final WeakReference<CompletableFuture<Message>> futureWeakReference = outstandingRequests.remove(id);
+		final MessageOptions options = MessageOptions.parse(frames, 5);
+		final byte[] data = decodePayload(frames[4], options);
+		final String error;
+		if (data == null) {
+			error = "failed to decode reply payload";
+		} else if (options.hasFlag(MessageOptions.FLAG_ERROR)) {
+			error = new String(data, StandardCharsets.UTF_8);
+		} else {
+			error = null;
+		}
+		onReplyReceived(id, error == null ? new Message(new MessageType(frames[3].getData()), data) : null, error);
+	}
+
+	/**
+	 * Poller thread method: completes the request or stream request with the given id
+	 *
+	 * @param reply
+	 * 		the reply, null if failed
+	 * @param error
+	 * 		error the request failed with, null if replied
+	 */
+	private void onReplyReceived(final long id, final Message reply, final String error) {
+		final PendingRequest pending = outstandingRequests.remove(id);
 		
-		if (futureWeakReference == null) {
-			System.out.println("no future found for id " + id);
+		if (pending == null) {
+			if (!handleStreamReplyReceived(id, reply, error)) {
+				// Request canceled or timed out before its reply arrived
+				LOGGER_POLLER.debug("no future found for id " + id);
+			}
 			return;
 		}
+		final ScheduledFuture<?> ttlTask = pending.ttlTask;
+		if (ttlTask != null) {
+			ttlTask.cancel(false);
+		}
+		final long latencyNanos = System.nanoTime() - pending.sentNanos;
+		loadTracker.onRequestDone(pending.target, latencyNanos);
+		// Error replies count as failures like late replies
+		recordOutcome(pending, error == null && latencyNanos <= TimeUnit.MILLISECONDS.toNanos(ZMF_BREAKER_TIMEOUT_MS));
 		
-		final CompletableFuture<Message> future = futureWeakReference.get();
+		final CompletableFuture<Message> future = pending.future.get();
 
 		if (future == null) {
 			System.out.println("weak ref is null " + id);
 			return;
 		}
 
-		future.complete(new Message(new MessageType(frames[3].getData()), frames[4].getData()));
+		if (error != null) {
+			future.completeExceptionally(new IllegalStateException(error));
+			return;
+		}
+
+		future.complete(reply);
+	}
+
+	/**
+	 * Handles a single reply to a stream request
+	 *
+	 * @return False if there is no stream request with the id
+	 */
+	private boolean handleStreamReplyReceived(final long id, final Message message, final String error) {
+		final PendingStream stream = outstandingStreams.remove(id);
+		if (stream == null) {
+			return false;
+		}
+		loadTracker.onRequestDone(stream.target, -1);
+
+		final InStreamReply reply = stream.reply.get();
+		if (reply == null) {
+			return true;
+		}
+
+		if (error != null) {
+			reply.onEnd(new IllegalStateException(error));
+			return true;
+		}
+		reply.onChunk(message);
+		reply.onEnd(null);
+		return true;
+	}
+
+	void handleStreamChunkReceived(final ZFrame[] frames) {
+		final long id = ByteUtils.convertFrameToLong(frames[2]);
+
+		final byte[] data = decodePayload(frames[4], MessageOptions.parse(frames, 5));
+		onStreamChunkReceived(id, data == null ? null : new Message(new MessageType(frames[3].getData()), data));
+	}
+
+	/**
+	 * Poller thread method: passes a chunk to the stream request with the given id
+	 *
+	 * @param chunk
+	 * 		the chunk, null if its payload could not be decoded
+	 */
+	private void onStreamChunkReceived(final long id, final Message chunk) {
+		final PendingStream stream = outstandingStreams.get(id);
+		if (stream == null) {
+			return;
+		}
+
+		final InStreamReply reply = stream.reply.get();
+		if (reply == null) {
+			cancelRequest(id, false);
+			return;
+		}
+
+		if (chunk == null) {
+			cancelRequest(id, false);
+			reply.onEnd(new IllegalStateException("failed to decode stream chunk payload"));
+			return;
+		}
+		reply.onChunk(chunk);
+	}
+
+	void handleStreamEndReceived(final ZFrame[] frames) {
+		onStreamEndReceived(ByteUtils.convertFrameToLong(frames[2]));
+	}
+
+	/**
+	 * Poller thread method: ends the stream request with the given id
+	 */
+	private void onStreamEndReceived(final long id) {
+		final PendingStream stream = outstandingStreams.remove(id);
+		if (stream == null) {
+			return;
+		}
+		loadTracker.onRequestDone(stream.target, -1);
+
+		final InStreamReply reply = stream.reply.get();
+		if (reply != null) {
+			reply.onEnd(null);
+		}
+	}
+
+	void handleStreamCreditReceived(final ZFrame[] frames) {
+		final long id = ByteUtils.convertFrameToLong(frames[2]);
+		final ModuleUniqueId sender = new ModuleUniqueId(frames[3].getData());
+		final long credit = ByteUtils.convertFrameToLong(frames[4]);
+
+		onStreamCreditReceived(new ExternalRequestIdentity(sender, id), credit);
+	}
+
+	/**
+	 * Poller thread method: grants credit to a stream sent by this service, credit 0 cancels the stream
+	 */
+	private void onStreamCreditReceived(final ExternalRequestIdentity identity, final long credit) {
+		final OutgoingStream stream = outgoingStreams.get(identity);
+		if (stream == null) {
+			return;
+		}
+		stream.grant((int) credit);
+		if (credit <= 0) {
+			outgoingStreams.remove(identity);
+			outstandingReplies.remove(identity);
+		}
+	}
+
+	void handleCancelReceived(final ZFrame[] frames) {
+		final long id = ByteUtils.convertFrameToLong(frames[2]);
+		final ModuleUniqueId sender = new ModuleUniqueId(frames[3].getData());
+
+		onCancelReceived(new ExternalRequestIdentity(sender, id));
+	}
+
+	/**
+	 * Poller thread method: drops the reply of a request canceled by its requester
+	 */
+	private void onCancelReceived(final ExternalRequestIdentity identity) {
+		// Already replied
+		if (outstandingReplies.remove(identity) == null) {
+			return;
+		}
+		final OutgoingStream stream = outgoingStreams.remove(identity);
+		if (stream != null) {
+			stream.grant(0);
+		}
+
+		core.onRequestCanceled(identity);
+		LOGGER_POLLER.trace("request canceled by requester: " + identity.messageId);
+	}
+
+	/**
+	 * Poller thread method: handles a message of a peer on this host not written to the ring, after the records
+	 * written before it
+	 */
+	private void handleShmBypassReceived(final ZFrame[] frames) {
+		final ModuleUniqueId sender = new ModuleUniqueId(frames[2].getData());
+		final long position = ByteUtils.convertFrameToLong(frames[3]);
+		final byte kind = frames[4].getData()[0];
+
+		final ShmRing ring = shmInbound.get(sender);
+		if (ring != null) {
+			ring.readTo(position, (recordKind, recordFrames) -> handleShmRecord(ring, recordKind, recordFrames));
+			ring.bypassed++;
+		}
+		handleShmMessage(kind, Arrays.copyOfRange(frames, 5, frames.length));
+	}
+
+	/**
+	 * Poller thread method: stores the topics subscribed by a peer on this host
+	 */
+	private void handleShmSubscriptionsReceived(final ZFrame[] frames) {
+		final ModuleUniqueId sender = new ModuleUniqueId(frames[2].getData());
+		final PrefixIndex<Boolean> subscriptions = new PrefixIndex<>();
+		for (int i = 3; i < frames.length; i++) {
+			subscriptions.put(new MessageType(frames[i].getData()), true);
+		}
+		if (shmOutbound.containsKey(sender) || peerRepAddrs.containsKey(sender)) {
+			shmPeerSubscriptions.put(sender, subscriptions);
+		}
+	}
+
+	void handleRequestCreditReceived(final ZFrame[] frames) {
+		final ModuleUniqueId sender = new ModuleUniqueId(frames[2].getData());
+		final long granted = ByteUtils.convertFrameToLong(frames[3]);
+
+		final RequestCredit credit = requestCredits.get(sender);
+		if (credit == null) {
+			return;
+		}
+		synchronized (credit) {
+			credit.credit += granted;
+			while (credit.credit > 0 && !credit.queued.isEmpty()) {
+				final Pair<Long, BooleanSupplier> queued = credit.queued.poll();
+				// Skip requests canceled while queued
+				if (!outstandingRequests.containsKey(queued.first) && !outstandingStreams.containsKey(queued.first)) {
+					continue;
+				}
+				credit.credit--;
+				queued.second.getAsBoolean();
+			}
+		}
 	}
 
 	void handleHelloReceived(final ZFrame[] frames) {
@@ -550,13 +2516,103 @@ public class ZmqMessagingService implements IMessagingService {
 		final ModuleUniqueId identity = new ModuleUniqueId(frames[2].getData());
 		final String repAddr = frames[3].toString();
 		final String pubAddr = frames[4].toString();
+		final long capabilities = frames.length > 5 ? ByteUtils.convertFrameToLong(frames[5]) : 0;
+		final long requestWindow = frames.length > 6 ? ByteUtils.convertFrameToLong(frames[6]) : 0;
+
+		synchronized (lockReqSockets) {
+			peerCapabilities.put(identity, capabilities);
+			updateCompressionSupport(identity);
+			final String pubAddrPending = shmPendingPubAddrs.remove(identity);
+			if (pubAddrPending != null) {
+				connectShmPeer(identity, pubAddrPending);
+			}
+		}
+		if (requestWindow > 0) {
+			requestCredits.putIfAbsent(identity, new RequestCredit(requestWindow));
+		}
 
 		internalConnect(identity, repAddr, pubAddr);
+		if (ZMF_LAZY_REQ_SOCKETS != 0) {
+			// The peer is about to send requests, answer with the own HELLO before replying
+			synchronized (lockReqSockets) {
+				getReqSocket(identity);
+			}
+		}
 
 		LOGGER_POLLER.trace("handled hello msg");
 
 	}
 
+	/**
+	 * @return the service of the peer if it runs in this process and inproc transport is enabled, null otherwise
+	 */
+	private ZmqMessagingService getInprocService(final ModuleUniqueId peer) {
+		return ZMF_INPROC_TRANSPORT != 0 ? InprocRegistry.lookup(peer) : null;
+	}
+
+	/**
+	 * Called by services in this process: queues a task for the poller thread of this service
+	 *
+	 * @return False if this service is not running
+	 */
+	boolean deliverInproc(final Runnable task) {
+		if (!alive.get()) {
+			return false;
+		}
+		inprocQueue.add(task);
+		// Notify once until the poller drained the queue
+		if (inprocWakeup.compareAndSet(false, true)) {
+			notifyPoller(NotifyType.INPROC_DELIVERY);
+		}
+		return true;
+	}
+
+	/**
+	 * Poller thread method: runs the tasks queued by services in this process
+	 */
+	private long handleInproc() {
+		inprocWakeup.set(false);
+		Runnable task;
+		for (long handled = 0; handled < ZMF_POLLER_QUOTA; handled++) {
+			if ((task = inprocQueue.poll()) == null) {
+				inprocPending = false;
+				return handled;
+			}
+			task.run();
+		}
+		inprocPending = true;
+		return ZMF_POLLER_QUOTA;
+	}
+
+	/**
+	 * Poller thread method: handles a request of a service in this process
+	 *
+	 * @param streamWindow
+	 * 		initial credit of a stream request, 0 if no stream is expected
+	 */
+	private void handleInprocRequest(final ModuleUniqueId sender, final long messageId, final Message message, final boolean credited, final int streamWindow) {
+		final ExternalRequestIdentity identity = new ExternalRequestIdentity(sender, messageId);
+
+		outstandingReplies.put(identity, sender);
+		if (credited) {
+			creditedRequests.add(identity);
+		}
+		if (streamWindow > 0) {
+			outgoingStreams.put(identity, new OutgoingStream(streamWindow));
+		}
+
+		core.onRequestMsgReceived(identity, message, sender);
+	}
+
+	/**
+	 * Poller thread method: handles an event of a service in this process if subscribed to its topic
+	 */
+	private void handleInprocEvent(final Message message, final ModuleUniqueId sender) {
+		if (localSubscriptions.findLongestPrefix(message.getType()) != null) {
+			core.onSubMsgReceived(message, sender);
+		}
+	}
+
 	/**
 	 * util method to check if the alive flag is true
 	 */
@@ -567,26 +2623,97 @@ public class ZmqMessagingService implements IMessagingService {
 	}
 
 	/**
-	 * Poller thread method: main loop for the poller thread
+	 * Poller thread method: main loop for the poller thread.
+	 * Each iteration services every ready input in turn, the sockets and the inproc queue with at most the poller quota
+	 * of messages each, so a flood on one input delays the others by one quota at most. The loop only blocks if no
+	 * input has work left.
+	 * With the spin strategy idle iterations receive without polling for ZMF_POLL_SPIN_ITERATIONS, then yield the core
+	 * for ZMF_POLL_YIELD_ITERATIONS before blocking in the poller. The busy strategy never blocks.
 	 */
 	private void pollerLoop() {
 		LOGGER_POLLER.info("starting poller loop");
 
+		long idleIterations = 0;
 		while (alive.get()) {
-			poller.poll();
+			if (ZMF_POLL_STRATEGY == ZMF_POLL_STRATEGY_BUSY
+					|| (ZMF_POLL_STRATEGY == ZMF_POLL_STRATEGY_SPIN && idleIterations < ZMF_POLL_SPIN_ITERATIONS + ZMF_POLL_YIELD_ITERATIONS)) {
+				final boolean yielding = ZMF_POLL_STRATEGY == ZMF_POLL_STRATEGY_SPIN && idleIterations >= ZMF_POLL_SPIN_ITERATIONS;
+				if (yielding) {
+					Thread.yield();
+				}
+
+				// All inputs receive without waiting, polling would cost more than an empty receive
+				final long shmBefore = shmRecordsRead;
+				if (!shmInbound.isEmpty()) {
+					readShm();
+				}
+				if (serviceInputs(true, true, true) + shmRecordsRead - shmBefore == 0) {
+					idleIterations++;
+				} else {
+					if (idleIterations > 0) {
+						if (yielding) {
+							statYieldHitCount++;
+						} else {
+							statSpinHitCount++;
+						}
+					}
+					idleIterations = 0;
+				}
+				continue;
+			}
 
-			if (poller.pollin(0)) {
-				handleNotify();
-			} else if (poller.pollin(1)) {
-				handleSubIn();
-			} else if (poller.pollin(2)) {
-				handleRepIn();
+			idleIterations = 0;
+			if (shmInbound.isEmpty()) {
+				if (!inputsPending) {
+					statBlockingPollCount++;
+				}
+				poller.poll(inputsPending ? 0 : -1);
+			} else {
+				// Block only if all rings are empty, producers wake us up through the rep socket
+				final boolean block = !readShm() && !inputsPending && prepareShmWait();
+				if (block) {
+					statBlockingPollCount++;
+				}
+				poller.poll(block ? -1 : 0);
+				if (block) {
+					endShmWait();
+				}
 			}
+
+			serviceInputs(poller.pollin(0), poller.pollin(1), poller.pollin(2));
 		}
 
 		LOGGER_POLLER.info("leaving poller loop");
 	}
 
+	/**
+	 * Poller thread method: services the given sockets and the inproc queue, sets whether input is left after the quota
+	 *
+	 * @return Number of notifications and messages handled
+	 */
+	private long serviceInputs(final boolean notify, final boolean sub, final boolean rep) {
+		long handled = 0;
+		inputsPending = false;
+		if (notify) {
+			handled += handleNotify();
+		}
+		if (sub) {
+			final long handledSub = handleSubIn();
+			inputsPending |= handledSub == ZMF_POLLER_QUOTA;
+			handled += handledSub;
+		}
+		if (rep) {
+			final long handledRep = handleRepIn();
+			inputsPending |= handledRep == ZMF_POLLER_QUOTA;
+			handled += handledRep;
+		}
+		if (inprocPending) {
+			handled += handleInproc();
+			inputsPending |= inprocPending;
+		}
+		return handled;
+	}
+
 	/**
 	 * util method to close all zmq sockets
 	 */
@@ -598,23 +2725,40 @@ public class ZmqMessagingService implements IMessagingService {
 		socketPull.close();
 
 		synchronized (lockReqSockets) {
-			for (final ZMQ.Socket socket : socketsReq.values()) {
-				socket.close();
+			for (final ReqSocket reqSocket : socketsReq.values()) {
+				reqSocket.socket.close();
 			}
 		}
 	}
 
+	/**
+	 * util method to terminate the zmq context if owned by this service
+	 */
+	private void termContext() {
+		if (sharedContext == null) {
+			context.term();
+		}
+	}
+
 	/**
 	 * util method to send a notify msg to the poller thread
 	 */
 	private void notifyPoller(final NotifyType type) {
 		Objects.requireNonNull(type);
 
-		final byte[] note = new byte[1];
+		// Queuing time after the type, to measure the wake up latency of the poller
+		final byte[] note = new byte[9];
+		long now = System.nanoTime();
 
 		note[0] = (byte) type.ordinal();
+		for (int i = note.length - 1; i > 0; i--) {
+			note[i] = (byte) now;
+			now >>>= 8;
+		}
 
-		socketPush.send(note);
+		synchronized (socketPush) {
+			socketPush.send(note);
+		}
 	}
 
 	/**
@@ -199,7 +199,7 @@ public abstract class AbstractModule {
 	}
 
     /**
-     * Handler to handle incoming requests
+     * Handler to handle incoming requests without a handler registered via IFrameworkAccess.registerRequestHandler
      * ONLY CALL FROM CORE, NOT FROM MODULE
      * @param message Incoming request message
      * @param sender Sender of the request
@@ -1,6 +1,15 @@
 package jmf.module;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
 
 import jmf.config.IConfigurationProvider;
 import jmf.data.*;
@@ -29,20 +38,203 @@ public interface IFrameworkAccess {
 
     /**
      * Sends a request to a given node and returns a future_ to await the response.
+     * Fails with a TimeoutException if no reply arrives within ZMF_REQUEST_TIMEOUT_MS, when set.
      */
 	InReply sendRequest(ModuleUniqueId target, Message msg);
 
+    /**
+     * Sends a request to a given node with options. With RequestOption.SINGLE_FLIGHT an identical request
+     * (same target, topic and payload) already waiting for its reply is not sent again, both share its reply.
+     * Canceling one of the shared replies only cancels the request when all of them are canceled.
+     */
+	InReply sendRequest(ModuleUniqueId target, Message msg, RequestOption... options);
+
+    /**
+     * Sends a request expecting a streamed reply (OutReply.createStreamReply) to a given node. The reply chunks are
+     * iterated in order, the target only sends further chunks when the previous ones are consumed.
+     * A target replying with a single message produces a stream of one chunk.
+     */
+	InStreamReply sendStreamRequest(ModuleUniqueId target, Message msg);
+
+    /**
+     * @return State of the circuit breakers of peers requests were sent to. Requests to peers with open breaker fail
+     * immediately, requests to any peer of a type avoid them. Empty if circuit breakers are disabled
+     * (ZMF_BREAKER_TIMEOUT_MS not set).
+     */
+	Map<ModuleUniqueId, CircuitBreakerState> getCircuitBreakerStates();
+
+    /**
+     * @return Round trip time percentiles of the last pings to each reachable peer, measured by a background prober.
+     * Empty if probing is disabled (ZMF_RTT_PROBE_INTERVAL_MS not set).
+     */
+	Map<ModuleUniqueId, RttStats> getPeerRttStats();
+
+    /**
+     * @return Counters of the messaging poller thread: time to wake it up for a notification queued in this process
+     * (messages of peers are not timed), blocking polls and input found while spinning or yielding (ZMF_POLL_STRATEGY)
+     */
+	PollerStats getPollerStats();
+
+    /**
+     * @return Number of received requests and events dropped because their time to live (Message.withTtl) elapsed
+     * before they were handled, per topic
+     */
+	Map<MessageType, Long> getExpiredMessageCounts();
+
+    /**
+     * @return Number of received requests not handled because their requester canceled them while queued.
+     * Handlers of long running requests can check OutReply.isCancelled.
+     */
+	long getCanceledRequestCount();
+
+    /**
+     * @return Number of single-flight requests that were not sent but shared the reply of an identical request
+     */
+	long getCoalescedRequestCount();
+
+    /**
+     * Sends a request to one of the active modules of the given type. The target is chosen by power of two choices,
+     * comparing requests outstanding and the moving average of reply latency of two random peers of the type.
+     * The future fails if there is no active peer of the type.
+     */
+	InReply sendRequestToType(short type, Message msg);
+
+    /**
+     * Sends a request to the active module of the given type owning the key. Keys are mapped to modules by a consistent
+     * hash ring with virtual nodes (ZMF_HASH_RING_VNODES per module), maintained by the framework from peer state changes.
+     * Requests for a key reach the same module while membership is stable, a joining or leaving module moves about
+     * 1/N of the keys. The future fails if there is no active peer of the type.
+     */
+	InReply sendRequestByKey(short type, byte[] key, Message msg);
+
+    /**
+     * Sends a request to all active modules of the given type in parallel. The returned future completes as soon as all
+     * modules replied or when the timeout passes, with the replies received so far and the modules missing.
+     * Requests still outstanding at the timeout are canceled. No thread blocks while waiting.
+     */
+	CompletableFuture<ScatterGatherResult> scatterGather(short type, Message msg, long timeout, TimeUnit unit);
+
+    /**
+     * @return The active module of the given type owning the key (see sendRequestByKey), null if there is none
+     */
+	ModuleUniqueId getPeerForKey(short type, byte[] key);
+
     /**
      * Starts a subscription to the given topic. Received subscription events will be sent to the given handler callback.
      */
 	SubscriptionHandle subscribe(MessageType topic, BiConsumer<Message, ModuleUniqueId> handler);
 
+    /**
+     * Starts a subscription to the given topic with a typed handler. The payload of received events is decoded with the
+     * parser bound to the topic (the given parser is bound if there is none) once per event for all typed handlers.
+     */
+	<T> SubscriptionHandle subscribe(MessageType topic, Parser<T> parser, BiConsumer<T, ModuleUniqueId> handler);
+
+    /**
+     * Subscribes to a topic as member of a consumer group: each event is delivered to only one of the active instances
+     * of this module type, assigned round-robin by the publishers sequence numbers. All instances of the type are
+     * members, groups rebalance automatically when instances join or leave.
+     * Same type instances must see each other (Launcher option NO_EQUAL_MODULE_INTERCONNECT), otherwise every
+     * instance processes all events.
+     */
+	SubscriptionHandle subscribeGroup(MessageType topic, String group, BiConsumer<Message, ModuleUniqueId> handler);
+
+    /**
+     * Subscribes to a topic as member of a consumer group, each event is delivered to the instance owning the key
+     * extracted by the key function. Events with equal keys go to the same instance while membership does not change.
+     */
+	SubscriptionHandle subscribeGroup(MessageType topic, String group, Function<Message, byte[]> keyFunction, BiConsumer<Message, ModuleUniqueId> handler);
+
+    /**
+     * @return Current members of the consumer groups of this module (this instance and active same type instances)
+     */
+	List<ModuleUniqueId> getConsumerGroupMembers();
+
+    /**
+     * Registers a handler for all requests with the given topic prefix. Requests are dispatched to the handler
+     * registered for the longest matching prefix, requests without a matching handler are delivered to
+     * AbstractModule.handleRequest. The returned handle allows unregistering and offers handler statistics.
+     */
+	RequestHandlerHandle registerRequestHandler(MessageType topic, BiFunction<Message, ModuleUniqueId, OutReply> handler);
+
+    /**
+     * Registers a typed request handler, the request payload is decoded with the parser bound to the topic
+     * (the given parser is bound if there is none). Requests failing to decode are answered with an error reply,
+     * failing the reply future of the requester.
+     */
+	<T> RequestHandlerHandle registerRequestHandler(MessageType topic, Parser<T> parser, BiFunction<T, ModuleUniqueId, OutReply> handler);
+
+    /**
+     * Declares requests with the given topic prefix as idempotent and cacheable. Immediate replies to such requests
+     * are cached for the given time, identical requests (same topic and payload, from any sender) are then answered
+     * from the cache directly on the receiving thread without queueing and without calling the module.
+     * The cache of the prefix holds at most maxBytes of requests and replies, least recently used entries are evicted.
+     * Future replies are not cached. Declarations and cached replies are cleared when the module is disabled.
+     */
+	void setReplyCacheable(MessageType topic, long ttl, TimeUnit unit, long maxBytes);
+
+    /**
+     * Removes all cached replies to requests with the given topic prefix, to be called when the data they depend on changed
+     */
+	void invalidateReplyCache(MessageType topic);
+
+    /**
+     * Removes all cached replies to requests with the given topic prefix and publishes an invalidation event on the
+     * invalidation topic, invalidating the replies of the topic in the near-caches of other modules
+     */
+	void invalidateReplyCache(MessageType topic, MessageType invalidationTopic);
+
+    /**
+     * Enables the near-cache for requests with the given topic prefix: replies are cached on this side per target
+     * (or target type for sendRequestToType), identical requests are answered from the cache without network round trip.
+     * Cached replies are removed when the serving module publishes an event on the invalidation topic (see
+     * invalidateReplyCache), the event payload is the request topic prefix to invalidate, empty for all.
+     * The near-cache of the prefix holds at most maxBytes of requests and replies, entries expire after the ttl at the latest.
+     */
+	void enableNearCache(MessageType topic, MessageType invalidationTopic, long ttl, TimeUnit unit, long maxBytes);
+
+    /**
+     * @return Number of requests answered from the near-cache
+     */
+	long getNearCacheHitCount();
+
+    /**
+     * @return Number of requests of near-cached topics sent over the network because their reply was not cached
+     */
+	long getNearCacheMissCount();
+
+    /**
+     * Binds a payload parser to a topic prefix if the prefix has no parser yet. Returns the parser bound to the prefix.
+     */
+	<T> Parser<T> registerCodec(MessageType topic, Parser<T> parser);
+
+    /**
+     * Decodes the payload of a message with the parser bound to the longest prefix of its topic.
+     * The decoded object is cached on the message, other handlers of the same message get it without parsing again.
+     * Returns null if no parser is bound to the topic.
+     */
+	Object decode(Message msg) throws InvalidProtocolBufferException;
+
     /**
      * Publishes an event to the messaging message bus.
      */
 	void publish(Message msg);
 
 
+    /**
+     * Enables payload compression of published events, requests and replies with the given topic prefix.
+     * Payloads are only compressed if larger than the configured minimum size (ZMF_COMPRESSION_MIN_SIZE) and only
+     * towards peers supporting compression. The optional dictionary (see PayloadCompressor.buildDictionary) improves
+     * compression of small repetitive payloads, receivers must enable the same dictionary.
+     */
+	void enableCompression(MessageType topic, byte[] dictionary);
+
+    /**
+     * Disables payload compression for the given topic prefix
+     */
+	void disableCompression(MessageType topic);
+
+
     /**
      * Called when the additional state of a module was changed.
      * Will not trigger automatically trigger a state broadcast.
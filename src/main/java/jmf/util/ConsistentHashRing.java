@@ -0,0 +1,113 @@
+package jmf.util;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Consistent hash ring mapping keys to nodes.
+ * Every node is placed on the ring at multiple positions (virtual nodes), a key belongs to the first node position
+ * following the hash of the key. Adding or removing a node only moves the keys of the positions of that node,
+ * about 1/N of all keys. Nodes are added and removed incrementally, lookups do not lock.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ConsistentHashRing<N> {
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+
+	private final int virtualNodes;
+	/** Function returning the bytes identifying a node, its positions are derived from them */
+	private final Function<N, byte[]> nodeId;
+	private final ConcurrentNavigableMap<Long, N> ring = new ConcurrentSkipListMap<>();
+	private final Set<N> nodes = new HashSet<>();
+
+
+	/**
+	 * @param virtualNodes
+	 * 		positions per node on the ring, more positions balance keys better
+	 * @param nodeId
+	 * 		Function returning bytes identifying a node, must be equal for equal nodes on all processes
+	 */
+	public ConsistentHashRing(final int virtualNodes, final Function<N, byte[]> nodeId) {
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("virtualNodes must be at least 1");
+		}
+		this.virtualNodes = virtualNodes;
+		this.nodeId = nodeId;
+	}
+
+	/**
+	 * Adds a node to the ring
+	 *
+	 * @return True if the node was not on the ring before
+	 */
+	public synchronized boolean add(final N node) {
+		if (!nodes.add(node)) {
+			return false;
+		}
+		final byte[] id = nodeId.apply(node);
+		for (int i = 0; i < virtualNodes; i++) {
+			// On the rare collision of positions the first node keeps the position
+			ring.putIfAbsent(position(id, i), node);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a node from the ring
+	 *
+	 * @return True if the node was on the ring
+	 */
+	public synchronized boolean remove(final N node) {
+		if (!nodes.remove(node)) {
+			return false;
+		}
+		final byte[] id = nodeId.apply(node);
+		for (int i = 0; i < virtualNodes; i++) {
+			ring.remove(position(id, i), node);
+		}
+		return true;
+	}
+
+	/**
+	 * Contract: Thread safe, lock free
+	 *
+	 * @return the node owning the key or null if the ring is empty
+	 */
+	public N get(final byte[] key) {
+		if (ring.isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, N> entry = ring.ceilingEntry(HASH.hashBytes(key).asLong());
+		if (entry == null) {
+			// Wrap around
+			entry = ring.firstEntry();
+		}
+		return entry == null ? null : entry.getValue();
+	}
+
+	/**
+	 * @return True if the node is on the ring
+	 */
+	public synchronized boolean contains(final N node) {
+		return nodes.contains(node);
+	}
+
+	/**
+	 * @return Number of nodes on the ring
+	 */
+	public synchronized int size() {
+		return nodes.size();
+	}
+
+	private static long position(final byte[] id, final int virtualNode) {
+		return HASH.newHasher().putBytes(id).putInt(virtualNode).hash().asLong();
+	}
+}
@@ -0,0 +1,72 @@
+package jmf.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Memory fences ordering accesses to memory shared with other processes, such as memory mapped files, where the
+ * Java memory model gives no guarantees. Uses the fences of sun.misc.Unsafe, looked up reflectively so that no
+ * compile time reference to the internal API exists.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public final class MemoryFences {
+
+	private static final MethodHandle LOAD_FENCE;
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle FULL_FENCE;
+
+	static {
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			final Object unsafe = field.get(null);
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final MethodType fence = MethodType.methodType(void.class);
+			LOAD_FENCE = lookup.findVirtual(unsafeClass, "loadFence", fence).bindTo(unsafe);
+			STORE_FENCE = lookup.findVirtual(unsafeClass, "storeFence", fence).bindTo(unsafe);
+			FULL_FENCE = lookup.findVirtual(unsafeClass, "fullFence", fence).bindTo(unsafe);
+		} catch (final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private MemoryFences() {
+	}
+
+	/**
+	 * Loads before the fence are not reordered with loads and stores after it
+	 */
+	public static void loadFence() {
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (final Throwable e) {
+			throw new IllegalStateException("memory fence failed", e);
+		}
+	}
+
+	/**
+	 * Stores before the fence are not reordered with loads and stores after it
+	 */
+	public static void storeFence() {
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (final Throwable e) {
+			throw new IllegalStateException("memory fence failed", e);
+		}
+	}
+
+	/**
+	 * Loads and stores before the fence are not reordered with loads and stores after it
+	 */
+	public static void fullFence() {
+		try {
+			FULL_FENCE.invokeExact();
+		} catch (final Throwable e) {
+			throw new IllegalStateException("memory fence failed", e);
+		}
+	}
+}
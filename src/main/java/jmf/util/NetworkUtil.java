@@ -50,6 +50,18 @@ public class NetworkUtil {
 		throw new IllegalStateException("no suitable local address found");
 	}
 
+	/**
+	 * @return True if the address is a loopback address or assigned to a local interface
+	 */
+	public static boolean isLocalAddress(final String host) {
+		try {
+			final InetAddress address = InetAddress.getByName(host);
+			return address.isLoopbackAddress() || address.isAnyLocalAddress() || NetworkInterface.getByInetAddress(address) != null;
+		} catch (final UnknownHostException | SocketException e) {
+			return false;
+		}
+	}
+
 	public static void main(final String[] args) throws UnknownHostException, SocketException {
 		System.out.println(getLocalIp(false));
 	}
@@ -0,0 +1,208 @@
+package jmf.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jmf.data.MessageType;
+
+/**
+ * Index mapping MessageType prefixes to values, organized as a byte trie.
+ * Lookups walk the bytes of a topic once and return the value of the longest (most specific) registered prefix,
+ * instead of testing every registered prefix with containsTopic.
+ * Modifications rebuild the trie (copy on write) so lookups never lock - intended for rarely changing, often queried data.
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class PrefixIndex<V> {
+
+	private static final byte[] NO_KEYS = new byte[0];
+
+	/**
+	 * Trie node, never modified after publishing via root
+	 */
+	private static final class Node<V> {
+		private byte[] keys = NO_KEYS;
+		private Object[] children = new Object[0];
+		private V value;
+
+		@SuppressWarnings("unchecked")
+		private Node<V> child(final byte key) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == key) {
+					return (Node<V>) children[i];
+				}
+			}
+			return null;
+		}
+
+		private Node<V> childOrCreate(final byte key) {
+			Node<V> child = child(key);
+			if (child == null) {
+				child = new Node<>();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				keys[keys.length - 1] = key;
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+	}
+
+	/** Registered prefixes and values, source for trie rebuilds */
+	private final Map<MessageType, V> entries = new HashMap<>();
+	/** Current trie, replaced on every modification */
+	private volatile Node<V> root = new Node<>();
+
+
+	/**
+	 * Registers a value for the given prefix, replaces the previous value of an equal prefix
+	 *
+	 * @return the previous value of the prefix or null if there was none
+	 */
+	public synchronized V put(final MessageType prefix, final V value) {
+		// Copy match, MessageType content is mutable
+		final V previous = entries.put(new MessageType(prefix.getMatch().clone()), value);
+		rebuild();
+		return previous;
+	}
+
+	/**
+	 * Registers a value for the given prefix only if the prefix has no value yet
+	 *
+	 * @return the value registered for the prefix after this call
+	 */
+	public synchronized V putIfAbsent(final MessageType prefix, final V value) {
+		final V existing = entries.get(prefix);
+		if (existing != null) {
+			return existing;
+		}
+		put(prefix, value);
+		return value;
+	}
+
+	/**
+	 * Removes the value of the given prefix
+	 *
+	 * @return the removed value or null if the prefix was not registered
+	 */
+	public synchronized V remove(final MessageType prefix) {
+		final V removed = entries.remove(prefix);
+		if (removed != null) {
+			rebuild();
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes the given prefix only if it is currently mapped to the given value
+	 *
+	 * @return true if removed
+	 */
+	public synchronized boolean remove(final MessageType prefix, final V value) {
+		if (entries.get(prefix) != value) {
+			return false;
+		}
+		return remove(prefix) != null;
+	}
+
+	/**
+	 * @return the value registered for exactly this prefix or null
+	 */
+	public synchronized V get(final MessageType prefix) {
+		return entries.get(prefix);
+	}
+
+	/**
+	 * Contract: Thread safe, lock free
+	 * Performance: One pass over the topic bytes, no data structures created, fast
+	 *
+	 * @param topic
+	 * 		the topic to look up
+	 * @return the value of the longest registered prefix of topic (the topic itself included) or null if there is none
+	 */
+	public V findLongestPrefix(final MessageType topic) {
+		final byte[] match = topic.getMatch();
+		Node<V> node = root;
+		V found = node.value;
+		for (int i = 0; i < match.length; i++) {
+			node = node.child(match[i]);
+			if (node == null) {
+				break;
+			}
+			if (node.value != null) {
+				found = node.value;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Contract: Thread safe, lock free
+	 *
+	 * @param topic
+	 * 		the topic to look up
+	 * @return values of all registered prefixes of topic, ordered from shortest to longest prefix
+	 */
+	public List<V> findAllPrefixes(final MessageType topic) {
+		final List<V> found = new ArrayList<>();
+		final byte[] match = topic.getMatch();
+		Node<V> node = root;
+		if (node.value != null) {
+			found.add(node.value);
+		}
+		for (int i = 0; i < match.length; i++) {
+			node = node.child(match[i]);
+			if (node == null) {
+				break;
+			}
+			if (node.value != null) {
+				found.add(node.value);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return true if no prefix registered
+	 */
+	public synchronized boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @return Copied list of all registered values
+	 */
+	public synchronized List<V> values() {
+		return new ArrayList<>(entries.values());
+	}
+
+	/**
+	 * @return Copied map of all registered prefixes and values
+	 */
+	public synchronized Map<MessageType, V> toMap() {
+		return new HashMap<>(entries);
+	}
+
+	/**
+	 * Removes all registered prefixes
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		rebuild();
+	}
+
+	private void rebuild() {
+		final Node<V> newRoot = new Node<>();
+		for (final Map.Entry<MessageType, V> entry : entries.entrySet()) {
+			Node<V> node = newRoot;
+			for (final byte b : entry.getKey().getMatch()) {
+				node = node.childOrCreate(b);
+			}
+			node.value = entry.getValue();
+		}
+		root = newRoot;
+	}
+}
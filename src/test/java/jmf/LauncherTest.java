@@ -1,6 +1,7 @@
 package jmf;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -13,6 +14,7 @@ import com.google.common.primitives.UnsignedLong;
 import jmf.data.*;
 import jmf.module.AbstractModule;
 import jmf.module.IFrameworkController;
+import jmf.proto.FrameworkProto;
 
 /**
  * TODO Descrive
@@ -44,6 +46,58 @@ public class LauncherTest {
 		public void disable() {
 			LOGGER.info("disable");
 		}
+
+		RequestHandlerHandle handlerHandle;
+
+		public void doRegisterHandler() {
+			handlerHandle = getFramework().registerRequestHandler(new MessageType("hdl".getBytes()),
+					(msg, sender) -> OutReply.createImmediateReply(new Message(msg.getType(), "handled".getBytes())));
+		}
+
+		public void doRegisterTypedHandler() {
+			getFramework().registerRequestHandler(new MessageType("typ".getBytes()), FrameworkProto.SenderId.PARSER,
+					(senderId, sender) -> OutReply.createImmediateReply(new Message(new MessageType("typ".getBytes()), senderId.toByteArray())));
+		}
+
+		public Message doTypedReq(final byte[] payload) throws Exception {
+			return getFramework().sendRequest(getUniqueId(), new Message(new MessageType("typ1".getBytes()), payload)).get(5, TimeUnit.SECONDS);
+		}
+
+		public void doRegisterStreamHandler() {
+			// Chunks sent before the handler returns are queued until the reply is bound to its request
+			getFramework().registerRequestHandler(new MessageType("str".getBytes()), (msg, sender) -> {
+				final OutReply reply = OutReply.createStreamReply();
+				reply.sendStreamChunk(new Message(msg.getType(), "a".getBytes()));
+				reply.sendStreamChunk(new Message(msg.getType(), "b".getBytes()));
+				reply.finishStream();
+				return reply;
+			});
+		}
+
+		public String doStreamReq() throws Exception {
+			final InStreamReply reply = getFramework().sendStreamRequest(getUniqueId(), new Message(new MessageType("str1".getBytes()), new byte[0]));
+			final StringBuilder chunks = new StringBuilder();
+			while (reply.hasNext(5, TimeUnit.SECONDS)) {
+				chunks.append(new String(reply.next().getData()));
+			}
+			return chunks.toString();
+		}
+
+		RequestHandlerHandle cachedHandle;
+
+		public void doRegisterCachedHandler() {
+			cachedHandle = getFramework().registerRequestHandler(new MessageType("cch".getBytes()),
+					(msg, sender) -> OutReply.createImmediateReply(new Message(msg.getType(), "computed".getBytes())));
+			getFramework().setReplyCacheable(new MessageType("cch".getBytes()), 1, TimeUnit.MINUTES, 1024);
+		}
+
+		public Message doCachedReq() throws ExecutionException, InterruptedException {
+			return getFramework().sendRequest(getUniqueId(), new Message(new MessageType("cch1".getBytes()), "query".getBytes())).get();
+		}
+
+		public Message doHandlerReq() throws ExecutionException, InterruptedException {
+			return getFramework().sendRequest(getUniqueId(), new Message(new MessageType("hdl1".getBytes()), "ayyy".getBytes())).get();
+		}
 		
 		public void doPub() {
 			getFramework().publish(new Message(new MessageType("kek".getBytes()), "wolo".getBytes()));
@@ -102,6 +156,27 @@ public class LauncherTest {
 
 		module.doReq();
 
+		module.doRegisterHandler();
+		Assert.assertEquals("handled", new String(module.doHandlerReq().getData()));
+		Assert.assertEquals(1, module.handlerHandle.getInvocationCount());
+
+		// A payload failing to decode fails the request instead of leaving it unanswered
+		module.doRegisterTypedHandler();
+		try {
+			module.doTypedReq(new byte[]{(byte) 0xFF, (byte) 0xFF});
+			Assert.fail("request with undecodable payload replied");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause().getMessage().startsWith("failed to decode request payload"));
+		}
+
+		module.doRegisterStreamHandler();
+		Assert.assertEquals("ab", module.doStreamReq());
+
+		module.doRegisterCachedHandler();
+		Assert.assertEquals("computed", new String(module.doCachedReq().getData()));
+		Assert.assertEquals("computed", new String(module.doCachedReq().getData()));
+		Assert.assertEquals(1, module.cachedHandle.getInvocationCount());
+
 		//module.doPubLoop();
 
 		fc.requestStopInstance();
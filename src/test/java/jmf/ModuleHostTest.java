@@ -0,0 +1,95 @@
+package jmf;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.Launcher.StartingOption;
+import jmf.data.*;
+import jmf.module.AbstractModule;
+import jmf.module.IFrameworkController;
+
+/**
+ * Test modules sharing the runtime of one module host
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ModuleHostTest {
+
+	private static class Module extends AbstractModule {
+
+		Module(final int typeId, final int instanceId, final Collection<ModuleDependency> deps) {
+			super(new ModuleUniqueId(UnsignedInteger.fromIntBits(typeId), UnsignedLong.fromLongBits(instanceId)), UnsignedInteger.fromIntBits(1), "ModuleHostTest", deps);
+		}
+
+		@Override
+		public boolean enable() {
+			return true;
+		}
+
+		@Override
+		public void disable() {
+		}
+
+		@Override
+		public OutReply handleRequest(final Message message, final ModuleUniqueId sender) {
+			return OutReply.createImmediateReply(message);
+		}
+	}
+
+	@Test
+	public void testModulesOnSharedRuntime() throws Exception {
+		final Module moduleA = new Module(61, 1, null);
+		final Module moduleB = new Module(62, 1, Collections.singletonList(new ModuleDependency(UnsignedInteger.valueOf(61), UnsignedInteger.valueOf(1))));
+
+		final IFrameworkController controllerA;
+		final IFrameworkController controllerB;
+		try (ModuleHost host = new ModuleHost()) {
+			controllerA = host.addModule(moduleA, StartingOption.NO_PEER_DISCOVERY_WAIT);
+			controllerB = host.addModule(moduleB, StartingOption.NO_PEER_DISCOVERY_WAIT);
+
+			final long deadline = System.currentTimeMillis() + 5000;
+			while (!(moduleA.isEnabled() && moduleB.isEnabled()) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			Assert.assertTrue(moduleA.isEnabled());
+			Assert.assertTrue(moduleB.isEnabled());
+
+			// Both modules in the shared registry, each module only sees the other one
+			Assert.assertTrue(host.getPeerRegistry().containsPeerWithId(moduleA.getUniqueId(), true));
+			Assert.assertTrue(host.getPeerRegistry().containsPeerWithId(moduleB.getUniqueId(), true));
+			Assert.assertFalse(moduleA.getFramework().getPeerRegistry().containsPeerWithId(moduleA.getUniqueId(), false));
+			Assert.assertTrue(moduleA.getFramework().getPeerRegistry().containsPeerWithId(moduleB.getUniqueId(), true));
+			Assert.assertNull(moduleB.getFramework().getPeerRegistry().getAnyPeerWithType((short) 62, false));
+
+			final byte[] payload = "host".getBytes();
+			final Message reply = moduleB.getFramework().sendRequest(moduleA.getUniqueId(), new Message(new MessageType("req".getBytes()), payload)).get(5, TimeUnit.SECONDS);
+			Assert.assertArrayEquals(payload, reply.getData());
+		}
+
+		Assert.assertTrue(controllerA.isStopped());
+		Assert.assertTrue(controllerB.isStopped());
+	}
+
+	@Test
+	public void testFailedStart() throws Exception {
+		final Module module = new Module(63, 1, null);
+		try (ModuleHost host = new ModuleHost()) {
+			final IFrameworkController controller = host.addModule(module, StartingOption.NO_PEER_DISCOVERY_WAIT);
+			// A module with the same id can not join the shared peer discovery
+			try {
+				host.addModule(new Module(63, 1, null), StartingOption.NO_PEER_DISCOVERY_WAIT);
+				Assert.fail("started a module twice");
+			} catch (final RuntimeException e) {
+				Assert.assertEquals("failed to start instance", e.getMessage());
+			}
+			Assert.assertFalse(controller.isStopped());
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package jmf.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.AbstractParser;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
+
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.proto.FrameworkProto;
+
+/**
+ * Test codec registry and decode once caching of message payloads
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class CodecRegistryTest {
+
+	private final AtomicInteger parseCount = new AtomicInteger(0);
+
+	private final Parser<FrameworkProto.SenderId> countingParser = new AbstractParser<FrameworkProto.SenderId>() {
+		@Override
+		public FrameworkProto.SenderId parsePartialFrom(final CodedInputStream input, final ExtensionRegistryLite extensionRegistry) throws InvalidProtocolBufferException {
+			parseCount.incrementAndGet();
+			return FrameworkProto.SenderId.PARSER.parsePartialFrom(input, extensionRegistry);
+		}
+	};
+
+	@Test
+	public void testDecodeOnce() throws Exception {
+		final CodecRegistry registry = new CodecRegistry();
+		final MessageType topic = new MessageType("id".getBytes());
+
+		Assert.assertSame(countingParser, registry.register(topic, countingParser));
+		Assert.assertSame(countingParser, registry.lookup(new MessageType("id.sub".getBytes())));
+		Assert.assertNull(registry.lookup(new MessageType("other".getBytes())));
+
+		final FrameworkProto.SenderId senderId = FrameworkProto.SenderId.newBuilder().setTypeId(3).setInstanceId(7).build();
+		final Message message = new Message(new MessageType("id.sub".getBytes()), senderId.toByteArray());
+
+		Assert.assertEquals(senderId, registry.decode(message));
+		Assert.assertEquals(senderId, registry.decode(message));
+		Assert.assertEquals(senderId, message.getDecoded(countingParser));
+		Assert.assertEquals(1, parseCount.get());
+
+		Assert.assertNull(registry.decode(new Message(new MessageType("other".getBytes()), new byte[0])));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConflictingCodec() throws Exception {
+		final CodecRegistry registry = new CodecRegistry();
+		final MessageType topic = new MessageType("id".getBytes());
+
+		registry.register(topic, countingParser);
+		registry.register(topic, FrameworkProto.StateBroadcast.PARSER);
+	}
+}
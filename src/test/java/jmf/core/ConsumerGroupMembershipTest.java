@@ -0,0 +1,103 @@
+package jmf.core;
+
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Test consumer group ownership decisions and rebalancing
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ConsumerGroupMembershipTest {
+
+	private static final MessageType TOPIC = new MessageType("packetin".getBytes());
+	private static final ModuleUniqueId PUBLISHER = new ModuleUniqueId((short) 7, 99);
+	private static final Function<Message, byte[]> KEY = Message::getData;
+
+	private static ConsumerGroupMembership[] createGroup(final int size) {
+		final ConsumerGroupMembership[] instances = new ConsumerGroupMembership[size];
+		for (int i = 0; i < size; i++) {
+			instances[i] = new ConsumerGroupMembership(new ModuleUniqueId((short) 3, i + 1));
+		}
+		for (final ConsumerGroupMembership instance : instances) {
+			for (int i = 0; i < size; i++) {
+				instance.update(new ModuleUniqueId((short) 3, i + 1), true);
+			}
+			// Other types are no members
+			Assert.assertFalse(instance.update(PUBLISHER, true));
+			Assert.assertEquals(size, instance.getMembers().length);
+		}
+		return instances;
+	}
+
+	private static int countOwners(final ConsumerGroupMembership[] instances, final Function<Message, byte[]> keyFunction, final Message message) {
+		int owners = 0;
+		for (final ConsumerGroupMembership instance : instances) {
+			if (instance.isOwner("group", keyFunction, message, PUBLISHER)) {
+				owners++;
+			}
+		}
+		return owners;
+	}
+
+	@Test
+	public void testExactlyOneOwner() {
+		final ConsumerGroupMembership[] instances = createGroup(3);
+		final int[] perInstance = new int[3];
+
+		for (int seq = 1; seq <= 300; seq++) {
+			final Message message = new Message(TOPIC, ("switch" + seq).getBytes(), seq);
+			Assert.assertEquals(1, countOwners(instances, KEY, message));
+			Assert.assertEquals(1, countOwners(instances, null, message));
+			for (int i = 0; i < 3; i++) {
+				if (instances[i].isOwner("group", null, message, PUBLISHER)) {
+					perInstance[i]++;
+				}
+			}
+		}
+
+		// Round-robin spreads evenly
+		Assert.assertArrayEquals(new int[]{100, 100, 100}, perInstance);
+	}
+
+	@Test
+	public void testRebalance() {
+		final ConsumerGroupMembership[] instances = createGroup(3);
+		final int keys = 1000;
+		final boolean[] ownedByFirst = new boolean[keys];
+		final boolean[] ownedBySecond = new boolean[keys];
+		for (int k = 0; k < keys; k++) {
+			final Message message = new Message(TOPIC, ("switch" + k).getBytes());
+			ownedByFirst[k] = instances[0].isOwner("group", KEY, message, PUBLISHER);
+			ownedBySecond[k] = instances[1].isOwner("group", KEY, message, PUBLISHER);
+		}
+
+		// Third instance leaves
+		final ModuleUniqueId leaving = new ModuleUniqueId((short) 3, 3);
+		Assert.assertTrue(instances[0].update(leaving, false));
+		Assert.assertTrue(instances[1].update(leaving, false));
+		final ConsumerGroupMembership[] remaining = new ConsumerGroupMembership[]{instances[0], instances[1]};
+
+		for (int k = 0; k < keys; k++) {
+			final Message message = new Message(TOPIC, ("switch" + k).getBytes());
+			Assert.assertEquals(1, countOwners(remaining, KEY, message));
+			// Keys of remaining instances do not move
+			if (ownedByFirst[k]) {
+				Assert.assertTrue(instances[0].isOwner("group", KEY, message, PUBLISHER));
+			}
+			if (ownedBySecond[k]) {
+				Assert.assertTrue(instances[1].isOwner("group", KEY, message, PUBLISHER));
+			}
+		}
+
+		// Single member owns everything
+		final ConsumerGroupMembership single = new ConsumerGroupMembership(leaving);
+		Assert.assertTrue(single.isOwner("group", null, new Message(TOPIC, new byte[0]), PUBLISHER));
+	}
+}
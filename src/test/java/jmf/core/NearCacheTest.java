@@ -0,0 +1,97 @@
+package jmf.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.InReply;
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Test near-cache hits, misses and invalidation by events
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class NearCacheTest {
+
+	private static final MessageType TOPIC = new MessageType("config".getBytes());
+	private static final MessageType INVALIDATION = new MessageType("invalidate-config".getBytes());
+	private static final ModuleUniqueId TARGET = new ModuleUniqueId((short) 9, 1);
+	private static final Message REQUEST = new Message(new MessageType("config1".getBytes()), "get".getBytes());
+	private static final Message REPLY = new Message(TOPIC, "value".getBytes());
+
+	private final AtomicInteger sent = new AtomicInteger(0);
+	private CompletableFuture<Message> lastFuture;
+
+	private final Supplier<InReply> sender = () -> {
+		sent.incrementAndGet();
+		lastFuture = new CompletableFuture<>();
+		return new InReply(lastFuture, manual -> {
+		});
+	};
+
+	private NearCache createCache() {
+		final NearCache cache = new NearCache();
+		cache.enable(TOPIC, INVALIDATION, 1, TimeUnit.MINUTES, 1024);
+		Assert.assertTrue(cache.isEnabled(REQUEST.getType()));
+		Assert.assertFalse(cache.isEnabled(INVALIDATION));
+		return cache;
+	}
+
+	@Test
+	public void testHitMiss() throws Exception {
+		final NearCache cache = createCache();
+
+		cache.request(TARGET, REQUEST, sender);
+		lastFuture.complete(REPLY);
+		Assert.assertEquals(REPLY, cache.request(TARGET, REQUEST, sender).get());
+		Assert.assertEquals(1, sent.get());
+
+		// Other scope is not cached
+		cache.request((short) 9, REQUEST, sender);
+		Assert.assertEquals(2, sent.get());
+
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testInvalidation() throws Exception {
+		final NearCache cache = createCache();
+
+		cache.request(TARGET, REQUEST, sender);
+		lastFuture.complete(REPLY);
+
+		// Other events do not invalidate
+		Assert.assertFalse(cache.onEvent(new Message(new MessageType("other".getBytes()), new byte[0])));
+		cache.request(TARGET, REQUEST, sender);
+		Assert.assertEquals(1, sent.get());
+
+		// Invalidation of other request topic
+		Assert.assertTrue(cache.onEvent(new Message(INVALIDATION, "config2".getBytes())));
+		cache.request(TARGET, REQUEST, sender);
+		Assert.assertEquals(1, sent.get());
+
+		Assert.assertTrue(cache.onEvent(new Message(INVALIDATION, new byte[0])));
+		cache.request(TARGET, REQUEST, sender);
+		Assert.assertEquals(2, sent.get());
+
+		// A payload longer than a topic invalidates all
+		lastFuture.complete(REPLY);
+		Assert.assertTrue(cache.onEvent(new Message(INVALIDATION, new byte[MessageType.MESSAGE_ID_BYTES + 1])));
+		cache.request(TARGET, REQUEST, sender);
+		Assert.assertEquals(3, sent.get());
+
+		// Invalidation while in flight, reply is not cached
+		Assert.assertTrue(cache.onEvent(new Message(INVALIDATION, TOPIC.getMatch())));
+		lastFuture.complete(REPLY);
+		cache.request(TARGET, REQUEST, sender);
+		Assert.assertEquals(4, sent.get());
+	}
+}
@@ -0,0 +1,80 @@
+package jmf.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.Message;
+import jmf.data.MessageType;
+
+/**
+ * Test reply cache lookups, expiry, eviction and invalidation
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ReplyCacheTest {
+
+	private static final MessageType PATH = new MessageType("path".getBytes());
+
+	private static Message request(final String topic, final String data) {
+		return new Message(new MessageType(topic.getBytes()), data.getBytes());
+	}
+
+	@Test
+	public void testLookup() {
+		final ReplyCache cache = new ReplyCache();
+		final Message reply = request("reply", "route");
+
+		// Not cacheable
+		cache.store(request("path1", "a-b"), reply);
+		Assert.assertNull(cache.lookup(request("path1", "a-b")));
+
+		cache.setCacheable(PATH, 1, TimeUnit.MINUTES, 1000);
+		cache.store(request("path1", "a-b"), reply);
+		Assert.assertEquals(reply, cache.lookup(request("path1", "a-b")));
+		Assert.assertNull(cache.lookup(request("path1", "a-c")));
+		Assert.assertNull(cache.lookup(request("path2", "a-b")));
+
+		cache.invalidate(new MessageType("path2".getBytes()));
+		Assert.assertEquals(reply, cache.lookup(request("path1", "a-b")));
+		cache.invalidate(PATH);
+		Assert.assertNull(cache.lookup(request("path1", "a-b")));
+		Assert.assertEquals(0, cache.getBytes(PATH));
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		final ReplyCache cache = new ReplyCache();
+		cache.setCacheable(PATH, 50, TimeUnit.MILLISECONDS, 1000);
+		cache.store(request("path1", "a-b"), request("reply", "route"));
+		Assert.assertNotNull(cache.lookup(request("path1", "a-b")));
+
+		Thread.sleep(100);
+		Assert.assertNull(cache.lookup(request("path1", "a-b")));
+	}
+
+	@Test
+	public void testEviction() {
+		final ReplyCache cache = new ReplyCache();
+		// Each entry is 5 + 5 + 5 + 5 = 20 bytes
+		cache.setCacheable(PATH, 1, TimeUnit.MINUTES, 45);
+
+		cache.store(request("path1", "req-1"), request("reply", "rep-1"));
+		cache.store(request("path1", "req-2"), request("reply", "rep-2"));
+		Assert.assertEquals(40, cache.getBytes(PATH));
+
+		// Access first entry, second is least recently used
+		Assert.assertNotNull(cache.lookup(request("path1", "req-1")));
+		cache.store(request("path1", "req-3"), request("reply", "rep-3"));
+
+		Assert.assertEquals(40, cache.getBytes(PATH));
+		Assert.assertNotNull(cache.lookup(request("path1", "req-1")));
+		Assert.assertNull(cache.lookup(request("path1", "req-2")));
+		Assert.assertNotNull(cache.lookup(request("path1", "req-3")));
+
+		// Larger than the cache
+		cache.store(request("path1", "huge"), request("reply", new String(new byte[100])));
+		Assert.assertNull(cache.lookup(request("path1", "huge")));
+	}
+}
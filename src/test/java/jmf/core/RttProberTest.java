@@ -0,0 +1,120 @@
+package jmf.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.InReply;
+import jmf.data.Message;
+import jmf.data.MessageType;
+import jmf.data.ModuleUniqueId;
+import jmf.data.RttStats;
+
+/**
+ * Test round trip time probing and percentiles
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class RttProberTest {
+
+	private static final Message PING = new Message(new MessageType(new byte[]{0x03, -1}), new byte[]{0x04});
+	private static final ModuleUniqueId PEER = new ModuleUniqueId(UnsignedInteger.fromIntBits(1), UnsignedLong.fromLongBits(1));
+
+	@Test
+	public void testPercentiles() {
+		final RttProber prober = new RttProber((target, msg) -> null, peer -> true, PING, Long.MAX_VALUE);
+		Assert.assertTrue(prober.getStats().isEmpty());
+
+		prober.addPeer(PEER);
+		Assert.assertTrue(prober.getStats().isEmpty());
+		for (int i = 1; i <= 100; i++) {
+			prober.record(PEER, i);
+		}
+
+		RttStats stats = prober.getStats().get(PEER);
+		Assert.assertEquals(100, stats.getSampleCount());
+		Assert.assertEquals(1, stats.getMinNanos());
+		Assert.assertEquals(50, stats.getP50Nanos());
+		Assert.assertEquals(90, stats.getP90Nanos());
+		Assert.assertEquals(99, stats.getP99Nanos());
+		Assert.assertEquals(100, stats.getMaxNanos());
+
+		// Only the last samples are kept
+		for (int i = 0; i < RttProber.WINDOW; i++) {
+			prober.record(PEER, 1000);
+		}
+		stats = prober.getStats().get(PEER);
+		Assert.assertEquals(RttProber.WINDOW, stats.getSampleCount());
+		Assert.assertEquals(1000, stats.getMinNanos());
+
+		prober.removePeer(PEER);
+		Assert.assertTrue(prober.getStats().isEmpty());
+	}
+
+	@Test
+	public void testProbe() throws Exception {
+		final List<CompletableFuture<Message>> sent = new ArrayList<>();
+		final AtomicInteger canceled = new AtomicInteger(0);
+		final RttProber prober = new RttProber((target, msg) -> {
+			Assert.assertEquals(PEER, target);
+			Assert.assertEquals(PING, msg);
+			final CompletableFuture<Message> future = new CompletableFuture<>();
+			sent.add(future);
+			return new InReply(future, manual -> canceled.incrementAndGet());
+		}, peer -> true, PING, TimeUnit.MILLISECONDS.toNanos(50));
+		prober.addPeer(PEER);
+
+		prober.probe();
+		Assert.assertEquals(1, sent.size());
+		// No second ping while waiting for the reply
+		prober.probe();
+		Assert.assertEquals(1, sent.size());
+
+		sent.get(0).complete(PING);
+		Assert.assertEquals(1, prober.getStats().get(PEER).getSampleCount());
+
+		// Timed out ping is canceled and not recorded
+		prober.probe();
+		Thread.sleep(60);
+		prober.probe();
+		Assert.assertEquals(3, sent.size());
+		Assert.assertEquals(1, canceled.get());
+		sent.get(1).complete(PING);
+		Assert.assertEquals(1, prober.getStats().get(PEER).getSampleCount());
+	}
+
+	@Test
+	public void testSkipAndFailure() {
+		final ModuleUniqueId other = new ModuleUniqueId(UnsignedInteger.fromIntBits(1), UnsignedLong.fromLongBits(2));
+		final AtomicBoolean probeable = new AtomicBoolean(false);
+		final List<ModuleUniqueId> sent = new ArrayList<>();
+		final RttProber prober = new RttProber((target, msg) -> {
+			sent.add(target);
+			if (target.equals(PEER)) {
+				throw new IllegalStateException("no socket");
+			}
+			return new InReply(new CompletableFuture<>(), manual -> {});
+		}, peer -> probeable.get(), PING, Long.MAX_VALUE);
+		prober.addPeer(PEER);
+		prober.addPeer(other);
+
+		// Not probeable peers are skipped
+		prober.probe();
+		Assert.assertTrue(sent.isEmpty());
+
+		// A failed ping does not stop pinging the other peers
+		probeable.set(true);
+		prober.probe();
+		Assert.assertEquals(2, sent.size());
+		Assert.assertTrue(sent.contains(other));
+	}
+}
@@ -0,0 +1,85 @@
+package jmf.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+import jmf.messaging.implementation.ExternalRequestIdentity;
+import jmf.messaging.implementation.ZmqMessagingService;
+
+/**
+ * Test scatter-gather requests completing with all replies or at the deadline
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ScatterGatherRequestTest {
+
+	private static final MessageType FAST = new MessageType("fast".getBytes());
+	private static final MessageType SLOW = new MessageType("slow".getBytes());
+
+	private final ZmqMessagingService service = new ZmqMessagingService();
+	private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+	private final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "ScatterGatherRequestTest", true);
+
+	@Before
+	public void setUp() throws Exception {
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				// Requests with slow topic are never answered
+				if (FAST.containsTopic(message.getType())) {
+					service.sendReply(id, message);
+				}
+			}
+		}, selfHandle, null);
+		service.peerJoin(selfHandle);
+		Thread.sleep(100);
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+		service.stop();
+	}
+
+	@Test
+	public void testAllReplied() throws Exception {
+		final ModuleUniqueId unknown = new ModuleUniqueId((short) 42, 2);
+		final Message request = new Message(FAST, "stats".getBytes());
+
+		final ScatterGatherResult result = ScatterGatherRequest.start(service, timer, Arrays.asList(selfHandle.getUniqueId(), unknown), request, 10, TimeUnit.SECONDS)
+				.get(5, TimeUnit.SECONDS);
+
+		Assert.assertEquals(request, result.getReplies().get(selfHandle.getUniqueId()));
+		Assert.assertEquals(Collections.singleton(unknown), result.getMissing());
+		Assert.assertFalse(result.isComplete());
+
+		Assert.assertTrue(ScatterGatherRequest.start(service, timer, Collections.emptyList(), request, 10, TimeUnit.SECONDS).get().isComplete());
+	}
+
+	@Test
+	public void testDeadline() throws Exception {
+		final long start = System.currentTimeMillis();
+		final ScatterGatherResult result = ScatterGatherRequest.start(service, timer, Collections.singletonList(selfHandle.getUniqueId()), new Message(SLOW, new byte[0]), 200, TimeUnit.MILLISECONDS)
+				.get(5, TimeUnit.SECONDS);
+
+		Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+		Assert.assertTrue(result.getReplies().isEmpty());
+		Assert.assertEquals(Collections.singleton(selfHandle.getUniqueId()), result.getMissing());
+	}
+}
@@ -0,0 +1,98 @@
+package jmf.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+import jmf.messaging.implementation.ExternalRequestIdentity;
+import jmf.messaging.implementation.ZmqMessagingService;
+
+/**
+ * Test coalescing of identical requests in flight
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class SingleFlightGroupTest {
+
+	private static final MessageType TOPIC = new MessageType("topology".getBytes());
+
+	private final ZmqMessagingService service = new ZmqMessagingService();
+	private final AtomicInteger received = new AtomicInteger(0);
+	private final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "SingleFlightGroupTest", true);
+
+	@Before
+	public void setUp() throws Exception {
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				received.incrementAndGet();
+				// Reply delayed so that requests overlap
+				new Thread(() -> {
+					try {
+						Thread.sleep(200);
+					} catch (final InterruptedException e) {
+						return;
+					}
+					service.sendReply(id, message);
+				}).start();
+			}
+		}, selfHandle, null);
+		service.peerJoin(selfHandle);
+		Thread.sleep(100);
+	}
+
+	@After
+	public void tearDown() {
+		service.stop();
+	}
+
+	@Test
+	public void testCoalescing() throws Exception {
+		final SingleFlightGroup group = new SingleFlightGroup(service);
+		final Message request = new Message(TOPIC, "snapshot".getBytes());
+
+		final InReply first = group.sendRequest(selfHandle.getUniqueId(), request);
+		final InReply second = group.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, "snapshot".getBytes()));
+		final InReply other = group.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, "other".getBytes()));
+
+		Assert.assertEquals(request, first.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(request, second.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("other", new String(other.get(5, TimeUnit.SECONDS).getData()));
+		Assert.assertEquals(2, received.get());
+		Assert.assertEquals(2, group.getSentCount());
+		Assert.assertEquals(1, group.getCoalescedCount());
+
+		// Completed requests are sent again
+		Assert.assertEquals(request, group.sendRequest(selfHandle.getUniqueId(), request).get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(3, received.get());
+	}
+
+	@Test
+	public void testCancelOneCaller() throws Exception {
+		final SingleFlightGroup group = new SingleFlightGroup(service);
+		final Message request = new Message(TOPIC, "snapshot".getBytes());
+
+		final InReply first = group.sendRequest(selfHandle.getUniqueId(), request);
+		final InReply second = group.sendRequest(selfHandle.getUniqueId(), request);
+
+		first.cancelRequest();
+		first.cancelRequest();
+
+		// Request stays in flight for the remaining caller
+		Assert.assertEquals(request, second.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, received.get());
+	}
+}
@@ -0,0 +1,109 @@
+package jmf.discovery.implementation;
+
+import java.io.File;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.ModuleHandleInternal;
+import jmf.data.ModuleLifecycleState;
+import jmf.data.ModuleUniqueId;
+import jmf.discovery.IPeerRegistry;
+
+/**
+ * Test peer discovery through the peer table of a host discovery agent
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class HostDiscoveryAgentTest {
+
+	private static final short UDP_PORT = 4219;
+	private static final int FREQUENCY = 200;
+
+	private File file;
+	private HostDiscoveryAgent agent;
+	private final ModuleUniqueId id1 = new ModuleUniqueId(UnsignedInteger.fromIntBits(46), UnsignedLong.fromLongBits(1));
+	private final ModuleUniqueId id2 = new ModuleUniqueId(UnsignedInteger.fromIntBits(46), UnsignedLong.fromLongBits(2));
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("jmf_peers", ".table");
+		agent = new HostDiscoveryAgent(file, UDP_PORT, FREQUENCY, 16);
+		Assert.assertTrue(agent.start());
+	}
+
+	@After
+	public void tearDown() {
+		agent.stop();
+	}
+
+	@Test
+	public void testDiscovery() throws Exception {
+		final LinkedBlockingQueue<ModuleLifecycleState> changes1 = new LinkedBlockingQueue<>();
+		final MappedPeerDiscoveryService service1 = new MappedPeerDiscoveryService(file);
+		final MappedPeerDiscoveryService service2 = new MappedPeerDiscoveryService(file);
+		Assert.assertTrue(service1.start((module, newState, lastState) -> {
+			if (module.getUniqueId().equals(id2)) {
+				changes1.add(newState);
+			}
+		}, new ModuleHandleInternal(id1, UnsignedInteger.fromIntBits(1), "HostDiscoveryAgentTest 1", true), FREQUENCY, UDP_PORT, false, false));
+		Assert.assertTrue(service2.start((module, newState, lastState) -> {
+		}, new ModuleHandleInternal(id2, UnsignedInteger.fromIntBits(1), "HostDiscoveryAgentTest 2", true), FREQUENCY, UDP_PORT, false, false));
+
+		service1.updateSelfState(ModuleLifecycleState.Active);
+		service2.updateSelfState(ModuleLifecycleState.Active);
+		service2.updateSelfAdditionalState(new byte[]{7});
+		service1.sendStateMulticast();
+		service2.sendStateMulticast();
+
+		Assert.assertEquals(ModuleLifecycleState.Active, changes1.poll(5, TimeUnit.SECONDS));
+		final IPeerRegistry registry1 = service1.getPeerRegistry();
+		Assert.assertTrue(registry1.containsPeerWithId(id2, true));
+		Assert.assertArrayEquals(new byte[]{7}, registry1.getPeerAdditionalState(registry1.getPeerWithId(id2, true)));
+		// The own module is not a peer
+		Assert.assertFalse(registry1.containsPeerWithId(id1, false));
+		Assert.assertEquals(1, registry1.getPeersWithType((short) 46, false).size());
+
+		service2.updateSelfState(ModuleLifecycleState.Inactive);
+		service2.sendStateMulticast();
+		Assert.assertEquals(ModuleLifecycleState.Inactive, changes1.poll(5, TimeUnit.SECONDS));
+
+		// Dead multicast removes the peer from the table
+		service2.updateSelfState(ModuleLifecycleState.Dead);
+		service2.sendStateMulticast();
+		service2.stop();
+		Assert.assertEquals(ModuleLifecycleState.Dead, changes1.poll(5, TimeUnit.SECONDS));
+		Assert.assertFalse(registry1.containsPeerWithId(id2, false));
+
+		service1.stop();
+	}
+
+	@Test
+	public void testStartWithoutTable() {
+		final MappedPeerDiscoveryService service = new MappedPeerDiscoveryService(new File(file.getPath() + ".missing"));
+		Assert.assertFalse(service.start((module, newState, lastState) -> {
+		}, new ModuleHandleInternal(id1, UnsignedInteger.fromIntBits(1), "HostDiscoveryAgentTest 1", true), FREQUENCY, UDP_PORT, false, false));
+	}
+
+	@Test
+	public void testAgentAlive() throws Exception {
+		Assert.assertTrue(MappedPeerDiscoveryService.isAgentAlive(file, FREQUENCY));
+
+		// Table left behind by a crashed agent
+		final File stale = File.createTempFile("jmf_peers", ".table");
+		final MappedPeerTable table = MappedPeerTable.create(stale, 4);
+		table.touch(System.currentTimeMillis() - FREQUENCY * 10);
+		try {
+			Assert.assertFalse(MappedPeerDiscoveryService.isAgentAlive(stale, FREQUENCY));
+		} finally {
+			table.close();
+		}
+	}
+}
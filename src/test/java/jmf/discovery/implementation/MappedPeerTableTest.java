@@ -0,0 +1,100 @@
+package jmf.discovery.implementation;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the seqlock protected peer table
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class MappedPeerTableTest {
+
+	private File file;
+	private MappedPeerTable writer;
+	private MappedPeerTable reader;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("jmf_peers", ".table");
+		writer = MappedPeerTable.create(file, 8);
+		reader = MappedPeerTable.open(file);
+	}
+
+	@After
+	public void tearDown() {
+		reader.close();
+		writer.close();
+		Assert.assertFalse(file.exists());
+	}
+
+	@Test
+	public void testWriteRead() {
+		final long[] sequence = new long[1];
+		Assert.assertTrue(reader.read(sequence).isEmpty());
+		Assert.assertEquals(8, reader.getSlotCount());
+
+		writer.beginWrite();
+		Assert.assertTrue(writer.writeSlot(3, "10.0.0.1", new byte[]{1, 2, 3}));
+		Assert.assertTrue(writer.writeSlot(5, "10.0.0.2", new byte[]{4}));
+		Assert.assertFalse(writer.writeSlot(6, "10.0.0.3", new byte[MappedPeerTable.MAX_MULTICAST_LENGTH + 1]));
+		writer.endWrite();
+
+		final List<MappedPeerTable.Entry> entries = reader.read(sequence);
+		Assert.assertEquals(2, entries.size());
+		Assert.assertEquals("10.0.0.1", entries.get(0).senderIp);
+		Assert.assertArrayEquals(new byte[]{1, 2, 3}, entries.get(0).multicast);
+		Assert.assertArrayEquals(new byte[]{4}, entries.get(1).multicast);
+		Assert.assertEquals(reader.getSequence(), sequence[0]);
+
+		writer.beginWrite();
+		writer.clearSlot(3);
+		writer.endWrite();
+		Assert.assertEquals(1, reader.read(sequence).size());
+		Assert.assertEquals(4, sequence[0]);
+	}
+
+	@Test
+	public void testReadDuringWrites() throws Exception {
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final Thread writerThread = new Thread(() -> {
+			byte value = 0;
+			while (!stop.get()) {
+				value++;
+				final byte[] multicast = new byte[512];
+				Arrays.fill(multicast, value);
+				writer.beginWrite();
+				writer.writeSlot(0, "10.0.0.1", multicast);
+				writer.writeSlot(1, "10.0.0.1", multicast);
+				writer.endWrite();
+				Thread.yield();
+			}
+		});
+		writerThread.start();
+
+		// Both slots are always written together, a reader must never see them differ
+		final long[] sequence = new long[1];
+		for (int i = 0; i < 2000; i++) {
+			final List<MappedPeerTable.Entry> entries = reader.read(sequence);
+			if (entries.size() == 2) {
+				Assert.assertArrayEquals(entries.get(0).multicast, entries.get(1).multicast);
+			}
+			Assert.assertEquals(0, sequence[0] & 1);
+		}
+		stop.set(true);
+		writerThread.join();
+	}
+
+	@Test
+	public void testHeartbeat() {
+		writer.touch(1234);
+		Assert.assertEquals(1234, reader.getHeartbeat());
+	}
+}
@@ -0,0 +1,128 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.*;
+
+/**
+ * Test circuit breaker state transitions
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class CircuitBreakerTest {
+
+	private static final long OPEN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	@Test
+	public void testOpenOnFailures() {
+		final CircuitBreaker breaker = new CircuitBreaker(4, 50, OPEN_NANOS);
+
+		// Not enough outcomes yet
+		breaker.onFailure(false);
+		breaker.onSuccess(false);
+		breaker.onSuccess(false);
+		Assert.assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+		Assert.assertEquals(CircuitBreaker.Permit.GRANTED, breaker.tryAcquire());
+
+		breaker.onFailure(false);
+		Assert.assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+		Assert.assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire());
+	}
+
+	@Test
+	public void testSlidingWindow() {
+		final CircuitBreaker breaker = new CircuitBreaker(4, 75, OPEN_NANOS);
+
+		breaker.onFailure(false);
+		breaker.onFailure(false);
+		breaker.onSuccess(false);
+		breaker.onSuccess(false);
+		// Oldest failure leaves the window
+		breaker.onSuccess(false);
+		breaker.onFailure(false);
+		breaker.onFailure(false);
+		Assert.assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+
+		breaker.onFailure(false);
+		Assert.assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testProbing() throws Exception {
+		final CircuitBreaker breaker = new CircuitBreaker(1, 100, OPEN_NANOS);
+		breaker.onFailure(false);
+		Assert.assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+
+		Thread.sleep(60);
+		Assert.assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+		Assert.assertEquals(CircuitBreaker.Permit.PROBE, breaker.tryAcquire());
+		// Single probe in flight
+		Assert.assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire());
+
+		// Abandoned probe allows a new one
+		breaker.onAbandoned(true);
+		Assert.assertEquals(CircuitBreaker.Permit.PROBE, breaker.tryAcquire());
+
+		// Failed probe opens again
+		breaker.onFailure(true);
+		Assert.assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+		Assert.assertEquals(CircuitBreaker.Permit.DENIED, breaker.tryAcquire());
+
+		Thread.sleep(60);
+		Assert.assertEquals(CircuitBreaker.Permit.PROBE, breaker.tryAcquire());
+		// Late outcome of a request sent before opening is ignored
+		breaker.onSuccess(false);
+		Assert.assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+
+		breaker.onSuccess(true);
+		Assert.assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+		Assert.assertEquals(CircuitBreaker.Permit.GRANTED, breaker.tryAcquire());
+	}
+
+	@Test
+	public void testErrorRepliesAreFailures() throws Exception {
+		final ZmqMessagingService serviceA = new ZmqMessagingService();
+		final ZmqMessagingService serviceB = new ZmqMessagingService();
+		final ModuleHandleInternal handleA = ServiceTestFixture.createHandle(41, 1, "CircuitBreakerTestA");
+		final ModuleHandleInternal handleB = ServiceTestFixture.createHandle(41, 2, "CircuitBreakerTestB");
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config()
+				.with("ZMF_BREAKER_TIMEOUT_MS", 5000)
+				.with("ZMF_BREAKER_MIN_REQUESTS", 2)
+				.with("ZMF_BREAKER_FAILURE_PERCENT", 100);
+		final ServiceTestFixture fixture = new ServiceTestFixture();
+		serviceA.start(fixture.createCore(null, null), handleA, config);
+		serviceB.start(fixture.createCore(null, (id, message) -> serviceB.sendErrorReply(id, "failed")), handleB, config);
+		try {
+			ServiceTestFixture.connect(serviceA, handleA, serviceB, handleB);
+
+			// Fast error replies must not keep the breaker closed
+			for (int i = 0; i < 2; i++) {
+				final InReply reply = serviceA.sendRequest(handleB.getUniqueId(), new Message(new MessageType("fail".getBytes()), new byte[]{1}));
+				try {
+					reply.get(5, TimeUnit.SECONDS);
+					Assert.fail("error reply completed the request");
+				} catch (final ExecutionException e) {
+					Assert.assertEquals("failed", e.getCause().getMessage());
+				}
+			}
+			Assert.assertEquals(CircuitBreakerState.OPEN, serviceA.getCircuitBreakerStates().get(handleB.getUniqueId()));
+		} finally {
+			serviceA.stop();
+			serviceB.stop();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoMinRequests() {
+		new CircuitBreaker(0, 50, OPEN_NANOS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFailurePercentOutOfRange() {
+		new CircuitBreaker(4, 101, OPEN_NANOS);
+	}
+}
@@ -0,0 +1,139 @@
+package jmf.messaging.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMsg;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.config.IConfigurationProvider;
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+
+/**
+ * Test batch encoding and batched request/reply round trips
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class MessageBatcherTest {
+
+	private static final MessageType TOPIC = new MessageType("stats".getBytes());
+
+	private static ZMsg message(final String... frames) {
+		final ZMsg msg = new ZMsg();
+		for (final String frame : frames) {
+			msg.add(frame);
+		}
+		return msg;
+	}
+
+	@Test
+	public void testEncodeDecode() {
+		final ZMsg batch = MessageBatcher.encode((byte) 3, Arrays.asList(message("a", "b", "c"), message("d", "e")));
+		final List<ZFrame> frames = new ArrayList<>();
+		frames.add(new ZFrame("identity"));
+		frames.addAll(batch);
+
+		final List<ZFrame[]> messages = MessageBatcher.decode(frames.toArray(new ZFrame[frames.size()]));
+		Assert.assertNotNull(messages);
+		Assert.assertEquals(2, messages.size());
+		Assert.assertEquals(4, messages.get(0).length);
+		Assert.assertEquals("identity", messages.get(0)[0].toString());
+		Assert.assertEquals("c", messages.get(0)[3].toString());
+		Assert.assertEquals(3, messages.get(1).length);
+		Assert.assertEquals("e", messages.get(1)[2].toString());
+
+		// Frame count exceeding the batch
+		frames.remove(frames.size() - 1);
+		Assert.assertNull(MessageBatcher.decode(frames.toArray(new ZFrame[frames.size()])));
+	}
+
+	@Test
+	public void testLingerAfterSizeFlush() throws Exception {
+		final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+		final LinkedBlockingQueue<ZMsg> sent = new LinkedBlockingQueue<>();
+		final ModuleUniqueId target = new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1));
+		final long lingerMs = 400;
+		final MessageBatcher batcher = new MessageBatcher(timer, TimeUnit.MILLISECONDS.toMicros(lingerMs), 2, (byte) 3, (peer, msg) -> sent.add(msg));
+
+		// Full batch sent at once
+		batcher.add(target, message("a"));
+		batcher.add(target, message("b"));
+		Assert.assertNotNull(sent.poll());
+
+		// The next batch lingers its own time, the timer of the previous batch does not send it
+		Thread.sleep(lingerMs / 2);
+		batcher.add(target, message("c"));
+		Assert.assertNull(sent.poll(lingerMs * 3 / 4, TimeUnit.MILLISECONDS));
+		Assert.assertEquals("c", sent.poll(lingerMs * 5, TimeUnit.MILLISECONDS).getFirst().toString());
+
+		timer.shutdownNow();
+	}
+
+	@Test
+	public void testBatchedRequestReply() throws Exception {
+		final ZmqMessagingService service = new ZmqMessagingService();
+		final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "MessageBatcherTest", true);
+
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				service.sendReply(id, message);
+			}
+		}, selfHandle, new IConfigurationProvider() {
+			@Override
+			public Optional<String> getAsString(final String key) {
+				return Optional.empty();
+			}
+
+			@Override
+			public Optional<Boolean> getAsBoolean(final String key) {
+				return Optional.empty();
+			}
+
+			@Override
+			public OptionalLong getAsLong(final String key) {
+				// Requests to self are batched on the wire only without inproc transport
+				if ("ZMF_INPROC_TRANSPORT".equals(key)) {
+					return OptionalLong.of(0);
+				}
+				return "ZMF_BATCH_LINGER_US".equals(key) ? OptionalLong.of(5000) : OptionalLong.empty();
+			}
+
+			@Override
+			public OptionalDouble getAsDouble(final String key) {
+				return OptionalDouble.empty();
+			}
+		});
+		service.peerJoin(selfHandle);
+		Thread.sleep(100);
+
+		final List<InReply> replies = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			replies.add(service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, String.valueOf(i).getBytes())));
+		}
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(String.valueOf(i), new String(replies.get(i).get(5, TimeUnit.SECONDS).getData()));
+		}
+		Assert.assertTrue(service.getBatchCount() > 0);
+		Assert.assertTrue(service.getBatchedMessageCount() > service.getBatchCount());
+
+		service.stop();
+	}
+}
@@ -0,0 +1,68 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.zeromq.ZFrame;
+
+import jmf.data.Message;
+import jmf.data.MessageType;
+
+/**
+ * Test encoding of message options and message time to live
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class MessageOptionsTest {
+
+	private static final MessageType TOPIC = new MessageType("quotes".getBytes());
+
+	@Test
+	public void testRoundTrip() {
+		final MessageOptions options = new MessageOptions();
+		Assert.assertTrue(options.isEmpty());
+
+		options.flags |= MessageOptions.FLAG_SEQUENCE | MessageOptions.FLAG_STREAM;
+		options.sequence = 123456789L;
+		options.credit = 16;
+		options.setTtl(new Message(TOPIC, new byte[0]).withTtl(10, TimeUnit.SECONDS));
+
+		final MessageOptions parsed = MessageOptions.parse(new ZFrame[]{null, options.toFrame()}, 1);
+		Assert.assertEquals(options.flags, parsed.flags);
+		Assert.assertEquals(123456789L, parsed.sequence);
+		Assert.assertEquals(16, parsed.credit);
+		Assert.assertTrue(parsed.ttl > 9000 && parsed.ttl <= 10000);
+
+		// Missing options frame
+		Assert.assertTrue(MessageOptions.parse(new ZFrame[]{null}, 1).isEmpty());
+		// Empty options frame
+		Assert.assertTrue(MessageOptions.parse(new ZFrame[]{null, new ZFrame(new byte[0])}, 1).isEmpty());
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		final Message plain = new Message(TOPIC, new byte[0]);
+		Assert.assertFalse(plain.hasDeadline());
+		Assert.assertFalse(plain.isExpired());
+		Assert.assertEquals(Long.MAX_VALUE, plain.getRemainingTtl(TimeUnit.MILLISECONDS));
+
+		final MessageOptions noTtl = new MessageOptions();
+		noTtl.setTtl(plain);
+		Assert.assertTrue(noTtl.isEmpty());
+		Assert.assertSame(plain, noTtl.applyTtl(plain));
+
+		final Message expiring = plain.withTtl(50, TimeUnit.MILLISECONDS);
+		Assert.assertEquals(plain, expiring);
+		Assert.assertFalse(expiring.isExpired());
+		Thread.sleep(60);
+		Assert.assertTrue(expiring.isExpired());
+		Assert.assertEquals(0, expiring.getRemainingTtl(TimeUnit.MILLISECONDS));
+
+		// Already expired when sent, expired on receipt
+		final MessageOptions options = new MessageOptions();
+		options.setTtl(expiring);
+		Assert.assertTrue(options.hasFlag(MessageOptions.FLAG_TTL));
+		Assert.assertTrue(options.applyTtl(plain).isExpired());
+	}
+}
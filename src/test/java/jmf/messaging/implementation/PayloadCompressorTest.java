@@ -0,0 +1,121 @@
+package jmf.messaging.implementation;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+
+/**
+ * Test payload compression and compressed request/reply round trips
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class PayloadCompressorTest {
+
+	private static final MessageType TOPIC = new MessageType("flows".getBytes());
+
+	private static byte[] repetitivePayload(final int size) {
+		final byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) ("flow-entry;".charAt(i % 11));
+		}
+		return data;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final PayloadCompressor compressor = new PayloadCompressor(64, 1);
+		final byte[] data = repetitivePayload(4096);
+
+		// Not enabled for topic
+		Assert.assertNull(compressor.compress(TOPIC, data));
+
+		compressor.enable(TOPIC, null);
+		final byte[] compressed = compressor.compress(new MessageType("flows.1".getBytes()), data);
+		Assert.assertNotNull(compressed);
+		Assert.assertTrue(compressed.length < data.length);
+		Assert.assertArrayEquals(data, compressor.decompress(compressed));
+
+		// Below threshold
+		Assert.assertNull(compressor.compress(TOPIC, repetitivePayload(63)));
+	}
+
+	@Test
+	public void testInvalidLength() throws Exception {
+		final PayloadCompressor compressor = new PayloadCompressor(64, 1);
+		compressor.enable(TOPIC, null);
+		final byte[] compressed = compressor.compress(TOPIC, repetitivePayload(4096));
+
+		// Negative, above the maximum and above the possible compression ratio
+		for (final int length : new int[]{-1, PayloadCompressor.MAX_DECOMPRESSED_SIZE + 1, compressed.length * 2000}) {
+			final byte[] corrupt = compressed.clone();
+			ByteBuffer.wrap(corrupt).putInt(length);
+			try {
+				compressor.decompress(corrupt);
+				Assert.fail("accepted length " + length);
+			} catch (final DataFormatException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testDictionary() throws Exception {
+		final byte[] sample = "{\"switch\":17,\"port\":3,\"action\":\"forward\"}".getBytes();
+		final byte[] dictionary = PayloadCompressor.buildDictionary(Arrays.asList(sample, sample));
+
+		final PayloadCompressor sender = new PayloadCompressor(16, 9);
+		final PayloadCompressor plain = new PayloadCompressor(16, 9);
+		sender.enable(TOPIC, dictionary);
+		plain.enable(TOPIC, null);
+
+		final byte[] compressed = sender.compress(TOPIC, sample);
+		Assert.assertNotNull(compressed);
+		Assert.assertArrayEquals(sample, sender.decompress(compressed));
+
+		// Receiver without the dictionary can not decompress
+		try {
+			plain.decompress(compressed);
+			Assert.fail("decompressed without dictionary");
+		} catch (final DataFormatException e) {
+			// expected
+		}
+
+		final PayloadCompressor receiver = new PayloadCompressor(16, 9);
+		receiver.enable(TOPIC, dictionary);
+		Assert.assertArrayEquals(sample, receiver.decompress(compressed));
+	}
+
+	@Test
+	public void testCompressedRequestReply() throws Exception {
+		final ZmqMessagingService service = new ZmqMessagingService();
+		final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "PayloadCompressorTest", true);
+
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				service.sendReply(id, message);
+			}
+		}, selfHandle, null);
+		service.enableCompression(TOPIC, null);
+		service.peerJoin(selfHandle);
+		Thread.sleep(100);
+
+		final Message request = new Message(TOPIC, repetitivePayload(100000));
+		Assert.assertEquals(request, service.sendRequest(selfHandle.getUniqueId(), request).get());
+
+		service.stop();
+	}
+}
@@ -0,0 +1,69 @@
+package jmf.messaging.implementation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Test peer load tracking and least loaded target selection
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class PeerLoadTrackerTest {
+
+	private static final ModuleUniqueId PEER_A = new ModuleUniqueId((short) 5, 1);
+	private static final ModuleUniqueId PEER_B = new ModuleUniqueId((short) 5, 2);
+
+	@Test
+	public void testTracking() {
+		final PeerLoadTracker tracker = new PeerLoadTracker();
+
+		tracker.onRequestSent(PEER_A);
+		tracker.onRequestSent(PEER_A);
+		Assert.assertEquals(2, tracker.getOutstanding(PEER_A));
+		Assert.assertEquals(0, tracker.getOutstanding(PEER_B));
+
+		tracker.onRequestDone(PEER_A, 1000);
+		Assert.assertEquals(1, tracker.getOutstanding(PEER_A));
+		Assert.assertEquals(1000, tracker.getLatencyEwma(PEER_A), 0.001);
+
+		tracker.onRequestDone(PEER_A, 2000);
+		Assert.assertEquals(0, tracker.getOutstanding(PEER_A));
+		Assert.assertEquals(1000 + PeerLoadTracker.EWMA_ALPHA * 1000, tracker.getLatencyEwma(PEER_A), 0.001);
+
+		// Canceled requests do not change latency
+		tracker.onRequestSent(PEER_A);
+		tracker.onRequestDone(PEER_A, -1);
+		Assert.assertEquals(1200, tracker.getLatencyEwma(PEER_A), 0.001);
+
+		tracker.remove(PEER_A);
+		Assert.assertEquals(0, tracker.getLatencyEwma(PEER_A), 0.001);
+	}
+
+	@Test
+	public void testChooseLeastLoaded() {
+		final PeerLoadTracker tracker = new PeerLoadTracker();
+		final List<ModuleUniqueId> candidates = Arrays.asList(PEER_A, PEER_B);
+
+		// Without latency samples fewer outstanding requests win
+		tracker.onRequestSent(PEER_A);
+		for (int i = 0; i < 20; i++) {
+			Assert.assertEquals(PEER_B, tracker.choose(candidates));
+		}
+
+		// Slow peer loses even with fewer outstanding requests
+		tracker.onRequestDone(PEER_A, 100000);
+		tracker.onRequestSent(PEER_B);
+		tracker.onRequestDone(PEER_B, 1000);
+		tracker.onRequestSent(PEER_B);
+		for (int i = 0; i < 20; i++) {
+			Assert.assertEquals(PEER_B, tracker.choose(candidates));
+		}
+
+		Assert.assertEquals(PEER_A, tracker.choose(Arrays.asList(PEER_A)));
+	}
+}
@@ -0,0 +1,157 @@
+package jmf.messaging.implementation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.config.IConfigurationProvider;
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+
+/**
+ * Fixture of tests running messaging services in one process: module handles, configuration, cores and waiting until
+ * the services are connected
+ * Created on 10/19/26.
+ *
+ * @author agent
+ */
+class ServiceTestFixture {
+
+	/** Time to wait for services to connect (in ms) */
+	private static final long CONNECT_TIMEOUT = 5000;
+
+	/**
+	 * Receives the requests of a core
+	 */
+	interface RequestHandler {
+		void onRequest(ExternalRequestIdentity id, Message message);
+	}
+
+	/**
+	 * Configuration with the values set by the test
+	 */
+	static final class Config implements IConfigurationProvider {
+
+		private final Map<String, String> strings = new HashMap<>();
+		private final Map<String, Long> longs = new HashMap<>();
+
+		Config() {
+			// Services of the tests run in one process, use the sockets instead of the inproc transport
+			longs.put("ZMF_INPROC_TRANSPORT", 0L);
+		}
+
+		Config with(final String key, final long value) {
+			longs.put(key, value);
+			return this;
+		}
+
+		Config with(final String key, final String value) {
+			strings.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Optional<String> getAsString(final String key) {
+			return Optional.ofNullable(strings.get(key));
+		}
+
+		@Override
+		public Optional<Boolean> getAsBoolean(final String key) {
+			return Optional.empty();
+		}
+
+		@Override
+		public OptionalLong getAsLong(final String key) {
+			final Long value = longs.get(key);
+			return value == null ? OptionalLong.empty() : OptionalLong.of(value);
+		}
+
+		@Override
+		public OptionalDouble getAsDouble(final String key) {
+			return OptionalDouble.empty();
+		}
+	}
+
+	/** Topics of the probe events received by the cores of this fixture */
+	private final Set<MessageType> probesReceived = ConcurrentHashMap.newKeySet();
+
+	static ModuleHandleInternal createHandle(final int typeId, final long instanceId, final String name) {
+		return new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(typeId), UnsignedLong.fromLongBits(instanceId)), UnsignedInteger.fromIntBits(1), name, true);
+	}
+
+	/**
+	 * @param onEvent
+	 * 		receives the events except probes, null to ignore events
+	 * @param onRequest
+	 * 		receives the requests, null to ignore requests
+	 */
+	IMessagingCore createCore(final Consumer<Message> onEvent, final RequestHandler onRequest) {
+		return new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+				if (message.getData().length == 0) {
+					probesReceived.add(message.getType());
+				} else if (onEvent != null) {
+					onEvent.accept(message);
+				}
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				if (onRequest != null) {
+					onRequest.onRequest(id, message);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Makes two started services peers and waits until each received the HELLO of the other
+	 */
+	static void connect(final ZmqMessagingService serviceA, final ModuleHandleInternal handleA, final ZmqMessagingService serviceB, final ModuleHandleInternal handleB) throws InterruptedException {
+		serviceA.peerJoin(handleB);
+		serviceB.peerJoin(handleA);
+		awaitHello(serviceA, handleB.getUniqueId());
+		awaitHello(serviceB, handleA.getUniqueId());
+	}
+
+	static void awaitHello(final ZmqMessagingService service, final ModuleUniqueId peer) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		while (!service.isHelloReceived(peer)) {
+			Assert.assertTrue("no HELLO from " + peer, System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Publishes events without payload on the topics until a core of this fixture received one on each topic, the
+	 * subscriptions reached the publisher then. Events without payload are not passed to the tests.
+	 */
+	void awaitSubscriptions(final ZmqMessagingService publisher, final MessageType... topics) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		while (true) {
+			boolean received = true;
+			for (final MessageType topic : topics) {
+				if (!probesReceived.contains(topic)) {
+					received = false;
+					publisher.publish(new Message(topic, new byte[0]));
+				}
+			}
+			if (received) {
+				return;
+			}
+			Assert.assertTrue("subscriptions not received", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package jmf.messaging.implementation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeromq.ZFrame;
+import org.zeromq.ZMsg;
+
+/**
+ * Test the shared memory ring
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ShmRingTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static ZMsg createMsg(final int i, final int size) {
+		final ZMsg msg = new ZMsg();
+		msg.add(new byte[]{(byte) i});
+		msg.add(new byte[size]);
+		return msg;
+	}
+
+	@Test
+	public void testWriteRead() throws Exception {
+		final File file = new File(folder.getRoot(), "ring");
+		final ShmRing consumer = ShmRing.create(file, 4096);
+		final ShmRing producer = ShmRing.open(file);
+
+		final List<ZFrame[]> received = new ArrayList<>();
+		final ShmRing.RecordHandler handler = (kind, frames) -> {
+			Assert.assertEquals(1, kind);
+			return received.add(frames);
+		};
+
+		// Wraps around the data area several times
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(producer.write((byte) 1, createMsg(i, 200 + i), false));
+			Assert.assertEquals(1, consumer.read(10, handler));
+			Assert.assertEquals(i, received.get(i)[0].getData()[0]);
+			Assert.assertEquals(200 + i, received.get(i)[1].size());
+		}
+		Assert.assertEquals(0, consumer.read(10, handler));
+
+		// Too large for the ring
+		Assert.assertFalse(producer.write((byte) 1, createMsg(0, 2000), false));
+
+		// Full ring
+		int written = 0;
+		while (producer.write((byte) 1, createMsg(written, 500), false)) {
+			written++;
+		}
+		Assert.assertTrue(written > 0);
+		Assert.assertEquals(written, consumer.read(1000, handler));
+
+		consumer.close();
+		Assert.assertFalse(file.exists());
+	}
+
+	@Test
+	public void testWakeup() throws Exception {
+		final File file = new File(folder.getRoot(), "ring");
+		final ShmRing consumer = ShmRing.create(file, 4096);
+		final ShmRing producer = ShmRing.open(file);
+
+		Assert.assertTrue(producer.write((byte) 0, createMsg(0, 10), false));
+		Assert.assertFalse(producer.checkWakeup());
+		// Not empty, must not block
+		Assert.assertFalse(consumer.prepareWait());
+		consumer.endWait();
+
+		consumer.read(10, (kind, frames) -> true);
+		Assert.assertTrue(consumer.prepareWait());
+		Assert.assertTrue(producer.write((byte) 0, createMsg(1, 10), false));
+		Assert.assertTrue(producer.checkWakeup());
+		// Woken once
+		Assert.assertTrue(producer.write((byte) 0, createMsg(2, 10), false));
+		Assert.assertFalse(producer.checkWakeup());
+		consumer.close();
+	}
+
+	@Test
+	public void testRefuseAndReadTo() throws Exception {
+		final File file = new File(folder.getRoot(), "ring");
+		final ShmRing consumer = ShmRing.create(file, 4096);
+		final ShmRing producer = ShmRing.open(file);
+
+		Assert.assertTrue(producer.write((byte) 0, createMsg(0, 10), false));
+		final long second = producer.getWritePosition();
+		Assert.assertTrue(producer.write((byte) 1, createMsg(1, 10), false));
+		Assert.assertTrue(producer.write((byte) 0, createMsg(2, 10), false));
+
+		// Reading up to a position stops before the records written later
+		final List<Byte> received = new ArrayList<>();
+		Assert.assertEquals(1, consumer.readTo(second, (kind, frames) -> received.add(frames[0].getData()[0])));
+		Assert.assertEquals(1, received.size());
+
+		// A refused record blocks the ring and is read again
+		Assert.assertEquals(0, consumer.read(10, (kind, frames) -> kind != 1));
+		Assert.assertTrue(consumer.prepareWait());
+		consumer.endWait();
+		Assert.assertEquals(2, consumer.read(10, (kind, frames) -> received.add(frames[0].getData()[0])));
+		Assert.assertEquals(Arrays.asList((byte) 0, (byte) 1, (byte) 2), received);
+		consumer.close();
+	}
+}
@@ -0,0 +1,155 @@
+package jmf.messaging.implementation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.config.IConfigurationProvider;
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+
+/**
+ * Test propagation of request cancellation to the replying peer, over the wire and the inproc transport
+ * Created on 10/19/26.
+ * @author agent
+ */
+@RunWith(Parameterized.class)
+public class ZmqMessagingServiceCancelTest {
+
+	@Parameterized.Parameters(name = "inproc={0}")
+	public static Collection<Object[]> transports() {
+		return Arrays.asList(new Object[]{0L}, new Object[]{1L});
+	}
+
+	@Parameterized.Parameter
+	public long inproc;
+
+	private static final MessageType TOPIC = new MessageType("slow".getBytes());
+	private static final long REQUEST_TIMEOUT_MS = 1000;
+
+	private final ZmqMessagingService service = new ZmqMessagingService();
+	private final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "ZmqMessagingServiceCancelTest", true);
+
+	private final CompletableFuture<ExternalRequestIdentity> received = new CompletableFuture<>();
+	private final CompletableFuture<ExternalRequestIdentity> canceled = new CompletableFuture<>();
+
+	@Before
+	public void setUp() throws Exception {
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				received.complete(id);
+			}
+
+			@Override
+			public void onRequestCanceled(final ExternalRequestIdentity id) {
+				canceled.complete(id);
+			}
+		}, selfHandle, new IConfigurationProvider() {
+			@Override
+			public Optional<String> getAsString(final String key) {
+				return Optional.empty();
+			}
+
+			@Override
+			public Optional<Boolean> getAsBoolean(final String key) {
+				return Optional.empty();
+			}
+
+			@Override
+			public OptionalLong getAsLong(final String key) {
+				switch (key) {
+					case "ZMF_INPROC_TRANSPORT":
+						return OptionalLong.of(inproc);
+					case "ZMF_REQUEST_TIMEOUT_MS":
+						return OptionalLong.of(REQUEST_TIMEOUT_MS);
+					default:
+						return OptionalLong.empty();
+				}
+			}
+
+			@Override
+			public OptionalDouble getAsDouble(final String key) {
+				return OptionalDouble.empty();
+			}
+		});
+		service.peerJoin(selfHandle);
+		Thread.sleep(100);
+	}
+
+	@After
+	public void tearDown() {
+		service.stop();
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final InReply reply = service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0]));
+		final ExternalRequestIdentity id = received.get(5, TimeUnit.SECONDS);
+
+		final OutReply outReply = OutReply.createFutureReply();
+		outReply.injectFutureInfo(service, id);
+		Assert.assertTrue(service.isReplyPending(id));
+		Assert.assertFalse(outReply.isCancelled());
+
+		reply.cancelRequest();
+
+		Assert.assertEquals(id, canceled.get(5, TimeUnit.SECONDS));
+		Assert.assertFalse(service.isReplyPending(id));
+		Assert.assertTrue(outReply.isCancelled());
+		Assert.assertEquals(0, service.getOutstandingRequestCount(selfHandle.getUniqueId()));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		final InReply reply = service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0]));
+		final ExternalRequestIdentity id = received.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(1, service.getOutstandingRequestCount(selfHandle.getUniqueId()));
+
+		try {
+			reply.get(REQUEST_TIMEOUT_MS * 5, TimeUnit.MILLISECONDS);
+			Assert.fail("request without reply did not time out");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		Assert.assertEquals(0, service.getOutstandingRequestCount(selfHandle.getUniqueId()));
+		// The replying peer stops working on the timed out request
+		Assert.assertEquals(id, canceled.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testNoCancelAfterReply() throws Exception {
+		final InReply reply = service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0]));
+		final ExternalRequestIdentity id = received.get(5, TimeUnit.SECONDS);
+
+		final OutReply outReply = OutReply.createFutureReply();
+		outReply.injectFutureInfo(service, id);
+		outReply.sendFutureReply(new Message(TOPIC, new byte[0]));
+		reply.get(5, TimeUnit.SECONDS);
+		Assert.assertFalse(outReply.isCancelled());
+
+		reply.cancelRequest();
+		Thread.sleep(100);
+		Assert.assertFalse(canceled.isDone());
+	}
+}
@@ -0,0 +1,168 @@
+package jmf.messaging.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.zeromq.ZFrame;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.config.IConfigurationProvider;
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+import jmf.util.ByteUtils;
+
+/**
+ * Test per-peer request credit windows, over the wire and the inproc transport
+ * Created on 10/19/26.
+ * @author agent
+ */
+@RunWith(Parameterized.class)
+public class ZmqMessagingServiceCreditTest {
+
+	@Parameterized.Parameters(name = "inproc={0}")
+	public static Collection<Object[]> transports() {
+		return Arrays.asList(new Object[]{0L}, new Object[]{1L});
+	}
+
+	@Parameterized.Parameter
+	public long inproc;
+
+	private static final MessageType TOPIC = new MessageType("work".getBytes());
+	private static final int WINDOW = 4;
+
+	private final ZmqMessagingService service = new ZmqMessagingService();
+	private final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "ZmqMessagingServiceCreditTest", true);
+	/** Received requests not yet consumed */
+	private final LinkedBlockingQueue<ExternalRequestIdentity> received = new LinkedBlockingQueue<>();
+
+	private void start(final long mode) throws Exception {
+		final Map<String, Long> values = new HashMap<>();
+		values.put("ZMF_REQUEST_CREDIT_WINDOW", (long) WINDOW);
+		values.put("ZMF_REQUEST_CREDIT_MODE", mode);
+		values.put("ZMF_INPROC_TRANSPORT", inproc);
+
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				received.add(id);
+			}
+		}, selfHandle, new IConfigurationProvider() {
+			@Override
+			public Optional<String> getAsString(final String key) {
+				return Optional.empty();
+			}
+
+			@Override
+			public Optional<Boolean> getAsBoolean(final String key) {
+				return Optional.empty();
+			}
+
+			@Override
+			public OptionalLong getAsLong(final String key) {
+				return values.containsKey(key) ? OptionalLong.of(values.get(key)) : OptionalLong.empty();
+			}
+
+			@Override
+			public OptionalDouble getAsDouble(final String key) {
+				return OptionalDouble.empty();
+			}
+		});
+		service.peerJoin(selfHandle);
+		Thread.sleep(100);
+	}
+
+	@After
+	public void tearDown() {
+		service.stop();
+	}
+
+	@Test
+	public void testQueueing() throws Exception {
+		start(0);
+
+		final List<InReply> replies = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			replies.add(service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[]{(byte) i})));
+		}
+		Thread.sleep(200);
+		Assert.assertEquals(WINDOW, received.size());
+		Assert.assertEquals(10 - WINDOW, service.getQueuedRequestCount(selfHandle.getUniqueId()));
+
+		// Consuming requests returns credit, queued requests are sent
+		int consumed = 0;
+		while (consumed < 10) {
+			final ExternalRequestIdentity id = received.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(id);
+			service.onRequestConsumed(id);
+			consumed++;
+		}
+		Assert.assertEquals(0, service.getQueuedRequestCount(selfHandle.getUniqueId()));
+		Assert.assertFalse(replies.get(9).isDone());
+	}
+
+	@Test
+	public void testFailFast() throws Exception {
+		start(1);
+
+		for (int i = 0; i < WINDOW; i++) {
+			service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[]{(byte) i}));
+		}
+		final InReply rejected = service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0]));
+		Assert.assertTrue(rejected.isDone());
+		try {
+			rejected.get();
+			Assert.fail("request without credit was sent");
+		} catch (final ExecutionException e) {
+			// expected
+		}
+
+		// Credit returned by consuming a request
+		service.onRequestConsumed(received.poll(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		Assert.assertFalse(service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0])).isDone());
+	}
+
+	@Test
+	public void testUndecodablePayload() throws Exception {
+		start(1);
+
+		for (int i = 0; i < WINDOW; i++) {
+			service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[]{(byte) i}));
+		}
+		Assert.assertTrue(service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0])).isDone());
+
+		// A credited request with a payload failing to decompress returns its credit without reaching the core
+		final MessageOptions options = new MessageOptions();
+		options.flags = MessageOptions.FLAG_COMPRESSED | MessageOptions.FLAG_CREDIT;
+		service.handleRequestReceived(new ZFrame[]{new ZFrame(new byte[0]), new ZFrame(new byte[]{0}), ByteUtils.convertLongToFrame(-1),
+				new ZFrame(selfHandle.getUniqueId().getSenderProtoBytes()), new ZFrame(TOPIC.getMatch()), new ZFrame(new byte[]{1, 2, 3}), options.toFrame()});
+		Thread.sleep(100);
+		Assert.assertFalse(service.sendRequest(selfHandle.getUniqueId(), new Message(TOPIC, new byte[0])).isDone());
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (received.size() < WINDOW + 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(WINDOW + 1, received.size());
+	}
+}
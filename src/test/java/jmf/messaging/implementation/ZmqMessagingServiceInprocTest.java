@@ -0,0 +1,135 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+
+/**
+ * Test messaging between services in the same process without serialization
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ZmqMessagingServiceInprocTest {
+
+	private static final MessageType TOPIC = new MessageType("inproc".getBytes());
+
+	private final ZmqMessagingService serviceA = new ZmqMessagingService();
+	private final ZmqMessagingService serviceB = new ZmqMessagingService();
+	private final ModuleHandleInternal handleA = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(43), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "ZmqMessagingServiceInprocTestA", true);
+	private final ModuleHandleInternal handleB = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(43), UnsignedLong.fromLongBits(2)), UnsignedInteger.fromIntBits(1), "ZmqMessagingServiceInprocTestB", true);
+
+	private final LinkedBlockingQueue<Message> eventsA = new LinkedBlockingQueue<>();
+	private final LinkedBlockingQueue<Message> eventsB = new LinkedBlockingQueue<>();
+	private final LinkedBlockingQueue<Message> requestsB = new LinkedBlockingQueue<>();
+
+	private IMessagingCore createCore(final ZmqMessagingService service, final LinkedBlockingQueue<Message> events, final LinkedBlockingQueue<Message> requests) {
+		return new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+				events.add(message);
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				requests.add(message);
+				service.sendReply(id, message);
+			}
+		};
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		serviceA.start(createCore(serviceA, eventsA, new LinkedBlockingQueue<>()), handleA, null);
+		serviceB.start(createCore(serviceB, eventsB, requestsB), handleB, null);
+		serviceA.peerJoin(handleA);
+		serviceA.peerJoin(handleB);
+		serviceB.peerJoin(handleB);
+		serviceB.peerJoin(handleA);
+		Thread.sleep(100);
+	}
+
+	@After
+	public void tearDown() {
+		serviceA.stop();
+		serviceB.stop();
+	}
+
+	@Test
+	public void testRequestReply() throws Exception {
+		final byte[] payload = "ping".getBytes();
+		final InReply reply = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, payload));
+
+		// Same payload instance, no serialization
+		Assert.assertSame(payload, requestsB.poll(5, TimeUnit.SECONDS).getData());
+		Assert.assertSame(payload, reply.get(5, TimeUnit.SECONDS).getData());
+	}
+
+	@Test
+	public void testPublish() throws Exception {
+		serviceA.subscribe(TOPIC);
+		serviceB.subscribe(TOPIC);
+
+		final byte[] payload = "event".getBytes();
+		serviceA.publish(new Message(TOPIC, payload));
+
+		// Delivered once to the other service and to the publishing service itself
+		final Message received = eventsB.poll(5, TimeUnit.SECONDS);
+		Assert.assertSame(payload, received.getData());
+		Assert.assertEquals(1, received.getSequence());
+		Assert.assertSame(payload, eventsA.poll(5, TimeUnit.SECONDS).getData());
+		Thread.sleep(100);
+		Assert.assertTrue(eventsA.isEmpty());
+		Assert.assertTrue(eventsB.isEmpty());
+
+		// Not subscribed anymore
+		serviceB.unsubscribe(TOPIC);
+		serviceA.publish(new Message(TOPIC, payload));
+		Assert.assertNotNull(eventsA.poll(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		Assert.assertTrue(eventsB.isEmpty());
+	}
+
+	@Test
+	public void testSequencePerTopic() throws Exception {
+		final MessageType other = new MessageType("other".getBytes());
+		serviceB.subscribe(TOPIC);
+		serviceB.subscribe(other);
+
+		// Interleaved topics are counted separately, so round-robin groups alternate within each topic
+		for (int i = 1; i <= 3; i++) {
+			serviceA.publish(new Message(TOPIC, new byte[0]));
+			serviceA.publish(new Message(other, new byte[0]));
+			Assert.assertEquals(i, eventsB.poll(5, TimeUnit.SECONDS).getSequence());
+			Assert.assertEquals(i, eventsB.poll(5, TimeUnit.SECONDS).getSequence());
+		}
+
+		// Topics changed by the caller after publishing do not change the counted topic
+		final MessageType fresh = new MessageType("fresh".getBytes());
+		serviceB.subscribe(fresh);
+		final byte[] match = "fresh".getBytes();
+		serviceA.publish(new Message(new MessageType(match), new byte[0]));
+		Assert.assertEquals(1, eventsB.poll(5, TimeUnit.SECONDS).getSequence());
+		match[0] = 'x';
+		serviceA.publish(new Message(fresh, new byte[0]));
+		Assert.assertEquals(2, eventsB.poll(5, TimeUnit.SECONDS).getSequence());
+	}
+
+	@Test
+	public void testNoSequenceWithSingleInstances() throws Exception {
+		serviceA.subscribe(TOPIC);
+		// Only this instance of its type is left, no consumer group has more than one member
+		serviceA.peerLeave(handleB);
+		serviceA.publish(new Message(TOPIC, new byte[]{1}));
+		Assert.assertEquals(0, eventsA.poll(5, TimeUnit.SECONDS).getSequence());
+	}
+}
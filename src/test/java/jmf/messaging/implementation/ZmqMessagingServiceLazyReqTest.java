@@ -0,0 +1,109 @@
+package jmf.messaging.implementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import jmf.data.*;
+
+/**
+ * Test request sockets opened on the first request, closed when idle and capped by LRU eviction
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ZmqMessagingServiceLazyReqTest {
+
+	private static final MessageType TOPIC = new MessageType("lazy".getBytes());
+	private static final int PEERS = 3;
+	private static final long IDLE_MS = 500;
+
+	private final List<ZmqMessagingService> services = new ArrayList<>();
+	private final List<ModuleHandleInternal> handles = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config()
+				.with("ZMF_LAZY_REQ_SOCKETS", 1)
+				.with("ZMF_REQ_SOCKET_IDLE_MS", IDLE_MS)
+				.with("ZMF_MAX_REQ_SOCKETS", 2);
+		final ServiceTestFixture fixture = new ServiceTestFixture();
+		for (int i = 0; i <= PEERS; i++) {
+			final ZmqMessagingService service = new ZmqMessagingService();
+			final ModuleHandleInternal handle = ServiceTestFixture.createHandle(50, i, "ZmqMessagingServiceLazyReqTest" + i);
+			service.start(fixture.createCore(null, service::sendReply), handle, config);
+			services.add(service);
+			handles.add(handle);
+		}
+		// Request sockets are opened by the first request, there is no HELLO to wait for
+		for (int i = 0; i <= PEERS; i++) {
+			for (int j = 0; j <= PEERS; j++) {
+				if (i != j) {
+					services.get(i).peerJoin(handles.get(j));
+				}
+			}
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (final ZmqMessagingService service : services) {
+			service.stop();
+		}
+	}
+
+	private void request(final int peer) throws Exception {
+		final InReply reply = services.get(0).sendRequest(handles.get(peer).getUniqueId(), new Message(TOPIC, String.valueOf(peer).getBytes()));
+		Assert.assertEquals(String.valueOf(peer), new String(reply.get(5, TimeUnit.SECONDS).getData()));
+	}
+
+	@Test
+	public void testLazyOpenAndEviction() throws Exception {
+		// No sockets before the first request
+		for (final ZmqMessagingService service : services) {
+			Assert.assertEquals(0, service.getReqSocketCount());
+		}
+
+		request(1);
+		Assert.assertEquals(1, services.get(0).getReqSocketCount());
+		// The peer replies through its own socket, the other peers are untouched
+		Assert.assertEquals(1, services.get(1).getReqSocketCount());
+		Assert.assertEquals(0, services.get(2).getReqSocketCount());
+
+		request(2);
+		request(3);
+		Assert.assertEquals(2, services.get(0).getReqSocketCount());
+
+		// The evicted socket is opened again
+		request(1);
+		Assert.assertEquals(2, services.get(0).getReqSocketCount());
+
+		final long deadline = System.currentTimeMillis() + IDLE_MS * 10;
+		while (services.get(0).getReqSocketCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(0, services.get(0).getReqSocketCount());
+
+		// Requests work after the idle close
+		request(2);
+	}
+
+	@Test
+	public void testCompressionAfterHello() throws Exception {
+		// Capabilities of the peers are unknown until a request exchanged the HELLOs
+		Assert.assertFalse(services.get(0).isPublishCompressed());
+		request(1);
+		request(2);
+		Assert.assertFalse(services.get(0).isPublishCompressed());
+		request(3);
+		// The HELLO of the peer and its reply take different connections
+		ServiceTestFixture.awaitHello(services.get(0), handles.get(3).getUniqueId());
+		Assert.assertTrue(services.get(0).isPublishCompressed());
+		// Peer 1 only exchanged a HELLO with this service
+		Assert.assertFalse(services.get(1).isPublishCompressed());
+	}
+}
@@ -0,0 +1,97 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.*;
+
+/**
+ * Test messaging with each poll strategy of the poller thread
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ZmqMessagingServicePollStrategyTest {
+
+	private static final MessageType TOPIC = new MessageType("poll".getBytes());
+
+	private final ServiceTestFixture fixture = new ServiceTestFixture();
+	private final ZmqMessagingService serviceA = new ZmqMessagingService();
+	private final ZmqMessagingService serviceB = new ZmqMessagingService();
+	private final ModuleHandleInternal handleA = ServiceTestFixture.createHandle(49, 1, "ZmqMessagingServicePollStrategyTestA");
+	private final ModuleHandleInternal handleB = ServiceTestFixture.createHandle(49, 2, "ZmqMessagingServicePollStrategyTestB");
+
+	private final LinkedBlockingQueue<Message> eventsB = new LinkedBlockingQueue<>();
+
+	private void start(final long strategy, final long inproc) throws Exception {
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config()
+				.with("ZMF_INPROC_TRANSPORT", inproc)
+				.with("ZMF_POLL_STRATEGY", strategy)
+				.with("ZMF_POLL_SPIN_ITERATIONS", 1000)
+				.with("ZMF_POLL_YIELD_ITERATIONS", 100);
+		serviceA.start(fixture.createCore(null, null), handleA, config);
+		serviceB.start(fixture.createCore(eventsB::add, (id, message) -> serviceB.sendReply(id, message)), handleB, config);
+		ServiceTestFixture.connect(serviceA, handleA, serviceB, handleB);
+		serviceB.subscribe(TOPIC);
+		fixture.awaitSubscriptions(serviceA, TOPIC);
+	}
+
+	@After
+	public void tearDown() {
+		serviceA.stop();
+		serviceB.stop();
+	}
+
+	private void exchange() throws Exception {
+		for (int i = 0; i < 200; i++) {
+			final InReply reply = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, String.valueOf(i).getBytes()));
+			Assert.assertEquals(String.valueOf(i), new String(reply.get(5, TimeUnit.SECONDS).getData()));
+		}
+		for (int i = 0; i < 100; i++) {
+			serviceA.publish(new Message(TOPIC, new byte[]{(byte) i}));
+		}
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(i, eventsB.poll(5, TimeUnit.SECONDS).getData()[0]);
+		}
+	}
+
+	@Test
+	public void testBlocking() throws Exception {
+		start(0, 1);
+		exchange();
+		final PollerStats stats = serviceB.getPollerStats();
+		Assert.assertTrue(stats.toString(), stats.getNotifyCount() > 0);
+		Assert.assertTrue(stats.toString(), stats.getBlockingPollCount() > 0);
+		Assert.assertEquals(0, stats.getSpinHitCount() + stats.getYieldHitCount());
+	}
+
+	@Test
+	public void testSpin() throws Exception {
+		start(1, 0);
+		exchange();
+		final PollerStats stats = serviceB.getPollerStats();
+		Assert.assertTrue(stats.toString(), stats.getSpinHitCount() + stats.getYieldHitCount() > 0);
+	}
+
+	@Test
+	public void testSpinInproc() throws Exception {
+		start(1, 1);
+		exchange();
+		final PollerStats stats = serviceB.getPollerStats();
+		Assert.assertTrue(stats.toString(), stats.getNotifyCount() > 0);
+		Assert.assertTrue(stats.getMaxNotifyLatencyNanos() >= stats.getMeanNotifyLatencyNanos());
+	}
+
+	@Test
+	public void testBusy() throws Exception {
+		start(2, 0);
+		exchange();
+		// Never blocks, every wake up is found spinning
+		final PollerStats stats = serviceB.getPollerStats();
+		Assert.assertEquals(0, stats.getBlockingPollCount());
+		Assert.assertTrue(stats.toString(), stats.getSpinHitCount() > 0);
+	}
+}
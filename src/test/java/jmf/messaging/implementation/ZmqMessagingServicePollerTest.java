@@ -0,0 +1,75 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import jmf.data.*;
+
+/**
+ * Test that the poller loop serves requests during a flood of events
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ZmqMessagingServicePollerTest {
+
+	private static final MessageType TOPIC = new MessageType("flood".getBytes());
+	private static final int EVENTS = 500;
+
+	private final ServiceTestFixture fixture = new ServiceTestFixture();
+	private final ZmqMessagingService serviceA = new ZmqMessagingService();
+	private final ZmqMessagingService serviceB = new ZmqMessagingService();
+	private final ModuleHandleInternal handleA = ServiceTestFixture.createHandle(48, 1, "ZmqMessagingServicePollerTestA");
+	private final ModuleHandleInternal handleB = ServiceTestFixture.createHandle(48, 2, "ZmqMessagingServicePollerTestB");
+
+	private final AtomicInteger eventsB = new AtomicInteger();
+	private final AtomicInteger eventsBeforeRequest = new AtomicInteger(-1);
+
+	@Before
+	public void setUp() throws Exception {
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config().with("ZMF_POLLER_QUOTA", 8);
+		serviceA.start(fixture.createCore(null, null), handleA, config);
+		serviceB.start(fixture.createCore(message -> {
+			eventsB.incrementAndGet();
+			try {
+				// Slow event handling builds up a backlog on the sub socket
+				Thread.sleep(1);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, (id, message) -> {
+			eventsBeforeRequest.set(eventsB.get());
+			serviceB.sendReply(id, message);
+		}), handleB, config);
+		ServiceTestFixture.connect(serviceA, handleA, serviceB, handleB);
+		serviceB.subscribe(TOPIC);
+		fixture.awaitSubscriptions(serviceA, TOPIC);
+	}
+
+	@After
+	public void tearDown() {
+		serviceA.stop();
+		serviceB.stop();
+	}
+
+	@Test
+	public void testRequestDuringEventFlood() throws Exception {
+		for (int i = 0; i < EVENTS; i++) {
+			serviceA.publish(new Message(TOPIC, new byte[]{(byte) i}));
+		}
+		final InReply reply = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, "request".getBytes()));
+		Assert.assertEquals("request", new String(reply.get(5, TimeUnit.SECONDS).getData()));
+
+		// The request was handled long before the backlog of events
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (eventsB.get() < EVENTS && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(EVENTS, eventsB.get());
+		Assert.assertTrue("events before request: " + eventsBeforeRequest.get(), eventsBeforeRequest.get() < EVENTS / 2);
+	}
+}
@@ -0,0 +1,112 @@
+package jmf.messaging.implementation;
+
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jmf.data.*;
+
+/**
+ * Test messaging between services on the same host through shared memory rings
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ZmqMessagingServiceShmTest {
+
+	private static final MessageType TOPIC = new MessageType("shm".getBytes());
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final ServiceTestFixture fixture = new ServiceTestFixture();
+	private final ZmqMessagingService serviceA = new ZmqMessagingService();
+	private final ZmqMessagingService serviceB = new ZmqMessagingService();
+	private final ModuleHandleInternal handleA = ServiceTestFixture.createHandle(44, 1, "ZmqMessagingServiceShmTestA");
+	private final ModuleHandleInternal handleB = ServiceTestFixture.createHandle(44, 2, "ZmqMessagingServiceShmTestB");
+
+	private final LinkedBlockingQueue<Message> eventsB = new LinkedBlockingQueue<>();
+
+	@Before
+	public void setUp() throws Exception {
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config()
+				.with("ZMF_SHM_DIR", folder.getRoot().getPath())
+				.with("ZMF_SHM_RING_SIZE", 65536);
+		serviceA.start(fixture.createCore(null, null), handleA, config);
+		serviceB.start(fixture.createCore(eventsB::add, (id, message) -> serviceB.sendReply(id, message)), handleB, config);
+		ServiceTestFixture.connect(serviceA, handleA, serviceB, handleB);
+	}
+
+	@After
+	public void tearDown() {
+		serviceA.stop();
+		serviceB.stop();
+	}
+
+	@Test
+	public void testRequestReply() throws Exception {
+		// Rings in both directions
+		Assert.assertEquals(2, folder.getRoot().list().length);
+
+		for (int i = 0; i < 1000; i++) {
+			final InReply reply = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, String.valueOf(i).getBytes()));
+			Assert.assertEquals(String.valueOf(i), new String(reply.get(5, TimeUnit.SECONDS).getData()));
+		}
+	}
+
+	@Test
+	public void testPublish() throws Exception {
+		serviceB.subscribe(TOPIC);
+		fixture.awaitSubscriptions(serviceA, TOPIC);
+
+		serviceA.publish(new Message(new MessageType("other".getBytes()), new byte[]{0}));
+		for (int i = 0; i < 100; i++) {
+			serviceA.publish(new Message(TOPIC, new byte[]{(byte) i}));
+		}
+
+		// Each event once, in order, not subscribed topics filtered
+		for (int i = 0; i < 100; i++) {
+			final Message received = eventsB.poll(5, TimeUnit.SECONDS);
+			Assert.assertEquals(TOPIC, received.getType());
+			Assert.assertEquals(i, received.getData()[0]);
+		}
+		Thread.sleep(100);
+		Assert.assertTrue(eventsB.isEmpty());
+	}
+
+	@Test
+	public void testLargeMessagesInOrder() throws Exception {
+		serviceB.subscribe(TOPIC);
+		fixture.awaitSubscriptions(serviceA, TOPIC);
+
+		// Messages over a quarter of the ring are sent through the sockets, between records of the ring
+		final Random random = new Random(44);
+		final byte[][] payloads = new byte[50][];
+		for (int i = 0; i < payloads.length; i++) {
+			payloads[i] = new byte[i % 3 == 0 ? 20000 : 1 + i];
+			random.nextBytes(payloads[i]);
+			payloads[i][0] = (byte) i;
+		}
+
+		for (final byte[] payload : payloads) {
+			serviceA.publish(new Message(TOPIC, payload));
+		}
+		for (final byte[] payload : payloads) {
+			Assert.assertArrayEquals(payload, eventsB.poll(5, TimeUnit.SECONDS).getData());
+		}
+
+		final InReply[] replies = new InReply[payloads.length];
+		for (int i = 0; i < payloads.length; i++) {
+			replies[i] = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, payloads[i]));
+		}
+		for (int i = 0; i < payloads.length; i++) {
+			Assert.assertArrayEquals(payloads[i], replies[i].get(5, TimeUnit.SECONDS).getData());
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package jmf.messaging.implementation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import com.google.common.primitives.UnsignedInteger;
+import com.google.common.primitives.UnsignedLong;
+
+import jmf.data.*;
+import jmf.messaging.IMessagingCore;
+
+/**
+ * Test streamed replies and their flow control, over the wire and the inproc transport
+ * Created on 10/19/26.
+ * @author agent
+ */
+@RunWith(Parameterized.class)
+public class ZmqMessagingServiceStreamTest {
+
+	@Parameterized.Parameters(name = "inproc={0}")
+	public static Collection<Object[]> transports() {
+		return Arrays.asList(new Object[]{0L}, new Object[]{1L});
+	}
+
+	@Parameterized.Parameter
+	public long inproc;
+
+	private static final MessageType TOPIC_STREAM = new MessageType("rows".getBytes());
+	private static final MessageType TOPIC_SINGLE = new MessageType("single".getBytes());
+	private static final int CHUNKS = 200;
+	/** Default stream window */
+	private static final int WINDOW = 16;
+
+	private final ZmqMessagingService service = new ZmqMessagingService();
+	private final ModuleHandleInternal selfHandle = new ModuleHandleInternal(new ModuleUniqueId(UnsignedInteger.fromIntBits(42), UnsignedLong.fromLongBits(1)), UnsignedInteger.fromIntBits(1), "ZmqMessagingServiceStreamTest", true);
+
+	private final AtomicInteger chunksSent = new AtomicInteger(0);
+	private final CompletableFuture<Boolean> producerResult = new CompletableFuture<>();
+
+	@Before
+	public void setUp() throws Exception {
+		service.start(new IMessagingCore() {
+			@Override
+			public void onSubMsgReceived(final Message message, final ModuleUniqueId sender) {
+			}
+
+			@Override
+			public void onRequestMsgReceived(final ExternalRequestIdentity id, final Message message, final ModuleUniqueId sender) {
+				if (TOPIC_SINGLE.equals(message.getType())) {
+					service.sendReply(id, message);
+					return;
+				}
+				new Thread(() -> {
+					for (int i = 0; i < CHUNKS; i++) {
+						if (!service.sendStreamChunk(id, new Message(TOPIC_STREAM, String.valueOf(i).getBytes()))) {
+							producerResult.complete(false);
+							return;
+						}
+						chunksSent.incrementAndGet();
+					}
+					service.finishStream(id);
+					producerResult.complete(true);
+				}).start();
+			}
+		}, selfHandle, new ServiceTestFixture.Config().with("ZMF_INPROC_TRANSPORT", inproc));
+		service.peerJoin(selfHandle);
+		ServiceTestFixture.awaitHello(service, selfHandle.getUniqueId());
+	}
+
+	@After
+	public void tearDown() {
+		service.stop();
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		final InStreamReply reply = service.sendStreamRequest(selfHandle.getUniqueId(), new Message(TOPIC_STREAM, new byte[0]));
+
+		// Producer stops at the window without consumption
+		Thread.sleep(200);
+		Assert.assertEquals(WINDOW, chunksSent.get());
+
+		int received = 0;
+		while (reply.hasNext()) {
+			Assert.assertEquals(String.valueOf(received), new String(reply.next().getData()));
+			received++;
+			Assert.assertTrue(chunksSent.get() <= received + WINDOW);
+		}
+		Assert.assertEquals(CHUNKS, received);
+		Assert.assertTrue(reply.isDone());
+		Assert.assertTrue(producerResult.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final InStreamReply reply = service.sendStreamRequest(selfHandle.getUniqueId(), new Message(TOPIC_STREAM, new byte[0]));
+		Assert.assertTrue(reply.hasNext(5, TimeUnit.SECONDS));
+		reply.next();
+		reply.cancelRequest();
+
+		Assert.assertFalse(producerResult.get(5, TimeUnit.SECONDS));
+		Assert.assertFalse(reply.hasNext());
+	}
+
+	@Test
+	public void testCancelRightAfterSending() throws Exception {
+		// The cancel must not overtake the request, the producer would wait for credit forever
+		final InStreamReply reply = service.sendStreamRequest(selfHandle.getUniqueId(), new Message(TOPIC_STREAM, new byte[0]));
+		reply.cancelRequest();
+
+		Assert.assertFalse(producerResult.get(5, TimeUnit.SECONDS));
+		Assert.assertTrue(chunksSent.get() <= WINDOW);
+	}
+
+	@Test
+	public void testSingleReply() throws Exception {
+		final InStreamReply reply = service.sendStreamRequest(selfHandle.getUniqueId(), new Message(TOPIC_SINGLE, "one".getBytes()));
+		Assert.assertTrue(reply.hasNext(5, TimeUnit.SECONDS));
+		Assert.assertEquals("one", new String(reply.next().getData()));
+		Assert.assertFalse(reply.hasNext());
+	}
+}
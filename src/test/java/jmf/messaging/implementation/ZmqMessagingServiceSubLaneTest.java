@@ -0,0 +1,90 @@
+package jmf.messaging.implementation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import jmf.data.*;
+
+/**
+ * Test receiving events on multiple sub lanes
+ * Created on 10/19/26.
+ *
+ * @author agent
+ */
+public class ZmqMessagingServiceSubLaneTest {
+
+	private static final int TOPICS = 16;
+	private static final int EVENTS = 50;
+	/** Suffixes of topics matched by a subscription shorter than the lane prefix */
+	private static final String[] SHORT_MATCHED = {"a", "b", "c", "d"};
+
+	private final ServiceTestFixture fixture = new ServiceTestFixture();
+	private final ZmqMessagingService serviceA = new ZmqMessagingService();
+	private final ZmqMessagingService serviceB = new ZmqMessagingService();
+	private final ModuleHandleInternal handleA = ServiceTestFixture.createHandle(47, 1, "ZmqMessagingServiceSubLaneTestA");
+	private final ModuleHandleInternal handleB = ServiceTestFixture.createHandle(47, 2, "ZmqMessagingServiceSubLaneTestB");
+
+	private final LinkedBlockingQueue<Message> eventsB = new LinkedBlockingQueue<>();
+
+	@Before
+	public void setUp() throws Exception {
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config()
+				.with("ZMF_SUB_LANES", 4)
+				.with("ZMF_ZMQ_IO_THREADS", 2);
+		serviceA.start(fixture.createCore(null, null), handleA, config);
+		serviceB.start(fixture.createCore(eventsB::add, null), handleB, config);
+		ServiceTestFixture.connect(serviceA, handleA, serviceB, handleB);
+	}
+
+	@After
+	public void tearDown() {
+		serviceA.stop();
+		serviceB.stop();
+	}
+
+	@Test
+	public void testTopicsOnAllLanes() throws Exception {
+		final List<MessageType> topics = new ArrayList<>();
+		for (int t = 0; t < TOPICS; t++) {
+			topics.add(new MessageType(("lane" + t).getBytes()));
+		}
+		for (final String suffix : SHORT_MATCHED) {
+			topics.add(new MessageType(("x" + suffix).getBytes()));
+		}
+		for (int t = 0; t < TOPICS; t++) {
+			serviceB.subscribe(topics.get(t));
+		}
+		// Short topics are subscribed on lane 0 only, events of other lanes matching them must still be delivered once
+		serviceB.subscribe(new MessageType(new byte[]{'x'}));
+		serviceB.subscribe(new MessageType(new byte[]{'l'}));
+		fixture.awaitSubscriptions(serviceA, topics.toArray(new MessageType[0]));
+
+		serviceA.publish(new Message(new MessageType("other".getBytes()), new byte[]{0}));
+		for (int i = 0; i < EVENTS; i++) {
+			for (final MessageType topic : topics) {
+				serviceA.publish(new Message(topic, new byte[]{(byte) i}));
+			}
+		}
+
+		// Each event once and in order per topic, topics may interleave differently
+		final Map<MessageType, Integer> nextPerTopic = new HashMap<>();
+		for (int i = 0; i < EVENTS * topics.size(); i++) {
+			final Message received = eventsB.poll(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(received);
+			final int next = nextPerTopic.getOrDefault(received.getType(), 0);
+			Assert.assertEquals(next, received.getData()[0]);
+			nextPerTopic.put(received.getType(), next + 1);
+		}
+		Thread.sleep(100);
+		Assert.assertTrue(eventsB.isEmpty());
+	}
+}
@@ -0,0 +1,62 @@
+package jmf.messaging.implementation;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import jmf.data.*;
+
+/**
+ * Test failing requests without reply when their time to live elapsed
+ * Created on 10/19/26.
+ *
+ * @author agent
+ */
+public class ZmqMessagingServiceTtlTest {
+
+	private static final MessageType TOPIC = new MessageType("ttl".getBytes());
+
+	private final ServiceTestFixture fixture = new ServiceTestFixture();
+	private final ZmqMessagingService serviceA = new ZmqMessagingService();
+	private final ZmqMessagingService serviceB = new ZmqMessagingService();
+	private final ModuleHandleInternal handleA = ServiceTestFixture.createHandle(40, 1, "ZmqMessagingServiceTtlTestA");
+	private final ModuleHandleInternal handleB = ServiceTestFixture.createHandle(40, 2, "ZmqMessagingServiceTtlTestB");
+
+	@Before
+	public void setUp() throws Exception {
+		final ServiceTestFixture.Config config = new ServiceTestFixture.Config();
+		serviceA.start(fixture.createCore(null, null), handleA, config);
+		// Never replies
+		serviceB.start(fixture.createCore(null, null), handleB, config);
+		ServiceTestFixture.connect(serviceA, handleA, serviceB, handleB);
+	}
+
+	@After
+	public void tearDown() {
+		serviceA.stop();
+		serviceB.stop();
+	}
+
+	@Test
+	public void testFailAtTtl() throws Exception {
+		final long sent = System.nanoTime();
+		final InReply reply = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, new byte[]{1}).withTtl(100, TimeUnit.MILLISECONDS));
+		try {
+			reply.get(5, TimeUnit.SECONDS);
+			Assert.fail("request without reply completed");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		Assert.assertTrue(System.nanoTime() - sent >= TimeUnit.MILLISECONDS.toNanos(100));
+
+		// Without time to live the request waits for its reply
+		final InReply plain = serviceA.sendRequest(handleB.getUniqueId(), new Message(TOPIC, new byte[]{2}));
+		Thread.sleep(200);
+		Assert.assertFalse(plain.toCompletableFuture().isDone());
+	}
+}
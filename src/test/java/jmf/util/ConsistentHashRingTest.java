@@ -0,0 +1,85 @@
+package jmf.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.ModuleUniqueId;
+
+/**
+ * Test consistent hash ring key distribution and movement on membership changes
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class ConsistentHashRingTest {
+
+	private static final int KEYS = 10000;
+
+	private static ConsistentHashRing<ModuleUniqueId> createRing(final int nodes) {
+		final ConsistentHashRing<ModuleUniqueId> ring = new ConsistentHashRing<>(128, ModuleUniqueId::getSenderProtoBytes);
+		for (int i = 1; i <= nodes; i++) {
+			Assert.assertTrue(ring.add(new ModuleUniqueId((short) 4, i)));
+		}
+		return ring;
+	}
+
+	private static byte[] key(final int k) {
+		return ("switch" + k).getBytes();
+	}
+
+	@Test
+	public void testDistribution() {
+		final ConsistentHashRing<ModuleUniqueId> ring = createRing(4);
+		Assert.assertEquals(4, ring.size());
+		Assert.assertFalse(ring.add(new ModuleUniqueId((short) 4, 1)));
+
+		final Map<ModuleUniqueId, Integer> counts = new HashMap<>();
+		for (int k = 0; k < KEYS; k++) {
+			counts.merge(ring.get(key(k)), 1, Integer::sum);
+		}
+		Assert.assertEquals(4, counts.size());
+		for (final int count : counts.values()) {
+			// Each node gets roughly a quarter of the keys
+			Assert.assertTrue("unbalanced: " + counts, count > KEYS / 4 * 0.7 && count < KEYS / 4 * 1.3);
+		}
+
+		// Equal rings map keys equally
+		final ConsistentHashRing<ModuleUniqueId> other = createRing(4);
+		for (int k = 0; k < 100; k++) {
+			Assert.assertEquals(ring.get(key(k)), other.get(key(k)));
+		}
+	}
+
+	@Test
+	public void testMembershipChange() {
+		final ConsistentHashRing<ModuleUniqueId> ring = createRing(4);
+		final ModuleUniqueId[] before = new ModuleUniqueId[KEYS];
+		for (int k = 0; k < KEYS; k++) {
+			before[k] = ring.get(key(k));
+		}
+
+		// Join: only keys moving to the new node move
+		final ModuleUniqueId joining = new ModuleUniqueId((short) 4, 5);
+		ring.add(joining);
+		int moved = 0;
+		for (int k = 0; k < KEYS; k++) {
+			final ModuleUniqueId owner = ring.get(key(k));
+			if (!owner.equals(before[k])) {
+				Assert.assertEquals(joining, owner);
+				moved++;
+			}
+		}
+		Assert.assertTrue("moved " + moved, moved > KEYS / 5 * 0.7 && moved < KEYS / 5 * 1.3);
+
+		// Leave: keys return to their previous owners
+		Assert.assertTrue(ring.remove(joining));
+		for (int k = 0; k < KEYS; k++) {
+			Assert.assertEquals(before[k], ring.get(key(k)));
+		}
+
+		final ConsistentHashRing<ModuleUniqueId> empty = new ConsistentHashRing<>(16, ModuleUniqueId::getSenderProtoBytes);
+		Assert.assertNull(empty.get(key(1)));
+	}
+}
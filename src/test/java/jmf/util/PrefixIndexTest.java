@@ -0,0 +1,61 @@
+package jmf.util;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jmf.data.MessageType;
+
+/**
+ * Test prefix index lookups
+ * Created on 10/19/26.
+ * @author agent
+ */
+public class PrefixIndexTest {
+
+	@Test
+	public void testLongestPrefix() throws Exception {
+		final PrefixIndex<String> index = new PrefixIndex<>();
+
+		index.put(new MessageType("a".getBytes()), "a");
+		index.put(new MessageType("aab".getBytes()), "aab");
+		index.put(new MessageType("b".getBytes()), "b");
+
+		Assert.assertEquals("a", index.findLongestPrefix(new MessageType("a".getBytes())));
+		Assert.assertEquals("a", index.findLongestPrefix(new MessageType("aa".getBytes())));
+		Assert.assertEquals("aab", index.findLongestPrefix(new MessageType("aab".getBytes())));
+		Assert.assertEquals("aab", index.findLongestPrefix(new MessageType("aabb".getBytes())));
+		Assert.assertEquals("a", index.findLongestPrefix(new MessageType("aac".getBytes())));
+		Assert.assertNull(index.findLongestPrefix(new MessageType("c".getBytes())));
+		Assert.assertNull(index.findLongestPrefix(new MessageType("".getBytes())));
+
+		Assert.assertEquals(Arrays.asList("a", "aab"), index.findAllPrefixes(new MessageType("aabc".getBytes())));
+
+		index.put(new MessageType("".getBytes()), "all");
+		Assert.assertEquals("all", index.findLongestPrefix(new MessageType("c".getBytes())));
+
+		Assert.assertEquals("aab", index.remove(new MessageType("aab".getBytes())));
+		Assert.assertEquals("a", index.findLongestPrefix(new MessageType("aabb".getBytes())));
+
+		Assert.assertFalse(index.remove(new MessageType("a".getBytes()), "other"));
+		Assert.assertTrue(index.remove(new MessageType("a".getBytes()), "a"));
+		Assert.assertEquals("all", index.findLongestPrefix(new MessageType("aabb".getBytes())));
+
+		index.clear();
+		Assert.assertTrue(index.isEmpty());
+		Assert.assertNull(index.findLongestPrefix(new MessageType("aabb".getBytes())));
+	}
+
+	@Test
+	public void testKeyCopied() throws Exception {
+		final PrefixIndex<String> index = new PrefixIndex<>();
+		final MessageType type = new MessageType("ab".getBytes());
+		index.put(type, "ab");
+
+		// Changing the registered MessageType must not change the index
+		type.overridePrefixWith(new MessageType("x".getBytes()));
+		Assert.assertEquals("ab", index.findLongestPrefix(new MessageType("abc".getBytes())));
+		Assert.assertNull(index.findLongestPrefix(new MessageType("xbc".getBytes())));
+	}
+}